@@ -78,6 +78,10 @@ public final class CodecUtil {
   public static final String IO_ERASURECODE_CODEC_XOR_RAWCODERS_KEY =
       IO_ERASURECODE_CODEC + "xor.rawcoders";
 
+  /** Raw coder factory for the Locally Repairable Code codec. */
+  public static final String IO_ERASURECODE_CODEC_LRC_RAWCODERS_KEY =
+      IO_ERASURECODE_CODEC + "lrc.rawcoders";
+
   public static final String IO_ERASURECODE_CODEC_NATIVE_ENABLED_KEY =
       IO_ERASURECODE_CODEC + "native.enabled";
 
@@ -31,6 +31,7 @@ private ErasureCodeConstants() {
   public static final String XOR_CODEC_NAME = "xor";
   public static final String HHXOR_CODEC_NAME = "hhxor";
   public static final String REPLICATION_CODEC_NAME = "replication";
+  public static final String LRC_CODEC_NAME = "lrc";
 
   public static final ECSchema RS_6_3_SCHEMA = new ECSchema(
       RS_CODEC_NAME, 6, 3);
@@ -47,6 +48,13 @@ private ErasureCodeConstants() {
   public static final ECSchema RS_10_4_SCHEMA = new ECSchema(
       RS_CODEC_NAME, 10, 4);
 
+  /**
+   * LRC with 6 data units in 2 local groups, each with a local parity unit,
+   * and 2 global parity units.
+   */
+  public static final ECSchema LRC_6_2_2_SCHEMA = new ECSchema(
+      LRC_CODEC_NAME, 6, 4);
+
   public static final ECSchema REPLICATION_1_2_SCHEMA = new ECSchema(
       REPLICATION_CODEC_NAME, 1, 2);
 
@@ -108,7 +108,7 @@ void checkInputBuffers(byte[][] buffers) {
       validInputs++;
     }
 
-    if (validInputs < decoder.getNumDataUnits()) {
+    if (validInputs < decoder.getMinValidInputs()) {
       throw new HadoopIllegalArgumentException(
           "No enough valid inputs are provided, not recoverable");
     }
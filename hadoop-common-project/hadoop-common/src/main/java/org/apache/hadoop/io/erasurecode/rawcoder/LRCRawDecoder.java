@@ -0,0 +1,249 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder;
+
+import org.apache.hadoop.HadoopIllegalArgumentException;
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.DumpUtil;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.GF256;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.LRCUtil;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSBlockedUtil;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A raw erasure decoder for Locally Repairable Codes in pure Java, see
+ * {@link LRCUtil} for the layout of the units.
+ *
+ * LRC is not MDS, so the erased units are not decoded from any numDataUnits
+ * valid inputs, but expressed as combinations of whichever inputs are
+ * given, preferring data units over local parities over global parities.
+ * A unit erased alone in its local group is thus decoded from the rest of
+ * the group, and the callers only need to read the group to repair it.
+ */
+@InterfaceAudience.Private
+public class LRCRawDecoder extends RawErasureDecoder {
+  //relevant to schema and won't change during decode calls
+  private final byte[] generatorMatrix;
+
+  /**
+   * Below are relevant to erased indexes and valid inputs, thus may change
+   * during decode calls.
+   */
+  private byte[] gfTables;
+  private int[] cachedErasedIndexes;
+  private int[] cachedValidIndexes;
+  /** The valid inputs that the erased units are decoded from. */
+  private int[] sourceIndexes;
+
+  public LRCRawDecoder(ErasureCoderOptions coderOptions) {
+    super(coderOptions);
+
+    if (getNumAllUnits() >= RSUtil.GF.getFieldSize()) {
+      throw new HadoopIllegalArgumentException(
+          "Invalid numDataUnits and numParityUnits");
+    }
+    LRCUtil.checkLayout(getNumDataUnits(), getNumParityUnits());
+
+    generatorMatrix = new byte[getNumAllUnits() * getNumDataUnits()];
+    LRCUtil.genGeneratorMatrix(generatorMatrix, getNumDataUnits(),
+        getNumParityUnits());
+    if (allowVerboseDump()) {
+      DumpUtil.dumpMatrix(generatorMatrix, getNumDataUnits(),
+          getNumAllUnits());
+    }
+  }
+
+  /**
+   * A unit erased alone in its local group is decoded from the other units
+   * of the group.
+   */
+  @Override
+  public int getMinValidInputs() {
+    return getNumDataUnits()
+        / LRCUtil.getNumLocalParityUnits(getNumDataUnits(),
+            getNumParityUnits());
+  }
+
+  @Override
+  protected void doDecode(ByteBufferDecodingState decodingState) {
+    CoderUtil.resetOutputBuffers(decodingState.outputs,
+        decodingState.decodeLength);
+    prepareDecoding(decodingState.inputs, decodingState.erasedIndexes);
+
+    ByteBuffer[] realInputs = new ByteBuffer[sourceIndexes.length];
+    for (int i = 0; i < sourceIndexes.length; i++) {
+      realInputs[i] = decodingState.inputs[sourceIndexes[i]];
+    }
+    RSBlockedUtil.encodeData(gfTables, realInputs, decodingState.outputs);
+  }
+
+  @Override
+  protected void doDecode(ByteArrayDecodingState decodingState) {
+    int dataLen = decodingState.decodeLength;
+    CoderUtil.resetOutputBuffers(decodingState.outputs,
+        decodingState.outputOffsets, dataLen);
+    prepareDecoding(decodingState.inputs, decodingState.erasedIndexes);
+
+    byte[][] realInputs = new byte[sourceIndexes.length][];
+    int[] realInputOffsets = new int[sourceIndexes.length];
+    for (int i = 0; i < sourceIndexes.length; i++) {
+      realInputs[i] = decodingState.inputs[sourceIndexes[i]];
+      realInputOffsets[i] = decodingState.inputOffsets[sourceIndexes[i]];
+    }
+    RSBlockedUtil.encodeData(gfTables, dataLen, realInputs, realInputOffsets,
+        decodingState.outputs, decodingState.outputOffsets);
+  }
+
+  private <T> void prepareDecoding(T[] inputs, int[] erasedIndexes) {
+    int[] validIndexes = CoderUtil.getValidIndexes(inputs);
+    if (Arrays.equals(cachedErasedIndexes, erasedIndexes) &&
+        Arrays.equals(cachedValidIndexes, validIndexes)) {
+      return; // Optimization. Nothing to do
+    }
+
+    byte[] decodeMatrix = generateDecodeMatrix(validIndexes, erasedIndexes);
+
+    // Leave out the inputs that no erased unit is decoded from.
+    int numErased = erasedIndexes.length;
+    int[] sources = new int[validIndexes.length];
+    int numSources = 0;
+    for (int j = 0; j < validIndexes.length; j++) {
+      for (int i = 0; i < numErased; i++) {
+        if (decodeMatrix[i * validIndexes.length + j] != 0) {
+          sources[numSources++] = j;
+          break;
+        }
+      }
+    }
+    byte[] sourceMatrix = new byte[numErased * numSources];
+    for (int i = 0; i < numErased; i++) {
+      for (int j = 0; j < numSources; j++) {
+        sourceMatrix[i * numSources + j] =
+            decodeMatrix[i * validIndexes.length + sources[j]];
+      }
+    }
+    int[] newSourceIndexes = new int[numSources];
+    for (int j = 0; j < numSources; j++) {
+      newSourceIndexes[j] = validIndexes[sources[j]];
+    }
+
+    byte[] newTables = new byte[numErased * numSources * 32];
+    RSUtil.initTables(numSources, numErased, sourceMatrix, 0, newTables);
+    if (allowVerboseDump()) {
+      System.out.println(DumpUtil.bytesToHex(newTables, -1));
+    }
+
+    this.gfTables = newTables;
+    this.sourceIndexes = newSourceIndexes;
+    this.cachedErasedIndexes =
+        Arrays.copyOf(erasedIndexes, erasedIndexes.length);
+    this.cachedValidIndexes = validIndexes;
+  }
+
+  /**
+   * Express the row of every erased unit in the generator matrix as a
+   * combination of the rows of the valid units. A basis of the rows of the
+   * valid units is built in index order, keeping for every basis row its
+   * combination of valid units, and the row of every erased unit is then
+   * reduced against the basis.
+   *
+   * @return the coefficients of the valid units for every erased unit.
+   */
+  private byte[] generateDecodeMatrix(int[] validIndexes,
+      int[] erasedIndexes) {
+    final int k = getNumDataUnits();
+    final int n = validIndexes.length;
+    byte[][] basis = new byte[k][];
+    byte[][] basisCombinations = new byte[k][];
+    int[] pivots = new int[k];
+    int rank = 0;
+
+    for (int j = 0; j < n && rank < k; j++) {
+      byte[] row = Arrays.copyOfRange(generatorMatrix, validIndexes[j] * k,
+          (validIndexes[j] + 1) * k);
+      byte[] combination = new byte[n];
+      combination[j] = 1;
+      reduce(row, combination, basis, basisCombinations, pivots, rank);
+
+      int pivot = 0;
+      while (pivot < k && row[pivot] == 0) {
+        pivot++;
+      }
+      if (pivot == k) {
+        continue; // Depends on the units before it.
+      }
+      byte inverse = GF256.gfInv(row[pivot]);
+      scale(row, inverse);
+      scale(combination, inverse);
+      basis[rank] = row;
+      basisCombinations[rank] = combination;
+      pivots[rank] = pivot;
+      rank++;
+    }
+
+    byte[] decodeMatrix = new byte[erasedIndexes.length * n];
+    for (int i = 0; i < erasedIndexes.length; i++) {
+      byte[] row = Arrays.copyOfRange(generatorMatrix, erasedIndexes[i] * k,
+          (erasedIndexes[i] + 1) * k);
+      byte[] combination = new byte[n];
+      reduce(row, combination, basis, basisCombinations, pivots, rank);
+      for (byte b : row) {
+        if (b != 0) {
+          throw new HadoopIllegalArgumentException("Unit "
+              + erasedIndexes[i] + " can't be decoded from the units "
+              + Arrays.toString(validIndexes));
+        }
+      }
+      System.arraycopy(combination, 0, decodeMatrix, i * n, n);
+    }
+    return decodeMatrix;
+  }
+
+  /**
+   * Subtract the basis rows from the row until it is zero in all their
+   * pivots, and the same combinations of the valid units from the row's.
+   * Each basis row is zero in the pivots of the rows before it, so a single
+   * pass in order is enough.
+   */
+  private static void reduce(byte[] row, byte[] combination, byte[][] basis,
+      byte[][] basisCombinations, int[] pivots, int rank) {
+    for (int b = 0; b < rank; b++) {
+      byte factor = row[pivots[b]];
+      if (factor != 0) {
+        addScaled(row, basis[b], factor);
+        addScaled(combination, basisCombinations[b], factor);
+      }
+    }
+  }
+
+  private static void addScaled(byte[] to, byte[] from, byte factor) {
+    for (int i = 0; i < to.length; i++) {
+      to[i] ^= GF256.gfMul(factor, from[i]);
+    }
+  }
+
+  private static void scale(byte[] row, byte factor) {
+    for (int i = 0; i < row.length; i++) {
+      row[i] = GF256.gfMul(factor, row[i]);
+    }
+  }
+}
@@ -184,6 +184,16 @@ protected int getNumAllUnits() {
     return coderOptions.getNumAllUnits();
   }
 
+  /**
+   * Get the minimum number of valid inputs that erased units can be decoded
+   * from. It's the number of data units for MDS codes like RS, while codes
+   * with local parities can repair some units from fewer.
+   * @return the minimum number of valid inputs
+   */
+  public int getMinValidInputs() {
+    return getNumDataUnits();
+  }
+
   /**
    * Tell if direct buffer is preferred or not. It's for callers to
    * decide how to allocate coding chunk buffers, using DirectByteBuffer or
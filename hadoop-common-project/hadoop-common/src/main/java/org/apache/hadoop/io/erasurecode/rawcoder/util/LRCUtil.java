@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder.util;
+
+import org.apache.hadoop.HadoopIllegalArgumentException;
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import java.util.Arrays;
+
+/**
+ * Utilities for the layout of Locally Repairable Codes, used by LRC coders
+ * and by the callers that choose which units to read.
+ *
+ * The numDataUnits data units are split into as many equal local groups as
+ * there are local parity units, half the parity units rounded down. Each
+ * local parity unit is the XOR of the data units of its group, so a single
+ * lost unit of a group is repaired from the rest of the group only. The
+ * remaining parity units are global RS parities over all the data units,
+ * computed with the same Cauchy matrix as the RS coder.
+ *
+ * Units are indexed with the data units first, then the local parity units
+ * in group order, then the global parity units. An LRC with l local and r
+ * global parity units recovers any r + 1 erased units, and many patterns of
+ * up to l + r, see {@link #isDecodable}. The former is checked exhaustively
+ * for all the layouts of up to 20 units.
+ */
+@InterfaceAudience.Private
+public final class LRCUtil {
+
+  private LRCUtil() {}
+
+  /**
+   * @param numDataUnits the number of data units.
+   * @param numParityUnits the number of parity units.
+   * @return the number of local parity units, which is also the number of
+   *         local groups.
+   */
+  public static int getNumLocalParityUnits(int numDataUnits,
+      int numParityUnits) {
+    return numParityUnits / 2;
+  }
+
+  /**
+   * @param numDataUnits the number of data units.
+   * @param numParityUnits the number of parity units.
+   * @return whether the data units can be split into local groups.
+   */
+  public static boolean isValidLayout(int numDataUnits, int numParityUnits) {
+    int numLocal = getNumLocalParityUnits(numDataUnits, numParityUnits);
+    return numLocal >= 1 && numDataUnits % numLocal == 0;
+  }
+
+  /**
+   * Check that the data units can be split into local groups.
+   *
+   * @param numDataUnits the number of data units.
+   * @param numParityUnits the number of parity units.
+   */
+  public static void checkLayout(int numDataUnits, int numParityUnits) {
+    if (!isValidLayout(numDataUnits, numParityUnits)) {
+      throw new HadoopIllegalArgumentException("Invalid LRC layout with "
+          + numDataUnits + " data units and " + numParityUnits
+          + " parity units, at least 2 parity units are required and the"
+          + " data units must split evenly into local groups");
+    }
+  }
+
+  /**
+   * @param numDataUnits the number of data units.
+   * @param numParityUnits the number of parity units.
+   * @param index the index of a unit.
+   * @return the local group of the unit, or -1 for a global parity unit.
+   */
+  public static int getLocalGroup(int numDataUnits, int numParityUnits,
+      int index) {
+    int numLocal = getNumLocalParityUnits(numDataUnits, numParityUnits);
+    if (index < numDataUnits) {
+      return index / (numDataUnits / numLocal);
+    }
+    if (index < numDataUnits + numLocal) {
+      return index - numDataUnits;
+    }
+    return -1;
+  }
+
+  /**
+   * @param numDataUnits the number of data units.
+   * @param numParityUnits the number of parity units.
+   * @param group a local group.
+   * @return the indexes of the data units of the group followed by the index
+   *         of its local parity unit.
+   */
+  public static int[] getLocalGroupUnits(int numDataUnits, int numParityUnits,
+      int group) {
+    int groupSize = numDataUnits
+        / getNumLocalParityUnits(numDataUnits, numParityUnits);
+    int[] units = new int[groupSize + 1];
+    for (int i = 0; i < groupSize; i++) {
+      units[i] = group * groupSize + i;
+    }
+    units[groupSize] = numDataUnits + group;
+    return units;
+  }
+
+  /**
+   * Get the units that the erased units can be repaired from within their
+   * local groups.
+   *
+   * @param numDataUnits the number of data units.
+   * @param numParityUnits the number of parity units.
+   * @param erasedIndexes the indexes of the erased units.
+   * @return the sorted indexes of the other units of the local groups of the
+   *         erased units, or null if a global parity unit is erased or a
+   *         group has more than one erased unit.
+   */
+  public static int[] getLocalRepairIndexes(int numDataUnits,
+      int numParityUnits, int[] erasedIndexes) {
+    int numLocal = getNumLocalParityUnits(numDataUnits, numParityUnits);
+    boolean[] groups = new boolean[numLocal];
+    for (int index : erasedIndexes) {
+      int group = getLocalGroup(numDataUnits, numParityUnits, index);
+      if (group < 0 || groups[group]) {
+        return null;
+      }
+      groups[group] = true;
+    }
+
+    int[] repairIndexes = new int[numDataUnits + numLocal];
+    int n = 0;
+    for (int group = 0; group < numLocal; group++) {
+      if (groups[group]) {
+        for (int unit : getLocalGroupUnits(numDataUnits, numParityUnits,
+            group)) {
+          if (!contains(erasedIndexes, unit)) {
+            repairIndexes[n++] = unit;
+          }
+        }
+      }
+    }
+    repairIndexes = Arrays.copyOf(repairIndexes, n);
+    Arrays.sort(repairIndexes);
+    return repairIndexes;
+  }
+
+  /**
+   * Generate the generator matrix of the code, with a row of coefficients
+   * over the data units for every unit.
+   *
+   * @param a the matrix to fill, of (numDataUnits + numParityUnits) *
+   *          numDataUnits bytes.
+   * @param numDataUnits the number of data units.
+   * @param numParityUnits the number of parity units.
+   */
+  public static void genGeneratorMatrix(byte[] a, int numDataUnits,
+      int numParityUnits) {
+    int numLocal = getNumLocalParityUnits(numDataUnits, numParityUnits);
+    int numGlobal = numParityUnits - numLocal;
+    Arrays.fill(a, (byte) 0);
+
+    // The global parity rows are the parity rows of an RS code.
+    byte[] cauchy = new byte[(numDataUnits + numGlobal) * numDataUnits];
+    RSUtil.genCauchyMatrix(cauchy, numDataUnits + numGlobal, numDataUnits);
+    System.arraycopy(cauchy, 0, a, 0, numDataUnits * numDataUnits);
+    System.arraycopy(cauchy, numDataUnits * numDataUnits, a,
+        (numDataUnits + numLocal) * numDataUnits, numGlobal * numDataUnits);
+
+    for (int group = 0; group < numLocal; group++) {
+      int[] units = getLocalGroupUnits(numDataUnits, numParityUnits, group);
+      for (int i = 0; i < units.length - 1; i++) {
+        a[(numDataUnits + group) * numDataUnits + units[i]] = 1;
+      }
+    }
+  }
+
+  /**
+   * Check whether all the data units, and so all the units, can be decoded
+   * from the given valid units. Any numDataUnits units are enough for an MDS
+   * code, but not for an LRC, e.g. not all the units of a local group with
+   * its local parity unit.
+   *
+   * @param numDataUnits the number of data units.
+   * @param numParityUnits the number of parity units.
+   * @param validIndexes the indexes of the valid units.
+   * @return whether the rows of the valid units in the generator matrix have
+   *         full rank.
+   */
+  public static boolean isDecodable(int numDataUnits, int numParityUnits,
+      int[] validIndexes) {
+    if (validIndexes.length < numDataUnits) {
+      return false;
+    }
+    byte[] a = new byte[(numDataUnits + numParityUnits) * numDataUnits];
+    genGeneratorMatrix(a, numDataUnits, numParityUnits);
+    byte[][] rows = new byte[validIndexes.length][];
+    for (int i = 0; i < validIndexes.length; i++) {
+      rows[i] = Arrays.copyOfRange(a, validIndexes[i] * numDataUnits,
+          (validIndexes[i] + 1) * numDataUnits);
+    }
+
+    // Gaussian elimination, column by column.
+    int rank = 0;
+    for (int col = 0; col < numDataUnits && rank < rows.length; col++) {
+      int pivot = rank;
+      while (pivot < rows.length && rows[pivot][col] == 0) {
+        pivot++;
+      }
+      if (pivot == rows.length) {
+        return false;
+      }
+      byte[] tmp = rows[pivot];
+      rows[pivot] = rows[rank];
+      rows[rank] = tmp;
+      byte inverse = GF256.gfInv(rows[rank][col]);
+      for (int i = rank + 1; i < rows.length; i++) {
+        byte factor = GF256.gfMul(rows[i][col], inverse);
+        if (factor != 0) {
+          for (int j = col; j < numDataUnits; j++) {
+            rows[i][j] ^= GF256.gfMul(factor, rows[rank][j]);
+          }
+        }
+      }
+      rank++;
+    }
+    return rank == numDataUnits;
+  }
+
+  private static boolean contains(int[] indexes, int index) {
+    for (int i : indexes) {
+      if (i == index) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder.util;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A cache friendlier variant of {@link RSUtil#encodeData}, computing the
+ * same outputs from the same tables.
+ *
+ * {@link RSUtil#encodeData} makes a full pass over every input for every
+ * output, so with cells of a megabyte or more each input is read from main
+ * memory once per output and each output once per input. Here the units are
+ * processed in chunks small enough for the chunk of every input and output
+ * to stay in the CPU caches while all the coefficients are applied to it.
+ * Coefficients of 0 and 1, which decode matrices are full of, are applied
+ * without table lookups, and ByteBuffers are copied in and out of heap
+ * chunks in bulk rather than a byte at a time.
+ */
+@InterfaceAudience.Private
+public final class RSBlockedUtil {
+
+  /** The number of bytes of every unit processed at a time. */
+  public static final int CHUNK_SIZE = 4096;
+
+  private RSBlockedUtil() {}
+
+  /**
+   * See {@link RSUtil#encodeData(byte[], int, byte[][], int[], byte[][],
+   * int[])}.
+   *
+   * @param gfTables gfTables.
+   * @param dataLen dataLen.
+   * @param inputs inputs.
+   * @param inputOffsets inputOffsets.
+   * @param outputs outputs.
+   * @param outputOffsets outputOffsets.
+   */
+  public static void encodeData(byte[] gfTables, int dataLen, byte[][] inputs,
+      int[] inputOffsets, byte[][] outputs, int[] outputOffsets) {
+    final int numInputs = inputs.length;
+    final int numOutputs = outputs.length;
+    final byte[] coefficients = getCoefficients(gfTables, numInputs,
+        numOutputs);
+
+    for (int start = 0; start < dataLen; start += CHUNK_SIZE) {
+      final int len = Math.min(CHUNK_SIZE, dataLen - start);
+      for (int l = 0; l < numOutputs; l++) {
+        for (int j = 0; j < numInputs; j++) {
+          mulAdd(coefficients[l * numInputs + j], inputs[j],
+              inputOffsets[j] + start, outputs[l], outputOffsets[l] + start,
+              len);
+        }
+      }
+    }
+  }
+
+  /**
+   * See {@link RSUtil#encodeData(byte[], ByteBuffer[], ByteBuffer[])}. The
+   * positions of the buffers are left unchanged.
+   *
+   * @param gfTables gfTables.
+   * @param inputs inputs.
+   * @param outputs outputs.
+   */
+  public static void encodeData(byte[] gfTables, ByteBuffer[] inputs,
+      ByteBuffer[] outputs) {
+    final int numInputs = inputs.length;
+    final int numOutputs = outputs.length;
+    final int dataLen = inputs[0].remaining();
+    final byte[] coefficients = getCoefficients(gfTables, numInputs,
+        numOutputs);
+
+    final int chunkSize = Math.min(CHUNK_SIZE, dataLen);
+    byte[][] inputChunks = new byte[numInputs][chunkSize];
+    byte[][] outputChunks = new byte[numOutputs][chunkSize];
+    ByteBuffer[] inputViews = new ByteBuffer[numInputs];
+    ByteBuffer[] outputViews = new ByteBuffer[numOutputs];
+    for (int j = 0; j < numInputs; j++) {
+      inputViews[j] = inputs[j].duplicate();
+    }
+    for (int l = 0; l < numOutputs; l++) {
+      outputViews[l] = outputs[l].duplicate();
+    }
+
+    for (int start = 0; start < dataLen; start += chunkSize) {
+      final int len = Math.min(chunkSize, dataLen - start);
+      for (int j = 0; j < numInputs; j++) {
+        inputViews[j].get(inputChunks[j], 0, len);
+      }
+      for (int l = 0; l < numOutputs; l++) {
+        byte[] output = outputChunks[l];
+        // The outputs may not have been reset by the caller.
+        outputViews[l].duplicate().get(output, 0, len);
+        for (int j = 0; j < numInputs; j++) {
+          mulAdd(coefficients[l * numInputs + j], inputChunks[j], 0, output,
+              0, len);
+        }
+        outputViews[l].put(output, 0, len);
+      }
+    }
+  }
+
+  /**
+   * @return the coefficient of every input for every output, which the
+   *         tables are generated from, indexed by output * numInputs + input.
+   */
+  private static byte[] getCoefficients(byte[] gfTables, int numInputs,
+      int numOutputs) {
+    byte[] coefficients = new byte[numInputs * numOutputs];
+    for (int l = 0; l < numOutputs; l++) {
+      for (int j = 0; j < numInputs; j++) {
+        coefficients[l * numInputs + j] =
+            gfTables[j * 32 + l * numInputs * 32 + 1];
+      }
+    }
+    return coefficients;
+  }
+
+  /**
+   * Add the product of the coefficient and the input to the output.
+   */
+  private static void mulAdd(byte coefficient, byte[] input, int iPos,
+      byte[] output, int oPos, int len) {
+    if (coefficient == 0) {
+      return;
+    }
+    if (coefficient == 1) {
+      for (int i = 0; i < len; i++) {
+        output[oPos + i] ^= input[iPos + i];
+      }
+      return;
+    }
+    final byte[] tableLine = GF256.gfMulTab()[coefficient & 0xff];
+    for (int i = 0; i < len; i++) {
+      output[oPos + i] ^= tableLine[0xff & input[iPos + i]];
+    }
+  }
+}
@@ -0,0 +1,508 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.nativeio;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.io.nativeio.NativeIO.POSIX.IoUring;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Positional file reads and writes through a shared Linux io_uring.
+ *
+ * The engine owns one ring and a fixed set of direct buffers registered
+ * with the kernel, so requests use READ_FIXED/WRITE_FIXED and the kernel
+ * does not have to pin user pages on every call. The number of buffers is
+ * the queue depth: each in-flight request holds one buffer, and callers
+ * wait for a buffer when all of them are in use.
+ *
+ * Requests are queued by the calling threads and submitted in batches: the
+ * thread that finds the ring free prepares every queued request and
+ * submits them with one io_uring_enter(2), while threads that find another
+ * one submitting leave their requests to it rather than wait. A single
+ * daemon thread reaps completions and completes the future of each request.
+ *
+ * Reads and writes larger than a buffer are split into requests that are
+ * in flight together. Writes are asynchronous: the data is copied into the
+ * registered buffers, which frees the caller's array, and the buffers are
+ * released when the kernel is done with them, see {@link #pwriteAsync}.
+ * Callers pass heap arrays, which the kernel cannot write to or read from
+ * in place since they may move, so data goes through the registered
+ * buffers as it goes through the JDK's native buffer in
+ * {@link java.io.FileInputStream} and {@link java.io.FileOutputStream}.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Unstable
+public class IoUringEngine implements Closeable {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(IoUringEngine.class);
+
+  /** User data of the NOP that tells the completion thread to exit. */
+  private static final long SHUTDOWN = -1L;
+
+  /** A request queued or in flight, which holds one registered buffer. */
+  private static final class Request {
+    private final int opcode;
+    private final FileDescriptor fd;
+    private final int index;
+    /** Whether the buffer is released as soon as the request completes. */
+    private final boolean releaseOnCompletion;
+    private final CompletableFuture<Integer> future =
+        new CompletableFuture<>();
+    /** The part of the buffer and the file still to be read or written. */
+    private int bufOffset;
+    private int len;
+    private long position;
+
+    private Request(int opcode, FileDescriptor fd, int index, int len,
+        long position, boolean releaseOnCompletion) {
+      this.opcode = opcode;
+      this.fd = fd;
+      this.index = index;
+      this.len = len;
+      this.position = position;
+      this.releaseOnCompletion = releaseOnCompletion;
+    }
+  }
+
+  private final int bufferSize;
+  private final ByteBuffer[] buffers;
+  private final BlockingQueue<Integer> freeBuffers;
+  /** The request holding each buffer, once it is submitted. */
+  private final AtomicReferenceArray<Request> pending;
+  private final Queue<Request> submissions = new ConcurrentLinkedQueue<>();
+  private final ReentrantLock submitLock = new ReentrantLock();
+  private final Thread completionThread;
+  private final long ring;
+  private volatile boolean closed;
+  private volatile IOException failure;
+  private boolean released;
+
+  /**
+   * @param name a name for the completion thread.
+   * @param queueDepth the maximum number of requests in flight.
+   * @param bufferSize the size of each registered buffer. Larger requests
+   *                   are split.
+   * @throws IOException if the ring could not be created.
+   */
+  public IoUringEngine(String name, int queueDepth, int bufferSize)
+      throws IOException {
+    if (queueDepth <= 0 || bufferSize <= 0) {
+      throw new IllegalArgumentException("Invalid io_uring queue depth "
+          + queueDepth + " or buffer size " + bufferSize);
+    }
+    this.bufferSize = bufferSize;
+    this.buffers = new ByteBuffer[queueDepth];
+    this.freeBuffers = new ArrayBlockingQueue<>(queueDepth);
+    this.pending = new AtomicReferenceArray<>(queueDepth);
+    for (int i = 0; i < queueDepth; i++) {
+      buffers[i] = ByteBuffer.allocateDirect(bufferSize);
+      freeBuffers.add(i);
+    }
+    // One extra entry for the shutdown NOP.
+    this.ring = IoUring.setup(queueDepth + 1);
+    try {
+      IoUring.registerBuffers(ring, buffers);
+    } catch (IOException | RuntimeException e) {
+      IoUring.close(ring);
+      throw e;
+    }
+    this.completionThread = new Thread(this::reapCompletions,
+        "IoUringEngine-" + name);
+    completionThread.setDaemon(true);
+    completionThread.start();
+  }
+
+  /**
+   * Read up to len bytes of the file at the given position. Reads larger
+   * than a buffer are split into requests that are in flight together.
+   *
+   * @return the number of bytes read, which is less than len only if the
+   *         end of the file was reached, or 0 at the end of the file.
+   * @throws IOException if the read fails or the engine is closed.
+   */
+  public int pread(FileDescriptor fd, long position, byte[] b, int off,
+      int len) throws IOException {
+    int total = 0;
+    boolean eof = false;
+    while (total < len && !eof) {
+      // Read with the buffers that are free, waiting for one at least.
+      final List<Request> reads = new ArrayList<>();
+      try {
+        int index = acquireBuffer();
+        for (int start = total; start < len && index >= 0;
+             start += bufferSize) {
+          reads.add(new Request(IoUring.OP_READ_FIXED, fd, index,
+              Math.min(len - start, bufferSize), position + start, false));
+          index = pollBuffer();
+        }
+        if (index >= 0) {
+          freeBuffers.add(index);
+        }
+        submit(reads);
+        for (Request read : reads) {
+          final int n = awaitUninterruptibly(read.future);
+          if (!eof) {
+            ByteBuffer buf = buffers[read.index].duplicate();
+            buf.position(0);
+            buf.get(b, off + total, n);
+            total += n;
+            // Anything read past a short read is dropped.
+            eof = n < read.len;
+          }
+        }
+      } finally {
+        releaseAfterCompletion(reads);
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Write len bytes to the file at the given position, and wait for the
+   * write.
+   *
+   * @throws IOException if the write fails or the engine is closed.
+   */
+  public void pwrite(FileDescriptor fd, long position, byte[] b, int off,
+      int len) throws IOException {
+    await(pwriteAsync(fd, position, b, off, len));
+  }
+
+  /**
+   * Start writing len bytes to the file at the given position. The data is
+   * copied into registered buffers before this returns, so the array may be
+   * reused right away. Writes larger than a buffer are split into requests
+   * that are in flight together.
+   *
+   * @return a future completed once all the bytes are written, see
+   *         {@link #await}.
+   * @throws IOException if the engine is closed.
+   */
+  public CompletableFuture<Void> pwriteAsync(FileDescriptor fd,
+      long position, byte[] b, int off, int len) throws IOException {
+    final List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    int done = 0;
+    while (done < len) {
+      // Submit what fits in the free buffers before waiting for more, as
+      // the buffers of submitted writes are released without the caller.
+      final List<Request> writes = new ArrayList<>();
+      int index = acquireBuffer();
+      for (; done < len && index >= 0; index = pollBuffer()) {
+        final int chunk = Math.min(len - done, bufferSize);
+        ByteBuffer buf = buffers[index].duplicate();
+        buf.clear();
+        buf.put(b, off + done, chunk);
+        Request write = new Request(IoUring.OP_WRITE_FIXED, fd, index, chunk,
+            position + done, true);
+        writes.add(write);
+        futures.add(write.future);
+        done += chunk;
+      }
+      if (index >= 0) {
+        freeBuffers.add(index);
+      }
+      submit(writes);
+    }
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+  }
+
+  /**
+   * Wait for a request of this engine. The wait is not interruptible, but
+   * the interrupt status of the thread is kept.
+   *
+   * @throws IOException if the request failed.
+   */
+  public static <T> T await(CompletableFuture<T> future) throws IOException {
+    return awaitUninterruptibly(future);
+  }
+
+  private int acquireBuffer() throws IOException {
+    checkOpen();
+    final int index;
+    try {
+      index = freeBuffers.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          "Interrupted while waiting for an io_uring buffer");
+    }
+    if (closed) {
+      freeBuffers.add(index);
+      checkOpen();
+    }
+    return index;
+  }
+
+  /** @return a free buffer, or -1 if none is free. */
+  private int pollBuffer() {
+    final Integer index = freeBuffers.poll();
+    return index != null ? index : -1;
+  }
+
+  /**
+   * Release the buffers of requests that do not release them on completion,
+   * once the kernel is done with them.
+   */
+  private void releaseAfterCompletion(List<Request> requests) {
+    for (Request request : requests) {
+      try {
+        awaitUninterruptibly(request.future);
+      } catch (IOException e) {
+        // Already reported to the caller, or superseded by its failure.
+      }
+      freeBuffers.add(request.index);
+    }
+  }
+
+  private void submit(List<Request> requests) {
+    submissions.addAll(requests);
+    flushSubmissions();
+  }
+
+  /**
+   * Prepare the queued requests and submit them in one batch. A thread
+   * that finds another one submitting leaves its requests to it, which
+   * checks the queue again once it has released the lock.
+   */
+  private void flushSubmissions() {
+    while (!submissions.isEmpty() && submitLock.tryLock()) {
+      try {
+        Request request;
+        while ((request = submissions.poll()) != null) {
+          pending.set(request.index, request);
+          if (failure != null) {
+            fail(request, failure);
+            continue;
+          }
+          try {
+            if (!IoUring.prepare(ring, request.opcode, request.fd,
+                request.index, buffers[request.index], request.bufOffset,
+                request.len, request.position, request.index)) {
+              fail(request,
+                  new IOException("io_uring submission queue is full"));
+            }
+          } catch (RuntimeException e) {
+            fail(request, e);
+          }
+        }
+        IoUring.submit(ring);
+      } catch (IOException | RuntimeException e) {
+        failEngine(e);
+      } finally {
+        submitLock.unlock();
+      }
+    }
+  }
+
+  private void reapCompletions() {
+    final long[] userData = new long[64];
+    final int[] results = new int[64];
+    try {
+      while (true) {
+        int n = IoUring.reap(ring, userData, results, true);
+        boolean shutdown = false;
+        for (int i = 0; i < n; i++) {
+          if (userData[i] == SHUTDOWN) {
+            shutdown = true;
+            continue;
+          }
+          Request request = pending.get((int) userData[i]);
+          if (request != null) {
+            complete(request, results[i]);
+          }
+        }
+        if (shutdown) {
+          return;
+        }
+      }
+    } catch (Throwable t) {
+      LOG.error("io_uring completion thread {} failed",
+          Thread.currentThread().getName(), t);
+      failEngine(t);
+    }
+  }
+
+  private void complete(Request request, int result) {
+    final boolean write = request.opcode == IoUring.OP_WRITE_FIXED;
+    if (result < 0) {
+      fail(request, new IOException("io_uring " + (write ? "write" : "read")
+          + " failed at position " + request.position + ": errno "
+          + -result));
+    } else if (write && result == 0) {
+      fail(request, new IOException(
+          "io_uring write made no progress at position "
+              + request.position));
+    } else if (write && result < request.len) {
+      // Write the rest of the buffer.
+      request.bufOffset += result;
+      request.position += result;
+      request.len -= result;
+      submit(Collections.singletonList(request));
+    } else {
+      if (retire(request)) {
+        request.future.complete(result);
+      }
+    }
+  }
+
+  private void fail(Request request, Throwable t) {
+    if (retire(request)) {
+      request.future.completeExceptionally(t);
+    }
+  }
+
+  /**
+   * Take the request off its buffer, and release the buffer if it is not
+   * left to the caller.
+   *
+   * @return false if the request was already retired.
+   */
+  private boolean retire(Request request) {
+    if (!pending.compareAndSet(request.index, request, null)) {
+      return false;
+    }
+    if (request.releaseOnCompletion) {
+      freeBuffers.add(request.index);
+    }
+    return true;
+  }
+
+  /** Fail the queued and in-flight requests, and any later one. */
+  private void failEngine(Throwable t) {
+    if (failure == null) {
+      failure = new IOException("io_uring engine failed", t);
+    }
+    closed = true;
+    for (int i = 0; i < pending.length(); i++) {
+      Request request = pending.get(i);
+      if (request != null) {
+        fail(request, failure);
+      }
+    }
+    Request request;
+    while ((request = submissions.poll()) != null) {
+      pending.set(request.index, request);
+      fail(request, failure);
+    }
+  }
+
+  private static <T> T awaitUninterruptibly(CompletableFuture<T> future)
+      throws IOException {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          throw new IOException(cause instanceof IOException
+              ? cause.getMessage() : "io_uring request failed", cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+    if (closed) {
+      throw new IOException("io_uring engine is closed");
+    }
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Wait for in-flight requests, stop the completion thread and release the
+   * ring. Requests made after this fail.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (released) {
+      return;
+    }
+    released = true;
+    closed = true;
+    // Holding every buffer means no request is in flight.
+    boolean interrupted = false;
+    int held = 0;
+    while (held < buffers.length && completionThread.isAlive()) {
+      try {
+        if (freeBuffers.poll(100, TimeUnit.MILLISECONDS)
+            != null) {
+          held++;
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    try {
+      if (completionThread.isAlive()) {
+        submitLock.lock();
+        try {
+          IoUring.prepare(ring, IoUring.OP_NOP, null, 0, null, 0, 0, 0,
+              SHUTDOWN);
+          IoUring.submit(ring);
+        } finally {
+          submitLock.unlock();
+        }
+        while (completionThread.isAlive()) {
+          try {
+            completionThread.join();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      }
+    } finally {
+      IoUring.close(ring);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
@@ -275,6 +275,91 @@ private static native void pmemCopy(byte[] src, long dest, boolean isPmem,
     private static native void pmemDrain();
     private static native void pmemSync(long address, long length);
 
+    /**
+     * JNI wrapper of a Linux io_uring submission/completion queue pair.
+     * See {@link IoUringEngine} for a thread safe user of these calls.
+     *
+     * At most one thread may prepare and submit entries on a ring at a time,
+     * and at most one thread may reap its completions at a time.
+     */
+    public static class IoUring {
+      // Must match the HADOOP_URING_OP_ values of io_uring.c
+      public static final int OP_NOP = 0;
+      public static final int OP_READ_FIXED = 1;
+      public static final int OP_WRITE_FIXED = 2;
+
+      private static volatile Boolean available;
+
+      /**
+       * @return true if the native library was built with io_uring support
+       *         and the running kernel allows creating a ring.
+       */
+      public static boolean isAvailable() {
+        if (available == null) {
+          boolean supported = false;
+          if (POSIX.isAvailable()) {
+            try {
+              supported = ioUringSupported();
+            } catch (UnsatisfiedLinkError e) {
+              PerformanceAdvisory.LOG.debug(
+                  "libhadoop was built without io_uring support", e);
+            }
+          }
+          available = supported;
+        }
+        return available;
+      }
+
+      // Create a ring with the given number of submission queue entries
+      public static long setup(int entries) throws IOException {
+        return ioUringSetup(entries);
+      }
+
+      public static void close(long ring) {
+        ioUringClose(ring);
+      }
+
+      // Register direct buffers for use with OP_READ_FIXED/OP_WRITE_FIXED.
+      // The index of a buffer in the array is its buffer index.
+      public static void registerBuffers(long ring, ByteBuffer[] buffers)
+          throws IOException {
+        ioUringRegisterBuffers(ring, buffers);
+      }
+
+      // Queue an entry without submitting it. Returns false if the
+      // submission queue is full.
+      public static boolean prepare(long ring, int opcode, FileDescriptor fd,
+          int bufIndex, ByteBuffer buf, int bufOffset, int len, long position,
+          long userData) {
+        return ioUringPrepare(ring, opcode, fd, bufIndex, buf, bufOffset, len,
+            position, userData);
+      }
+
+      // Submit queued entries. Returns the number still waiting.
+      public static int submit(long ring) throws IOException {
+        return ioUringSubmit(ring);
+      }
+
+      // Copy completions into userData/results, waiting for at least one
+      // if wait is true. A negative result is a negated errno.
+      public static int reap(long ring, long[] userData, int[] results,
+          boolean wait) throws IOException {
+        return ioUringReap(ring, userData, results, wait);
+      }
+    }
+
+    private static native boolean ioUringSupported();
+    private static native long ioUringSetup(int entries) throws IOException;
+    private static native void ioUringClose(long ring);
+    private static native void ioUringRegisterBuffers(long ring,
+        ByteBuffer[] buffers) throws IOException;
+    private static native boolean ioUringPrepare(long ring, int opcode,
+        FileDescriptor fd, int bufIndex, ByteBuffer buf, int bufOffset,
+        int len, long position, long userData);
+    private static native int ioUringSubmit(long ring) throws IOException;
+    private static native int ioUringReap(long ring, long[] userData,
+        int[] results, boolean wait) throws IOException;
+
     /**
      * Used to manipulate the operating system cache.
      */
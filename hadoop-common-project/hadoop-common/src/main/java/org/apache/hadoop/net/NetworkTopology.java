@@ -88,6 +88,7 @@ protected NetworkTopology init(InnerNode.Factory factory) {
       // again if another factory is specified.
       this.factory = factory;
       this.clusterMap = factory.newInnerNode(NodeBase.ROOT);
+      invalidateSnapshot();
     }
     return this;
   }
@@ -118,6 +119,15 @@ protected NetworkTopology init(InnerNode.Factory factory) {
   /** the lock used to manage access */
   protected ReadWriteLock netlock = new ReentrantReadWriteLock(true);
 
+  /** Version of the cluster map, bumped under the write lock. */
+  private long version = 0;
+  /**
+   * Immutable snapshot of the cluster map used to choose nodes and compute
+   * distances without locking, null when the cluster map has changed since
+   * it was taken.
+   */
+  private volatile TopologySnapshot snapshot;
+
   // keeping the constructor because other components like MR still uses this.
   public NetworkTopology() {
     this.factory = InnerNodeImpl.FACTORY;
@@ -161,6 +171,7 @@ public void add(Node node) {
         if (depthOfAllLeaves == -1) {
           depthOfAllLeaves = node.getLevel();
         }
+        invalidateSnapshot();
       }
       LOG.debug("NetworkTopology became:\n{}", this);
     } finally {
@@ -233,6 +244,7 @@ public void remove(Node node) {
           numOfRacks--;
         }
         interRemoveNodeWithEmptyRack(node);
+        invalidateSnapshot();
       }
       LOG.debug("NetworkTopology became:\n{}", this);
     } finally {
@@ -330,6 +342,10 @@ public int getDistance(Node node1, Node node2) {
       LOG.warn("One of the nodes is a null pointer");
       return Integer.MAX_VALUE;
     }
+    int distance = getSnapshot().getDistance(node1, node2);
+    if (distance >= 0) {
+      return distance;
+    }
     Node n1=node1, n2=node2;
     int dis = 0;
     netlock.readLock().lock();
@@ -482,18 +498,23 @@ public Node chooseRandom(final String scope) {
    */
   public Node chooseRandom(final String scope,
       final Collection<Node> excludedNodes) {
-    netlock.readLock().lock();
-    try {
-      if (scope.startsWith("~")) {
-        return chooseRandom(NodeBase.ROOT, scope.substring(1), excludedNodes);
-      } else {
-        return chooseRandom(scope, null, excludedNodes);
-      }
-    } finally {
-      netlock.readLock().unlock();
+    if (scope.startsWith("~")) {
+      return chooseRandom(NodeBase.ROOT, scope.substring(1), excludedNodes);
+    } else {
+      return chooseRandom(scope, null, excludedNodes);
     }
   }
 
+  /**
+   * Randomly choose one node from <i>scope</i>, not in <i>excludedScope</i>
+   * nor in <i>excludedNodes</i>. The node is chosen from the current
+   * snapshot of the cluster map, without locking.
+   *
+   * @param scope range of nodes from which a node will be chosen
+   * @param excludedScope range of nodes to be excluded from, or null
+   * @param excludedNodes nodes to be excluded from
+   * @return the chosen node, or null if none can be chosen
+   */
   protected Node chooseRandom(final String scope, String excludedScope,
       final Collection<Node> excludedNodes) {
     if (excludedScope != null) {
@@ -504,22 +525,19 @@ protected Node chooseRandom(final String scope, String excludedScope,
         excludedScope = null;
       }
     }
-    Node node = getNode(scope);
+    final TopologySnapshot topology = getSnapshot();
+    final Node node = topology.getNode(scope);
     if (!(node instanceof InnerNode)) {
       return excludedNodes != null && excludedNodes.contains(node) ?
           null : node;
     }
-    InnerNode innerNode = (InnerNode)node;
-    int numOfDatanodes = innerNode.getNumOfLeaves();
-    if (excludedScope == null) {
-      node = null;
-    } else {
-      node = getNode(excludedScope);
-      if (!(node instanceof InnerNode)) {
-        numOfDatanodes -= 1;
-      } else {
-        numOfDatanodes -= ((InnerNode)node).getNumOfLeaves();
-      }
+    final int[] scopeRange = topology.getRange(scope);
+    int numOfDatanodes = scopeRange[1] - scopeRange[0];
+    int[] excludedRange = null;
+    if (excludedScope != null) {
+      excludedRange = topology.getRange(excludedScope);
+      numOfDatanodes -= excludedRange == null ?
+          1 : excludedRange[1] - excludedRange[0];
     }
     if (numOfDatanodes <= 0) {
       LOG.debug("Failed to find datanode (scope=\"{}\" excludedScope=\"{}\"). numOfDatanodes={}",
@@ -528,47 +546,47 @@ protected Node chooseRandom(final String scope, String excludedScope,
     }
     final int availableNodes;
     if (excludedScope == null) {
-      availableNodes = countNumOfAvailableNodes(scope, excludedNodes);
+      availableNodes =
+          countNumOfAvailableNodes(topology, scope, excludedNodes);
     } else {
-      netlock.readLock().lock();
-      try {
-        availableNodes = countNumOfAvailableNodes(scope, excludedNodes) -
-            countNumOfAvailableNodes(excludedScope, excludedNodes);
-      } finally {
-        netlock.readLock().unlock();
-      }
+      availableNodes =
+          countNumOfAvailableNodes(topology, scope, excludedNodes) -
+          countNumOfAvailableNodes(topology, excludedScope, excludedNodes);
     }
     if (LOG.isDebugEnabled()) {
       LOG.debug("Choosing random from {} available nodes on node {}, scope={},"
               + " excludedScope={}, excludeNodes={}. numOfDatanodes={}.",
-          availableNodes, innerNode, scope, excludedScope, excludedNodes,
+          availableNodes, node, scope, excludedScope, excludedNodes,
           numOfDatanodes);
     }
     Node ret = null;
     if (availableNodes > 0) {
-      ret = chooseRandom(innerNode, node, excludedNodes, numOfDatanodes,
-          availableNodes);
+      ret = chooseRandom(topology, scopeRange, excludedRange, excludedNodes,
+          numOfDatanodes, availableNodes);
     }
     LOG.debug("chooseRandom returning {}", ret);
     return ret;
   }
 
   /**
-   * Randomly choose one node under <i>parentNode</i>, considering the exclude
-   * nodes and scope. Should be called with {@link #netlock}'s readlock held.
+   * Randomly choose one leaf in the range of <i>topology</i>'s leaves of the
+   * scope, considering the exclude nodes and scope.
    *
-   * @param parentNode        the parent node
-   * @param excludedScopeNode the node corresponding to the exclude scope.
+   * @param topology          the snapshot of the cluster map
+   * @param scopeRange        the range of the leaves of the scope
+   * @param excludedScopeRange the range of the leaves of the exclude scope,
+   *                          or null
    * @param excludedNodes     a collection of nodes to be excluded from
-   * @param totalInScopeNodes total number of nodes under parentNode, excluding
-   *                          the excludedScopeNode
-   * @param availableNodes    number of available nodes under parentNode that
+   * @param totalInScopeNodes total number of nodes in scope, excluding
+   *                          the exclude scope
+   * @param availableNodes    number of available nodes in scope that
    *                          could be chosen, excluding excludedNodes
    * @return the chosen node, or null if none can be chosen
    */
-  private Node chooseRandom(final InnerNode parentNode,
-      final Node excludedScopeNode, final Collection<Node> excludedNodes,
-      final int totalInScopeNodes, final int availableNodes) {
+  private Node chooseRandom(final TopologySnapshot topology,
+      final int[] scopeRange, final int[] excludedScopeRange,
+      final Collection<Node> excludedNodes, final int totalInScopeNodes,
+      final int availableNodes) {
     if (totalInScopeNodes < availableNodes) {
       LOG.warn("Total Nodes in scope : {} are less than Available Nodes : {}",
           totalInScopeNodes, availableNodes);
@@ -578,7 +596,7 @@ private Node chooseRandom(final InnerNode parentNode,
     if (excludedNodes == null || excludedNodes.isEmpty()) {
       // if there are no excludedNodes, randomly choose a node
       final int index = r.nextInt(totalInScopeNodes);
-      return parentNode.getLeaf(index, excludedScopeNode);
+      return topology.getLeaf(scopeRange, excludedScopeRange, index);
     }
 
     // excludedNodes non empty.
@@ -602,8 +620,8 @@ private Node chooseRandom(final InnerNode parentNode,
     // totalInScopeNodes=10 and availableNodes=7 in this example.
     int nthValidToReturn = r.nextInt(availableNodes);
     LOG.debug("nthValidToReturn is {}", nthValidToReturn);
-    Node ret =
-        parentNode.getLeaf(r.nextInt(totalInScopeNodes), excludedScopeNode);
+    Node ret = topology.getLeaf(scopeRange, excludedScopeRange,
+        r.nextInt(totalInScopeNodes));
     if (!excludedNodes.contains(ret)) {
       // return if we're lucky enough to get a valid node at a random first pick
       LOG.debug("Chosen node {} from first random", ret);
@@ -613,7 +631,7 @@ private Node chooseRandom(final InnerNode parentNode,
     }
     Node lastValidNode = null;
     for (int i = 0; i < totalInScopeNodes; ++i) {
-      ret = parentNode.getLeaf(i, excludedScopeNode);
+      ret = topology.getLeaf(scopeRange, excludedScopeRange, i);
       if (!excludedNodes.contains(ret)) {
         if (nthValidToReturn == 0) {
           break;
@@ -627,9 +645,10 @@ private Node chooseRandom(final InnerNode parentNode,
     }
     if (ret == null && lastValidNode != null) {
       LOG.error("BUG: Found lastValidNode {} but not nth valid node. "
-              + "parentNode={}, excludedScopeNode={}, excludedNodes={}, "
+              + "scopeRange={}, excludedScopeRange={}, excludedNodes={}, "
               + "totalInScopeNodes={}, availableNodes={}, nthValidToReturn={}.",
-          lastValidNode, parentNode, excludedScopeNode, excludedNodes,
+          lastValidNode, Arrays.toString(scopeRange),
+          Arrays.toString(excludedScopeRange), excludedNodes,
           totalInScopeNodes, availableNodes, nthValidToReturn);
       ret = lastValidNode;
     }
@@ -664,6 +683,11 @@ public List<Node> getLeaves(String scope) {
   @VisibleForTesting
   public int countNumOfAvailableNodes(String scope,
                                       Collection<Node> excludedNodes) {
+    return countNumOfAvailableNodes(getSnapshot(), scope, excludedNodes);
+  }
+
+  private static int countNumOfAvailableNodes(TopologySnapshot topology,
+      String scope, Collection<Node> excludedNodes) {
     boolean isExcluded=false;
     if (scope.startsWith("~")) {
       isExcluded=true;
@@ -672,41 +696,163 @@ public int countNumOfAvailableNodes(String scope,
     scope = NodeBase.normalize(scope);
     int excludedCountInScope = 0; // the number of nodes in both scope & excludedNodes
     int excludedCountOffScope = 0; // the number of nodes outside scope & excludedNodes
-    netlock.readLock().lock();
-    try {
-      if (excludedNodes != null) {
-        for (Node node : excludedNodes) {
-          node = getNode(NodeBase.getPath(node));
-          if (node == null) {
-            continue;
-          }
-          if (isNodeInScope(node, scope)) {
-            if (node instanceof InnerNode) {
-              excludedCountInScope += ((InnerNode) node).getNumOfLeaves();
-            } else {
-              excludedCountInScope++;
-            }
-          } else {
-            excludedCountOffScope++;
-          }
+    if (excludedNodes != null) {
+      for (Node node : excludedNodes) {
+        String path = NodeBase.getPath(node);
+        node = topology.getNode(path);
+        if (node == null) {
+          continue;
+        }
+        if (isNodeInScope(node, scope)) {
+          excludedCountInScope += topology.getNumOfLeaves(path);
+        } else {
+          excludedCountOffScope++;
         }
       }
-      Node n = getNode(scope);
-      int scopeNodeCount = 0;
-      if (n != null) {
-        scopeNodeCount++;
-      }
-      if (n instanceof InnerNode) {
-        scopeNodeCount=((InnerNode)n).getNumOfLeaves();
+    }
+    int scopeNodeCount = topology.getNumOfLeaves(scope);
+    if (isExcluded) {
+      return topology.getNumOfLeaves(NodeBase.ROOT) - scopeNodeCount
+          - excludedCountOffScope;
+    } else {
+      return scopeNodeCount - excludedCountInScope;
+    }
+  }
+
+  /**
+   * Mark the snapshot of the cluster map as stale, so that the next reader
+   * takes a new one. Must be called with {@link #netlock}'s write lock held,
+   * after every change of {@link #clusterMap}.
+   */
+  protected void invalidateSnapshot() {
+    version++;
+    snapshot = null;
+  }
+
+  /**
+   * @return the snapshot of the current cluster map, taken under
+   *         {@link #netlock}'s read lock if the cluster map has changed.
+   */
+  private TopologySnapshot getSnapshot() {
+    TopologySnapshot topology = snapshot;
+    if (topology == null) {
+      netlock.readLock().lock();
+      try {
+        topology = snapshot;
+        if (topology == null) {
+          topology = new TopologySnapshot(version, clusterMap);
+          snapshot = topology;
+        }
+      } finally {
+        netlock.readLock().unlock();
       }
-      if (isExcluded) {
-        return clusterMap.getNumOfLeaves() - scopeNodeCount
-            - excludedCountOffScope;
+    }
+    return topology;
+  }
+
+  /**
+   * @return the version of the cluster map the current snapshot was taken
+   *         from, bumped every time a node is added or removed.
+   */
+  @VisibleForTesting
+  long getSnapshotVersion() {
+    return getSnapshot().version;
+  }
+
+  /**
+   * An immutable copy of the cluster map. The leaves are stored in the order
+   * of {@link InnerNode#getLeaf(int, Node)}, so the leaves under every node,
+   * e.g. a rack, are a range of the array and a leaf is chosen in constant
+   * time. The snapshot is swapped on every change of the cluster map, so
+   * nodes are chosen and distances computed without locking.
+   */
+  private static final class TopologySnapshot {
+    private final long version;
+    private final Node[] leaves;
+    /** The ids of the inner nodes above each leaf, from the root down. */
+    private final int[][] ancestors;
+    /** Normalized path of every node to the node. */
+    private final Map<String, Node> nodes = new HashMap<>();
+    /** Normalized path of every node to the range of its leaves. */
+    private final Map<String, int[]> ranges = new HashMap<>();
+    private final Map<Node, Integer> leafIndexes = new IdentityHashMap<>();
+    private int numOfInnerNodes = 0;
+
+    TopologySnapshot(long version, InnerNode root) {
+      this.version = version;
+      this.leaves = new Node[root.getNumOfLeaves()];
+      this.ancestors = new int[leaves.length][];
+      add(root, new int[0], 0);
+    }
+
+    /**
+     * Add a node and its subtree from the leaf index <i>start</i>.
+     * @return the index after the last leaf of the subtree
+     */
+    private int add(Node node, int[] path, int start) {
+      String key = NodeBase.normalize(NodeBase.getPath(node));
+      int end = start;
+      if (node instanceof InnerNode) {
+        int[] childPath = Arrays.copyOf(path, path.length + 1);
+        childPath[path.length] = numOfInnerNodes++;
+        for (Node child : ((InnerNode) node).getChildren()) {
+          end = add(child, childPath, end);
+        }
       } else {
-        return scopeNodeCount - excludedCountInScope;
+        leaves[start] = node;
+        ancestors[start] = path;
+        leafIndexes.put(node, start);
+        end++;
       }
-    } finally {
-      netlock.readLock().unlock();
+      nodes.put(key, node);
+      ranges.put(key, new int[] {start, end});
+      return end;
+    }
+
+    Node getNode(String loc) {
+      return nodes.get(NodeBase.normalize(loc));
+    }
+
+    /** @return the range of the leaves under <i>loc</i>, or null */
+    int[] getRange(String loc) {
+      return ranges.get(NodeBase.normalize(loc));
+    }
+
+    int getNumOfLeaves(String loc) {
+      int[] range = getRange(loc);
+      return range == null ? 0 : range[1] - range[0];
+    }
+
+    /**
+     * @return the leaf at <i>index</i> in the range, skipping the leaves of
+     *         <i>excludedRange</i> if not null
+     */
+    Node getLeaf(int[] range, int[] excludedRange, int index) {
+      int i = range[0] + index;
+      if (excludedRange != null && i >= excludedRange[0]) {
+        i += excludedRange[1] - excludedRange[0];
+      }
+      return index >= 0 && i < range[1] ? leaves[i] : null;
+    }
+
+    /**
+     * @return the distance between two leaves of the snapshot, or -1 if
+     *         either is not a leaf of the snapshot
+     */
+    int getDistance(Node node1, Node node2) {
+      Integer index1 = leafIndexes.get(node1);
+      Integer index2 = leafIndexes.get(node2);
+      if (index1 == null || index2 == null) {
+        return -1;
+      }
+      int[] path1 = ancestors[index1];
+      int[] path2 = ancestors[index2];
+      int common = 0;
+      while (common < path1.length && common < path2.length
+          && path1[common] == path2[common]) {
+        common++;
+      }
+      return path1.length + path2.length - 2 * common + 2;
     }
   }
 
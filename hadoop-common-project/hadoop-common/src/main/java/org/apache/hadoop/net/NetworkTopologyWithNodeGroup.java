@@ -212,6 +212,7 @@ public void add(Node node) {
           // We only track rack number here
           incrementRacks();
         }
+        invalidateSnapshot();
       }
       if(LOG.isDebugEnabled()) {
         LOG.debug("NetworkTopology became:\n" + this.toString());
@@ -244,6 +245,7 @@ public void remove(Node node) {
         if (rack == null) {
           numOfRacks--;
         }
+        invalidateSnapshot();
       }
       if(LOG.isDebugEnabled()) {
         LOG.debug("NetworkTopology became:\n" + this.toString());
@@ -0,0 +1,438 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * A minimal io_uring binding for NativeIO$POSIX$IoUring.
+ *
+ * The ring is driven through the raw io_uring_setup(2), io_uring_enter(2)
+ * and io_uring_register(2) system calls so that no liburing is needed at
+ * build or run time. Only what the Java side uses is implemented: NOP, and
+ * READ_FIXED/WRITE_FIXED against registered buffers.
+ *
+ * Submission queue entries must be prepared and submitted by one thread at
+ * a time, and completions must be reaped by one thread at a time; the Java
+ * wrapper enforces both.
+ */
+
+#include "org_apache_hadoop.h"
+#include "org_apache_hadoop_io_nativeio_NativeIO_POSIX.h"
+#include "exception.h"
+#include "file_descriptor.h"
+#include "config.h"
+
+#include <errno.h>
+#include <stdint.h>
+#include <stdlib.h>
+#include <string.h>
+
+#ifdef HAVE_LINUX_IO_URING_H
+#include <linux/io_uring.h>
+#include <sys/mman.h>
+#include <sys/syscall.h>
+#include <sys/uio.h>
+#include <unistd.h>
+
+#ifndef __NR_io_uring_setup
+#define __NR_io_uring_setup 425
+#endif
+#ifndef __NR_io_uring_enter
+#define __NR_io_uring_enter 426
+#endif
+#ifndef __NR_io_uring_register
+#define __NR_io_uring_register 427
+#endif
+
+/* Must match the OP_ constants of NativeIO$POSIX$IoUring. */
+#define HADOOP_URING_OP_NOP 0
+#define HADOOP_URING_OP_READ_FIXED 1
+#define HADOOP_URING_OP_WRITE_FIXED 2
+
+struct hadoop_uring {
+  int ring_fd;
+  unsigned sq_entries;
+
+  void *sq_ring;
+  size_t sq_ring_size;
+  unsigned *sq_head;
+  unsigned *sq_tail;
+  unsigned *sq_mask;
+  unsigned *sq_array;
+  struct io_uring_sqe *sqes;
+  size_t sqes_size;
+  /* Entries prepared but not yet passed to io_uring_enter. */
+  unsigned to_submit;
+
+  void *cq_ring;
+  size_t cq_ring_size;
+  unsigned *cq_head;
+  unsigned *cq_tail;
+  unsigned *cq_mask;
+  struct io_uring_cqe *cqes;
+};
+
+extern void throw_ioe(JNIEnv* env, int errnum);
+
+static int uring_enter(int fd, unsigned to_submit, unsigned min_complete,
+    unsigned flags)
+{
+  return (int)syscall(__NR_io_uring_enter, fd, to_submit, min_complete,
+      flags, NULL, 0);
+}
+
+static void uring_free(struct hadoop_uring *r)
+{
+  if (r->sqes && r->sqes != MAP_FAILED) {
+    munmap(r->sqes, r->sqes_size);
+  }
+  if (r->cq_ring && r->cq_ring != MAP_FAILED && r->cq_ring != r->sq_ring) {
+    munmap(r->cq_ring, r->cq_ring_size);
+  }
+  if (r->sq_ring && r->sq_ring != MAP_FAILED) {
+    munmap(r->sq_ring, r->sq_ring_size);
+  }
+  if (r->ring_fd >= 0) {
+    close(r->ring_fd);
+  }
+  free(r);
+}
+
+/*
+ * Sets up a ring and maps its queues. Returns NULL and sets errno on
+ * failure.
+ */
+static struct hadoop_uring *uring_create(unsigned entries)
+{
+  struct io_uring_params p;
+  struct hadoop_uring *r;
+  int err;
+
+  r = calloc(1, sizeof(*r));
+  if (!r) {
+    errno = ENOMEM;
+    return NULL;
+  }
+  memset(&p, 0, sizeof(p));
+  r->ring_fd = (int)syscall(__NR_io_uring_setup, entries, &p);
+  if (r->ring_fd < 0) {
+    err = errno;
+    free(r);
+    errno = err;
+    return NULL;
+  }
+  r->sq_entries = p.sq_entries;
+  r->sq_ring_size = p.sq_off.array + p.sq_entries * sizeof(unsigned);
+  r->cq_ring_size = p.cq_off.cqes + p.cq_entries * sizeof(struct io_uring_cqe);
+  if (p.features & IORING_FEAT_SINGLE_MMAP) {
+    if (r->cq_ring_size > r->sq_ring_size) {
+      r->sq_ring_size = r->cq_ring_size;
+    }
+    r->cq_ring_size = r->sq_ring_size;
+  }
+  r->sq_ring = mmap(NULL, r->sq_ring_size, PROT_READ | PROT_WRITE,
+      MAP_SHARED | MAP_POPULATE, r->ring_fd, IORING_OFF_SQ_RING);
+  if (r->sq_ring == MAP_FAILED) {
+    goto fail;
+  }
+  if (p.features & IORING_FEAT_SINGLE_MMAP) {
+    r->cq_ring = r->sq_ring;
+  } else {
+    r->cq_ring = mmap(NULL, r->cq_ring_size, PROT_READ | PROT_WRITE,
+        MAP_SHARED | MAP_POPULATE, r->ring_fd, IORING_OFF_CQ_RING);
+    if (r->cq_ring == MAP_FAILED) {
+      goto fail;
+    }
+  }
+  r->sqes_size = p.sq_entries * sizeof(struct io_uring_sqe);
+  r->sqes = mmap(NULL, r->sqes_size, PROT_READ | PROT_WRITE,
+      MAP_SHARED | MAP_POPULATE, r->ring_fd, IORING_OFF_SQES);
+  if (r->sqes == MAP_FAILED) {
+    goto fail;
+  }
+
+  r->sq_head = (unsigned *)((char *)r->sq_ring + p.sq_off.head);
+  r->sq_tail = (unsigned *)((char *)r->sq_ring + p.sq_off.tail);
+  r->sq_mask = (unsigned *)((char *)r->sq_ring + p.sq_off.ring_mask);
+  r->sq_array = (unsigned *)((char *)r->sq_ring + p.sq_off.array);
+  r->cq_head = (unsigned *)((char *)r->cq_ring + p.cq_off.head);
+  r->cq_tail = (unsigned *)((char *)r->cq_ring + p.cq_off.tail);
+  r->cq_mask = (unsigned *)((char *)r->cq_ring + p.cq_off.ring_mask);
+  r->cqes = (struct io_uring_cqe *)((char *)r->cq_ring + p.cq_off.cqes);
+  return r;
+
+fail:
+  err = errno;
+  uring_free(r);
+  errno = err;
+  return NULL;
+}
+#endif
+
+/*
+ * private static native boolean ioUringSupported();
+ */
+JNIEXPORT jboolean JNICALL
+Java_org_apache_hadoop_io_nativeio_NativeIO_00024POSIX_ioUringSupported(
+  JNIEnv *env, jclass clazz)
+{
+#ifdef HAVE_LINUX_IO_URING_H
+  struct hadoop_uring *r = uring_create(1);
+  if (!r) {
+    return JNI_FALSE;
+  }
+  uring_free(r);
+  return JNI_TRUE;
+#else
+  return JNI_FALSE;
+#endif
+}
+
+/*
+ * private static native long ioUringSetup(int entries) throws IOException;
+ */
+JNIEXPORT jlong JNICALL
+Java_org_apache_hadoop_io_nativeio_NativeIO_00024POSIX_ioUringSetup(
+  JNIEnv *env, jclass clazz, jint entries)
+{
+#ifdef HAVE_LINUX_IO_URING_H
+  struct hadoop_uring *r = uring_create((unsigned)entries);
+  if (!r) {
+    throw_ioe(env, errno);
+    return 0;
+  }
+  return (jlong)(intptr_t)r;
+#else
+  THROW(env, "java/lang/UnsupportedOperationException",
+        "io_uring support not available");
+  return 0;
+#endif
+}
+
+/*
+ * private static native void ioUringClose(long ring);
+ */
+JNIEXPORT void JNICALL
+Java_org_apache_hadoop_io_nativeio_NativeIO_00024POSIX_ioUringClose(
+  JNIEnv *env, jclass clazz, jlong ring)
+{
+#ifdef HAVE_LINUX_IO_URING_H
+  if (ring) {
+    uring_free((struct hadoop_uring *)(intptr_t)ring);
+  }
+#endif
+}
+
+/*
+ * private static native void ioUringRegisterBuffers(long ring,
+ *     ByteBuffer[] buffers) throws IOException;
+ */
+JNIEXPORT void JNICALL
+Java_org_apache_hadoop_io_nativeio_NativeIO_00024POSIX_ioUringRegisterBuffers(
+  JNIEnv *env, jclass clazz, jlong ring, jobjectArray buffers)
+{
+#ifdef HAVE_LINUX_IO_URING_H
+  struct hadoop_uring *r = (struct hadoop_uring *)(intptr_t)ring;
+  jsize i, n = (*env)->GetArrayLength(env, buffers);
+  struct iovec *iov;
+  int ret;
+
+  iov = calloc(n, sizeof(struct iovec));
+  if (!iov) {
+    THROW(env, "java/lang/OutOfMemoryError", "failed to allocate iovecs");
+    return;
+  }
+  for (i = 0; i < n; i++) {
+    jobject buf = (*env)->GetObjectArrayElement(env, buffers, i);
+    iov[i].iov_base = (*env)->GetDirectBufferAddress(env, buf);
+    iov[i].iov_len = (size_t)(*env)->GetDirectBufferCapacity(env, buf);
+    (*env)->DeleteLocalRef(env, buf);
+    if (!iov[i].iov_base) {
+      free(iov);
+      THROW(env, "java/lang/IllegalArgumentException",
+            "io_uring fixed buffers must be direct buffers");
+      return;
+    }
+  }
+  ret = (int)syscall(__NR_io_uring_register, r->ring_fd,
+      IORING_REGISTER_BUFFERS, iov, (unsigned)n);
+  free(iov);
+  if (ret < 0) {
+    throw_ioe(env, errno);
+  }
+#else
+  THROW(env, "java/lang/UnsupportedOperationException",
+        "io_uring support not available");
+#endif
+}
+
+/*
+ * private static native boolean ioUringPrepare(long ring, int opcode,
+ *     FileDescriptor fd, int bufIndex, ByteBuffer buf, int bufOffset,
+ *     int len, long position, long userData);
+ *
+ * Returns false if the submission queue is full.
+ */
+JNIEXPORT jboolean JNICALL
+Java_org_apache_hadoop_io_nativeio_NativeIO_00024POSIX_ioUringPrepare(
+  JNIEnv *env, jclass clazz, jlong ring, jint opcode, jobject fd_object,
+  jint buf_index, jobject buf, jint buf_offset, jint len, jlong position,
+  jlong user_data)
+{
+#ifdef HAVE_LINUX_IO_URING_H
+  struct hadoop_uring *r = (struct hadoop_uring *)(intptr_t)ring;
+  struct io_uring_sqe *sqe;
+  unsigned head, tail, idx;
+  char *addr = NULL;
+  int fd = -1;
+
+  if (opcode != HADOOP_URING_OP_NOP) {
+    fd = fd_get(env, fd_object);
+    PASS_EXCEPTIONS_RET(env, JNI_FALSE);
+    addr = (*env)->GetDirectBufferAddress(env, buf);
+    if (!addr) {
+      THROW(env, "java/lang/IllegalArgumentException",
+            "io_uring fixed buffers must be direct buffers");
+      return JNI_FALSE;
+    }
+  }
+
+  head = __atomic_load_n(r->sq_head, __ATOMIC_ACQUIRE);
+  tail = *r->sq_tail;
+  if (tail - head >= r->sq_entries) {
+    return JNI_FALSE;
+  }
+  idx = tail & *r->sq_mask;
+  sqe = &r->sqes[idx];
+  memset(sqe, 0, sizeof(*sqe));
+  switch (opcode) {
+  case HADOOP_URING_OP_NOP:
+    sqe->opcode = IORING_OP_NOP;
+    break;
+  case HADOOP_URING_OP_READ_FIXED:
+    sqe->opcode = IORING_OP_READ_FIXED;
+    break;
+  case HADOOP_URING_OP_WRITE_FIXED:
+    sqe->opcode = IORING_OP_WRITE_FIXED;
+    break;
+  default:
+    THROW(env, "java/lang/IllegalArgumentException", "unknown opcode");
+    return JNI_FALSE;
+  }
+  sqe->fd = fd;
+  sqe->off = (uint64_t)position;
+  sqe->addr = (uint64_t)(uintptr_t)(addr ? addr + buf_offset : NULL);
+  sqe->len = (uint32_t)len;
+  sqe->buf_index = (uint16_t)buf_index;
+  sqe->user_data = (uint64_t)user_data;
+  r->sq_array[idx] = idx;
+  __atomic_store_n(r->sq_tail, tail + 1, __ATOMIC_RELEASE);
+  r->to_submit++;
+  return JNI_TRUE;
+#else
+  THROW(env, "java/lang/UnsupportedOperationException",
+        "io_uring support not available");
+  return JNI_FALSE;
+#endif
+}
+
+/*
+ * private static native int ioUringSubmit(long ring) throws IOException;
+ */
+JNIEXPORT jint JNICALL
+Java_org_apache_hadoop_io_nativeio_NativeIO_00024POSIX_ioUringSubmit(
+  JNIEnv *env, jclass clazz, jlong ring)
+{
+#ifdef HAVE_LINUX_IO_URING_H
+  struct hadoop_uring *r = (struct hadoop_uring *)(intptr_t)ring;
+  int ret;
+
+  while (r->to_submit > 0) {
+    ret = uring_enter(r->ring_fd, r->to_submit, 0, 0);
+    if (ret < 0) {
+      if (errno == EINTR) {
+        continue;
+      }
+      throw_ioe(env, errno);
+      return -1;
+    }
+    r->to_submit -= (unsigned)ret;
+    if (ret == 0) {
+      break;
+    }
+  }
+  return (jint)r->to_submit;
+#else
+  THROW(env, "java/lang/UnsupportedOperationException",
+        "io_uring support not available");
+  return -1;
+#endif
+}
+
+/*
+ * private static native int ioUringReap(long ring, long[] userData,
+ *     int[] results, boolean wait) throws IOException;
+ *
+ * Copies up to userData.length completions out of the completion queue,
+ * waiting for at least one if wait is true. Returns the number copied.
+ */
+JNIEXPORT jint JNICALL
+Java_org_apache_hadoop_io_nativeio_NativeIO_00024POSIX_ioUringReap(
+  JNIEnv *env, jclass clazz, jlong ring, jlongArray user_data,
+  jintArray results, jboolean wait)
+{
+#ifdef HAVE_LINUX_IO_URING_H
+  struct hadoop_uring *r = (struct hadoop_uring *)(intptr_t)ring;
+  jsize max = (*env)->GetArrayLength(env, user_data);
+  jlong ud[64];
+  jint res[64];
+  unsigned head, tail;
+  jsize n = 0;
+
+  if (max > 64) {
+    max = 64;
+  }
+  for (;;) {
+    head = *r->cq_head;
+    tail = __atomic_load_n(r->cq_tail, __ATOMIC_ACQUIRE);
+    if (head != tail || !wait) {
+      break;
+    }
+    if (uring_enter(r->ring_fd, 0, 1, IORING_ENTER_GETEVENTS) < 0 &&
+        errno != EINTR) {
+      throw_ioe(env, errno);
+      return -1;
+    }
+  }
+  while (head != tail && n < max) {
+    struct io_uring_cqe *cqe = &r->cqes[head & *r->cq_mask];
+    ud[n] = (jlong)cqe->user_data;
+    res[n] = (jint)cqe->res;
+    n++;
+    head++;
+  }
+  __atomic_store_n(r->cq_head, head, __ATOMIC_RELEASE);
+  if (n > 0) {
+    (*env)->SetLongArrayRegion(env, user_data, 0, n, ud);
+    (*env)->SetIntArrayRegion(env, results, 0, n, res);
+  }
+  return (jint)n;
+#else
+  THROW(env, "java/lang/UnsupportedOperationException",
+        "io_uring support not available");
+  return -1;
+#endif
+}
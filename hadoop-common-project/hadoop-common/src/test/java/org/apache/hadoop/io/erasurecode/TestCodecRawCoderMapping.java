@@ -21,6 +21,8 @@
 import org.apache.hadoop.io.erasurecode.rawcoder.NativeRSRawEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.NativeRSRawDecoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.NativeRSRawErasureCoderFactory;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSBlockedRawDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSBlockedRawEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RSLegacyRawDecoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RSLegacyRawEncoder;
 import org.apache.hadoop.io.erasurecode.rawcoder.RSRawDecoder;
@@ -67,8 +69,8 @@ public void testRSDefaultRawCoder() {
       Assert.assertTrue(encoder instanceof NativeRSRawEncoder);
       Assert.assertTrue(decoder instanceof NativeRSRawDecoder);
     } else {
-      Assert.assertTrue(encoder instanceof RSRawEncoder);
-      Assert.assertTrue(decoder instanceof RSRawDecoder);
+      Assert.assertTrue(encoder instanceof RSBlockedRawEncoder);
+      Assert.assertTrue(decoder instanceof RSBlockedRawDecoder);
     }
 
     // should return default raw coder of rs-legacy codec
@@ -184,8 +186,8 @@ public void testCodecNativeEnabled() {
         conf, ErasureCodeConstants.XOR_CODEC_NAME, coderOptions);
     xorDecoder = CodecUtil.createRawDecoder(
         conf, ErasureCodeConstants.XOR_CODEC_NAME, coderOptions);
-    assertTrue(rsEncoder instanceof RSRawEncoder);
-    assertTrue(rsDecoder instanceof RSRawDecoder);
+    assertTrue(rsEncoder instanceof RSBlockedRawEncoder);
+    assertTrue(rsDecoder instanceof RSBlockedRawDecoder);
     assertTrue(xorEncoder instanceof XORRawEncoder);
     assertTrue(xorDecoder instanceof XORRawDecoder);
   }
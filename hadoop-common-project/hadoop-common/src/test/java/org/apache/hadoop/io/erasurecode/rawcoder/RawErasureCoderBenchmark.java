@@ -18,6 +18,7 @@
 package org.apache.hadoop.io.erasurecode.rawcoder;
 
 import org.apache.hadoop.util.Preconditions;
+import org.apache.hadoop.io.erasurecode.ErasureCodeNative;
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
 import org.apache.hadoop.util.StopWatch;
 
@@ -57,18 +58,20 @@ private RawErasureCoderBenchmark() {
   private static final int MAX_CHUNK_SIZE =
       TARGET_BUFFER_SIZE_MB / BenchData.NUM_DATA_UNITS * 1024;
 
-  private static final List<RawErasureCoderFactory> CODER_MAKERS =
+  static final List<RawErasureCoderFactory> CODER_MAKERS =
       Collections.unmodifiableList(
           Arrays.asList(new DummyRawErasureCoderFactory(),
               new RSLegacyRawErasureCoderFactory(),
               new RSRawErasureCoderFactory(),
-              new NativeRSRawErasureCoderFactory()));
+              new NativeRSRawErasureCoderFactory(),
+              new RSBlockedRawErasureCoderFactory()));
 
   enum CODER {
     DUMMY_CODER("Dummy coder"),
     LEGACY_RS_CODER("Legacy Reed-Solomon Java coder"),
     RS_CODER("Reed-Solomon Java coder"),
-    ISAL_CODER("ISA-L coder");
+    ISAL_CODER("ISA-L coder"),
+    RS_BLOCKED_CODER("Reed-Solomon Java coder in chunks");
 
     private final String name;
 
@@ -184,6 +187,11 @@ public static void main(String[] args) throws Exception {
    */
   public static void performBench(String opType, CODER coder,
       int numThreads, int dataSizeMB, int chunkSizeKB) throws Exception {
+    if (coder == CODER.ISAL_CODER && !ErasureCodeNative.isNativeCodeLoaded()) {
+      System.out.println("Skipping " + coder + ": "
+          + ErasureCodeNative.getLoadingFailureReason());
+      return;
+    }
     BenchData.configure(dataSizeMB, chunkSizeKB);
 
     RawErasureEncoder encoder = null;
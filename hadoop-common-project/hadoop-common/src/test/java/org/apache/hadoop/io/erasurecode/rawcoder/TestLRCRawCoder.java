@@ -0,0 +1,231 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.erasurecode.rawcoder;
+
+import org.apache.hadoop.HadoopIllegalArgumentException;
+import org.apache.hadoop.io.erasurecode.ECChunk;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.LRCUtil;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.RSBlockedUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the raw Locally Repairable Code coder in Java. When the erased units
+ * can be repaired within their local groups, only the rest of the groups
+ * are given to the decoder.
+ */
+public class TestLRCRawCoder extends TestRawCoderBase {
+
+  @Before
+  public void setup() {
+    this.encoderFactoryClass = LRCRawErasureCoderFactory.class;
+    this.decoderFactoryClass = LRCRawErasureCoderFactory.class;
+    this.baseChunkSize = RSBlockedUtil.CHUNK_SIZE + 100;
+    setAllowDump(false);
+  }
+
+  @Override
+  protected void ensureOnlyLeastRequiredChunks(ECChunk[] inputChunks) {
+    int[] repairIndexes = LRCUtil.getLocalRepairIndexes(numDataUnits,
+        numParityUnits, getErasedIndexesForDecoding());
+    if (repairIndexes == null) {
+      return;
+    }
+    int next = 0;
+    for (int i = 0; i < inputChunks.length; i++) {
+      if (next < repairIndexes.length && repairIndexes[next] == i) {
+        next++;
+      } else {
+        inputChunks[i] = null;
+      }
+    }
+  }
+
+  @Override
+  @Test
+  public void testIdempotentReleases() {
+    // Unlike RS, there are no LRC coders without parity units.
+    prepare(null, 6, 4, new int[] {0}, new int[0]);
+    super.testIdempotentReleases();
+  }
+
+  @Test
+  public void testLayout() {
+    LRCUtil.checkLayout(6, 4);
+    assertEquals(2, LRCUtil.getNumLocalParityUnits(6, 4));
+    assertEquals(0, LRCUtil.getLocalGroup(6, 4, 2));
+    assertEquals(1, LRCUtil.getLocalGroup(6, 4, 3));
+    assertEquals(1, LRCUtil.getLocalGroup(6, 4, 7));
+    assertEquals(-1, LRCUtil.getLocalGroup(6, 4, 8));
+    assertArrayEquals(new int[] {3, 4, 5, 7},
+        LRCUtil.getLocalGroupUnits(6, 4, 1));
+
+    assertArrayEquals(new int[] {1, 2, 6},
+        LRCUtil.getLocalRepairIndexes(6, 4, new int[] {0}));
+    assertArrayEquals(new int[] {0, 1, 2, 4, 5, 7},
+        LRCUtil.getLocalRepairIndexes(6, 4, new int[] {6, 3}));
+    assertNull(LRCUtil.getLocalRepairIndexes(6, 4, new int[] {0, 1}));
+    assertNull(LRCUtil.getLocalRepairIndexes(6, 4, new int[] {9}));
+  }
+
+  /**
+   * Check every pattern of as many erased units as global parity units plus
+   * one, for all the layouts of up to 20 units.
+   */
+  @Test
+  public void testDecodableErasingGlobalPlusOne() {
+    for (int k = 2; k <= 18; k++) {
+      for (int m = 2; k + m <= 20; m++) {
+        if (!LRCUtil.isValidLayout(k, m)) {
+          continue;
+        }
+        int n = k + m;
+        int numErased = m - LRCUtil.getNumLocalParityUnits(k, m) + 1;
+        for (int mask = 0; mask < (1 << n); mask++) {
+          if (Integer.bitCount(mask) != numErased) {
+            continue;
+          }
+          int[] validIndexes = new int[n - numErased];
+          int next = 0;
+          for (int i = 0; i < n; i++) {
+            if ((mask & (1 << i)) == 0) {
+              validIndexes[next++] = i;
+            }
+          }
+          assertTrue("LRC-" + k + "-" + m + " valid units "
+              + Arrays.toString(validIndexes),
+              LRCUtil.isDecodable(k, m, validIndexes));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDecodable() {
+    assertTrue(LRCUtil.isDecodable(6, 4, new int[] {0, 1, 2, 3, 4, 5}));
+    assertTrue(LRCUtil.isDecodable(6, 4, new int[] {1, 2, 4, 5, 6, 7}));
+    // Four erased units, three of them data units of group 0.
+    assertTrue(LRCUtil.isDecodable(6, 4, new int[] {3, 4, 5, 6, 8, 9}));
+    // Group 0 with its local parity, the local parity of group 1 adds
+    // nothing to its data units.
+    assertFalse(LRCUtil.isDecodable(6, 4, new int[] {3, 4, 5, 7, 8, 9}));
+    assertFalse(LRCUtil.isDecodable(6, 4, new int[] {0, 1, 2, 3, 4}));
+  }
+
+  /** Decode every pattern of three erased units of LRC-6-4. */
+  @Test
+  public void testCoding_6x4_erasing_any_three() {
+    for (int mask = 0; mask < (1 << 10); mask++) {
+      if (Integer.bitCount(mask) != 3) {
+        continue;
+      }
+      int[] erasedData = new int[3];
+      int[] erasedParity = new int[3];
+      int numData = 0;
+      int numParity = 0;
+      for (int i = 0; i < 10; i++) {
+        if ((mask & (1 << i)) != 0) {
+          if (i < 6) {
+            erasedData[numData++] = i;
+          } else {
+            erasedParity[numParity++] = i - 6;
+          }
+        }
+      }
+      prepare(null, 6, 4, Arrays.copyOf(erasedData, numData),
+          Arrays.copyOf(erasedParity, numParity));
+      testCoding(false);
+      testCoding(true);
+    }
+  }
+
+  @Test(expected = HadoopIllegalArgumentException.class)
+  public void testInvalidLayout() {
+    LRCUtil.checkLayout(6, 8);
+  }
+
+  @Test
+  public void testCoding_6x4_erasing_d0() {
+    prepare(null, 6, 4, new int[] {0}, new int[0]);
+    testCodingDoMixAndTwice();
+  }
+
+  @Test
+  public void testCoding_6x4_erasing_d0_d4() {
+    prepare(null, 6, 4, new int[] {0, 4}, new int[0]);
+    testCodingDoMixAndTwice();
+  }
+
+  @Test
+  public void testCoding_6x4_erasing_p0() {
+    prepare(null, 6, 4, new int[0], new int[] {0});
+    testCodingDoMixAndTwice();
+  }
+
+  @Test
+  public void testCoding_6x4_erasing_p3() {
+    prepare(null, 6, 4, new int[0], new int[] {3});
+    testCodingDoMixAndTwice();
+  }
+
+  @Test
+  public void testCoding_6x4_erasing_d1_d2() {
+    prepare(null, 6, 4, new int[] {1, 2}, new int[0]);
+    testCodingDoMixAndTwice();
+  }
+
+  @Test
+  public void testCoding_6x4_erasing_d0_d3_p0() {
+    prepare(null, 6, 4, new int[] {0, 3}, new int[] {0});
+    testCodingDoMixAndTwice();
+  }
+
+  @Test
+  public void testCoding_6x4_erasing_d0_p1_p2_p3() {
+    prepare(null, 6, 4, new int[] {0}, new int[] {1, 2, 3});
+    testCodingDoMixAndTwice();
+  }
+
+  @Test
+  public void testCoding_12x6_erasing_d5_d11() {
+    prepare(null, 12, 6, new int[] {5, 11}, new int[0]);
+    testCodingDoMixAndTwice();
+  }
+
+  @Test
+  public void testCodingNegative_6x4_erasing_too_many() {
+    // Three data units of a group are left with two global parities.
+    prepare(null, 6, 4, new int[] {0, 1, 2}, new int[] {0});
+    testCodingWithErasingTooMany();
+  }
+
+  @Test
+  public void testCodingNegative_6x4_erasing_d2() {
+    prepare(null, 6, 4, new int[] {2}, new int[0]);
+    testCodingWithBadInput(true);
+    testCodingWithBadOutput(false);
+  }
+}
@@ -17,8 +17,13 @@
  */
 package org.apache.hadoop.io.erasurecode.rawcoder;
 
-import org.apache.hadoop.io.erasurecode.ErasureCodeNative;
-import org.junit.Assume;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.io.erasurecode.CodecRegistry;
+import org.apache.hadoop.io.erasurecode.ErasureCodeConstants;
 import org.junit.Test;
 
 /**
@@ -53,13 +58,38 @@ public void testRSCoder() throws Exception {
         RawErasureCoderBenchmark.CODER.RS_CODER, 4, 135, 20);
   }
 
+  @Test
+  public void testRSBlockedCoder() throws Exception {
+    // RS Java coder in chunks
+    RawErasureCoderBenchmark.performBench("encode",
+        RawErasureCoderBenchmark.CODER.RS_BLOCKED_CODER, 3, 200, 200);
+    RawErasureCoderBenchmark.performBench("decode",
+        RawErasureCoderBenchmark.CODER.RS_BLOCKED_CODER, 4, 135, 20);
+  }
+
   @Test
   public void testISALCoder() throws Exception {
-    Assume.assumeTrue(ErasureCodeNative.isNativeCodeLoaded());
-    // ISA-L coder
+    // ISA-L coder, skipped without the native library
     RawErasureCoderBenchmark.performBench("encode",
         RawErasureCoderBenchmark.CODER.ISAL_CODER, 5, 300, 64);
     RawErasureCoderBenchmark.performBench("decode",
         RawErasureCoderBenchmark.CODER.ISAL_CODER, 6, 200, 128);
   }
+
+  @Test
+  public void testAllRSCodersCovered() {
+    Set<String> covered = new HashSet<>();
+    for (RawErasureCoderFactory factory :
+        RawErasureCoderBenchmark.CODER_MAKERS) {
+      covered.add(factory.getCoderName());
+    }
+    for (String codec : new String[] {ErasureCodeConstants.RS_CODEC_NAME,
+        ErasureCodeConstants.RS_LEGACY_CODEC_NAME}) {
+      for (String coderName :
+          CodecRegistry.getInstance().getCoderNames(codec)) {
+        assertTrue("No benchmark for " + coderName,
+            covered.contains(coderName));
+      }
+    }
+  }
 }
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.io.nativeio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.test.GenericTestUtils;
+
+public class TestIoUringEngine {
+  private static final File TEST_BASE = GenericTestUtils.getTestDir();
+  private static final int BUFFER_SIZE = 4096;
+
+  @Before
+  public void setup() {
+    Assume.assumeTrue(NativeIO.POSIX.IoUring.isAvailable());
+  }
+
+  @Test(timeout=60000)
+  public void testReadAndWrite() throws Exception {
+    File dir = new File(TEST_BASE, "testIoUringReadAndWrite");
+    dir.mkdirs();
+    byte[] data = new byte[3 * BUFFER_SIZE + 100];
+    new Random(0).nextBytes(data);
+    try (IoUringEngine engine = new IoUringEngine("test", 4, BUFFER_SIZE);
+         RandomAccessFile file =
+             new RandomAccessFile(new File(dir, "file"), "rw")) {
+      // Writes larger than a buffer are split.
+      engine.pwrite(file.getFD(), 10, data, 0, data.length);
+      Assert.assertEquals(10 + data.length, file.length());
+
+      // Reads larger than a buffer are split too, and short at the end.
+      byte[] read = new byte[data.length + 100];
+      Assert.assertEquals(data.length,
+          engine.pread(file.getFD(), 10, read, 0, read.length));
+      Assert.assertArrayEquals(data, Arrays.copyOf(read, data.length));
+      Assert.assertEquals(0,
+          engine.pread(file.getFD(), 10 + data.length, read, 0, 1));
+    } finally {
+      FileUtil.fullyDelete(dir);
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testConcurrentReads() throws Exception {
+    File dir = new File(TEST_BASE, "testIoUringConcurrentReads");
+    dir.mkdirs();
+    final int blocks = 32;
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try (IoUringEngine engine = new IoUringEngine("test", 2, BUFFER_SIZE);
+         RandomAccessFile file =
+             new RandomAccessFile(new File(dir, "file"), "rw")) {
+      for (int i = 0; i < blocks; i++) {
+        byte[] block = new byte[BUFFER_SIZE];
+        Arrays.fill(block, (byte) i);
+        file.write(block);
+      }
+      // More readers than buffers, so some wait for a free buffer.
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < blocks; i++) {
+        final int block = i;
+        results.add(executor.submit(() -> {
+          byte[] buf = new byte[BUFFER_SIZE];
+          int n = engine.pread(file.getFD(), (long) block * BUFFER_SIZE, buf,
+              0, BUFFER_SIZE);
+          for (byte b : buf) {
+            if (b != (byte) block) {
+              return false;
+            }
+          }
+          return n == BUFFER_SIZE;
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        Assert.assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdownNow();
+      FileUtil.fullyDelete(dir);
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testAsyncWrites() throws Exception {
+    File dir = new File(TEST_BASE, "testIoUringAsyncWrites");
+    dir.mkdirs();
+    final int chunks = 16;
+    try (IoUringEngine engine = new IoUringEngine("test", 4, BUFFER_SIZE);
+         RandomAccessFile file =
+             new RandomAccessFile(new File(dir, "file"), "rw")) {
+      // More writes in flight than buffers, and the array is reused as
+      // soon as each write is started.
+      byte[] chunk = new byte[2 * BUFFER_SIZE];
+      List<CompletableFuture<Void>> writes = new ArrayList<>();
+      for (int i = 0; i < chunks; i++) {
+        Arrays.fill(chunk, (byte) i);
+        writes.add(engine.pwriteAsync(file.getFD(), (long) i * chunk.length,
+            chunk, 0, chunk.length));
+      }
+      for (CompletableFuture<Void> write : writes) {
+        IoUringEngine.await(write);
+      }
+      byte[] read = new byte[chunks * chunk.length];
+      Assert.assertEquals(read.length,
+          engine.pread(file.getFD(), 0, read, 0, read.length));
+      for (int i = 0; i < read.length; i++) {
+        Assert.assertEquals((byte) (i / chunk.length), read[i]);
+      }
+    } finally {
+      FileUtil.fullyDelete(dir);
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testErrorsAndClose() throws Exception {
+    File dir = new File(TEST_BASE, "testIoUringErrorsAndClose");
+    dir.mkdirs();
+    File f = new File(dir, "file");
+    Assert.assertTrue(f.createNewFile());
+    IoUringEngine engine = new IoUringEngine("test", 1, BUFFER_SIZE);
+    try (RandomAccessFile file = new RandomAccessFile(f, "r")) {
+      // Writing to a read-only descriptor fails with EBADF.
+      try {
+        engine.pwrite(file.getFD(), 0, new byte[1], 0, 1);
+        Assert.fail("write to a read-only file should fail");
+      } catch (IOException e) {
+        GenericTestUtils.assertExceptionContains("errno", e);
+      }
+      engine.close();
+      try {
+        engine.pread(file.getFD(), 0, new byte[1], 0, 1);
+        Assert.fail("read from a closed engine should fail");
+      } catch (IOException e) {
+        GenericTestUtils.assertExceptionContains("closed", e);
+      }
+    } finally {
+      // Closing again is a no-op.
+      engine.close();
+      FileUtil.fullyDelete(dir);
+    }
+  }
+}
@@ -98,6 +98,20 @@ public interface BlockReader extends ByteBufferReadable, Closeable {
    */
   ClientMmap getClientMmap(EnumSet<ReadOption> opts);
 
+  /**
+   * Get a ClientMmap object for this BlockReader, whose data between
+   * blockPos and blockPos + length has been checked against its checksums.
+   *
+   * @param blockPos      The offset in the block of the data to check.
+   * @param length        The length of the data to check.
+   * @return              The ClientMmap object, or null if mmap is not
+   *                      supported.
+   * @throws IOException  If the data could not be checked, e.g. because
+   *                      it does not match its checksums.
+   */
+  ClientMmap getVerifiedClientMmap(long blockPos, int length)
+      throws IOException;
+
   /**
    * @return              The DataChecksum used by the read block
    */
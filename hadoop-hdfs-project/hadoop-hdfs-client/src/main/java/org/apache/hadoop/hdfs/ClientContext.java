@@ -31,6 +31,7 @@
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf.ShortCircuitConf;
+import org.apache.hadoop.hdfs.client.impl.metrics.LocatedBlocksCacheMetrics;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.shortcircuit.DomainSocketFactory;
 import org.apache.hadoop.hdfs.shortcircuit.ShortCircuitCache;
@@ -135,6 +136,24 @@ public class ClientContext {
    */
   private volatile DeadNodeDetector deadNodeDetector = null;
 
+  /**
+   * Per-datanode read latencies shared by all the DFSInputStreams in the
+   * same client, or null if adaptive hedged reads are disabled.
+   */
+  private final DataNodeLatencyTracker dataNodeLatencyTracker;
+
+  /**
+   * Block locations of recently opened files, shared by all the DFSClients
+   * of this context, or null if the cache is disabled.
+   */
+  private final LocatedBlocksCache locatedBlocksCache;
+
+  /**
+   * File statuses and directory listings under the configured paths, shared
+   * by all the DFSClients of this context, or null if the cache is disabled.
+   */
+  private final FileStatusCache fileStatusCache;
+
   /**
    * The switch for the {@link LocatedBlocksRefresher}.
    */
@@ -181,7 +200,19 @@ private ClientContext(String name, DfsClientConf conf,
     this.byteArrayManager = ByteArrayManager.newInstance(
         conf.getWriteByteArrayManagerConf());
     this.deadNodeDetectionEnabled = conf.isDeadNodeDetectionEnabled();
+    this.dataNodeLatencyTracker = conf.isAdaptiveHedgedReadEnabled() ?
+        new DataNodeLatencyTracker(config) : null;
     this.locatedBlocksRefresherEnabled = conf.isLocatedBlocksRefresherEnabled();
+    this.locatedBlocksCache = conf.isLocatedBlocksCacheEnabled() ?
+        new LocatedBlocksCache(conf.getLocatedBlocksCacheTtlMs(),
+            conf.getLocatedBlocksCacheMaxEntries()) : null;
+    if (locatedBlocksCache != null) {
+      LocatedBlocksCacheMetrics.create(name, locatedBlocksCache);
+    }
+    this.fileStatusCache = conf.isMetadataCacheEnabled() ?
+        new FileStatusCache(conf.getMetadataCacheTtlMs(),
+            conf.getMetadataCacheMaxEntries(),
+            conf.getMetadataCachePaths()) : null;
     initTopologyResolution(config);
   }
 
@@ -319,6 +350,25 @@ public DeadNodeDetector getDeadNodeDetector() {
     return deadNodeDetector;
   }
 
+  /**
+   * Obtain the datanode latency tracker of the current client, or null if
+   * adaptive hedged reads are disabled.
+   */
+  public DataNodeLatencyTracker getDataNodeLatencyTracker() {
+    return dataNodeLatencyTracker;
+  }
+
+  /**
+   * Obtain the shared located blocks cache, or null if it is disabled.
+   */
+  public LocatedBlocksCache getLocatedBlocksCache() {
+    return locatedBlocksCache;
+  }
+
+  public FileStatusCache getFileStatusCache() {
+    return fileStatusCache;
+  }
+
   /**
    * If true, LocatedBlocksRefresher will be periodically refreshing LocatedBlocks
    * of registered DFSInputStreams.
@@ -47,6 +47,7 @@
 import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -246,6 +247,10 @@ public class DFSClient implements java.io.Closeable, RemotePeerFactory,
       new DFSHedgedReadMetrics();
   private static ThreadPoolExecutor HEDGED_READ_THREAD_POOL;
   private static volatile ThreadPoolExecutor STRIPED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor VECTORED_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor ASYNC_READ_THREAD_POOL;
+  private static volatile ThreadPoolExecutor STRIPED_ENCODE_THREAD_POOL;
+  private static volatile ThreadPoolExecutor BLOCK_PREALLOCATION_THREAD_POOL;
   private final long serverDefaultsValidityPeriod;
 
   /**
@@ -409,9 +414,30 @@ public DFSClient(URI nameNodeUri, ClientProtocol rpcNamenode,
 
     this.initThreadsNumForStripedReads(dfsClientConf.
         getStripedReadThreadpoolSize());
+    if (dfsClientConf.getVectoredReadThreadpoolSize() > 0) {
+      this.initThreadsNumForVectoredReads(dfsClientConf.
+          getVectoredReadThreadpoolSize());
+    }
+    if (dfsClientConf.getAsyncReadThreadpoolSize() > 0) {
+      this.initThreadsNumForAsyncReads(dfsClientConf.
+          getAsyncReadThreadpoolSize(), dfsClientConf.getAsyncReadMaxQueued());
+    }
+    if (dfsClientConf.getStripedEncodeThreadpoolSize() > 0) {
+      this.initThreadsNumForStripedEncoding(dfsClientConf.
+          getStripedEncodeThreadpoolSize());
+    }
+    if (dfsClientConf.getBlockPreallocationThreadpoolSize() > 0) {
+      this.initThreadsNumForBlockPreallocation(dfsClientConf.
+          getBlockPreallocationThreadpoolSize());
+    }
     this.saslClient = new SaslDataTransferClient(
         conf, DataTransferSaslUtil.getSaslPropertiesResolver(conf),
         TrustedChannelResolver.getInstance(conf), nnFallbackToSimpleAuth);
+    final FileStatusCache fileStatusCache = clientContext.getFileStatusCache();
+    if (fileStatusCache != null
+        && dfsClientConf.isMetadataCacheInotifyEnabled()) {
+      fileStatusCache.startInvalidationTailer(getCacheNamespace(), this);
+    }
   }
 
   /**
@@ -679,6 +705,11 @@ public synchronized void close() throws IOException {
       // lease renewal stops when all files are closed
       closeAllFilesBeingWritten(false);
       clientRunning = false;
+      final FileStatusCache fileStatusCache =
+          clientContext.getFileStatusCache();
+      if (fileStatusCache != null) {
+        fileStatusCache.stopInvalidationTailer(getCacheNamespace(), this);
+      }
       // close dead node detector thread
       if (!disabledStopDeadNodeDetectorThreadForTest) {
         clientContext.unreference();
@@ -921,6 +952,94 @@ public LocatedBlocks getLocatedBlocks(String src, long start, long length)
     }
   }
 
+  /**
+   * Get the located blocks a stream opens with, through the shared located
+   * blocks cache of the client context. A stream refreshing the locations it
+   * already has invalidates the cached entry and replaces it.
+   * @param src the file.
+   * @param refresh true if the caller found the current locations stale.
+   */
+  LocatedBlocks getLocatedBlocksForRead(String src, boolean refresh)
+      throws IOException {
+    final LocatedBlocksCache cache = clientContext.getLocatedBlocksCache();
+    if (cache == null) {
+      return getLocatedBlocks(src, 0);
+    }
+    final String namespace = getCacheNamespace();
+    final String user = ugi.getUserName();
+    if (refresh) {
+      cache.invalidate(namespace, src);
+    } else {
+      LocatedBlocks cached = cache.get(namespace, user, src);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final long generation = cache.getGeneration();
+    LocatedBlocks blocks = getLocatedBlocks(src, 0);
+    cache.put(namespace, user, src, blocks, generation);
+    return blocks;
+  }
+
+  /**
+   * Drop the cached locations of the path, and of everything under it, after
+   * it was changed or a read from it failed.
+   */
+  void invalidateLocatedBlocksCache(String src) {
+    final LocatedBlocksCache cache = clientContext.getLocatedBlocksCache();
+    if (cache != null) {
+      cache.invalidate(getCacheNamespace(), src);
+    }
+  }
+
+  private String getCacheNamespace() {
+    return namenodeUri != null ? namenodeUri.toString() : "";
+  }
+
+  /**
+   * Drop the cached metadata of the path, of everything under it and of its
+   * parent, after it was changed.
+   */
+  void invalidateMetadataCache(String src) {
+    final FileStatusCache cache = clientContext.getFileStatusCache();
+    if (cache != null) {
+      cache.invalidate(getCacheNamespace(), src);
+    }
+  }
+
+  /**
+   * Drop the cached listings of the snapshots of the directory, and the
+   * metadata under them.
+   */
+  private void invalidateSnapshotListing(String snapshotRoot) {
+    invalidateMetadataCache(new Path(snapshotRoot,
+        HdfsConstants.DOT_SNAPSHOT_DIR).toString());
+  }
+
+  /**
+   * Drop all the cached block locations and metadata of the path.
+   */
+  private void invalidateCaches(String src) {
+    invalidateLocatedBlocksCache(src);
+    invalidateMetadataCache(src);
+  }
+
+  /**
+   * Obtain the file status cache shared by the DFSClients of the client
+   * context, or null if it is disabled.
+   */
+  public FileStatusCache getFileStatusCache() {
+    return clientContext.getFileStatusCache();
+  }
+
+  /**
+   * Obtain the located blocks cache shared by the DFSClients of the client
+   * context, or null if it is disabled.
+   */
+  public LocatedBlocksCache getLocatedBlocksCache() {
+    return clientContext.getLocatedBlocksCache();
+  }
+
   /**
    * @see ClientProtocol#getBlockLocations(String, long, long)
    */
@@ -1297,10 +1416,15 @@ public DFSOutputStream create(String src, FsPermission permission,
     checkOpen();
     final FsPermission masked = applyUMask(permission);
     LOG.debug("{}: masked={}", src, masked);
-    final DFSOutputStream result = DFSOutputStream.newStreamForCreate(this,
-        src, masked, flag, createParent, replication, blockSize, progress,
-        dfsClientConf.createChecksum(checksumOpt),
-        getFavoredNodesStr(favoredNodes), ecPolicyName, storagePolicy);
+    final DFSOutputStream result;
+    try {
+      result = DFSOutputStream.newStreamForCreate(this,
+          src, masked, flag, createParent, replication, blockSize, progress,
+          dfsClientConf.createChecksum(checksumOpt),
+          getFavoredNodesStr(favoredNodes), ecPolicyName, storagePolicy);
+    } finally {
+      invalidateCaches(src);
+    }
     beginFileLease(result.getUniqKey(), result);
     return result;
   }
@@ -1381,6 +1505,8 @@ public void createSymlink(String target, String link, boolean createParent)
           QuotaByStorageTypeExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateMetadataCache(link);
     }
   }
 
@@ -1499,8 +1625,12 @@ private DFSOutputStream append(String src, int buffersize,
       EnumSet<CreateFlag> flag, String[] favoredNodes, Progressable progress)
       throws IOException {
     checkOpen();
-    final DFSOutputStream result = callAppend(src, flag, progress,
-        favoredNodes);
+    final DFSOutputStream result;
+    try {
+      result = callAppend(src, flag, progress, favoredNodes);
+    } finally {
+      invalidateCaches(src);
+    }
     beginFileLease(result.getUniqKey(), result);
     return result;
   }
@@ -1525,6 +1655,8 @@ public boolean setReplication(String src, short replication)
           QuotaByStorageTypeExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -1545,6 +1677,8 @@ public void setStoragePolicy(String src, String policyName)
           NSQuotaExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -1563,6 +1697,8 @@ public void unsetStoragePolicy(String src) throws IOException {
           NSQuotaExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -1610,6 +1746,9 @@ public boolean rename(String src, String dst) throws IOException {
           UnresolvedPathException.class,
           SnapshotAccessControlException.class,
           ParentNotDirectoryException.class);
+    } finally {
+      invalidateCaches(src);
+      invalidateCaches(dst);
     }
   }
 
@@ -1625,6 +1764,11 @@ public void concat(String trg, String [] srcs) throws IOException {
       throw re.unwrapRemoteException(AccessControlException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCaches(trg);
+      for (String src : srcs) {
+        invalidateCaches(src);
+      }
     }
   }
 
@@ -1648,6 +1792,9 @@ public void rename(String src, String dst, Options.Rename... options)
           NSQuotaExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateCaches(src);
+      invalidateCaches(dst);
     }
   }
 
@@ -1666,6 +1813,8 @@ public boolean truncate(String src, long newLength) throws IOException {
     } catch (RemoteException re) {
       throw re.unwrapRemoteException(AccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateCaches(src);
     }
   }
 
@@ -1697,6 +1846,8 @@ public boolean delete(String src, boolean recursive) throws IOException {
           UnresolvedPathException.class,
           SnapshotAccessControlException.class,
           PathIsNotEmptyDirectoryException.class);
+    } finally {
+      invalidateCaches(src);
     }
   }
 
@@ -1729,6 +1880,25 @@ public DirectoryListing listPaths(String src,  byte[] startAfter)
   public DirectoryListing listPaths(String src,  byte[] startAfter,
       boolean needLocation) throws IOException {
     checkOpen();
+    final FileStatusCache cache = clientContext.getFileStatusCache();
+    if (cache == null || needLocation || !cache.isCached(src)) {
+      return callGetListing(src, startAfter, needLocation);
+    }
+    final String namespace = getCacheNamespace();
+    final String user = ugi.getUserName();
+    DirectoryListing cached =
+        cache.getListing(namespace, user, src, startAfter);
+    if (cached != null) {
+      return cached;
+    }
+    final long generation = cache.getGeneration();
+    DirectoryListing listing = callGetListing(src, startAfter, false);
+    cache.putListing(namespace, user, src, startAfter, listing, generation);
+    return listing;
+  }
+
+  private DirectoryListing callGetListing(String src, byte[] startAfter,
+      boolean needLocation) throws IOException {
     try (TraceScope ignored = newPathTraceScope("listPaths", src)) {
       return namenode.getListing(src, startAfter, needLocation);
     } catch (RemoteException re) {
@@ -1766,6 +1936,23 @@ public BatchedDirectoryListing batchedListPaths(
    */
   public HdfsFileStatus getFileInfo(String src) throws IOException {
     checkOpen();
+    final FileStatusCache cache = clientContext.getFileStatusCache();
+    if (cache == null || !cache.isCached(src)) {
+      return callGetFileInfo(src);
+    }
+    final String namespace = getCacheNamespace();
+    final String user = ugi.getUserName();
+    HdfsFileStatus cached = cache.getFileInfo(namespace, user, src);
+    if (cached != null) {
+      return cached;
+    }
+    final long generation = cache.getGeneration();
+    HdfsFileStatus status = callGetFileInfo(src);
+    cache.putFileInfo(namespace, user, src, status, generation);
+    return status;
+  }
+
+  private HdfsFileStatus callGetFileInfo(String src) throws IOException {
     try (TraceScope ignored = newPathTraceScope("getFileInfo", src)) {
       return namenode.getFileInfo(src);
     } catch (RemoteException re) {
@@ -2007,6 +2194,8 @@ public void setPermission(String src, FsPermission permission)
           SafeModeException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2029,6 +2218,8 @@ public void setOwner(String src, String username, String groupname)
           SafeModeException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2186,6 +2377,8 @@ public String createSnapshot(String snapshotRoot, String snapshotName)
       return namenode.createSnapshot(snapshotRoot, snapshotName);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException();
+    } finally {
+      invalidateSnapshotListing(snapshotRoot);
     }
   }
 
@@ -2205,6 +2398,8 @@ public void deleteSnapshot(String snapshotRoot, String snapshotName)
       namenode.deleteSnapshot(snapshotRoot, snapshotName);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException();
+    } finally {
+      invalidateSnapshotListing(snapshotRoot);
     }
   }
 
@@ -2223,6 +2418,8 @@ public void renameSnapshot(String snapshotDir, String snapshotOldName,
       namenode.renameSnapshot(snapshotDir, snapshotOldName, snapshotNewName);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException();
+    } finally {
+      invalidateSnapshotListing(snapshotDir);
     }
   }
 
@@ -2270,6 +2467,8 @@ public void allowSnapshot(String snapshotRoot) throws IOException {
       namenode.allowSnapshot(snapshotRoot);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException();
+    } finally {
+      invalidateMetadataCache(snapshotRoot);
     }
   }
 
@@ -2284,6 +2483,8 @@ public void disallowSnapshot(String snapshotRoot) throws IOException {
       namenode.disallowSnapshot(snapshotRoot);
     } catch (RemoteException re) {
       throw re.unwrapRemoteException();
+    } finally {
+      invalidateMetadataCache(snapshotRoot);
     }
   }
 
@@ -2565,6 +2766,8 @@ public boolean primitiveMkdir(String src, FsPermission absPermission,
           QuotaByStorageTypeExceededException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2687,6 +2890,8 @@ public void setTimes(String src, long mtime, long atime) throws IOException {
           FileNotFoundException.class,
           UnresolvedPathException.class,
           SnapshotAccessControlException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2742,6 +2947,8 @@ public void modifyAclEntries(String src, List<AclEntry> aclSpec)
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2758,6 +2965,8 @@ public void removeAclEntries(String src, List<AclEntry> aclSpec)
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2773,6 +2982,8 @@ public void removeDefaultAcl(String src) throws IOException {
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2788,6 +2999,8 @@ public void removeAcl(String src) throws IOException {
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2803,6 +3016,8 @@ public void setAcl(String src, List<AclEntry> aclSpec) throws IOException {
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2827,6 +3042,8 @@ public void createEncryptionZone(String src, String keyName)
       throw re.unwrapRemoteException(AccessControlException.class,
           SafeModeException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2875,6 +3092,8 @@ public void setErasureCodingPolicy(String src, String ecPolicyName)
           SafeModeException.class,
           UnresolvedPathException.class,
           FileNotFoundException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2888,6 +3107,8 @@ public void unsetErasureCodingPolicy(String src) throws IOException {
           SafeModeException.class,
           UnresolvedPathException.class,
           FileNotFoundException.class, NoECPolicySetException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2914,6 +3135,8 @@ public void setXAttr(String src, String name, byte[] value,
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -2978,6 +3201,8 @@ public void removeXAttr(String src, String name) throws IOException {
           SafeModeException.class,
           SnapshotAccessControlException.class,
           UnresolvedPathException.class);
+    } finally {
+      invalidateMetadataCache(src);
     }
   }
 
@@ -3159,6 +3384,95 @@ private void initThreadsNumForStripedReads(int numThreads) {
     }
   }
 
+  /**
+   * Create thread pool for issuing the ranges of a vectored read in parallel,
+   * VECTORED_READ_THREAD_POOL, if it does not already exist. Tasks are queued
+   * rather than run by the caller, so readVectored does not block.
+   * @param numThreads Number of threads for vectored reads thread pool.
+   */
+  private void initThreadsNumForVectoredReads(int numThreads) {
+    assert numThreads > 0;
+    if (VECTORED_READ_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (VECTORED_READ_THREAD_POOL == null) {
+        ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+            numThreads, numThreads, 60, new LinkedBlockingQueue<>(),
+            "VectoredRead-", false);
+        threadPool.allowCoreThreadTimeOut(true);
+        VECTORED_READ_THREAD_POOL = threadPool;
+      }
+    }
+  }
+
+  /**
+   * Create thread pool for asynchronous positional reads,
+   * ASYNC_READ_THREAD_POOL, if it does not already exist. At most maxQueued
+   * reads wait for a thread, the pool rejects the others.
+   * @param numThreads Number of threads for asynchronous reads thread pool.
+   * @param maxQueued Number of reads queued at most.
+   */
+  private void initThreadsNumForAsyncReads(int numThreads, int maxQueued) {
+    assert numThreads > 0;
+    if (ASYNC_READ_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (ASYNC_READ_THREAD_POOL == null) {
+        ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+            numThreads, numThreads, 60, new LinkedBlockingQueue<>(maxQueued),
+            "AsyncRead-", false);
+        threadPool.allowCoreThreadTimeOut(true);
+        ASYNC_READ_THREAD_POOL = threadPool;
+      }
+    }
+  }
+
+  /**
+   * Create thread pool for computing the parity of striped writes,
+   * STRIPED_ENCODE_THREAD_POOL, if it does not already exist. Tasks are
+   * queued; the streams bound how many stripes they have in flight.
+   * @param numThreads Number of threads for striped encoding thread pool.
+   */
+  private void initThreadsNumForStripedEncoding(int numThreads) {
+    assert numThreads > 0;
+    if (STRIPED_ENCODE_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (STRIPED_ENCODE_THREAD_POOL == null) {
+        ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+            numThreads, numThreads, 60, new LinkedBlockingQueue<>(),
+            "StripedEncode-", false);
+        threadPool.allowCoreThreadTimeOut(true);
+        STRIPED_ENCODE_THREAD_POOL = threadPool;
+      }
+    }
+  }
+
+  /**
+   * Create thread pool for allocating the next block of a file while the
+   * current one is closed, BLOCK_PREALLOCATION_THREAD_POOL, if it does not
+   * already exist.
+   * @param numThreads Number of threads for block preallocation thread pool.
+   */
+  private void initThreadsNumForBlockPreallocation(int numThreads) {
+    assert numThreads > 0;
+    if (BLOCK_PREALLOCATION_THREAD_POOL != null) {
+      return;
+    }
+    synchronized (DFSClient.class) {
+      if (BLOCK_PREALLOCATION_THREAD_POOL == null) {
+        ThreadPoolExecutor threadPool = DFSUtilClient.getThreadPoolExecutor(
+            numThreads, numThreads, 60, new LinkedBlockingQueue<>(),
+            "BlockPreallocation-", false);
+        threadPool.allowCoreThreadTimeOut(true);
+        BLOCK_PREALLOCATION_THREAD_POOL = threadPool;
+      }
+    }
+  }
+
   ThreadPoolExecutor getHedgedReadsThreadPool() {
     return HEDGED_READ_THREAD_POOL;
   }
@@ -3167,6 +3481,42 @@ ThreadPoolExecutor getStripedReadsThreadPool() {
     return STRIPED_READ_THREAD_POOL;
   }
 
+  /**
+   * @return the pool that reads the blocks of this client's vectored reads,
+   *         or null if they are read on the calling thread.
+   */
+  ThreadPoolExecutor getVectoredReadsThreadPool() {
+    return dfsClientConf.getVectoredReadThreadpoolSize() > 0 ?
+        VECTORED_READ_THREAD_POOL : null;
+  }
+
+  /**
+   * @return the pool that runs this client's asynchronous positional reads,
+   *         or null if they are read on the calling thread.
+   */
+  ThreadPoolExecutor getAsyncReadsThreadPool() {
+    return dfsClientConf.getAsyncReadThreadpoolSize() > 0 ?
+        ASYNC_READ_THREAD_POOL : null;
+  }
+
+  /**
+   * @return the pool that encodes the stripes of this client's striped
+   *         writes, or null if they are encoded on the writing thread.
+   */
+  ThreadPoolExecutor getStripedEncodeThreadPool() {
+    return dfsClientConf.getStripedEncodeThreadpoolSize() > 0 ?
+        STRIPED_ENCODE_THREAD_POOL : null;
+  }
+
+  /**
+   * @return the pool that allocates the next blocks of this client's files,
+   *         or null if blocks are allocated once the previous one is closed.
+   */
+  ThreadPoolExecutor getBlockPreallocationThreadPool() {
+    return dfsClientConf.getBlockPreallocationThreadpoolSize() > 0 ?
+        BLOCK_PREALLOCATION_THREAD_POOL : null;
+  }
+
   boolean isHedgedReadsEnabled() {
     return (HEDGED_READ_THREAD_POOL != null) &&
         HEDGED_READ_THREAD_POOL.getMaximumPoolSize() > 0;
@@ -3490,6 +3840,14 @@ public DeadNodeDetector getDeadNodeDetector() {
     return clientContext.getDeadNodeDetector();
   }
 
+  /**
+   * Obtain the datanode latency tracker of the current client, or null if
+   * adaptive hedged reads are disabled.
+   */
+  public DataNodeLatencyTracker getDataNodeLatencyTracker() {
+    return clientContext.getDataNodeLatencyTracker();
+  }
+
   /**
    * Obtain LocatedBlocksRefresher of the current client.
    */
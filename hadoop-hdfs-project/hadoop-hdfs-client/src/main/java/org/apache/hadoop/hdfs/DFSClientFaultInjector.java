@@ -22,6 +22,7 @@
 import org.apache.hadoop.classification.VisibleForTesting;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.security.token.block.InvalidBlockTokenException;
 
@@ -60,6 +61,8 @@ public void fetchFromDatanodeException() {}
 
   public void readFromDatanodeDelay() {}
 
+  public void readFromStripedBlockDelay(ExtendedBlock block) {}
+
   public boolean skipRollingRestartWait() {
     return false;
   }
@@ -30,20 +30,26 @@
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.fs.ByteBufferPositionedReadable;
@@ -56,10 +62,13 @@
 import org.apache.hadoop.fs.FSExceptionMessages;
 import org.apache.hadoop.fs.FSInputStream;
 import org.apache.hadoop.fs.FileEncryptionInfo;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.HasEnhancedByteBufferAccess;
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.fs.StreamCapabilities;
+import org.apache.hadoop.fs.VectoredReadUtils;
+import org.apache.hadoop.fs.impl.CombinedFileRange;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 import org.apache.hadoop.hdfs.client.impl.BlockReaderFactory;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
@@ -181,6 +190,8 @@ protected void addToLocalDeadNodes(DatanodeInfo dnInfo) {
     DFSClient.LOG.debug("Add {} to local dead nodes, previously was {}.",
             dnInfo, deadNodes);
     deadNodes.put(dnInfo, dnInfo);
+    // Other streams should not open with the locations that failed here.
+    dfsClient.invalidateLocatedBlocksCache(src);
   }
 
   protected void removeFromLocalDeadNodes(DatanodeInfo dnInfo) {
@@ -285,7 +296,11 @@ private void waitFor(int waitTime) throws IOException {
 
   private LocatedBlocks fetchAndCheckLocatedBlocks(LocatedBlocks existing)
       throws IOException {
-    LocatedBlocks newInfo = dfsClient.getLocatedBlocks(src, 0);
+    // A stream that already has locations is refreshing them because they
+    // are stale, so the shared cache must not hand them back.
+    LocatedBlocks newInfo = dfsClient.getLocatedBlocksCache() == null
+        ? dfsClient.getLocatedBlocks(src, 0)
+        : dfsClient.getLocatedBlocksForRead(src, existing != null);
 
     DFSClient.LOG.debug("newInfo = {}", newInfo);
     if (newInfo == null) {
@@ -1093,17 +1108,35 @@ protected DNAddrPair getBestNodeDNAddrPair(LocatedBlock block,
     }
 
     if (chosenNode == null && nodes != null) {
+      // Nodes that have recently been much slower than their peers are only
+      // chosen if no other node is left.
+      final DataNodeLatencyTracker latencyTracker =
+          dfsClient.getDataNodeLatencyTracker();
+      int chosenIndex = -1;
+      int slowIndex = -1;
       for (int i = 0; i < nodes.length; i++) {
         if (isValidNode(nodes[i], ignoredNodes)) {
-          chosenNode = nodes[i];
-          // Storage types are ordered to correspond with nodes, so use the same
-          // index to get storage type.
-          if (storageTypes != null && i < storageTypes.length) {
-            storageType = storageTypes[i];
+          if (latencyTracker != null && latencyTracker.isSlow(nodes[i])) {
+            if (slowIndex < 0) {
+              slowIndex = i;
+            }
+            continue;
           }
+          chosenIndex = i;
           break;
         }
       }
+      if (chosenIndex < 0) {
+        chosenIndex = slowIndex;
+      }
+      if (chosenIndex >= 0) {
+        chosenNode = nodes[chosenIndex];
+        // Storage types are ordered to correspond with nodes, so use the same
+        // index to get storage type.
+        if (storageTypes != null && chosenIndex < storageTypes.length) {
+          storageType = storageTypes[chosenIndex];
+        }
+      }
     }
     if (chosenNode == null) {
       reportLostBlock(block, ignoredNodes);
@@ -1186,17 +1219,58 @@ private Callable<ByteBuffer> getFromOneDataNode(final DNAddrPair datanode,
       final long start, final long end,
       final ByteBuffer bb,
       final CorruptedBlocks corruptedBlocks,
-      final Map<InetSocketAddress, List<IOException>> exceptionMap) {
+      final Map<InetSocketAddress, List<IOException>> exceptionMap,
+      final ReadLatency latency) {
     return new Callable<ByteBuffer>() {
       @Override
       public ByteBuffer call() throws Exception {
         DFSClientFaultInjector.get().sleepBeforeHedgedGet();
-        actualGetFromOneDataNode(datanode, start, end, bb, corruptedBlocks, exceptionMap);
+        actualGetFromOneDataNode(datanode, start, end, bb, corruptedBlocks,
+            exceptionMap, latency);
         return bb;
       }
     };
   }
 
+  /**
+   * The latency of a read from a datanode, which is recorded once: when the
+   * read completes, or when a hedged read is given up on while it is still
+   * running. The latter is censored, the read would have taken at least as
+   * long as it had run. Leaving it out would hide the datanodes so slow that
+   * their reads are always beaten.
+   */
+  private final class ReadLatency {
+    private final DatanodeInfo datanode;
+    private final int len;
+    private final AtomicBoolean recorded = new AtomicBoolean();
+    private volatile long startMs = -1;
+
+    ReadLatency(DatanodeInfo datanode, int len) {
+      this.datanode = datanode;
+      this.len = len;
+    }
+
+    void start() {
+      if (startMs < 0) {
+        startMs = Time.monotonicNow();
+      }
+    }
+
+    /**
+     * Record how long the read took, or has run so far. A read that did not
+     * start yet is not recorded.
+     */
+    void record() {
+      final DataNodeLatencyTracker latencyTracker =
+          dfsClient.getDataNodeLatencyTracker();
+      if (latencyTracker != null && startMs >= 0
+          && recorded.compareAndSet(false, true)) {
+        latencyTracker.addLatency(datanode, Time.monotonicNow() - startMs,
+            len);
+      }
+    }
+  }
+
   /**
    * Read data from one DataNode.
    *
@@ -1211,11 +1285,22 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, final long startInBlk,
       final long endInBlk, ByteBuffer buf, CorruptedBlocks corruptedBlocks,
       final Map<InetSocketAddress, List<IOException>> exceptionMap)
       throws IOException {
+    actualGetFromOneDataNode(datanode, startInBlk, endInBlk, buf,
+        corruptedBlocks, exceptionMap,
+        new ReadLatency(datanode.info, (int) (endInBlk - startInBlk + 1)));
+  }
+
+  private void actualGetFromOneDataNode(final DNAddrPair datanode,
+      final long startInBlk, final long endInBlk, ByteBuffer buf,
+      CorruptedBlocks corruptedBlocks,
+      final Map<InetSocketAddress, List<IOException>> exceptionMap,
+      final ReadLatency latency) throws IOException {
     DFSClientFaultInjector.get().startFetchFromDatanode();
     int refetchToken = 1; // only need to get a new access token once
     int refetchEncryptionKey = 1; // only need to get a new encryption key once
     final int len = (int) (endInBlk - startInBlk + 1);
     LocatedBlock block = datanode.block;
+    latency.start();
     while (true) {
       BlockReader reader = null;
       try {
@@ -1248,6 +1333,7 @@ void actualGetFromOneDataNode(final DNAddrPair datanode, final long startInBlk,
               "excpected " + len + ", got " + nread);
         }
         DFSClientFaultInjector.get().readFromDatanodeDelay();
+        latency.record();
         return;
       } catch (ChecksumException e) {
         String msg = "fetchBlockByteRange(). Got a checksum exception for "
@@ -1321,6 +1407,7 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start, long end,
       final Map<InetSocketAddress, List<IOException>> exceptionMap) throws IOException {
     final DfsClientConf conf = dfsClient.getConf();
     ArrayList<Future<ByteBuffer>> futures = new ArrayList<>();
+    Map<Future<ByteBuffer>, ReadLatency> latencies = new HashMap<>();
     CompletionService<ByteBuffer> hedgedService =
         new ExecutorCompletionService<>(dfsClient.getHedgedReadsThreadPool());
     ArrayList<DatanodeInfo> ignored = new ArrayList<>();
@@ -1338,15 +1425,18 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start, long end,
         // Latest block, if refreshed internally
         block = chosenNode.block;
         bb = ByteBuffer.allocate(len);
-        Callable<ByteBuffer> getFromDataNodeCallable =
-            getFromOneDataNode(chosenNode, start, end, bb, corruptedBlocks, exceptionMap);
+        ReadLatency latency = new ReadLatency(chosenNode.info, len);
+        Callable<ByteBuffer> getFromDataNodeCallable = getFromOneDataNode(
+            chosenNode, start, end, bb, corruptedBlocks, exceptionMap, latency);
         Future<ByteBuffer> firstRequest = hedgedService
             .submit(getFromDataNodeCallable);
         futures.add(firstRequest);
+        latencies.put(firstRequest, latency);
         Future<ByteBuffer> future = null;
+        final long thresholdMillis = getHedgedReadThresholdMillis(
+            conf, chosenNode.info, len);
         try {
-          future = hedgedService.poll(
-              conf.getHedgedReadThresholdMillis(), TimeUnit.MILLISECONDS);
+          future = hedgedService.poll(thresholdMillis, TimeUnit.MILLISECONDS);
           if (future != null) {
             ByteBuffer result = future.get();
             result.flip();
@@ -1354,7 +1444,7 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start, long end,
             return;
           }
           DFSClient.LOG.debug("Waited {}ms to read from {}; spawning hedged "
-              + "read", conf.getHedgedReadThresholdMillis(), chosenNode.info);
+              + "read", thresholdMillis, chosenNode.info);
           dfsClient.getHedgedReadMetrics().incHedgedReadOps();
           // continue; no need to refresh block locations
         } catch (ExecutionException e) {
@@ -1378,11 +1468,14 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start, long end,
             // Latest block, if refreshed internally
             block = chosenNode.block;
             bb = ByteBuffer.allocate(len);
-            Callable<ByteBuffer> getFromDataNodeCallable =
-                getFromOneDataNode(chosenNode, start, end, bb, corruptedBlocks, exceptionMap);
+            ReadLatency latency = new ReadLatency(chosenNode.info, len);
+            Callable<ByteBuffer> getFromDataNodeCallable = getFromOneDataNode(
+                chosenNode, start, end, bb, corruptedBlocks, exceptionMap,
+                latency);
             Future<ByteBuffer> oneMoreRequest =
                 hedgedService.submit(getFromDataNodeCallable);
             futures.add(oneMoreRequest);
+            latencies.put(oneMoreRequest, latency);
           } else {
             refetch = true;
           }
@@ -1394,6 +1487,12 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start, long end,
         // for a fixed interval and get the result from the fastest one.
         try {
           ByteBuffer result = getFirstToComplete(hedgedService, futures);
+          // The reads still running are recorded for as long as they ran.
+          for (Future<ByteBuffer> loser : futures) {
+            if (!loser.isDone()) {
+              latencies.get(loser).record();
+            }
+          }
           // cancel the rest.
           cancelAll(futures);
           dfsClient.getHedgedReadMetrics().incHedgedReadWins();
@@ -1419,6 +1518,22 @@ private void hedgedFetchBlockByteRange(LocatedBlock block, long start, long end,
     }
   }
 
+  /**
+   * The time to wait for a read of len bytes from the node before hedging.
+   * With adaptive hedged reads this follows the node's recent latency,
+   * capped at the configured threshold.
+   */
+  private long getHedgedReadThresholdMillis(DfsClientConf conf,
+      DatanodeInfo node, int len) {
+    DataNodeLatencyTracker latencyTracker =
+        dfsClient.getDataNodeLatencyTracker();
+    if (latencyTracker == null) {
+      return conf.getHedgedReadThresholdMillis();
+    }
+    return latencyTracker.getHedgedReadThresholdMillis(node, len,
+        conf.getHedgedReadThresholdMillis());
+  }
+
   @VisibleForTesting
   public long getHedgedReadOpsLoopNumForTesting() {
     return hedgedReadOpsLoopNumForTesting;
@@ -1777,6 +1892,143 @@ public void readFully(long position, final ByteBuffer buf)
     }
   }
 
+  /**
+   * Read a list of file ranges.
+   *
+   * Ranges closer together than {@link #minSeekForVectorReads()} are merged
+   * into one positional read of at most {@link #maxReadSizeForVectorReads()}
+   * bytes, and the merged reads are grouped by the block they start in. The
+   * reads of one block are issued one after another, while different blocks
+   * are read in parallel on the client's vectored read thread pool, each
+   * over its own BlockReader. The future of a range completes as soon as
+   * the read covering it has finished, so callers can consume early ranges
+   * while later ones are still in flight.
+   */
+  @Override
+  public void readVectored(List<? extends FileRange> ranges,
+      IntFunction<ByteBuffer> allocate) throws IOException {
+    dfsClient.checkOpen();
+    if (closed.get()) {
+      throw new IOException("Stream closed");
+    }
+    List<? extends FileRange> sortedRanges =
+        VectoredReadUtils.validateAndSortRanges(ranges,
+            Optional.of(getFileLength()));
+    if (sortedRanges.isEmpty()) {
+      return;
+    }
+    List<CombinedFileRange> combinedRanges =
+        VectoredReadUtils.mergeSortedRanges(sortedRanges, 1,
+            minSeekForVectorReads(), maxReadSizeForVectorReads());
+    Map<Long, List<CombinedFileRange>> rangesByBlock = new LinkedHashMap<>();
+    for (CombinedFileRange combined : combinedRanges) {
+      LocatedBlock blk = getBlockAt(combined.getOffset());
+      rangesByBlock.computeIfAbsent(blk.getStartOffset(),
+          k -> new ArrayList<>()).add(combined);
+    }
+    for (FileRange range : sortedRanges) {
+      range.setData(new CompletableFuture<>());
+    }
+    final ThreadPoolExecutor pool = dfsClient.getVectoredReadsThreadPool();
+    for (List<CombinedFileRange> blockRanges : rangesByBlock.values()) {
+      if (pool == null) {
+        readCombinedRanges(blockRanges, allocate);
+        continue;
+      }
+      try {
+        pool.execute(() -> readCombinedRanges(blockRanges, allocate));
+      } catch (RejectedExecutionException e) {
+        readCombinedRanges(blockRanges, allocate);
+      }
+    }
+  }
+
+  /**
+   * Read length bytes at the given position without blocking the caller.
+   *
+   * This is a positional read of a single range with the semantics of
+   * {@link #readVectored(List, IntFunction)}: the read is queued on the
+   * client's asynchronous read thread pool, and the future completes with
+   * the data, flipped for reading, or with the failure, such as an
+   * EOFException if the range is past the end of the file. Many concurrent
+   * reads thus share the threads of the pool instead of parking a thread
+   * each. The queue of the pool is bounded: once it is full, or if the pool
+   * is disabled, the read is done in the calling thread, which holds back
+   * callers issuing reads faster than they complete.
+   *
+   * @param position  The position in the file.
+   * @param length    The number of bytes to read.
+   * @param allocate  The function allocating the buffer for the data.
+   * @return          The future data.
+   */
+  public CompletableFuture<ByteBuffer> readAsync(long position, int length,
+      IntFunction<ByteBuffer> allocate) {
+    final CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+    try {
+      dfsClient.checkOpen();
+      if (closed.get()) {
+        throw new IOException("Stream closed");
+      }
+      if (position < 0 || length < 0) {
+        throw new IllegalArgumentException("Invalid range: position="
+            + position + ", length=" + length);
+      }
+    } catch (IOException | RuntimeException e) {
+      result.completeExceptionally(e);
+      return result;
+    }
+    final Runnable read = () -> {
+      try {
+        ByteBuffer buffer = allocate.apply(length);
+        readFully(position, buffer);
+        buffer.flip();
+        result.complete(buffer);
+      } catch (Throwable t) {
+        DFSClient.LOG.debug("Asynchronous read of {} bytes of {} at {} failed",
+            length, src, position, t);
+        result.completeExceptionally(t);
+      }
+    };
+    final ThreadPoolExecutor pool = dfsClient.getAsyncReadsThreadPool();
+    if (pool == null) {
+      read.run();
+      return result;
+    }
+    try {
+      pool.execute(read);
+    } catch (RejectedExecutionException e) {
+      // The queue is full, push back on the caller.
+      read.run();
+    }
+    return result;
+  }
+
+  /**
+   * Read the merged ranges of one block and complete the futures of the
+   * ranges they cover. A failure only fails the ranges of the read that hit
+   * it.
+   */
+  private void readCombinedRanges(List<CombinedFileRange> combinedRanges,
+      IntFunction<ByteBuffer> allocate) {
+    for (CombinedFileRange combined : combinedRanges) {
+      try {
+        ByteBuffer buffer = allocate.apply(combined.getLength());
+        readFully(combined.getOffset(), buffer);
+        buffer.flip();
+        for (FileRange child : combined.getUnderlying()) {
+          child.getData().complete(VectoredReadUtils.sliceTo(buffer,
+              combined.getOffset(), child));
+        }
+      } catch (Throwable t) {
+        DFSClient.LOG.debug("Vectored read of {} at {} failed", src,
+            combined, t);
+        for (FileRange child : combined.getUnderlying()) {
+          child.getData().completeExceptionally(t);
+        }
+      }
+    }
+  }
+
   /** Utility class to encapsulate data node info and its address. */
   static final class DNAddrPair {
     final DatanodeInfo info;
@@ -1882,7 +2134,7 @@ public synchronized ByteBuffer read(ByteBufferPool bufferPool,
     }
     ByteBuffer buffer = null;
     if (dfsClient.getConf().getShortCircuitConf().isShortCircuitMmapEnabled()) {
-      buffer = tryReadZeroCopy(maxLength, opts);
+      buffer = tryReadZeroCopy(maxLength, opts, false);
     }
     if (buffer != null) {
       return buffer;
@@ -1894,8 +2146,68 @@ public synchronized ByteBuffer read(ByteBufferPool bufferPool,
     return buffer;
   }
 
+  /**
+   * Read up to maxLength bytes of the current block without copying them,
+   * as a read-only view of the local block file mapped into memory.
+   *
+   * Unlike {@link #read(ByteBufferPool, int, EnumSet)}, the data is checked
+   * against its checksums, so the replica needs to be neither cached by the
+   * DataNode nor read with SKIP_CHECKSUMS.  Which parts of the replica have
+   * been verified is kept in its short-circuit shared memory slot, so later
+   * reads of the same data by any stream of this client only map it.
+   *
+   * The buffer must be given back with {@link #releaseBuffer(ByteBuffer)}.
+   *
+   * @param maxLength The maximum number of bytes to read.
+   * @return          The data, or null at the end of the file.
+   * @throws UnsupportedOperationException If the data can't be mapped, e.g.
+   *         because the block is not read through short-circuit reads.
+   */
+  public synchronized ByteBuffer readMapped(int maxLength)
+      throws IOException, UnsupportedOperationException {
+    if (maxLength == 0) {
+      return EMPTY_BUFFER;
+    } else if (maxLength < 0) {
+      throw new IllegalArgumentException("can't read a negative " +
+          "number of bytes.");
+    }
+    if ((blockReader == null) || (blockEnd == -1)) {
+      if (pos >= getFileLength()) {
+        return null;
+      }
+      if ((!seekToBlockSource(pos)) || (blockReader == null)) {
+        throw new IOException("failed to allocate new BlockReader " +
+            "at position " + pos);
+      }
+    }
+    ByteBuffer buffer = null;
+    if (dfsClient.getConf().getShortCircuitConf().isShortCircuitMmapEnabled()) {
+      try {
+        buffer = tryReadZeroCopy(maxLength, null, true);
+      } catch (ChecksumException ce) {
+        DFSClient.LOG.warn("Found Checksum error for "
+            + getCurrentBlock() + " from " + currentNode
+            + " at " + ce.getPos());
+        CorruptedBlocks corruptedBlocks = new CorruptedBlocks();
+        corruptedBlocks.addCorruptedBlock(getCurrentBlock(), currentNode);
+        reportCheckSumFailure(corruptedBlocks,
+            getCurrentBlockLocationsLength(), false);
+        throw ce;
+      }
+    }
+    if (buffer == null) {
+      throw new UnsupportedOperationException("unable to map " + src
+          + " at offset " + pos);
+    }
+    return buffer;
+  }
+
+  /**
+   * @param opts      The options of an enhanced read, if not verified.
+   * @param verified  True to verify the checksums of the mapped data.
+   */
   private synchronized ByteBuffer tryReadZeroCopy(int maxLength,
-      EnumSet<ReadOption> opts) throws IOException {
+      EnumSet<ReadOption> opts, boolean verified) throws IOException {
     // Copy 'pos' and 'blockEnd' to local variables to make it easier for the
     // JVM to optimize this function.
     final long curPos = pos;
@@ -1943,7 +2255,9 @@ private synchronized ByteBuffer tryReadZeroCopy(int maxLength,
           + "limit.  blockPos={}; curPos={}; curEnd={}",
           maxLength, length, blockPos, curPos, curEnd);
     }
-    final ClientMmap clientMmap = blockReader.getClientMmap(opts);
+    final ClientMmap clientMmap = verified ?
+        blockReader.getVerifiedClientMmap(blockPos, length) :
+        blockReader.getClientMmap(opts);
     if (clientMmap == null) {
       DFSClient.LOG.debug("unable to perform a zero-copy read from offset {} of"
           + " {}; BlockReader#getClientMmap returned null.", curPos, src);
@@ -1997,6 +2311,7 @@ public boolean hasCapability(String capability) {
     case StreamCapabilities.UNBUFFER:
     case StreamCapabilities.READBYTEBUFFER:
     case StreamCapabilities.PREADBYTEBUFFER:
+    case StreamCapabilities.VECTOREDIO:
       return true;
     default:
       return false;
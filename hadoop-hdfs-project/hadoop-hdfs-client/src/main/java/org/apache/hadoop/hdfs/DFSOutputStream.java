@@ -59,6 +59,8 @@
 import org.apache.hadoop.hdfs.server.namenode.RetryStartFileException;
 import org.apache.hadoop.hdfs.server.namenode.SafeModeException;
 import org.apache.hadoop.hdfs.util.ByteArrayManager;
+import org.apache.hadoop.io.ByteBufferPool;
+import org.apache.hadoop.io.ElasticByteBufferPool;
 import org.apache.hadoop.io.EnumSetWritable;
 import org.apache.hadoop.io.MultipleIOException;
 import org.apache.hadoop.ipc.RemoteException;
@@ -108,6 +110,10 @@ public class DFSOutputStream extends FSOutputSummer
 
   protected final DFSClient dfsClient;
   protected final ByteArrayManager byteArrayManager;
+  /** Direct packet buffers, shared by all the output streams of the JVM. */
+  private static final ByteBufferPool DIRECT_PACKET_POOL =
+      new ElasticByteBufferPool();
+  private final boolean directPacketBuffers;
   // closed is accessed by different threads under different locks.
   protected volatile boolean closed = false;
 
@@ -132,13 +138,23 @@ public class DFSOutputStream extends FSOutputSummer
   private int writePacketSize;
   private boolean leaseRecovered = false;
 
-  /** Use {@link ByteArrayManager} to create buffer for non-heartbeat packets.*/
+  /**
+   * Use {@link ByteArrayManager} to create buffer for non-heartbeat packets,
+   * or the direct buffer pool if enabled.
+   */
   protected DFSPacket createPacket(int packetSize, int chunksPerPkt,
       long offsetInBlock, long seqno, boolean lastPacketInBlock)
       throws InterruptedIOException {
     final byte[] buf;
     final int bufferSize = PacketHeader.PKT_MAX_HEADER_LEN + packetSize;
 
+    // Empty packets, which end blocks, are not worth a direct buffer.
+    if (directPacketBuffers && packetSize > 0) {
+      return new DFSPacket(DIRECT_PACKET_POOL.getBuffer(true, bufferSize),
+          DIRECT_PACKET_POOL, chunksPerPkt, offsetInBlock, seqno,
+          getChecksumSize(), lastPacketInBlock);
+    }
+
     try {
       buf = byteArrayManager.newByteArray(bufferSize);
     } catch (InterruptedException ie) {
@@ -240,6 +256,7 @@ private DFSOutputStream(DFSClient dfsClient, String src,
           blockSize + ").");
     }
     this.byteArrayManager = dfsClient.getClientContext().getByteArrayManager();
+    this.directPacketBuffers = dfsClient.getConf().isWriteDirectBuffersEnabled();
   }
 
   /**
@@ -915,6 +932,8 @@ protected synchronized void closeImpl() throws IOException {
       } catch (IOException ioe) {
         cleanupAndRethrowIOException(ioe);
       }
+      // The last block may be followed by one allocated ahead of time.
+      getStreamer().abandonPreallocatedBlock();
       completeFile();
     } catch (ClosedChannelException ignored) {
     } catch (IOException ioe) {
@@ -1025,6 +1044,8 @@ protected void completeFile(ExtendedBlock last) throws IOException {
         }
       }
     }
+    // The length and times of the file changed.
+    dfsClient.invalidateMetadataCache(src);
   }
 
   @VisibleForTesting
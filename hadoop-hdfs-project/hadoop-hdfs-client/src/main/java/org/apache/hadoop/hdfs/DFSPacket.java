@@ -22,12 +22,14 @@
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.datatransfer.PacketHeader;
 import org.apache.hadoop.hdfs.util.ByteArrayManager;
+import org.apache.hadoop.io.ByteBufferPool;
 import org.apache.hadoop.tracing.Span;
 import org.apache.hadoop.tracing.SpanContext;
 
@@ -47,6 +49,10 @@ public class DFSPacket {
   private int numChunks; // number of chunks currently in packet
   private final int maxChunks; // max chunks in packet
   private byte[] buf;
+  /** The direct buffer used instead of buf, and the pool it is from. */
+  private ByteBuffer directBuf;
+  private final ByteBufferPool directBufPool;
+  private final int bufLength;
   private final boolean lastPacketInBlock; // is this the last packet in block?
 
   /**
@@ -83,12 +89,40 @@ public class DFSPacket {
    */
   public DFSPacket(byte[] buf, int chunksPerPkt, long offsetInBlock, long seqno,
                    int checksumSize, boolean lastPacketInBlock) {
+    this(buf, null, null, buf.length, chunksPerPkt, offsetInBlock, seqno,
+        checksumSize, lastPacketInBlock);
+  }
+
+  /**
+   * Create a new packet in a direct buffer.
+   *
+   * @param directBuf the buffer storing data and checksums
+   * @param pool the pool the buffer is given back to when it is released
+   * @param chunksPerPkt maximum number of chunks per packet.
+   * @param offsetInBlock offset in bytes into the HDFS block.
+   * @param seqno the sequence number of this packet
+   * @param checksumSize the size of checksum
+   * @param lastPacketInBlock if this is the last packet
+   */
+  DFSPacket(ByteBuffer directBuf, ByteBufferPool pool, int chunksPerPkt,
+      long offsetInBlock, long seqno, int checksumSize,
+      boolean lastPacketInBlock) {
+    this(null, directBuf, pool, directBuf.capacity(), chunksPerPkt,
+        offsetInBlock, seqno, checksumSize, lastPacketInBlock);
+  }
+
+  private DFSPacket(byte[] buf, ByteBuffer directBuf, ByteBufferPool pool,
+      int bufLength, int chunksPerPkt, long offsetInBlock, long seqno,
+      int checksumSize, boolean lastPacketInBlock) {
     this.lastPacketInBlock = lastPacketInBlock;
     this.numChunks = 0;
     this.offsetInBlock = offsetInBlock;
     this.seqno = seqno;
 
     this.buf = buf;
+    this.directBuf = directBuf;
+    this.directBufPool = pool;
+    this.bufLength = bufLength;
 
     checksumStart = PacketHeader.PKT_MAX_HEADER_LEN;
     checksumPos = checksumStart;
@@ -108,10 +142,15 @@ public DFSPacket(byte[] buf, int chunksPerPkt, long offsetInBlock, long seqno,
   synchronized void writeData(byte[] inarray, int off, int len)
       throws ClosedChannelException {
     checkBuffer();
-    if (dataPos + len > buf.length) {
+    if (dataPos + len > bufLength) {
       throw new BufferOverflowException();
     }
-    System.arraycopy(inarray, off, buf, dataPos, len);
+    if (directBuf != null) {
+      directBuf.clear().position(dataPos);
+      directBuf.put(inarray, off, len);
+    } else {
+      System.arraycopy(inarray, off, buf, dataPos, len);
+    }
     dataPos += len;
   }
 
@@ -119,11 +158,19 @@ public synchronized void writeData(ByteBuffer inBuffer, int len)
       throws ClosedChannelException {
     checkBuffer();
     len =  len > inBuffer.remaining() ? inBuffer.remaining() : len;
-    if (dataPos + len > buf.length) {
+    if (dataPos + len > bufLength) {
       throw new BufferOverflowException();
     }
-    for (int i = 0; i < len; i++) {
-      buf[dataPos + i] = inBuffer.get();
+    if (directBuf != null) {
+      final ByteBuffer src = inBuffer.duplicate();
+      src.limit(src.position() + len);
+      directBuf.clear().position(dataPos);
+      directBuf.put(src);
+      inBuffer.position(inBuffer.position() + len);
+    } else {
+      for (int i = 0; i < len; i++) {
+        buf[dataPos + i] = inBuffer.get();
+      }
     }
     dataPos += len;
   }
@@ -145,7 +192,12 @@ public synchronized void writeChecksum(byte[] inarray, int off, int len)
     if (checksumPos + len > dataStart) {
       throw new BufferOverflowException();
     }
-    System.arraycopy(inarray, off, buf, checksumPos, len);
+    if (directBuf != null) {
+      directBuf.clear().position(checksumPos);
+      directBuf.put(inarray, off, len);
+    } else {
+      System.arraycopy(inarray, off, buf, checksumPos, len);
+    }
     checksumPos += len;
   }
 
@@ -155,6 +207,20 @@ public synchronized void writeChecksum(byte[] inarray, int off, int len)
    * @throws IOException
    */
   public synchronized void writeTo(DataOutputStream stm) throws IOException {
+    writeTo(stm, null);
+  }
+
+  /**
+   * Write the full packet, including the header, to the given output stream.
+   * A packet in a direct buffer is written to the channel, if given, after
+   * the output stream is flushed.
+   *
+   * @param stm the output stream to the datanode
+   * @param channel the channel underneath stm, or null if there is none
+   * @throws IOException
+   */
+  synchronized void writeTo(DataOutputStream stm, WritableByteChannel channel)
+      throws IOException {
     checkBuffer();
 
     final int dataLen = dataPos - dataStart;
@@ -167,8 +233,17 @@ public synchronized void writeTo(DataOutputStream stm) throws IOException {
     if (checksumPos != dataStart) {
       // Move the checksum to cover the gap. This can happen for the last
       // packet or during an hflush/hsync call.
-      System.arraycopy(buf, checksumStart, buf,
-          dataStart - checksumLen , checksumLen);
+      if (directBuf != null) {
+        // The two ranges may overlap, so go through the heap.
+        final byte[] checksums = new byte[checksumLen];
+        directBuf.clear().position(checksumStart);
+        directBuf.get(checksums);
+        directBuf.position(dataStart - checksumLen);
+        directBuf.put(checksums);
+      } else {
+        System.arraycopy(buf, checksumStart, buf,
+            dataStart - checksumLen , checksumLen);
+      }
       checksumPos = dataStart;
       checksumStart = checksumPos - checksumLen;
     }
@@ -178,6 +253,12 @@ public synchronized void writeTo(DataOutputStream stm) throws IOException {
     assert headerStart >= 0;
     assert headerStart + header.getSerializedSize() == checksumStart;
 
+    if (directBuf != null) {
+      writeDirectTo(stm, channel, header, headerStart,
+          header.getSerializedSize() + checksumLen + dataLen);
+      return;
+    }
+
     // Copy the header data into the buffer immediately preceding the checksum
     // data.
     System.arraycopy(header.getBytes(), 0, buf, headerStart,
@@ -200,20 +281,65 @@ public synchronized void writeTo(DataOutputStream stm) throws IOException {
     }
   }
 
+  private void writeDirectTo(DataOutputStream stm, WritableByteChannel channel,
+      PacketHeader header, int headerStart, int len) throws IOException {
+    directBuf.clear().position(headerStart);
+    directBuf.put(header.getBytes(), 0, header.getSerializedSize());
+
+    final int last = headerStart + len - 1;
+    // corrupt the data for testing.
+    if (DFSClientFaultInjector.get().corruptPacket()) {
+      directBuf.put(last, (byte) (directBuf.get(last) ^ 0xff));
+    }
+
+    directBuf.limit(headerStart + len).position(headerStart);
+    if (channel != null) {
+      // Anything written to the stream before must go out first.
+      stm.flush();
+      while (directBuf.hasRemaining()) {
+        channel.write(directBuf);
+      }
+    } else {
+      // The stream transforms what it is given, i.e. for SASL, so it needs
+      // the packet on the heap.
+      final byte[] packet = new byte[len];
+      directBuf.get(packet);
+      stm.write(packet);
+    }
+
+    // undo corruption.
+    if (DFSClientFaultInjector.get().uncorruptPacket()) {
+      directBuf.put(last, (byte) (directBuf.get(last) ^ 0xff));
+    }
+  }
+
   private synchronized void checkBuffer() throws ClosedChannelException {
-    if (buf == null) {
+    if (buf == null && directBuf == null) {
       throw new ClosedChannelException();
     }
   }
 
   /**
-   * Release the buffer in this packet to ByteArrayManager.
+   * Release the buffer in this packet to ByteArrayManager, or to the pool
+   * it is from if it is a direct buffer.
    */
   synchronized void releaseBuffer(ByteArrayManager bam) {
+    if (directBuf != null) {
+      directBufPool.putBuffer(directBuf);
+      directBuf = null;
+      return;
+    }
     bam.release(buf);
     buf = null;
   }
 
+  /**
+   * @return true if the packet is built in a direct buffer.
+   */
+  synchronized boolean isDirect() {
+    return directBuf != null;
+  }
+
   /**
    * get the packet's last byte's offset in the block
    *
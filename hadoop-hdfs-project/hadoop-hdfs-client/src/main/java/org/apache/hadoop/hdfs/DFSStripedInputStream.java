@@ -24,6 +24,7 @@
 import org.apache.hadoop.fs.ReadOption;
 import org.apache.hadoop.hdfs.protocol.BlockType;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
@@ -33,6 +34,7 @@
 import org.apache.hadoop.hdfs.StripeReader.ReaderRetryPolicy;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.AlignedStripe;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil.BlockReadStats;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.StripeRange;
 import org.apache.hadoop.io.ByteBufferPool;
 
@@ -42,10 +44,13 @@
 
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
 import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.Uninterruptibles;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -53,7 +58,9 @@
 import java.util.List;
 import java.util.Set;
 import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 
 import static org.apache.hadoop.hdfs.util.IOUtilsClient.updateReadStatistics;
@@ -83,6 +90,19 @@ public class DFSStripedInputStream extends DFSInputStream {
    */
   private StripeRange curStripeRange;
 
+  /**
+   * Set when a read into {@link #curStripeBuf} or {@link #parityBuf} was
+   * given up on while still in flight. The buffers are then dropped instead
+   * of being reused or returned to the pool.
+   */
+  private boolean curBuffersAbandoned = false;
+
+  /** Number of stripes a stateful read fetches ahead of the current one. */
+  private final int readAheadStripes;
+  /** The stripes being fetched ahead, in order, the next one first. */
+  private final ArrayDeque<StripeFetch> readAhead = new ArrayDeque<>();
+  private final long slowCellThresholdMs;
+
   /**
    * When warning the user of a lost block in striping mode, we remember the
    * dead nodes we've logged. All other striping blocks on these nodes can be
@@ -112,6 +132,9 @@ public class DFSStripedInputStream extends DFSInputStream {
         dataBlkNum, parityBlkNum);
     decoder = CodecUtil.createRawDecoder(dfsClient.getConfiguration(),
         ecPolicy.getCodecName(), coderOptions);
+    readAheadStripes = dfsClient.getConf().getStripedReadAheadStripes();
+    slowCellThresholdMs =
+        dfsClient.getConf().getStripedReadSlowCellThresholdMillis();
     DFSClient.LOG.debug("Creating an striped input stream for file {}", src);
   }
 
@@ -120,6 +143,11 @@ private boolean useDirectBuffer() {
   }
 
   private void resetCurStripeBuffer(boolean shouldAllocateBuf) {
+    if (curBuffersAbandoned) {
+      curStripeBuf = null;
+      parityBuf = null;
+      curBuffersAbandoned = false;
+    }
     if (shouldAllocateBuf && curStripeBuf == null) {
       curStripeBuf = BUFFER_POOL.getBuffer(useDirectBuffer(),
           cellSize * dataBlkNum);
@@ -130,6 +158,24 @@ private void resetCurStripeBuffer(boolean shouldAllocateBuf) {
     curStripeRange = new StripeRange(0, 0);
   }
 
+  /**
+   * Return {@link #curStripeBuf} and {@link #parityBuf} to the pool, unless
+   * they may still be written to.
+   */
+  private void releaseCurBuffers() {
+    if (!curBuffersAbandoned) {
+      if (curStripeBuf != null) {
+        BUFFER_POOL.putBuffer(curStripeBuf);
+      }
+      if (parityBuf != null) {
+        BUFFER_POOL.putBuffer(parityBuf);
+      }
+    }
+    curStripeBuf = null;
+    parityBuf = null;
+    curBuffersAbandoned = false;
+  }
+
   protected synchronized ByteBuffer getParityBuffer() {
     if (parityBuf == null) {
       parityBuf = BUFFER_POOL.getBuffer(useDirectBuffer(),
@@ -179,14 +225,7 @@ public synchronized void close() throws IOException {
     try {
       super.close();
     } finally {
-      if (curStripeBuf != null) {
-        BUFFER_POOL.putBuffer(curStripeBuf);
-        curStripeBuf = null;
-      }
-      if (parityBuf != null) {
-        BUFFER_POOL.putBuffer(parityBuf);
-        parityBuf = null;
-      }
+      releaseCurBuffers();
       if (decoder != null) {
         decoder.release();
         decoder = null;
@@ -201,6 +240,7 @@ public synchronized void close() throws IOException {
    */
   @Override
   protected void closeCurrentBlockReaders() {
+    discardReadAhead();
     resetCurStripeBuffer(false);
     if (blockReaders ==  null || blockReaders.length == 0) {
       return;
@@ -319,13 +359,108 @@ private void readOneStripe(CorruptedBlocks corruptedBlocks)
       // Parse group to get chosen DN location
       StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy, blks,
           blockReaders, corruptedBlocks, decoder, this);
-      sreader.readStripe();
+      sreader.setSlowCellThreshold(slowCellThresholdMs);
+      try {
+        sreader.readStripe();
+      } finally {
+        curBuffersAbandoned |= sreader.hasAbandonedReads();
+      }
     }
     curStripeBuf.position(stripeBufOffset);
     curStripeBuf.limit(stripeLimit);
     curStripeRange = stripeRange;
   }
 
+  /**
+   * Take the stripe covering the current position from the read-ahead
+   * pipeline into {@link #curStripeBuf}, after filling the pipeline up to
+   * {@link #readAheadStripes} stripes past it. The pipeline does not go
+   * past the current block group.
+   */
+  private void readStripeWithReadAhead(CorruptedBlocks corruptedBlocks)
+      throws IOException {
+    final long offsetInBlockGroup = getOffsetInBlockGroup();
+    final long stripeLen = (long) cellSize * dataBlkNum;
+    final long stripeStart = offsetInBlockGroup - offsetInBlockGroup % stripeLen;
+    if (!readAhead.isEmpty()
+        && readAhead.peekFirst().offsetInBlockGroup != stripeStart) {
+      discardReadAhead();
+    }
+    final long blockGroupSize = currentLocatedBlock.getBlockSize();
+    long next = readAhead.isEmpty() ? stripeStart
+        : readAhead.peekLast().offsetInBlockGroup + stripeLen;
+    while (readAhead.size() <= readAheadStripes && next < blockGroupSize) {
+      scheduleFetch(next, (int) Math.min(blockGroupSize - next, stripeLen));
+      next += stripeLen;
+    }
+
+    final StripeFetch fetch = readAhead.peekFirst();
+    Throwable failure = null;
+    try {
+      fetch.done.get();
+    } catch (InterruptedException e) {
+      close();
+      throw new InterruptedIOException("Read request interrupted");
+    } catch (ExecutionException e) {
+      failure = e.getCause();
+    }
+    readAhead.pollFirst();
+    fetch.finish(corruptedBlocks);
+    if (failure != null) {
+      fetch.release();
+      close();
+      throw failure instanceof IOException ? (IOException) failure
+          : new IOException(failure);
+    }
+
+    releaseCurBuffers();
+    curStripeBuf = fetch.buf;
+    curBuffersAbandoned = fetch.abandonedReads;
+    fetch.releaseParity();
+    curStripeBuf.limit(fetch.length);
+    curStripeBuf.position((int) (offsetInBlockGroup - stripeStart));
+    curStripeRange = new StripeRange(stripeStart, fetch.length);
+  }
+
+  private void scheduleFetch(long offsetInBlockGroup, int length) {
+    final StripeFetch fetch = new StripeFetch(
+        (LocatedStripedBlock) currentLocatedBlock, offsetInBlockGroup, length);
+    final StripeFetch previous = readAhead.peekLast();
+    readAhead.addLast(fetch);
+    final ThreadPoolExecutor pool = getStripedReadsThreadPool();
+    if (previous == null) {
+      pool.execute(fetch);
+    } else {
+      // The stripes share the block readers, so one is read after the other.
+      previous.done.whenComplete((v, t) -> {
+        if (t != null) {
+          fetch.done.completeExceptionally(t);
+        } else {
+          pool.execute(fetch);
+        }
+      });
+    }
+  }
+
+  /**
+   * Stop reading ahead. The stripes being fetched are waited for since they
+   * use the block readers.
+   */
+  private void discardReadAhead() {
+    for (StripeFetch fetch : readAhead) {
+      fetch.cancelled = true;
+    }
+    StripeFetch fetch;
+    while ((fetch = readAhead.pollFirst()) != null) {
+      try {
+        Uninterruptibles.getUninterruptibly(fetch.done);
+      } catch (ExecutionException e) {
+        DFSClient.LOG.debug("Discarded read-ahead of {} failed", src, e);
+      }
+      fetch.release();
+    }
+  }
+
   /**
    * Update read statistics. Note that this has to be done on the thread that
    * initiates the read, rather than inside each async thread, for
@@ -414,7 +549,11 @@ protected synchronized int readWithStrategy(ReaderStrategy strategy)
         int result = 0;
         while (result < realLen) {
           if (!curStripeRange.include(getOffsetInBlockGroup())) {
-            readOneStripe(corruptedBlocks);
+            if (readAheadStripes > 0) {
+              readStripeWithReadAhead(corruptedBlocks);
+            } else {
+              readOneStripe(corruptedBlocks);
+            }
           }
           int ret = copyToTargetBuf(strategy, realLen - result);
           result += ret;
@@ -554,6 +693,12 @@ public synchronized ByteBuffer read(ByteBufferPool bufferPool,
         "Not support enhanced byte buffer access.");
   }
 
+  @Override
+  public synchronized ByteBuffer readMapped(int maxLength) {
+    throw new UnsupportedOperationException(
+        "Not support enhanced byte buffer access.");
+  }
+
   @Override
   public synchronized void releaseBuffer(ByteBuffer buffer) {
     throw new UnsupportedOperationException(
@@ -563,13 +708,128 @@ public synchronized void releaseBuffer(ByteBuffer buffer) {
   @Override
   public synchronized void unbuffer() {
     super.unbuffer();
-    if (curStripeBuf != null) {
-      BUFFER_POOL.putBuffer(curStripeBuf);
-      curStripeBuf = null;
+    releaseCurBuffers();
+  }
+
+  /**
+   * A stripe of the current block group that is read, and decoded if
+   * needed, on the striped read thread pool ahead of the position. Each
+   * stripe has its own buffers, so the application is served from one while
+   * the next ones are fetched. Statistics and corrupted blocks are collected
+   * here and handed over on the reading thread by {@link #finish}.
+   */
+  private final class StripeFetch implements Runnable {
+    private final LocatedStripedBlock blockGroup;
+    private final long offsetInBlockGroup;
+    private final int length;
+    private final ByteBuffer buf;
+    private ByteBuffer parity;
+    private final CorruptedBlocks fetchCorruptedBlocks = new CorruptedBlocks();
+    private final List<Runnable> deferredStats = new ArrayList<>();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+    private boolean abandonedReads = false;
+
+    StripeFetch(LocatedStripedBlock blockGroup, long offsetInBlockGroup,
+        int length) {
+      this.blockGroup = blockGroup;
+      this.offsetInBlockGroup = offsetInBlockGroup;
+      this.length = length;
+      this.buf = BUFFER_POOL.getBuffer(useDirectBuffer(),
+          cellSize * dataBlkNum);
+      this.buf.clear();
     }
-    if (parityBuf != null) {
-      BUFFER_POOL.putBuffer(parityBuf);
-      parityBuf = null;
+
+    @Override
+    public void run() {
+      try {
+        if (!cancelled) {
+          read();
+        }
+        done.complete(null);
+      } catch (Throwable t) {
+        done.completeExceptionally(t);
+      }
+    }
+
+    private void read() throws IOException {
+      AlignedStripe[] stripes = StripedBlockUtil.divideOneStripe(ecPolicy,
+          cellSize, blockGroup, offsetInBlockGroup,
+          offsetInBlockGroup + length - 1, buf);
+      final LocatedBlock[] blks = StripedBlockUtil.parseStripedBlockGroup(
+          blockGroup, cellSize, dataBlkNum, parityBlkNum);
+      for (AlignedStripe stripe : stripes) {
+        StripeReader sreader = new StatefulStripeReader(stripe, ecPolicy,
+            blks, blockReaders, fetchCorruptedBlocks, decoder,
+            DFSStripedInputStream.this) {
+          @Override
+          ByteBuffer getStripeBuffer() {
+            return buf.duplicate();
+          }
+
+          @Override
+          ByteBuffer getParityBuffer() {
+            if (parity == null) {
+              parity = BUFFER_POOL.getBuffer(useDirectBuffer(),
+                  cellSize * parityBlkNum);
+            }
+            parity.clear();
+            return parity.duplicate();
+          }
+
+          @Override
+          void handleReadFailure() {
+            // The stream is closed by the reader waiting for this stripe.
+          }
+
+          @Override
+          void updateReadStats(BlockReadStats stats, long readTimeMS) {
+            deferredStats.add(() ->
+                DFSStripedInputStream.this.updateReadStats(stats, readTimeMS));
+          }
+        };
+        sreader.setSlowCellThreshold(slowCellThresholdMs);
+        try {
+          sreader.readStripe();
+        } finally {
+          abandonedReads |= sreader.hasAbandonedReads();
+        }
+      }
+    }
+
+    /**
+     * Update the statistics and hand over the corrupted blocks of the fetch.
+     * Called on the reading thread once the fetch is done.
+     */
+    void finish(CorruptedBlocks corruptedBlocks) {
+      for (Runnable update : deferredStats) {
+        update.run();
+      }
+      deferredStats.clear();
+      Map<ExtendedBlock, Set<DatanodeInfo>> corrupted =
+          fetchCorruptedBlocks.getCorruptionMap();
+      if (corrupted != null) {
+        for (Map.Entry<ExtendedBlock, Set<DatanodeInfo>> e
+            : corrupted.entrySet()) {
+          for (DatanodeInfo dn : e.getValue()) {
+            corruptedBlocks.addCorruptedBlock(e.getKey(), dn);
+          }
+        }
+      }
+    }
+
+    void releaseParity() {
+      if (parity != null && !abandonedReads) {
+        BUFFER_POOL.putBuffer(parity);
+      }
+      parity = null;
+    }
+
+    void release() {
+      if (!abandonedReads) {
+        BUFFER_POOL.putBuffer(buf);
+      }
+      releaseParity();
     }
   }
 
@@ -51,8 +51,10 @@
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -63,6 +65,9 @@
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
@@ -71,6 +76,7 @@
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.Write.RECOVER_LEASE_ON_CLOSE_EXCEPTION_DEFAULT;
@@ -266,10 +272,58 @@ private void flipDataBuffers() {
     }
   }
 
+  /** A full stripe whose parity is computed on the encode pool. */
+  private final class EncodeTask implements Runnable {
+    private final CellBuffers buffers;
+    private final DataChecksum sum;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    EncodeTask(CellBuffers buffers) {
+      this.buffers = buffers;
+      // DataChecksum keeps state, so each task uses its own.
+      final DataChecksum streamSum = getDataChecksum();
+      this.sum = DataChecksum.newDataChecksum(streamSum.getChecksumType(),
+          streamSum.getBytesPerChecksum());
+    }
+
+    @Override
+    public void run() {
+      RawErasureEncoder taskEncoder = null;
+      try {
+        taskEncoder = takeEncoder();
+        final ByteBuffer[] cells = buffers.getBuffers();
+        encode(taskEncoder, numDataBlocks, cells);
+        for (int i = numDataBlocks; i < numAllBlocks; i++) {
+          calculateChecksums(sum, cells[i], buffers.getChecksumArray(i));
+        }
+        done.complete(null);
+      } catch (Throwable t) {
+        done.completeExceptionally(t);
+      } finally {
+        if (taskEncoder != null) {
+          returnEncoder(taskEncoder);
+        }
+      }
+    }
+  }
+
   private final Coordinator coordinator;
-  private final CellBuffers cellBuffers;
+  private CellBuffers cellBuffers;
   private final ErasureCodingPolicy ecPolicy;
+  private final ErasureCoderOptions coderOptions;
   private final RawErasureEncoder encoder;
+  /** Null if the stripes are encoded on the writing thread. */
+  private final ThreadPoolExecutor encodePool;
+  private final int maxStripesInFlight;
+  /** The full stripes being encoded on the encode pool, oldest first. */
+  private final ArrayDeque<EncodeTask> encodesInFlight = new ArrayDeque<>();
+  /** Cell buffers whose parity has been written, ready for reuse. */
+  private final ArrayDeque<CellBuffers> freeCellBuffers = new ArrayDeque<>();
+  /** Encoders not used by an encode task, guarded by itself. */
+  private final ArrayDeque<RawErasureEncoder> idleEncoders =
+      new ArrayDeque<>();
+  /** Encoders created for concurrent encode tasks, guarded by idleEncoders. */
+  private final List<RawErasureEncoder> extraEncoders = new ArrayList<>();
   private final List<StripedDataStreamer> streamers;
   private final DFSPacket[] currentPackets; // current Packet of each streamer
 
@@ -307,10 +361,13 @@ private void flipDataBuffers() {
     flushAllExecutorCompletionService = new
         ExecutorCompletionService<>(flushAllExecutor);
 
-    ErasureCoderOptions coderOptions = new ErasureCoderOptions(
-        numDataBlocks, numParityBlocks);
+    coderOptions = new ErasureCoderOptions(numDataBlocks, numParityBlocks);
     encoder = CodecUtil.createRawEncoder(dfsClient.getConfiguration(),
         ecPolicy.getCodecName(), coderOptions);
+    idleEncoders.add(encoder);
+    encodePool = dfsClient.getStripedEncodeThreadPool();
+    maxStripesInFlight =
+        dfsClient.getConf().getStripedWriteMaxStripesInFlight();
 
     coordinator = new Coordinator(numAllBlocks);
     cellBuffers = new CellBuffers(numParityBlocks);
@@ -384,11 +441,42 @@ private static void encode(RawErasureEncoder encoder, int numData,
     encoder.encode(dataBuffers, parityBuffers);
   }
 
+  private RawErasureEncoder takeEncoder() {
+    synchronized (idleEncoders) {
+      RawErasureEncoder idle = idleEncoders.poll();
+      if (idle != null) {
+        return idle;
+      }
+      RawErasureEncoder created = CodecUtil.createRawEncoder(
+          dfsClient.getConfiguration(), ecPolicy.getCodecName(), coderOptions);
+      extraEncoders.add(created);
+      return created;
+    }
+  }
+
+  private void returnEncoder(RawErasureEncoder taskEncoder) {
+    synchronized (idleEncoders) {
+      idleEncoders.add(taskEncoder);
+    }
+  }
+
+  private void releaseEncoders() {
+    encoder.release();
+    synchronized (idleEncoders) {
+      for (RawErasureEncoder e : extraEncoders) {
+        e.release();
+      }
+      extraEncoders.clear();
+      idleEncoders.clear();
+    }
+  }
+
   /**
    * check all the existing StripedDataStreamer and find newly failed streamers.
    * @return The newly failed streamers.
    * @throws IOException if less than {@link #numDataBlocks} streamers are still
-   *                     healthy.
+   *                     healthy, or the block group can't be decoded from
+   *                     the blocks of the healthy streamers.
    */
   private Set<StripedDataStreamer> checkStreamers() throws IOException {
     Set<StripedDataStreamer> newFailed = new HashSet<>();
@@ -411,6 +499,22 @@ private Set<StripedDataStreamer> checkStreamers() throws IOException {
           + failCount + " > the number of parity blocks = "
           + (numAllBlocks - numDataBlocks));
     }
+    if (StripedBlockUtil.isLocallyRepairable(ecPolicy) && failCount > 0) {
+      // A Locally Repairable Code can't be decoded from every numDataBlocks
+      // internal blocks, check the blocks still being written.
+      final BitSet healthy = new BitSet(numAllBlocks);
+      for (StripedDataStreamer s : streamers) {
+        if (!failedStreamers.contains(s) && !newFailed.contains(s)) {
+          healthy.set(s.getIndex());
+        }
+      }
+      if (!StripedBlockUtil.isDecodable(ecPolicy, healthy)) {
+        closeAllStreamers();
+        throw new IOException("Failed: the block group can't be decoded from"
+            + " the remaining internal blocks " + healthy + " of "
+            + ecPolicy.getName());
+      }
+    }
     return newFailed;
   }
 
@@ -666,6 +770,12 @@ private void checkStreamerFailures(boolean isNeedFlushAllPackets)
     if (newFailed.size() == 0) {
       return;
     }
+    if (!encodesInFlight.isEmpty()) {
+      // the parity streamers must have all the stripes before the pipeline
+      // is updated
+      writeAllEncodedParity();
+      newFailed = checkStreamers();
+    }
 
     if (isNeedFlushAllPackets) {
       // for healthy streamers, wait till all of them have fetched the new block
@@ -1136,6 +1246,10 @@ void writeParityCells() throws IOException {
     if (!checkAnyParityStreamerIsHealthy()) {
       return;
     }
+    if (encodePool != null) {
+      encodeInBackground();
+      return;
+    }
     //encode the data cells
     encode(encoder, numDataBlocks, buffers);
     for (int i = numDataBlocks; i < numAllBlocks; i++) {
@@ -1144,6 +1258,73 @@ void writeParityCells() throws IOException {
     cellBuffers.clear();
   }
 
+  /**
+   * Hand the full stripe in {@link #cellBuffers} to the encode pool, and go
+   * on with another set of buffers. The parity of the stripes is written in
+   * order once they are encoded, at the latest when
+   * {@link #maxStripesInFlight} stripes are in flight.
+   */
+  private void encodeInBackground() throws IOException {
+    while (encodesInFlight.size() >= maxStripesInFlight) {
+      writeOldestEncodedParity();
+    }
+    final EncodeTask task = new EncodeTask(cellBuffers);
+    encodesInFlight.addLast(task);
+    encodePool.execute(task);
+    cellBuffers = freeCellBuffers.isEmpty() ?
+        new CellBuffers(numAllBlocks - numDataBlocks) :
+        freeCellBuffers.poll();
+    // Keep the parity streamers busy with what is encoded already.
+    while (!encodesInFlight.isEmpty()
+        && encodesInFlight.peekFirst().done.isDone()) {
+      writeOldestEncodedParity();
+    }
+  }
+
+  private void writeOldestEncodedParity() throws IOException {
+    final EncodeTask task = encodesInFlight.peekFirst();
+    try {
+      task.done.get();
+    } catch (InterruptedException ie) {
+      throw DFSUtilClient.toInterruptedIOException(
+          "Interrupted while waiting for a stripe to be encoded", ie);
+    } catch (ExecutionException ee) {
+      throw new IOException("Failed to encode stripe", ee.getCause());
+    }
+    encodesInFlight.pollFirst();
+    final ByteBuffer[] buffers = task.buffers.getBuffers();
+    for (int i = numDataBlocks; i < numAllBlocks; i++) {
+      writeParity(i, buffers[i], task.buffers.getChecksumArray(i), true);
+    }
+    task.buffers.clear();
+    freeCellBuffers.add(task.buffers);
+  }
+
+  /**
+   * Write the parity of all the stripes being encoded, e.g. before the
+   * streamers are flushed or their failures handled.
+   */
+  private void writeAllEncodedParity() throws IOException {
+    if (encodesInFlight.isEmpty()) {
+      return;
+    }
+    final int current = getCurrentIndex();
+    while (!encodesInFlight.isEmpty()) {
+      writeOldestEncodedParity();
+    }
+    setCurrentStreamer(current);
+  }
+
+  /** Wait for the encode tasks, which use the buffers and encoders. */
+  private void waitForEncodes() {
+    for (EncodeTask task : encodesInFlight) {
+      try {
+        task.done.join();
+      } catch (CompletionException | CancellationException ignored) {
+      }
+    }
+  }
+
   private boolean checkAnyParityStreamerIsHealthy() {
     for (int i = numDataBlocks; i < numAllBlocks; i++) {
       if (streamers.get(i).isHealthy()) {
@@ -1159,6 +1340,11 @@ private boolean checkAnyParityStreamerIsHealthy() {
 
   void writeParity(int index, ByteBuffer buffer, byte[] checksumBuf)
       throws IOException {
+    writeParity(index, buffer, checksumBuf, false);
+  }
+
+  private void writeParity(int index, ByteBuffer buffer, byte[] checksumBuf,
+      boolean checksumsCalculated) throws IOException {
     final StripedDataStreamer current = setCurrentStreamer(index);
     final int len = buffer.limit();
 
@@ -1166,14 +1352,8 @@ void writeParity(int index, ByteBuffer buffer, byte[] checksumBuf)
     if (current.isHealthy()) {
       try {
         DataChecksum sum = getDataChecksum();
-        if (buffer.isDirect()) {
-          ByteBuffer directCheckSumBuf =
-              BUFFER_POOL.getBuffer(true, checksumBuf.length);
-          sum.calculateChunkedSums(buffer, directCheckSumBuf);
-          directCheckSumBuf.get(checksumBuf);
-          BUFFER_POOL.putBuffer(directCheckSumBuf);
-        } else {
-          sum.calculateChunkedSums(buffer.array(), 0, len, checksumBuf, 0);
+        if (!checksumsCalculated) {
+          calculateChecksums(sum, buffer, checksumBuf);
         }
 
         for (int i = 0; i < len; i += sum.getBytesPerChecksum()) {
@@ -1189,6 +1369,20 @@ void writeParity(int index, ByteBuffer buffer, byte[] checksumBuf)
     }
   }
 
+  private static void calculateChecksums(DataChecksum sum, ByteBuffer buffer,
+      byte[] checksumBuf) {
+    if (buffer.isDirect()) {
+      ByteBuffer directCheckSumBuf =
+          BUFFER_POOL.getBuffer(true, checksumBuf.length);
+      sum.calculateChunkedSums(buffer, directCheckSumBuf);
+      directCheckSumBuf.get(checksumBuf);
+      BUFFER_POOL.putBuffer(directCheckSumBuf);
+    } else {
+      sum.calculateChunkedSums(buffer.array(), 0, buffer.limit(),
+          checksumBuf, 0);
+    }
+  }
+
   @Override
   void setClosed() {
     super.setClosed();
@@ -1196,6 +1390,15 @@ void setClosed() {
       getStripedDataStreamer(i).release();
     }
     cellBuffers.release();
+    for (CellBuffers free : freeCellBuffers) {
+      free.release();
+    }
+    freeCellBuffers.clear();
+    // The buffers of stripes still being encoded are released once done.
+    for (EncodeTask task : encodesInFlight) {
+      task.done.whenComplete((v, t) -> task.buffers.release());
+    }
+    encodesInFlight.clear();
   }
 
   @Override
@@ -1236,6 +1439,7 @@ protected synchronized void closeImpl() throws IOException {
         if (generateParityCellsForLastStripe()) {
           writeParityCells();
         }
+        writeAllEncodedParity();
         enqueueAllCurrentPackets();
 
         // flush all the data packets
@@ -1279,10 +1483,11 @@ protected synchronized void closeImpl() throws IOException {
       recoverLease(recoverLeaseOnCloseException);
       throw ioe;
     } finally {
+      waitForEncodes();
       setClosed();
       // shutdown executor of flushAll tasks
       flushAllExecutor.shutdownNow();
-      encoder.release();
+      releaseEncoders();
     }
   }
 
@@ -1303,6 +1508,7 @@ void enqueueAllCurrentPackets() throws IOException {
   }
 
   void flushAllInternals() throws IOException {
+    writeAllEncodedParity();
     Map<Future<Void>, Integer> flushAllFuturesMap = new HashMap<>();
     Future<Void> future = null;
     int current = getCurrentIndex();
@@ -0,0 +1,316 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.HedgedRead;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.util.Preconditions;
+import org.apache.hadoop.util.Timer;
+
+/**
+ * Keep a decaying latency histogram of the reads from each datanode, and
+ * share it among all the DFSInputStreams in the same client.
+ *
+ * The histograms drive two decisions: the hedged read threshold for a
+ * datanode is its recent latency percentile instead of a fixed value, and
+ * datanodes whose percentile is far above that of their peers are moved to
+ * the back of the read order. Counts are halved every decay interval, so a
+ * node that recovers, or that is no longer read from because it was slow,
+ * drops below the sample minimum and is judged afresh. The histograms of
+ * the nodes no longer read from at all are dropped.
+ *
+ * Latencies are normalized to reads of {@link #REFERENCE_READ_BYTES}, so
+ * that the small and large reads from a node can share a histogram: the
+ * latency of a larger read is divided by how many times larger it is, and
+ * the threshold for a larger read is multiplied by it.
+ */
+@InterfaceAudience.Private
+public class DataNodeLatencyTracker {
+  /**
+   * Bucket i holds latencies up to 2^(i/2) ms, which covers up to ~12
+   * minutes with a relative error of at most 41%.
+   */
+  @VisibleForTesting
+  static final int NUM_BUCKETS = 40;
+
+  private static final long[] BUCKET_BOUNDS = new long[NUM_BUCKETS];
+  static {
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      BUCKET_BOUNDS[i] = (long) Math.ceil(Math.pow(2, i / 2.0));
+    }
+  }
+
+  /** Fewer samples than this are not enough to judge a datanode. */
+  @VisibleForTesting
+  static final double MIN_SAMPLES = 20;
+
+  /** How long the median latency across datanodes is reused. */
+  private static final long MEDIAN_REFRESH_MS = 1000;
+
+  /**
+   * The size of the reads the latencies are normalized to. Up to it the
+   * setup of the block reader dominates, beyond it the transfer does.
+   */
+  @VisibleForTesting
+  static final long REFERENCE_READ_BYTES = 64 * 1024;
+
+  /**
+   * The number of decay intervals without reads after which the histogram
+   * of a datanode is dropped, its counts have decayed to nothing by then.
+   */
+  @VisibleForTesting
+  static final int IDLE_DECAY_INTERVALS = 10;
+
+  private final Map<DatanodeInfo, LatencySketch> sketches =
+      new ConcurrentHashMap<>();
+  private final Timer timer;
+  private final double percentile;
+  private final long minThresholdMs;
+  private final long decayIntervalMs;
+  private final double slowNodeFactor;
+
+  private volatile boolean medianComputed = false;
+  private volatile long medianLatencyMs = -1;
+  private volatile long medianComputedMs;
+  private volatile long lastExpiryMs;
+
+  public DataNodeLatencyTracker(Configuration conf) {
+    this(conf, new Timer());
+  }
+
+  @VisibleForTesting
+  DataNodeLatencyTracker(Configuration conf, Timer timer) {
+    this.timer = timer;
+    this.percentile = conf.getDouble(HedgedRead.ADAPTIVE_PERCENTILE_KEY,
+        HedgedRead.ADAPTIVE_PERCENTILE_DEFAULT);
+    this.minThresholdMs = conf.getLong(
+        HedgedRead.ADAPTIVE_MIN_THRESHOLD_MILLIS_KEY,
+        HedgedRead.ADAPTIVE_MIN_THRESHOLD_MILLIS_DEFAULT);
+    this.decayIntervalMs = conf.getLong(
+        HedgedRead.ADAPTIVE_DECAY_INTERVAL_MILLIS_KEY,
+        HedgedRead.ADAPTIVE_DECAY_INTERVAL_MILLIS_DEFAULT);
+    this.slowNodeFactor = conf.getDouble(
+        HedgedRead.ADAPTIVE_SLOW_NODE_FACTOR_KEY,
+        HedgedRead.ADAPTIVE_SLOW_NODE_FACTOR_DEFAULT);
+    Preconditions.checkArgument(percentile > 0 && percentile < 100,
+        HedgedRead.ADAPTIVE_PERCENTILE_KEY + " must be in (0, 100)");
+    Preconditions.checkArgument(decayIntervalMs > 0,
+        HedgedRead.ADAPTIVE_DECAY_INTERVAL_MILLIS_KEY
+            + " must be greater than 0");
+    this.lastExpiryMs = timer.monotonicNow();
+  }
+
+  /**
+   * Record the time a read of the reference size from the datanode took.
+   */
+  @VisibleForTesting
+  void addLatency(DatanodeInfo datanode, long latencyMs) {
+    addLatency(datanode, latencyMs, REFERENCE_READ_BYTES);
+  }
+
+  /**
+   * Record the time a read from the datanode took, or, for a read that was
+   * given up on, how long it had run, which its latency is at least.
+   * @param bytes the length of the read.
+   */
+  public void addLatency(DatanodeInfo datanode, long latencyMs, long bytes) {
+    final long now = timer.monotonicNow();
+    sketches.computeIfAbsent(datanode, k -> new LatencySketch())
+        .add(latencyMs * REFERENCE_READ_BYTES
+            / Math.max(bytes, REFERENCE_READ_BYTES), now, decayIntervalMs);
+    expireIdleSketches(now);
+  }
+
+  /**
+   * Drop the histograms of the datanodes not read from for a while, at most
+   * once per decay interval.
+   */
+  private void expireIdleSketches(long now) {
+    if (now - lastExpiryMs < decayIntervalMs) {
+      return;
+    }
+    lastExpiryMs = now;
+    final long idleMs = IDLE_DECAY_INTERVALS * decayIntervalMs;
+    sketches.values().removeIf(sketch -> sketch.isIdle(now, idleMs));
+  }
+
+  @VisibleForTesting
+  int getNumDataNodes() {
+    return sketches.size();
+  }
+
+  /**
+   * @return the configured percentile of the recent read latency of the
+   *         datanode in ms, for reads of the reference size, or -1 if there
+   *         are too few samples.
+   */
+  public long getLatencyPercentile(DatanodeInfo datanode) {
+    LatencySketch sketch = sketches.get(datanode);
+    if (sketch == null) {
+      return -1;
+    }
+    return sketch.percentile(percentile, timer.monotonicNow(),
+        decayIntervalMs);
+  }
+
+  /**
+   * @return the hedged read threshold for a read of the reference size.
+   */
+  @VisibleForTesting
+  long getHedgedReadThresholdMillis(DatanodeInfo datanode,
+      long maxThresholdMs) {
+    return getHedgedReadThresholdMillis(datanode, REFERENCE_READ_BYTES,
+        maxThresholdMs);
+  }
+
+  /**
+   * @param datanode the datanode being read from.
+   * @param bytes the length of the read.
+   * @param maxThresholdMs the static hedged read threshold, which is used
+   *                       until the datanode has enough samples and caps
+   *                       the adaptive threshold.
+   * @return how long to wait for a read from the datanode before starting
+   *         a hedged read.
+   */
+  public long getHedgedReadThresholdMillis(DatanodeInfo datanode,
+      long bytes, long maxThresholdMs) {
+    long latency = getLatencyPercentile(datanode);
+    if (latency < 0) {
+      return maxThresholdMs;
+    }
+    latency = latency * Math.max(bytes, REFERENCE_READ_BYTES)
+        / REFERENCE_READ_BYTES;
+    return Math.min(maxThresholdMs, Math.max(minThresholdMs, latency));
+  }
+
+  /**
+   * @return true if the recent latency of the datanode is more than the
+   *         slow node factor times the median across datanodes.
+   */
+  public boolean isSlow(DatanodeInfo datanode) {
+    long latency = getLatencyPercentile(datanode);
+    if (latency < 0) {
+      return false;
+    }
+    long median = getMedianLatency();
+    return median >= 0 && latency > slowNodeFactor * Math.max(median, 1);
+  }
+
+  private long getMedianLatency() {
+    long now = timer.monotonicNow();
+    if (medianComputed && now - medianComputedMs < MEDIAN_REFRESH_MS) {
+      return medianLatencyMs;
+    }
+    List<Long> latencies = new ArrayList<>(sketches.size());
+    for (LatencySketch sketch : sketches.values()) {
+      long latency = sketch.percentile(percentile, now, decayIntervalMs);
+      if (latency >= 0) {
+        latencies.add(latency);
+      }
+    }
+    long median = -1;
+    // A single datanode has no peers to be compared with.
+    if (latencies.size() > 1) {
+      Collections.sort(latencies);
+      median = latencies.get(latencies.size() / 2);
+    }
+    medianLatencyMs = median;
+    medianComputedMs = now;
+    medianComputed = true;
+    return median;
+  }
+
+  @VisibleForTesting
+  static int bucketOf(long latencyMs) {
+    for (int i = 0; i < NUM_BUCKETS - 1; i++) {
+      if (latencyMs <= BUCKET_BOUNDS[i]) {
+        return i;
+      }
+    }
+    return NUM_BUCKETS - 1;
+  }
+
+  @VisibleForTesting
+  static long bucketUpperBound(int bucket) {
+    return BUCKET_BOUNDS[bucket];
+  }
+
+  /**
+   * A log-scale histogram whose counts decay by half every interval.
+   */
+  private static final class LatencySketch {
+    private final double[] counts = new double[NUM_BUCKETS];
+    private double total;
+    private long lastDecayMs = Long.MIN_VALUE;
+    private long lastAddMs;
+
+    synchronized void add(long latencyMs, long now, long decayIntervalMs) {
+      decay(now, decayIntervalMs);
+      counts[bucketOf(latencyMs)]++;
+      total++;
+      lastAddMs = now;
+    }
+
+    synchronized boolean isIdle(long now, long idleMs) {
+      return now - lastAddMs > idleMs;
+    }
+
+    synchronized long percentile(double percentile, long now,
+        long decayIntervalMs) {
+      decay(now, decayIntervalMs);
+      if (total < MIN_SAMPLES) {
+        return -1;
+      }
+      double target = total * percentile / 100;
+      double seen = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        seen += counts[i];
+        if (seen >= target) {
+          return bucketUpperBound(i);
+        }
+      }
+      return bucketUpperBound(NUM_BUCKETS - 1);
+    }
+
+    private void decay(long now, long decayIntervalMs) {
+      if (lastDecayMs == Long.MIN_VALUE) {
+        lastDecayMs = now;
+        return;
+      }
+      long periods = (now - lastDecayMs) / decayIntervalMs;
+      if (periods <= 0) {
+        return;
+      }
+      double factor = Math.pow(0.5, Math.min(periods, 64));
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+        counts[i] *= factor;
+      }
+      total *= factor;
+      lastDecayMs += periods * decayIntervalMs;
+    }
+  }
+}
@@ -30,6 +30,7 @@
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -39,6 +40,11 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -237,6 +243,17 @@ public synchronized String toString() {
     }
   }
 
+  /** A block allocated ahead of time, see {@link #preallocateNextBlock}. */
+  private static final class PreallocatedBlock {
+    private final LocatedBlock block;
+    private final Socket socket;
+
+    PreallocatedBlock(LocatedBlock block, Socket socket) {
+      this.block = block;
+      this.socket = socket;
+    }
+  }
+
   /**
    * Create a socket for a write pipeline
    *
@@ -476,6 +493,8 @@ boolean doWaitForRestart() {
   protected final BlockToWrite block; // its length is number of bytes acked
   protected Token<BlockTokenIdentifier> accessToken;
   private DataOutputStream blockStream;
+  /** The socket channel underneath blockStream, if nothing is in between. */
+  private WritableByteChannel blockChannel;
   private DataInputStream blockReplyStream;
   private ResponseProcessor response = null;
   private final Object nodesLock = new Object();
@@ -540,6 +559,16 @@ boolean doWaitForRestart() {
   private final String[] favoredNodes;
   private final EnumSet<AddBlockFlag> addBlockFlags;
 
+  /**
+   * The next block, allocated while the current one is being closed, and
+   * the socket to the first datanode of its pipeline.
+   */
+  private final AtomicReference<CompletableFuture<PreallocatedBlock>>
+      preallocatedBlock = new AtomicReference<>();
+  /** Only accessed by the streamer thread. */
+  private Socket preconnectedSocket;
+  private DatanodeInfo preconnectedNode;
+
   private DataStreamer(HdfsFileStatus stat, ExtendedBlock block,
                        DFSClient dfsClient, String src,
                        Progressable progress, DataChecksum checksum,
@@ -772,6 +801,7 @@ public void run() {
           if(shouldStop()) {
             continue;
           }
+          preallocateNextBlock(one);
           stage = BlockConstructionStage.PIPELINE_CLOSE;
         }
 
@@ -893,7 +923,7 @@ private void waitForAllAcks() throws IOException {
   private void sendPacket(DFSPacket packet) throws IOException {
     // write out data to remote datanode
     try {
-      packet.writeTo(blockStream);
+      packet.writeTo(blockStream, blockChannel);
       blockStream.flush();
     } catch (IOException e) {
       // HDFS-3398 treat primary DN is down since client is unable to
@@ -921,6 +951,7 @@ private long sendHeartbeat() throws IOException {
   private void closeInternal() {
     closeResponder();       // close and join
     closeStream();
+    abandonPreallocatedBlock();
     streamerClosed = true;
     release();
     synchronized (dataQueue) {
@@ -1096,6 +1127,7 @@ void closeStream() {
         b.add(e);
       } finally {
         blockStream = null;
+        blockChannel = null;
       }
     }
     if (blockReplyStream != null) {
@@ -1389,6 +1421,19 @@ private boolean processDatanodeOrExternalError() throws IOException {
       packetSendTime.clear();
     }
 
+    if (stage == BlockConstructionStage.PIPELINE_CLOSE
+        && isNextBlockPreallocated()) {
+      // The NameNode committed the block when the next one was allocated,
+      // so its pipeline can no longer be recovered. All its data has been
+      // acked, so the datanodes that did finalize it are reported to the
+      // NameNode and the block is re-replicated from them.
+      LOG.warn("Error closing " + block + ", which is already committed."
+          + " Leaving its replication to the NameNode.");
+      errorState.reset();
+      skipEndOfBlockPacket();
+      return false;
+    }
+
     // If we had to recover the pipeline more than the value
     // defined by maxPipelineRecoveryRetries in a row for the
     // same packet, this client likely has corrupt data or corrupting
@@ -1418,21 +1463,7 @@ private boolean processDatanodeOrExternalError() throws IOException {
         //
         // We also need to set lastAckedSeqno to the end-of-block Packet's seqno, so that
         // a client waiting on close() will be aware that the flush finished.
-        synchronized (dataQueue) {
-          DFSPacket endOfBlockPacket = dataQueue.remove();  // remove the end of block packet
-          // Close any trace span associated with this Packet
-          Span span = endOfBlockPacket.getSpan();
-          if (span != null) {
-            span.finish();
-            endOfBlockPacket.setSpan(null);
-          }
-          assert endOfBlockPacket.isLastPacketInBlock();
-          assert lastAckedSeqno == endOfBlockPacket.getSeqno() - 1;
-          lastAckedSeqno = endOfBlockPacket.getSeqno();
-          pipelineRecoveryCount = 0;
-          dataQueue.notifyAll();
-        }
-        endBlock();
+        skipEndOfBlockPacket();
       } else {
         initDataStreaming();
       }
@@ -1441,6 +1472,142 @@ private boolean processDatanodeOrExternalError() throws IOException {
     return false;
   }
 
+  private void skipEndOfBlockPacket() {
+    synchronized (dataQueue) {
+      DFSPacket endOfBlockPacket = dataQueue.remove();  // remove the end of block packet
+      // Close any trace span associated with this Packet
+      Span span = endOfBlockPacket.getSpan();
+      if (span != null) {
+        span.finish();
+        endOfBlockPacket.setSpan(null);
+      }
+      assert endOfBlockPacket.isLastPacketInBlock();
+      assert lastAckedSeqno == endOfBlockPacket.getSeqno() - 1;
+      lastAckedSeqno = endOfBlockPacket.getSeqno();
+      pipelineRecoveryCount = 0;
+      dataQueue.notifyAll();
+    }
+    endBlock();
+  }
+
+  /**
+   * The block allocated next is only needed once the current block has been
+   * closed, so allocate it, and connect to the first datanode of its
+   * pipeline, while the close packet of the current block is in flight.
+   * All the data of the current block must have been acked, since
+   * allocating the next block commits the current one on the NameNode.
+   *
+   * @param one the end-of-block packet of the current block
+   */
+  private void preallocateNextBlock(DFSPacket one) {
+    final ThreadPoolExecutor pool = getBlockPreallocationPool();
+    // A block that ends early, i.e. on hsync with SyncFlag.END_BLOCK, may
+    // be the last block of the file.
+    if (pool == null || preallocatedBlock.get() != null
+        || one.getLastByteOffsetBlock() != stat.getBlockSize()) {
+      return;
+    }
+    final ExtendedBlock previous = block.getCurrentBlock();
+    final DatanodeInfo[] excluded = getExcludedNodes();
+    try {
+      preallocatedBlock.set(CompletableFuture.supplyAsync(() -> {
+        final LocatedBlock lb;
+        try {
+          lb = locateFollowingBlock(
+              excluded.length > 0 ? excluded : null, previous);
+        } catch (IOException e) {
+          throw new CompletionException(e);
+        }
+        Socket sock = null;
+        final DatanodeInfo[] targets = lb.getLocations();
+        if (targets.length > 0) {
+          try {
+            sock = createSocketForPipeline(targets[0], targets.length,
+                dfsClient);
+          } catch (IOException e) {
+            // The streamer retries the connection when it sets up the
+            // pipeline, and excludes the datanode if that fails too.
+            LOG.debug("Failed to connect to {} for {}", targets[0],
+                lb.getBlock(), e);
+          }
+        }
+        return new PreallocatedBlock(lb, sock);
+      }, pool));
+      LOG.debug("Allocating the block after {} ahead of time", previous);
+    } catch (RejectedExecutionException e) {
+      LOG.debug("Not allocating the block after {} ahead of time",
+          previous, e);
+    }
+  }
+
+  /**
+   * Wait for the block allocated ahead of time, if any.
+   *
+   * @return the block, or null if there is none or its allocation failed.
+   */
+  private PreallocatedBlock takePreallocatedBlock() {
+    final CompletableFuture<PreallocatedBlock> future =
+        preallocatedBlock.getAndSet(null);
+    if (future == null) {
+      return null;
+    }
+    try {
+      return future.join();
+    } catch (CompletionException | CancellationException e) {
+      LOG.warn("Failed to allocate the block after " + block
+          + " ahead of time", e.getCause());
+      return null;
+    }
+  }
+
+  /**
+   * @return true if the block after the current one has been allocated, so
+   *         the current block is committed on the NameNode.
+   */
+  private boolean isNextBlockPreallocated() {
+    final CompletableFuture<PreallocatedBlock> future =
+        preallocatedBlock.get();
+    if (future == null) {
+      return false;
+    }
+    try {
+      future.join();
+      return true;
+    } catch (CompletionException | CancellationException e) {
+      // Allocate it again once the current block is closed.
+      preallocatedBlock.compareAndSet(future, null);
+      return false;
+    }
+  }
+
+  /**
+   * Give back the block allocated ahead of time, if any, since the file is
+   * closed before it was written to. Called once all packets are acked.
+   */
+  void abandonPreallocatedBlock() {
+    final PreallocatedBlock next = takePreallocatedBlock();
+    if (next == null) {
+      return;
+    }
+    IOUtils.closeSocket(next.socket);
+    final ExtendedBlock b = next.block.getBlock();
+    LOG.debug("Abandoning the block {} allocated ahead of time", b);
+    try {
+      dfsClient.namenode.abandonBlock(b, stat.getFileId(), src,
+          dfsClient.clientName);
+    } catch (IOException e) {
+      LOG.warn("Failed to abandon " + b + " allocated ahead of time", e);
+    }
+  }
+
+  /**
+   * @return the pool on which the next block is allocated while the current
+   *         one is being closed, or null to allocate it afterwards.
+   */
+  protected ThreadPoolExecutor getBlockPreallocationPool() {
+    return dfsClient.getBlockPreallocationThreadPool();
+  }
+
   void setHflush() {
     isHflushed = true;
   }
@@ -1826,9 +1993,16 @@ protected void setupPipelineForCreate() throws IOException {
       lastException.clear();
       streamerClosed = false;
 
-      DatanodeInfo[] excluded = getExcludedNodes();
-      lb = locateFollowingBlock(
-          excluded.length > 0 ? excluded : null, oldBlock);
+      final PreallocatedBlock next = takePreallocatedBlock();
+      if (next != null) {
+        lb = next.block;
+        preconnectedSocket = next.socket;
+        preconnectedNode = next.socket == null ? null : lb.getLocations()[0];
+      } else {
+        DatanodeInfo[] excluded = getExcludedNodes();
+        lb = locateFollowingBlock(
+            excluded.length > 0 ? excluded : null, oldBlock);
+      }
       block.setCurrentBlock(lb.getBlock());
       block.setNumBytes(0);
       bytesSent = 0;
@@ -1845,6 +2019,10 @@ protected void setupPipelineForCreate() throws IOException {
       } catch(IOException ie) {
         LOG.warn("Exception in setupPipelineForCreate " + this, ie);
         success = false;
+      } finally {
+        IOUtils.closeSocket(preconnectedSocket);
+        preconnectedSocket = null;
+        preconnectedNode = null;
       }
       if (!success) {
         LOG.warn("Abandoning " + block);
@@ -1891,7 +2069,10 @@ boolean createBlockOutputStream(DatanodeInfo[] nodes,
       try {
         assert null == s : "Previous socket unclosed";
         assert null == blockReplyStream : "Previous blockReplyStream unclosed";
-        s = createSocketForPipeline(nodes[0], nodes.length, dfsClient);
+        s = takePreconnectedSocket(nodes[0]);
+        if (s == null) {
+          s = createSocketForPipeline(nodes[0], nodes.length, dfsClient);
+        }
         long writeTimeout = dfsClient.getDatanodeWriteTimeout(nodes.length);
         long readTimeout = dfsClient.getDatanodeReadTimeout(nodes.length);
 
@@ -1904,6 +2085,9 @@ boolean createBlockOutputStream(DatanodeInfo[] nodes,
         out = new DataOutputStream(new BufferedOutputStream(unbufOut,
             DFSUtilClient.getSmallBufferSize(dfsClient.getConfiguration())));
         blockReplyStream = new DataInputStream(unbufIn);
+        final WritableByteChannel outChannel =
+            unbufOut instanceof WritableByteChannel ?
+                (WritableByteChannel) unbufOut : null;
 
         //
         // Xmit header info to datanode
@@ -1948,6 +2132,7 @@ boolean createBlockOutputStream(DatanodeInfo[] nodes,
 
         assert null == blockStream : "Previous blockStream unclosed";
         blockStream = out;
+        blockChannel = outChannel;
         result =  true; // success
         errorState.resetInternalError();
         lastException.clear();
@@ -2030,6 +2215,22 @@ private boolean[] getPinnings(DatanodeInfo[] nodes) {
     }
   }
 
+  /**
+   * @return the socket connected ahead of time if it is connected to the
+   *         given datanode, or null.
+   */
+  private Socket takePreconnectedSocket(DatanodeInfo first) {
+    final Socket sock = preconnectedSocket;
+    final DatanodeInfo node = preconnectedNode;
+    preconnectedSocket = null;
+    preconnectedNode = null;
+    if (sock != null && (!first.equals(node) || sock.isClosed())) {
+      IOUtils.closeSocket(sock);
+      return null;
+    }
+    return sock;
+  }
+
   private LocatedBlock locateFollowingBlock(DatanodeInfo[] excluded,
       ExtendedBlock oldBlock) throws IOException {
     return DFSOutputStream.addBlock(excluded, dfsClient, src, oldBlock,
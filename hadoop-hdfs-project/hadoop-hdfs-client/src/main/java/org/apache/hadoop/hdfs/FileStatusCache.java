@@ -0,0 +1,577 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.inotify.Event;
+import org.apache.hadoop.hdfs.inotify.EventBatch;
+import org.apache.hadoop.hdfs.inotify.MissingEventsException;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus.Flags;
+import org.apache.hadoop.hdfs.protocol.HdfsLocatedFileStatus;
+import org.apache.hadoop.thirdparty.com.google.common.base.Ticker;
+import org.apache.hadoop.thirdparty.com.google.common.cache.Cache;
+import org.apache.hadoop.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.util.Daemon;
+import org.apache.hadoop.util.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the file statuses and directory listings that DFSClients get from
+ * the NameNode, and shares them among all the DFSClients of the same client
+ * context.
+ *
+ * Query planners list and stat the same, mostly immutable, partitions over
+ * and over. Only paths under the configured prefixes are cached, so that
+ * applications opt in for the parts of the namespace they know to change
+ * rarely. Entries are keyed by NameNode, user and path, and expire after a
+ * TTL, which bounds how stale they can be. Changes made through a client of
+ * this context invalidate the path, its descendants and the listing of its
+ * parent at once. If enabled, the edits of the NameNode are also tailed
+ * through inotify so that changes made by other clients invalidate entries
+ * long before they expire; tailing requires superuser privilege, without
+ * which the cache falls back to the TTL.
+ *
+ * Invalidations are not applied to the entries. Each invalidation records
+ * when it happened for the path it covers, and every entry is stamped with
+ * the time its fetch started. An entry is only returned if no invalidation
+ * of its path, or of one of its ancestors, happened since it was stamped,
+ * so a fetch racing an invalidation is never served, and invalidating a
+ * directory costs the same whatever is cached under it. The records expire
+ * once no entry they could apply to is left.
+ */
+@InterfaceAudience.Private
+public class FileStatusCache {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(FileStatusCache.class);
+
+  private final Cache<Key, Entry> cache;
+  private final String[] paths;
+  private final long ttlNanos;
+  private final Timer timer;
+  /**
+   * The last stamp given, the stamps of the invalidations are greater than
+   * those of the fetches that started before them.
+   */
+  private final AtomicLong clock = new AtomicLong(Long.MIN_VALUE);
+  /** Map NameNode and path -> when its subtree was last invalidated. */
+  private final Cache<String, Long> subtreeInvalidations;
+  /** Map NameNode and path -> when its own metadata was last invalidated. */
+  private final Cache<String, Long> pathInvalidations;
+  /** Map NameNode -> when all its metadata was last invalidated. */
+  private final Cache<String, Long> namenodeInvalidations;
+  /** Map NameNode -> the live clients that can tail its edits. */
+  private final Map<String, Set<DFSClient>> tailerClients = new HashMap<>();
+  /** The NameNodes whose edits are being tailed. */
+  private final Set<String> tailed = new HashSet<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  public FileStatusCache(long ttlMs, long maxEntries, String[] paths) {
+    this(ttlMs, maxEntries, paths, new Timer());
+  }
+
+  @VisibleForTesting
+  FileStatusCache(long ttlMs, long maxEntries, String[] paths, Timer timer) {
+    this.paths = new String[paths.length];
+    for (int i = 0; i < paths.length; i++) {
+      this.paths[i] = Path.getPathWithoutSchemeAndAuthority(
+          new Path(paths[i])).toString();
+    }
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    this.timer = timer;
+    final Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return timer.monotonicNowNanos();
+      }
+    };
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .ticker(ticker)
+        .build();
+    // An entry is put at most a TTL after it was stamped, or not at all, and
+    // expires a TTL later.
+    this.subtreeInvalidations = CacheBuilder.newBuilder()
+        .expireAfterWrite(2 * ttlMs, TimeUnit.MILLISECONDS)
+        .ticker(ticker)
+        .build();
+    this.pathInvalidations = CacheBuilder.newBuilder()
+        .expireAfterWrite(2 * ttlMs, TimeUnit.MILLISECONDS)
+        .ticker(ticker)
+        .build();
+    this.namenodeInvalidations = CacheBuilder.newBuilder()
+        .expireAfterWrite(2 * ttlMs, TimeUnit.MILLISECONDS)
+        .ticker(ticker)
+        .build();
+  }
+
+  /**
+   * @return true if the path is under one of the prefixes configured to be
+   *         cached.
+   */
+  public boolean isCached(String src) {
+    for (String prefix : paths) {
+      if (isUnder(src, prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if a change of the path may change cached metadata, that
+   *         is if it is under, or above, one of the configured prefixes.
+   */
+  private boolean isCovered(String src) {
+    for (String prefix : paths) {
+      if (isUnder(src, prefix) || isUnder(prefix, src)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return a copy of the cached status of the file, or null if it is not
+   *         cached.
+   */
+  public HdfsFileStatus getFileInfo(String namenode, String user,
+      String src) {
+    Object status = get(new Key(namenode, user, src, null));
+    return status == null ? null : copy((HdfsFileStatus) status);
+  }
+
+  /**
+   * @return a copy of the cached listing of the directory from startAfter,
+   *         or null if it is not cached.
+   */
+  public DirectoryListing getListing(String namenode, String user,
+      String src, byte[] startAfter) {
+    Object listing = get(new Key(namenode, user, src,
+        DFSUtilClient.bytes2String(startAfter)));
+    return listing == null ? null : copy((DirectoryListing) listing);
+  }
+
+  private Object get(Key key) {
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null && isInvalidated(key, entry.stamp)) {
+      cache.asMap().remove(key, entry);
+      entry = null;
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.value;
+  }
+
+  /**
+   * @return whether the path of the key was invalidated at or after the
+   *         stamp.
+   */
+  private boolean isInvalidated(Key key, long stamp) {
+    if (isAfter(namenodeInvalidations.getIfPresent(key.namenode), stamp)
+        || isAfter(pathInvalidations.getIfPresent(
+            key.namenode + key.src), stamp)) {
+      return true;
+    }
+    String dir = key.src;
+    while (true) {
+      if (isAfter(subtreeInvalidations.getIfPresent(key.namenode + dir),
+          stamp)) {
+        return true;
+      }
+      if (dir.equals(Path.SEPARATOR)) {
+        return false;
+      }
+      int i = dir.lastIndexOf(Path.SEPARATOR_CHAR);
+      dir = i <= 0 ? Path.SEPARATOR : dir.substring(0, i);
+    }
+  }
+
+  private static boolean isAfter(Long invalidation, long stamp) {
+    return invalidation != null && invalidation >= stamp;
+  }
+
+  /**
+   * @return the generation to pass to the put methods for metadata that is
+   *         about to be fetched, which is when the fetch started.
+   */
+  public long getGeneration() {
+    final long now = timer.monotonicNowNanos();
+    return clock.updateAndGet(last -> Math.max(last, now));
+  }
+
+  /** @return a stamp greater than all the generations already given. */
+  private long nextInvalidationStamp() {
+    final long now = timer.monotonicNowNanos();
+    return clock.updateAndGet(last -> Math.max(last + 1, now));
+  }
+
+  /**
+   * Cache the status of the file if nothing was invalidated since the
+   * generation was read. Files that do not exist are not cached.
+   */
+  public void putFileInfo(String namenode, String user,
+      String src, HdfsFileStatus status, long fetchGeneration) {
+    if (status == null || status instanceof HdfsLocatedFileStatus) {
+      return;
+    }
+    put(new Key(namenode, user, src, null), copy(status), fetchGeneration);
+  }
+
+  /**
+   * Cache the listing of the directory if nothing was invalidated since the
+   * generation was read. Listings with block locations are not cached.
+   */
+  public void putListing(String namenode, String user,
+      String src, byte[] startAfter, DirectoryListing listing,
+      long fetchGeneration) {
+    if (listing == null) {
+      return;
+    }
+    for (HdfsFileStatus status : listing.getPartialListing()) {
+      if (status instanceof HdfsLocatedFileStatus) {
+        return;
+      }
+    }
+    put(new Key(namenode, user, src, DFSUtilClient.bytes2String(startAfter)),
+        copy(listing), fetchGeneration);
+  }
+
+  private void put(Key key, Object value, long fetchGeneration) {
+    // The invalidations recorded since a fetch that took longer than the TTL
+    // may have expired already.
+    if (timer.monotonicNowNanos() - fetchGeneration > ttlNanos
+        || isInvalidated(key, fetchGeneration)) {
+      return;
+    }
+    cache.put(key, new Entry(value, fetchGeneration));
+  }
+
+  /**
+   * Invalidate the cached metadata of the path and of everything under it,
+   * and the status and listings of its parent, which the change of the path
+   * changes too, for all users. Paths that neither are under nor above the
+   * configured prefixes are ignored.
+   */
+  public void invalidate(String namenode, String src) {
+    if (!isCovered(src)) {
+      return;
+    }
+    invalidations.increment();
+    final long stamp = nextInvalidationStamp();
+    subtreeInvalidations.put(namenode + src, stamp);
+    if (!src.equals(Path.SEPARATOR)) {
+      pathInvalidations.put(namenode + new Path(src).getParent(), stamp);
+    }
+  }
+
+  /**
+   * Invalidate all the cached metadata of the NameNode.
+   */
+  public void invalidateAll(String namenode) {
+    invalidations.increment();
+    namenodeInvalidations.put(namenode, nextInvalidationStamp());
+  }
+
+  /**
+   * Tail the edits of the NameNode of the client to invalidate the paths
+   * that change, unless they are being tailed already. When the client
+   * tailing the edits is closed, another live client of the NameNode that
+   * called this takes over from the last edit it read. Once no live client
+   * is left, tailing stops until the next client calls this, which first
+   * invalidates all the metadata of the NameNode.
+   */
+  public void startInvalidationTailer(String namenode, DFSClient client) {
+    synchronized (tailed) {
+      tailerClients.computeIfAbsent(namenode, nn -> new HashSet<>())
+          .add(client);
+      if (!tailed.add(namenode)) {
+        return;
+      }
+    }
+    Daemon tailer = new Daemon(() -> tailEdits(namenode));
+    tailer.setName("FileStatusCache invalidation for " + namenode);
+    tailer.start();
+  }
+
+  /**
+   * Forget a client closed before it could take over tailing the edits.
+   */
+  public void stopInvalidationTailer(String namenode, DFSClient client) {
+    synchronized (tailed) {
+      Set<DFSClient> clients = tailerClients.get(namenode);
+      if (clients != null) {
+        clients.remove(client);
+      }
+    }
+  }
+
+  /**
+   * @return a live client to tail the edits of the NameNode, or null once
+   *         there is none, in which case tailing stops.
+   */
+  private DFSClient nextTailerClient(String namenode) {
+    synchronized (tailed) {
+      Set<DFSClient> clients = tailerClients.get(namenode);
+      if (clients != null) {
+        clients.removeIf(c -> !c.isClientRunning());
+        if (!clients.isEmpty()) {
+          return clients.iterator().next();
+        }
+        tailerClients.remove(namenode);
+      }
+      tailed.remove(namenode);
+      return null;
+    }
+  }
+
+  private void tailEdits(String namenode) {
+    long lastTxid = -1;
+    DFSClient client;
+    while ((client = nextTailerClient(namenode)) != null) {
+      try {
+        lastTxid = tailEdits(namenode, client, lastTxid);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        break;
+      } catch (IOException e) {
+        if (client.isClientRunning()) {
+          LOG.warn("Failed to tail the edits of {}, cached metadata will only"
+              + " expire after its TTL", namenode, e);
+          break;
+        }
+      }
+    }
+    if (client != null) {
+      synchronized (tailed) {
+        tailed.remove(namenode);
+      }
+    }
+  }
+
+  /**
+   * Tail the edits after lastTxid, or the new edits if it is negative, with
+   * the client until it is closed.
+   *
+   * @return the last transaction read.
+   */
+  private long tailEdits(String namenode, DFSClient client, long lastTxid)
+      throws IOException, InterruptedException {
+    DFSInotifyEventInputStream stream;
+    if (lastTxid < 0) {
+      stream = client.getInotifyEventStream();
+      // Nothing tailed the edits before, what was cached may be stale.
+      invalidateAll(namenode);
+    } else {
+      stream = client.getInotifyEventStream(lastTxid);
+    }
+    while (client.isClientRunning()) {
+      EventBatch batch;
+      try {
+        batch = stream.poll(1, TimeUnit.SECONDS);
+      } catch (MissingEventsException e) {
+        LOG.warn("Missed edits of {}, invalidating all its cached metadata",
+            namenode, e);
+        invalidateAll(namenode);
+        stream = client.getInotifyEventStream();
+        continue;
+      }
+      if (batch != null) {
+        for (Event event : batch.getEvents()) {
+          invalidate(namenode, event);
+        }
+        lastTxid = batch.getTxid();
+      }
+    }
+    return lastTxid;
+  }
+
+  private void invalidate(String namenode, Event event) {
+    switch (event.getEventType()) {
+    case CREATE:
+      invalidate(namenode, ((Event.CreateEvent) event).getPath());
+      break;
+    case CLOSE:
+      invalidate(namenode, ((Event.CloseEvent) event).getPath());
+      break;
+    case APPEND:
+      invalidate(namenode, ((Event.AppendEvent) event).getPath());
+      break;
+    case RENAME:
+      invalidate(namenode, ((Event.RenameEvent) event).getSrcPath());
+      invalidate(namenode, ((Event.RenameEvent) event).getDstPath());
+      break;
+    case METADATA:
+      invalidate(namenode, ((Event.MetadataUpdateEvent) event).getPath());
+      break;
+    case UNLINK:
+      invalidate(namenode, ((Event.UnlinkEvent) event).getPath());
+      break;
+    case TRUNCATE:
+      invalidate(namenode, ((Event.TruncateEvent) event).getPath());
+      break;
+    default:
+      break;
+    }
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getInvalidations() {
+    return invalidations.sum();
+  }
+
+  /** @return the number of cached entries that were not invalidated. */
+  @VisibleForTesting
+  long size() {
+    return cache.asMap().entrySet().stream()
+        .filter(e -> !isInvalidated(e.getKey(), e.getValue().stamp))
+        .count();
+  }
+
+  private static boolean isUnder(String src, String dir) {
+    if (dir.equals(Path.SEPARATOR)) {
+      return true;
+    }
+    return src.equals(dir) || src.startsWith(dir + Path.SEPARATOR);
+  }
+
+  /**
+   * Callers qualify the paths of the statuses they are given, so neither
+   * the cached instances nor the ones handed out may be shared.
+   */
+  private static DirectoryListing copy(DirectoryListing listing) {
+    HdfsFileStatus[] statuses = listing.getPartialListing();
+    HdfsFileStatus[] copies = new HdfsFileStatus[statuses.length];
+    for (int i = 0; i < statuses.length; i++) {
+      copies[i] = copy(statuses[i]);
+    }
+    return new DirectoryListing(copies, listing.getRemainingEntries());
+  }
+
+  @VisibleForTesting
+  static HdfsFileStatus copy(HdfsFileStatus status) {
+    EnumSet<Flags> flags = EnumSet.noneOf(Flags.class);
+    if (status.hasAcl()) {
+      flags.add(Flags.HAS_ACL);
+    }
+    if (status.isEncrypted()) {
+      flags.add(Flags.HAS_CRYPT);
+    }
+    if (status.isErasureCoded()) {
+      flags.add(Flags.HAS_EC);
+    }
+    if (status.isSnapshotEnabled()) {
+      flags.add(Flags.SNAPSHOT_ENABLED);
+    }
+    HdfsFileStatus copy = new HdfsFileStatus.Builder()
+        .length(status.getLen())
+        .isdir(status.isDirectory())
+        .replication(status.getReplication())
+        .blocksize(status.getBlockSize())
+        .mtime(status.getModificationTime())
+        .atime(status.getAccessTime())
+        .perm(status.getPermission())
+        .flags(flags)
+        .owner(status.getOwner())
+        .group(status.getGroup())
+        .symlink(status.getSymlinkInBytes())
+        .path(status.getLocalNameInBytes())
+        .fileId(status.getFileId())
+        .children(status.getChildrenNum())
+        .feInfo(status.getFileEncryptionInfo())
+        .storagePolicy(status.getStoragePolicy())
+        .ecPolicy(status.getErasureCodingPolicy())
+        .build();
+    copy.setNamespace(status.getNamespace());
+    return copy;
+  }
+
+  /** A cached value and when its fetch started. */
+  private static final class Entry {
+    private final Object value;
+    private final long stamp;
+
+    Entry(Object value, long stamp) {
+      this.value = value;
+      this.stamp = stamp;
+    }
+  }
+
+  private static final class Key {
+    private final String namenode;
+    private final String user;
+    private final String src;
+    /** Where the cached listing starts, or null for the file status. */
+    private final String startAfter;
+
+    Key(String namenode, String user, String src, String startAfter) {
+      this.namenode = namenode;
+      this.user = user;
+      this.src = src;
+      this.startAfter = startAfter;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return namenode.equals(other.namenode) && user.equals(other.user)
+          && src.equals(other.src)
+          && Objects.equals(startAfter, other.startAfter);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(namenode, user, src, startAfter);
+    }
+  }
+}
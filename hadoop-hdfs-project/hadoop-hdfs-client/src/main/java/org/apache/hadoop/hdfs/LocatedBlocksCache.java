@@ -0,0 +1,296 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
+import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
+import org.apache.hadoop.security.token.Token;
+import org.apache.hadoop.thirdparty.com.google.common.base.Ticker;
+import org.apache.hadoop.thirdparty.com.google.common.cache.Cache;
+import org.apache.hadoop.thirdparty.com.google.common.cache.CacheBuilder;
+import org.apache.hadoop.util.Timer;
+
+/**
+ * Caches the block locations that DFSInputStreams open with, and shares
+ * them among all the DFSClients of the same client context.
+ *
+ * Applications that open the same files over and over otherwise call
+ * getBlockLocations on the NameNode for every open. Entries are keyed by
+ * NameNode, user and path, since the NameNode checks permissions and issues
+ * block tokens per user. Only files that are not being written are cached,
+ * and entries expire after a short TTL so that changes made by other
+ * clients are picked up. Changes made through a client of this context,
+ * and read failures, invalidate the path at once.
+ *
+ * Invalidations are not applied to the entries. Each invalidation records
+ * when it happened for the path it covers, and every entry is stamped with
+ * the time its fetch started. An entry is only returned if neither its path
+ * nor one of its ancestors was invalidated since it was stamped, so a slow
+ * fetch cannot put back locations that were invalidated while it was in
+ * flight, and invalidating a directory does not scan the cache.
+ */
+@InterfaceAudience.Private
+public class LocatedBlocksCache {
+  private final Cache<Key, Entry> cache;
+  private final long ttlNanos;
+  private final Timer timer;
+  /**
+   * The last stamp given, every fetch and invalidation gets a greater one
+   * than those given before it.
+   */
+  private final AtomicLong clock = new AtomicLong(Long.MIN_VALUE);
+  /** Map NameNode and path -> when its subtree was last invalidated. */
+  private final Cache<String, Long> invalidated;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder invalidations = new LongAdder();
+
+  public LocatedBlocksCache(long ttlMs, long maxEntries) {
+    this(ttlMs, maxEntries, new Timer());
+  }
+
+  @VisibleForTesting
+  LocatedBlocksCache(long ttlMs, long maxEntries, Timer timer) {
+    this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    this.timer = timer;
+    final Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return timer.monotonicNowNanos();
+      }
+    };
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(ttlMs, TimeUnit.MILLISECONDS)
+        .ticker(ticker)
+        .build();
+    // An entry is put at most a TTL after it was stamped, or not at all, and
+    // expires a TTL later.
+    this.invalidated = CacheBuilder.newBuilder()
+        .expireAfterWrite(2 * ttlMs, TimeUnit.MILLISECONDS)
+        .ticker(ticker)
+        .build();
+  }
+
+  /**
+   * @return a copy of the cached locations of the file, or null if none
+   *         are cached.
+   */
+  public LocatedBlocks get(String namenode, String user, String src) {
+    final Key key = new Key(namenode, user, src);
+    Entry entry = cache.getIfPresent(key);
+    if (entry != null && isInvalidated(namenode, src, entry.stamp)) {
+      cache.asMap().remove(key, entry);
+      entry = null;
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return copy(entry.blocks);
+  }
+
+  /**
+   * @return whether the path, or one of its ancestors, was invalidated at
+   *         or after the stamp.
+   */
+  private boolean isInvalidated(String namenode, String src, long stamp) {
+    String dir = src;
+    while (true) {
+      Long invalidation = invalidated.getIfPresent(namenode + dir);
+      if (invalidation != null && invalidation >= stamp) {
+        return true;
+      }
+      if (dir.equals(Path.SEPARATOR)) {
+        return false;
+      }
+      int i = dir.lastIndexOf(Path.SEPARATOR_CHAR);
+      dir = i <= 0 ? Path.SEPARATOR : dir.substring(0, i);
+    }
+  }
+
+  /** @return a stamp greater than all the stamps already given. */
+  private long nextStamp() {
+    final long now = timer.monotonicNowNanos();
+    return clock.updateAndGet(last -> Math.max(last + 1, now));
+  }
+
+  /**
+   * @return the generation to pass to {@link #put} for locations that are
+   *         about to be fetched, which is when the fetch started.
+   */
+  public long getGeneration() {
+    return nextStamp();
+  }
+
+  /**
+   * Cache the locations of the file if it is complete and nothing was
+   * invalidated since the generation was read.
+   */
+  public void put(String namenode, String user, String src,
+      LocatedBlocks blocks, long fetchGeneration) {
+    if (blocks == null || blocks.getLocatedBlocks() == null
+        || blocks.isUnderConstruction() || !blocks.isLastBlockComplete()) {
+      return;
+    }
+    // The invalidations recorded since a fetch that took longer than the TTL
+    // may have expired already.
+    if (timer.monotonicNowNanos() - fetchGeneration > ttlNanos
+        || isInvalidated(namenode, src, fetchGeneration)) {
+      return;
+    }
+    cache.put(new Key(namenode, user, src),
+        new Entry(copy(blocks), fetchGeneration));
+  }
+
+  /**
+   * Drop the cached locations of the path, and of everything under it if it
+   * is a directory, for all users.
+   */
+  public void invalidate(String namenode, String src) {
+    invalidations.increment();
+    invalidated.put(namenode + src, nextStamp());
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  public long getInvalidations() {
+    return invalidations.sum();
+  }
+
+  /**
+   * @return the number of cached entries, including those invalidated but
+   *         not yet dropped.
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Streams modify the block list they are given, and the blocks in it:
+   * they update the length of the last block, replace expired tokens and
+   * sort the locations. So neither the cached instances nor the ones handed
+   * out may be shared.
+   */
+  private static LocatedBlocks copy(LocatedBlocks blocks) {
+    final List<LocatedBlock> list =
+        new ArrayList<>(blocks.getLocatedBlocks().size());
+    for (LocatedBlock block : blocks.getLocatedBlocks()) {
+      list.add(copy(block));
+    }
+    return new LocatedBlocks(blocks.getFileLength(),
+        blocks.isUnderConstruction(), list,
+        copy(blocks.getLastLocatedBlock()), blocks.isLastBlockComplete(),
+        blocks.getFileEncryptionInfo(), blocks.getErasureCodingPolicy());
+  }
+
+  private static LocatedBlock copy(LocatedBlock block) {
+    if (block == null) {
+      return null;
+    }
+    final ExtendedBlock b = new ExtendedBlock(block.getBlock());
+    final String[] storageIDs = block.getStorageIDs() == null ? null
+        : block.getStorageIDs().clone();
+    final StorageType[] storageTypes = block.getStorageTypes() == null ? null
+        : block.getStorageTypes().clone();
+    final LocatedBlock copy;
+    if (block.isStriped()) {
+      final LocatedStripedBlock striped = (LocatedStripedBlock) block;
+      final LocatedStripedBlock stripedCopy = new LocatedStripedBlock(b,
+          block.getLocations(), storageIDs, storageTypes,
+          striped.getBlockIndices(), block.getStartOffset(),
+          block.isCorrupt(), block.getCachedLocations().clone());
+      final Token<BlockTokenIdentifier>[] tokens =
+          striped.getBlockTokens().clone();
+      for (int i = 0; i < tokens.length; i++) {
+        tokens[i] = tokens[i].copyToken();
+      }
+      stripedCopy.setBlockTokens(tokens);
+      copy = stripedCopy;
+    } else {
+      copy = new LocatedBlock(b, block.getLocations().clone(), storageIDs,
+          storageTypes, block.getStartOffset(), block.isCorrupt(),
+          block.getCachedLocations().clone());
+    }
+    copy.setBlockToken(block.getBlockToken().copyToken());
+    return copy;
+  }
+
+  private static final class Entry {
+    private final LocatedBlocks blocks;
+    /** When the fetch of the blocks started. */
+    private final long stamp;
+
+    Entry(LocatedBlocks blocks, long stamp) {
+      this.blocks = blocks;
+      this.stamp = stamp;
+    }
+  }
+
+  private static final class Key {
+    private final String namenode;
+    private final String user;
+    private final String src;
+
+    Key(String namenode, String user, String src) {
+      this.namenode = namenode;
+      this.user = user;
+      this.src = src;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return namenode.equals(other.namenode) && user.equals(other.user)
+          && src.equals(other.src);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(namenode, user, src);
+    }
+  }
+}
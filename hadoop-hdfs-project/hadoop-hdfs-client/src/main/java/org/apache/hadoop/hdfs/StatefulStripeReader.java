@@ -45,12 +45,27 @@ class StatefulStripeReader extends StripeReader {
         corruptedBlocks, decoder, dfsStripedInputStream);
   }
 
-  @Override
-  void prepareDecodeInputs() {
-    final ByteBuffer cur;
+  /**
+   * @return the buffer holding the data of the whole stripe. By default the
+   *         current stripe buffer of the stream.
+   */
+  ByteBuffer getStripeBuffer() {
     synchronized (dfsStripedInputStream) {
-      cur = dfsStripedInputStream.getCurStripeBuf().duplicate();
+      return dfsStripedInputStream.getCurStripeBuf().duplicate();
     }
+  }
+
+  /**
+   * @return the buffer for the parity cells of the stripe. By default the
+   *         parity buffer of the stream.
+   */
+  ByteBuffer getParityBuffer() {
+    return dfsStripedInputStream.getParityBuffer().duplicate();
+  }
+
+  @Override
+  void prepareDecodeInputs() {
+    final ByteBuffer cur = getStripeBuffer();
 
     if (this.decodeInputs == null) {
       this.decodeInputs = new ECChunk[dataBlkNum + parityBlkNum];
@@ -75,7 +90,7 @@ boolean prepareParityChunk(int index) {
     Preconditions.checkState(index >= dataBlkNum
         && alignedStripe.chunks[index] == null);
     final int parityIndex = index - dataBlkNum;
-    ByteBuffer buf = dfsStripedInputStream.getParityBuffer().duplicate();
+    ByteBuffer buf = getParityBuffer();
     buf.position(cellSize * parityIndex);
     buf.limit(cellSize * parityIndex + (int) alignedStripe.range.spanInBlock);
     decodeInputs[index] =
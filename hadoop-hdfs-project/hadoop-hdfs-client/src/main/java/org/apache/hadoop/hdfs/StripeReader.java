@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs;
 
+import org.apache.hadoop.HadoopIllegalArgumentException;
 import org.apache.hadoop.util.Preconditions;
 import org.apache.hadoop.fs.ChecksumException;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -30,6 +31,7 @@
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.StripingChunkReadResult;
 import org.apache.hadoop.io.erasurecode.ECChunk;
 import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.LRCUtil;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 import org.apache.hadoop.util.Time;
 
@@ -118,8 +120,12 @@ void skip() {
   protected final short parityBlkNum;
   protected final int cellSize;
   protected final RawErasureDecoder decoder;
+  // Whether the policy has local parity blocks, see LRCUtil.
+  protected final boolean hasLocalParity;
   protected final DFSStripedInputStream dfsStripedInputStream;
   private long readTo = -1;
+  private long slowCellThresholdMs = 0;
+  private boolean abandonedReads = false;
 
   protected ECChunk[] decodeInputs;
 
@@ -137,6 +143,7 @@ void skip() {
     this.readerInfos = readerInfos;
     this.corruptedBlocks = corruptedBlocks;
     this.decoder = decoder;
+    this.hasLocalParity = StripedBlockUtil.isLocallyRepairable(ecPolicy);
     this.dfsStripedInputStream = dfsStripedInputStream;
 
     service = new ExecutorCompletionService<>(
@@ -165,6 +172,23 @@ void skip() {
   void close() {
   }
 
+  /**
+   * Called when the stripe cannot be read. Closes the stream by default.
+   * @throws IOException if closing the stream fails.
+   */
+  void handleReadFailure() throws IOException {
+    dfsStripedInputStream.close();
+  }
+
+  /**
+   * Update the read statistics with a completed chunk read. By default the
+   * stream is updated at once, which must then happen on the thread that
+   * initiated the read.
+   */
+  void updateReadStats(BlockReadStats stats, long readTimeMS) {
+    dfsStripedInputStream.updateReadStats(stats, readTimeMS);
+  }
+
   void updateState4SuccessRead(StripingChunkReadResult result) {
     Preconditions.checkArgument(
         result.state == StripingChunkReadResult.SUCCESSFUL);
@@ -183,13 +207,17 @@ private void checkMissingBlocks() throws IOException {
 
   /**
    * We need decoding. Thus go through all the data chunks and make sure we
-   * submit read requests for all of them.
+   * submit read requests for all of them, or only for those of the local
+   * groups of the missing data chunks if they are enough.
    */
   private void readDataForDecoding() throws IOException {
     prepareDecodeInputs();
+    int[] localRepairIndices = getLocalRepairIndices();
     for (int i = 0; i < dataBlkNum; i++) {
       Preconditions.checkNotNull(alignedStripe.chunks[i]);
-      if (alignedStripe.chunks[i].state == StripingChunk.REQUESTED) {
+      if (alignedStripe.chunks[i].state == StripingChunk.REQUESTED
+          && (localRepairIndices == null
+              || Arrays.binarySearch(localRepairIndices, i) >= 0)) {
         if (!readChunk(targetBlocks[i], i)) {
           alignedStripe.missingChunksNum++;
         }
@@ -198,9 +226,95 @@ private void readDataForDecoding() throws IOException {
     checkMissingBlocks();
   }
 
+  /**
+   * @return the chunks the missing data chunks can be decoded from within
+   *         their local groups, or null if the policy has no local groups or
+   *         they are not enough.
+   */
+  private int[] getLocalRepairIndices() {
+    if (!hasLocalParity) {
+      return null;
+    }
+    int[] missing = getMissingDataIndices();
+    if (missing.length == 0) {
+      return null;
+    }
+    int[] repairIndices = LRCUtil.getLocalRepairIndexes(dataBlkNum,
+        parityBlkNum, missing);
+    if (repairIndices == null) {
+      return null;
+    }
+    for (int index : repairIndices) {
+      if (alignedStripe.chunks[index] != null
+          && alignedStripe.chunks[index].state == StripingChunk.MISSING) {
+        return null;
+      }
+    }
+    return repairIndices;
+  }
+
+  /**
+   * Some data chunks are taking longer than the slow cell threshold. Read as
+   * many parity chunks as there are data chunks outstanding, so that the
+   * stripe can be decoded from whichever arrive first.
+   */
+  private void readParityForSlowChunks() throws IOException {
+    int slow = 0;
+    for (int index : futures.values()) {
+      if (index < dataBlkNum) {
+        slow++;
+      }
+    }
+    if (slow == 0) {
+      return;
+    }
+    DFSClient.LOG.debug("{} data chunks of stripe {} are slow, reading parity",
+        slow, alignedStripe);
+    readDataForDecoding();
+    readParityChunks(slow);
+  }
+
+  /**
+   * Enough chunks have been fetched, give up on the reads still in flight.
+   * Outstanding data chunks are decoded instead, and outstanding parity
+   * chunks are left out of decoding. The reads may still write into their
+   * buffers, see {@link #hasAbandonedReads()}.
+   */
+  private void abandonPendingChunks() {
+    for (int index : futures.values()) {
+      final StripingChunk chunk = alignedStripe.chunks[index];
+      if (index < dataBlkNum) {
+        chunk.state = StripingChunk.MISSING;
+        alignedStripe.missingChunksNum++;
+      } else if (decodeInputs != null) {
+        decodeInputs[index] = null;
+      }
+      abandonReader(index);
+      abandonedReads = true;
+    }
+  }
+
+  /**
+   * Stop using the reader of a chunk whose read is still in flight. It is
+   * closed in the background since close waits for the current read.
+   */
+  private void abandonReader(int index) {
+    final BlockReaderInfo readerInfo = readerInfos[index];
+    if (readerInfo == null) {
+      return;
+    }
+    BlockReaderInfo skipped = new BlockReaderInfo(null, readerInfo.datanode,
+        readerInfo.blockReaderOffset);
+    skipped.skip();
+    readerInfos[index] = skipped;
+    dfsStripedInputStream.getStripedReadsThreadPool().execute(
+        () -> dfsStripedInputStream.closeReader(readerInfo));
+  }
+
   void readParityChunks(int num) throws IOException {
-    for (int i = dataBlkNum, j = 0; i < dataBlkNum + parityBlkNum && j < num;
-         i++) {
+    final int[] order = getParityReadOrder();
+    for (int k = 0, j = 0; k < order.length && j < num; k++) {
+      final int i = order[k];
       if (alignedStripe.chunks[i] == null) {
         if (prepareParityChunk(i) && readChunk(targetBlocks[i], i)) {
           j++;
@@ -210,6 +324,52 @@ void readParityChunks(int num) throws IOException {
       }
     }
     checkMissingBlocks();
+    if (hasLocalParity) {
+      // A missing local parity chunk may leave its local group short.
+      readDataForDecoding();
+    }
+  }
+
+  /**
+   * @return the parity chunk indices in the order to read them. With local
+   *         parity blocks, those of the local groups with missing data chunks
+   *         come first, then the global parity blocks, then the other local
+   *         parity blocks.
+   */
+  private int[] getParityReadOrder() {
+    int[] order = new int[parityBlkNum];
+    if (!hasLocalParity) {
+      for (int i = 0; i < parityBlkNum; i++) {
+        order[i] = dataBlkNum + i;
+      }
+      return order;
+    }
+    int[] ranks = StripedBlockUtil.getLocalRepairRanks(ecPolicy, null);
+    for (int index : getMissingDataIndices()) {
+      ranks[dataBlkNum
+          + LRCUtil.getLocalGroup(dataBlkNum, parityBlkNum, index)] = 0;
+    }
+    int n = 0;
+    for (int rank = 0; n < parityBlkNum; rank++) {
+      for (int i = dataBlkNum; i < dataBlkNum + parityBlkNum; i++) {
+        if (ranks[i] == rank) {
+          order[n++] = i;
+        }
+      }
+    }
+    return order;
+  }
+
+  private int[] getMissingDataIndices() {
+    int[] missing = new int[dataBlkNum];
+    int numMissing = 0;
+    for (int i = 0; i < dataBlkNum; i++) {
+      if (alignedStripe.chunks[i] != null
+          && alignedStripe.chunks[i].state == StripingChunk.MISSING) {
+        missing[numMissing++] = i;
+      }
+    }
+    return Arrays.copyOf(missing, numMissing);
   }
 
   private ByteBufferStrategy[] getReadStrategies(StripingChunk chunk) {
@@ -287,6 +447,7 @@ private Callable<BlockReadStats> readCells(final BlockReader reader,
         Preconditions.checkState(
             skipped == targetReaderOffset - currentReaderOffset);
       }
+      DFSClientFaultInjector.get().readFromStripedBlockDelay(currentBlock);
 
       int ret = 0;
       for (ByteBufferStrategy strategy : strategies) {
@@ -353,21 +514,28 @@ void readStripe() throws IOException {
         readParityChunks(alignedStripe.missingChunksNum);
       }
     } catch (IOException e) {
-      dfsStripedInputStream.close();
+      handleReadFailure();
       throw e;
     }
     // TODO: for a full stripe we can start reading (dataBlkNum + 1) chunks
 
     // Input buffers for potential decode operation, which remains null until
     // first read failure
+    boolean slowChunksHandled = slowCellThresholdMs <= 0;
     while (!futures.isEmpty()) {
       try {
         long beginReadMS = Time.monotonicNow();
         StripingChunkReadResult r = StripedBlockUtil
-            .getNextCompletedStripedRead(service, futures, 0);
+            .getNextCompletedStripedRead(service, futures,
+                slowChunksHandled ? 0 : slowCellThresholdMs);
         long readTimeMS = Time.monotonicNow() - beginReadMS;
+        if (r.state == StripingChunkReadResult.TIMEOUT) {
+          slowChunksHandled = true;
+          readParityForSlowChunks();
+          continue;
+        }
 
-        dfsStripedInputStream.updateReadStats(r.getReadStats(), readTimeMS);
+        updateReadStats(r.getReadStats(), readTimeMS);
         DFSClient.LOG.debug("Read task returned: {}, for stripe {}",
             r, alignedStripe);
         StripingChunk returnedChunk = alignedStripe.chunks[r.index];
@@ -378,7 +546,11 @@ void readStripe() throws IOException {
           returnedChunk.state = StripingChunk.FETCHED;
           alignedStripe.fetchedChunksNum++;
           updateState4SuccessRead(r);
-          if (alignedStripe.fetchedChunksNum == dataBlkNum) {
+          // Chunks of a Locally Repairable Code may be decoded from fewer or
+          // need more than dataBlkNum chunks, wait for all of them.
+          if (!hasLocalParity &&
+              alignedStripe.fetchedChunksNum == dataBlkNum) {
+            abandonPendingChunks();
             clearFutures();
             break;
           }
@@ -397,7 +569,7 @@ void readStripe() throws IOException {
       } catch (InterruptedException ie) {
         String err = "Read request interrupted";
         DFSClient.LOG.error(err, ie);
-        dfsStripedInputStream.close();
+        handleReadFailure();
         clearFutures();
         // Don't decode if read interrupted
         throw new InterruptedIOException(err);
@@ -428,6 +600,9 @@ void finalizeDecodeInputs() {
         }
       } else if (chunk != null && chunk.state == StripingChunk.ALLZERO) {
         decodeInputs[i].setAllZero(true);
+      } else if (chunk != null && chunk.state == StripingChunk.REQUESTED) {
+        // Not read, as its local group was enough for decoding.
+        decodeInputs[i] = null;
       }
     }
   }
@@ -448,7 +623,15 @@ void decodeAndFillBuffer(boolean fillBuffer) throws IOException {
 
     long start = Time.monotonicNow();
     // Step 2: decode into prepared output buffers
-    decoder.decode(decodeInputs, decodeIndices, outputs);
+    try {
+      decoder.decode(decodeInputs, decodeIndices, outputs);
+    } catch (HadoopIllegalArgumentException e) {
+      if (!hasLocalParity) {
+        throw e;
+      }
+      // Unlike RS, not any dataBlkNum chunks of an LRC can be decoded from.
+      throw new IOException("Failed to decode stripe " + alignedStripe, e);
+    }
 
     // Step 3: fill original application buffer with decoded data
     if (fillBuffer) {
@@ -499,4 +682,21 @@ public void setReadTo(long readTo) {
     this.readTo = readTo;
   }
 
+  /**
+   * Read parity for the data chunks that have not arrived after the given
+   * time. Only for buffers that can be dropped once the stripe has been
+   * read, since the slow reads are not waited for.
+   */
+  void setSlowCellThreshold(long thresholdMs) {
+    this.slowCellThresholdMs = thresholdMs;
+  }
+
+  /**
+   * @return true if reads were given up on while in flight, so the buffers
+   *         of this stripe may still be written to and must not be reused.
+   */
+  boolean hasAbandonedReads() {
+    return abandonedReads;
+  }
+
 }
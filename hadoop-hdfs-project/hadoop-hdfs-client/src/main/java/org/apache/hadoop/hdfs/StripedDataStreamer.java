@@ -20,6 +20,7 @@
 
 import java.io.IOException;
 import java.util.EnumSet;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop.classification.InterfaceAudience;
@@ -115,6 +116,12 @@ protected void setupPipelineForCreate() throws IOException {
     setPipeline(lb);
   }
 
+  /** Block groups are allocated by the DFSStripedOutputStream. */
+  @Override
+  protected ThreadPoolExecutor getBlockPreallocationPool() {
+    return null;
+  }
+
   @VisibleForTesting
   LocatedBlock peekFollowingBlock() {
     return coordinator.getFollowingBlocks().peek(index);
@@ -167,6 +167,10 @@ public interface HdfsClientConfigKeys {
       "dfs.client.block.reader.remote.buffer.size";
   int DFS_CLIENT_BLOCK_READER_REMOTE_BUFFER_SIZE_DEFAULT = 512;
 
+  String DFS_CLIENT_BLOCK_READER_REMOTE_MAX_PACKET_SIZE_KEY =
+      "dfs.client.block.reader.remote.max.packet.size";
+  int DFS_CLIENT_BLOCK_READER_REMOTE_MAX_PACKET_SIZE_DEFAULT = 0;
+
   String DFS_CLIENT_DEAD_NODE_DETECTION_ENABLED_KEY =
           "dfs.client.deadnode.detection.enabled";
   boolean DFS_CLIENT_DEAD_NODE_DETECTION_ENABLED_DEFAULT = false;
@@ -220,6 +224,37 @@ public interface HdfsClientConfigKeys {
       "dfs.client.refresh.read-block-locations.register-automatically";
   boolean DFS_CLIENT_REFRESH_READ_BLOCK_LOCATIONS_AUTOMATICALLY_DEFAULT = true;
 
+  // How long LocatedBlocks fetched on open are cached and shared by the
+  // DFSClients of a client context. A value of 0 disables the cache.
+  String  DFS_CLIENT_LOCATED_BLOCKS_CACHE_TTL_MS_KEY =
+      "dfs.client.located-blocks.cache.ttl.ms";
+  long DFS_CLIENT_LOCATED_BLOCKS_CACHE_TTL_MS_DEFAULT = 0L;
+
+  // Maximum number of files whose LocatedBlocks are cached.
+  String  DFS_CLIENT_LOCATED_BLOCKS_CACHE_MAX_ENTRIES_KEY =
+      "dfs.client.located-blocks.cache.max-entries";
+  long DFS_CLIENT_LOCATED_BLOCKS_CACHE_MAX_ENTRIES_DEFAULT = 10000L;
+
+  // How long file statuses and directory listings are cached and shared by
+  // the DFSClients of a client context. A value of 0 disables the cache.
+  String  DFS_CLIENT_METADATA_CACHE_TTL_MS_KEY =
+      "dfs.client.metadata.cache.ttl.ms";
+  long DFS_CLIENT_METADATA_CACHE_TTL_MS_DEFAULT = 0L;
+
+  // Maximum number of file statuses and listings that are cached.
+  String  DFS_CLIENT_METADATA_CACHE_MAX_ENTRIES_KEY =
+      "dfs.client.metadata.cache.max-entries";
+  long DFS_CLIENT_METADATA_CACHE_MAX_ENTRIES_DEFAULT = 10000L;
+
+  // The paths whose metadata, and that of everything under them, is cached.
+  String  DFS_CLIENT_METADATA_CACHE_PATHS_KEY =
+      "dfs.client.metadata.cache.paths";
+
+  // Whether the edits of the NameNode are tailed to invalidate the cache.
+  String  DFS_CLIENT_METADATA_CACHE_INOTIFY_ENABLED_KEY =
+      "dfs.client.metadata.cache.inotify.enabled";
+  boolean DFS_CLIENT_METADATA_CACHE_INOTIFY_ENABLED_DEFAULT = false;
+
   String  DFS_DATANODE_KERBEROS_PRINCIPAL_KEY =
       "dfs.datanode.kerberos.principal";
   String  DFS_DATANODE_READAHEAD_BYTES_KEY = "dfs.datanode.readahead.bytes";
@@ -413,6 +448,20 @@ interface Write {
     String RECOVER_LEASE_ON_CLOSE_EXCEPTION_KEY =
         PREFIX + "recover.lease.on.close.exception";
     boolean RECOVER_LEASE_ON_CLOSE_EXCEPTION_DEFAULT = false;
+    /**
+     * Threads shared by all the output streams of the JVM to allocate the
+     * next block while the current one is closed. 0 allocates blocks on the
+     * DataStreamer thread once the previous block is closed.
+     */
+    String  BLOCK_PREALLOCATION_THREADPOOL_SIZE_KEY =
+        PREFIX + "block-preallocation.threadpool.size";
+    int     BLOCK_PREALLOCATION_THREADPOOL_SIZE_DEFAULT = 0;
+    /**
+     * Whether packets are built in pooled direct buffers, which are written
+     * to the datanode socket without copying them to a temporary one.
+     */
+    String  DIRECT_BUFFERS_ENABLED_KEY = PREFIX + "direct-buffers.enabled";
+    boolean DIRECT_BUFFERS_ENABLED_DEFAULT = false;
 
     interface ByteArrayManager {
       String PREFIX = Write.PREFIX + "byte-array-manager.";
@@ -429,6 +478,21 @@ interface ByteArrayManager {
     }
   }
 
+  /** dfs.client.write.striped configuration properties */
+  interface StripedWrite {
+    String PREFIX = Write.PREFIX + "striped.";
+
+    /**
+     * Threads shared by all the striped output streams of the JVM to compute
+     * parity. 0 encodes on the writing thread.
+     */
+    String  ENCODE_THREADPOOL_SIZE_KEY = PREFIX + "encode.threadpool.size";
+    int     ENCODE_THREADPOOL_SIZE_DEFAULT = 0;
+    /** Number of full stripes a stream may have being encoded at once. */
+    String  MAX_STRIPES_IN_FLIGHT_KEY = PREFIX + "max-stripes-in-flight";
+    int     MAX_STRIPES_IN_FLIGHT_DEFAULT = 4;
+  }
+
   /** dfs.client.block.write configuration properties */
   interface BlockWrite {
     String PREFIX = HdfsClientConfigKeys.PREFIX + "block.write.";
@@ -520,6 +584,19 @@ interface HedgedRead {
     long    THRESHOLD_MILLIS_DEFAULT = 500;
     String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
     int     THREADPOOL_SIZE_DEFAULT = 0;
+    String  ADAPTIVE_ENABLED_KEY = PREFIX + "adaptive.enabled";
+    boolean ADAPTIVE_ENABLED_DEFAULT = false;
+    String  ADAPTIVE_PERCENTILE_KEY = PREFIX + "adaptive.percentile";
+    double  ADAPTIVE_PERCENTILE_DEFAULT = 95.0;
+    String  ADAPTIVE_MIN_THRESHOLD_MILLIS_KEY =
+        PREFIX + "adaptive.min.threshold.millis";
+    long    ADAPTIVE_MIN_THRESHOLD_MILLIS_DEFAULT = 10;
+    String  ADAPTIVE_DECAY_INTERVAL_MILLIS_KEY =
+        PREFIX + "adaptive.decay.interval.millis";
+    long    ADAPTIVE_DECAY_INTERVAL_MILLIS_DEFAULT = 60000;
+    String  ADAPTIVE_SLOW_NODE_FACTOR_KEY =
+        PREFIX + "adaptive.slow.node.factor";
+    double  ADAPTIVE_SLOW_NODE_FACTOR_DEFAULT = 3.0;
   }
 
   /** dfs.client.read.striped configuration properties */
@@ -532,6 +609,50 @@ interface StripedRead {
      * span 6 DNs, so this default value accommodates 3 read streams
      */
     int     THREADPOOL_SIZE_DEFAULT = 18;
+    /**
+     * Number of stripes a stateful read fetches ahead of the one being
+     * returned. 0 reads one stripe at a time.
+     */
+    String  READAHEAD_STRIPES_KEY = PREFIX + "readahead.stripes";
+    int     READAHEAD_STRIPES_DEFAULT = 0;
+    /**
+     * How long a stateful read waits for the data cells of a stripe before
+     * it reads parity for the ones still outstanding. 0 waits for all of
+     * them.
+     */
+    String  SLOW_CELL_THRESHOLD_MILLIS_KEY =
+        PREFIX + "slow-cell.threshold.millis";
+    long    SLOW_CELL_THRESHOLD_MILLIS_DEFAULT = 0;
+  }
+
+  /** dfs.client.read.vectored configuration properties */
+  interface VectoredRead {
+    String PREFIX = Read.PREFIX + "vectored.";
+
+    /**
+     * Threads shared by all clients of the JVM for issuing the ranges of
+     * different blocks in parallel. 0 reads the ranges in the calling thread.
+     */
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 8;
+  }
+
+  /** dfs.client.read.async configuration properties */
+  interface AsyncRead {
+    String PREFIX = Read.PREFIX + "async.";
+
+    /**
+     * Threads shared by all clients of the JVM for asynchronous positional
+     * reads. 0 reads in the calling thread.
+     */
+    String  THREADPOOL_SIZE_KEY = PREFIX + "threadpool.size";
+    int     THREADPOOL_SIZE_DEFAULT = 8;
+    /**
+     * Reads queued for the threads at most. Once the queue is full, reads
+     * are done in the calling thread, which slows the caller down.
+     */
+    String  MAX_QUEUED_KEY = PREFIX + "max.queued";
+    int     MAX_QUEUED_DEFAULT = 256;
   }
 
   /** dfs.http.client configuration properties */
@@ -19,11 +19,16 @@
 
 import java.io.InputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.crypto.CryptoInputStream;
 import org.apache.hadoop.hdfs.DFSInputStream;
 import org.apache.hadoop.hdfs.ReadStatistics;
@@ -111,4 +116,46 @@ public ReadStatistics getReadStatistics() {
   public void clearReadStatistics() {
     getDFSInputStream().clearReadStatistics();
   }
+
+  /**
+   * Read length bytes at the given position without blocking the caller.
+   * The future completes with the data, flipped for reading, or with the
+   * failure of the read.  Encrypted files are read through
+   * {@link #readVectored(List, IntFunction)} instead, which may block.
+   *
+   * @see DFSInputStream#readAsync(long, int, IntFunction)
+   */
+  public CompletableFuture<ByteBuffer> readAsync(long position, int length,
+      IntFunction<ByteBuffer> allocate) {
+    if (!(in instanceof CryptoInputStream)) {
+      return getDFSInputStream().readAsync(position, length, allocate);
+    }
+    FileRange range = FileRange.createFileRange(position, length);
+    try {
+      readVectored(Collections.singletonList(range), allocate);
+    } catch (IOException | RuntimeException e) {
+      CompletableFuture<ByteBuffer> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+    return range.getData();
+  }
+
+  /**
+   * Read up to maxLength bytes as a read-only view of the local block file
+   * mapped into memory, with verified checksums.  The buffer must be given
+   * back with {@link #releaseBuffer(ByteBuffer)}.
+   *
+   * @return the data, or null at the end of the file.
+   * @throws UnsupportedOperationException if the data can't be mapped, e.g.
+   *         because it is encrypted or not read through short-circuit reads.
+   * @see DFSInputStream#readMapped(int)
+   */
+  public ByteBuffer readMapped(int maxLength) throws IOException {
+    if (in instanceof CryptoInputStream) {
+      throw new UnsupportedOperationException(
+          "Can't map the data of an encrypted file.");
+    }
+    return getDFSInputStream().readMapped(maxLength);
+  }
 }
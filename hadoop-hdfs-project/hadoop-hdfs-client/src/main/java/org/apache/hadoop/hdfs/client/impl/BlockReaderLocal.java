@@ -696,6 +696,90 @@ public ClientMmap getClientMmap(EnumSet<ReadOption> opts) {
     return clientMmap;
   }
 
+  /**
+   * Get a ClientMmap object whose data in the given range is verified.
+   *
+   * If the checksums need not be verified, because we skip them or the
+   * replica is mlocked, this is the same as getClientMmap.  Otherwise, the
+   * checksums of the regions of the replica that overlap the range are
+   * verified against the mapped data, unless the shared memory slot of the
+   * replica says that they were verified already.  So repeated scans of the
+   * same local replica neither copy the data nor checksum it again.
+   *
+   * @param blockPos  The offset in the block of the data to verify.
+   * @param length    The length of the data to verify.
+   *
+   * @return          null on failure; the ClientMmap otherwise.
+   */
+  @Override
+  public synchronized ClientMmap getVerifiedClientMmap(long blockPos,
+      int length) throws IOException {
+    ClientMmap clientMmap = getClientMmap(EnumSet.noneOf(ReadOption.class));
+    if (clientMmap != null) {
+      return clientMmap;
+    }
+    final long blockLength = dataIn.size();
+    if (blockLength > Integer.MAX_VALUE) {
+      // The end of the mmap would cut a checksum chunk in two.
+      LOG.trace("can't verify an mmap for {} of {} since the block is " +
+          "larger than 2 GB.", block, filename);
+      return null;
+    }
+    clientMmap = replica.getOrCreateClientMmap(false);
+    if (clientMmap == null) {
+      return null;
+    }
+    boolean success = false;
+    try {
+      verifyRegions(clientMmap.getMappedByteBuffer(), blockLength, blockPos,
+          length);
+      success = true;
+    } finally {
+      if (!success) {
+        clientMmap.close();
+      }
+    }
+    return clientMmap;
+  }
+
+  private void verifyRegions(ByteBuffer mmap, long blockLength, long blockPos,
+      int length) throws IOException {
+    final int regionSize = (int) ShortCircuitReplica.getVerifiedRegionSize(
+        blockLength, bytesPerChecksum);
+    final int firstRegion = (int) (blockPos / regionSize);
+    final int lastRegion = (int) ((blockPos + length - 1) / regionSize);
+    for (int region = firstRegion; region <= lastRegion; region++) {
+      if (replica.isRegionVerified(region)) {
+        continue;
+      }
+      final int start = region * regionSize;
+      final int end = (int) Math.min(blockLength, (long) start + regionSize);
+      final ByteBuffer data = mmap.duplicate();
+      data.position(start);
+      data.limit(end);
+      final int checksumsNeeded =
+          (end - start + bytesPerChecksum - 1) / bytesPerChecksum;
+      final ByteBuffer sums =
+          ByteBuffer.allocate(checksumsNeeded * checksumSize);
+      long checksumPos = BlockMetadataHeader.getHeaderSize()
+          + ((long) (start / bytesPerChecksum) * checksumSize);
+      while (sums.hasRemaining()) {
+        int nRead = checksumIn.read(sums, checksumPos);
+        if (nRead < 0) {
+          throw new IOException("Got unexpected checksum file EOF at " +
+              checksumPos + ", block file position " + start +
+              " for block " + block + " of file " + filename);
+        }
+        checksumPos += nRead;
+      }
+      sums.flip();
+      checksum.verifyChunkedSums(data, sums, filename, start);
+      replica.markRegionVerified(region);
+      LOG.trace("verified region {} ({} bytes at {}) of {}", region,
+          end - start, start, replica);
+    }
+  }
+
   @VisibleForTesting
   boolean getVerifyChecksum() {
     return this.verifyChecksum;
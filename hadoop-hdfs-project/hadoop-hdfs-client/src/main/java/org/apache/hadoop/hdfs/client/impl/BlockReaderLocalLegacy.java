@@ -725,6 +725,11 @@ public ClientMmap getClientMmap(EnumSet<ReadOption> opts) {
     return null;
   }
 
+  @Override
+  public ClientMmap getVerifiedClientMmap(long blockPos, int length) {
+    return null;
+  }
+
   @Override
   public DataChecksum getDataChecksum() {
     return checksum;
@@ -58,6 +58,8 @@
 
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_BLOCK_READER_REMOTE_BUFFER_SIZE_DEFAULT;
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_BLOCK_READER_REMOTE_BUFFER_SIZE_KEY;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_BLOCK_READER_REMOTE_MAX_PACKET_SIZE_DEFAULT;
+import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_BLOCK_READER_REMOTE_MAX_PACKET_SIZE_KEY;
 
 /**
  * This is a wrapper around connection to datanode
@@ -407,8 +409,12 @@ public static BlockReader newBlockReader(String file,
         DFS_CLIENT_BLOCK_READER_REMOTE_BUFFER_SIZE_DEFAULT);
     final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
         peer.getOutputStream(), bufferSize));
+    // Never ask for packets larger than PacketReceiver will accept.
+    int maxPacketSize = Math.min(PacketReceiver.MAX_PACKET_SIZE,
+        configuration.getInt(DFS_CLIENT_BLOCK_READER_REMOTE_MAX_PACKET_SIZE_KEY,
+            DFS_CLIENT_BLOCK_READER_REMOTE_MAX_PACKET_SIZE_DEFAULT));
     new Sender(out).readBlock(block, blockToken, clientName, startOffset, len,
-        verifyChecksum, cachingStrategy);
+        verifyChecksum, cachingStrategy, maxPacketSize);
 
     //
     // Get bytes in block
@@ -469,6 +475,11 @@ public ClientMmap getClientMmap(EnumSet<ReadOption> opts) {
     return null;
   }
 
+  @Override
+  public ClientMmap getVerifiedClientMmap(long blockPos, int length) {
+    return null;
+  }
+
   @Override
   public DataChecksum getDataChecksum() {
     return checksum;
@@ -148,6 +148,12 @@ public class DfsClientConf {
 
   /** wait time window before refreshing blocklocation for inputstream. */
   private final long refreshReadBlockLocationsMS;
+  private final long locatedBlocksCacheTtlMs;
+  private final long locatedBlocksCacheMaxEntries;
+  private final long metadataCacheTtlMs;
+  private final long metadataCacheMaxEntries;
+  private final String[] metadataCachePaths;
+  private final boolean metadataCacheInotifyEnabled;
   private final boolean refreshReadBlockLocationsAutomatically;
 
   private final ShortCircuitConf shortCircuitConf;
@@ -155,10 +161,20 @@ public class DfsClientConf {
 
   private final long hedgedReadThresholdMillis;
   private final int hedgedReadThreadpoolSize;
+  private final boolean adaptiveHedgedReadEnabled;
   private final List<Class<? extends ReplicaAccessorBuilder>>
       replicaAccessorBuilderClasses;
 
   private final int stripedReadThreadpoolSize;
+  private final int stripedReadAheadStripes;
+  private final long stripedReadSlowCellThresholdMillis;
+  private final int vectoredReadThreadpoolSize;
+  private final int asyncReadThreadpoolSize;
+  private final int asyncReadMaxQueued;
+  private final int stripedEncodeThreadpoolSize;
+  private final int stripedWriteMaxStripesInFlight;
+  private final int blockPreallocationThreadpoolSize;
+  private final boolean writeDirectBuffersEnabled;
 
   private final boolean dataTransferTcpNoDelay;
 
@@ -278,12 +294,35 @@ public DfsClientConf(Configuration conf) {
         HdfsClientConfigKeys.DFS_CLIENT_REFRESH_READ_BLOCK_LOCATIONS_AUTOMATICALLY_KEY,
         HdfsClientConfigKeys.DFS_CLIENT_REFRESH_READ_BLOCK_LOCATIONS_AUTOMATICALLY_DEFAULT);
 
+    locatedBlocksCacheTtlMs = conf.getLong(
+        HdfsClientConfigKeys.DFS_CLIENT_LOCATED_BLOCKS_CACHE_TTL_MS_KEY,
+        HdfsClientConfigKeys.DFS_CLIENT_LOCATED_BLOCKS_CACHE_TTL_MS_DEFAULT);
+    locatedBlocksCacheMaxEntries = conf.getLong(
+        HdfsClientConfigKeys.DFS_CLIENT_LOCATED_BLOCKS_CACHE_MAX_ENTRIES_KEY,
+        HdfsClientConfigKeys.
+            DFS_CLIENT_LOCATED_BLOCKS_CACHE_MAX_ENTRIES_DEFAULT);
+
+    metadataCacheTtlMs = conf.getLong(
+        HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_TTL_MS_KEY,
+        HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_TTL_MS_DEFAULT);
+    metadataCacheMaxEntries = conf.getLong(
+        HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_MAX_ENTRIES_KEY,
+        HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_MAX_ENTRIES_DEFAULT);
+    metadataCachePaths = conf.getTrimmedStrings(
+        HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_PATHS_KEY);
+    metadataCacheInotifyEnabled = conf.getBoolean(
+        HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_INOTIFY_ENABLED_KEY,
+        HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_INOTIFY_ENABLED_DEFAULT);
+
     hedgedReadThresholdMillis = conf.getLong(
         HedgedRead.THRESHOLD_MILLIS_KEY,
         HedgedRead.THRESHOLD_MILLIS_DEFAULT);
     hedgedReadThreadpoolSize = conf.getInt(
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
         HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_DEFAULT);
+    adaptiveHedgedReadEnabled = conf.getBoolean(
+        HedgedRead.ADAPTIVE_ENABLED_KEY,
+        HedgedRead.ADAPTIVE_ENABLED_DEFAULT);
 
     deadNodeDetectionEnabled =
         conf.getBoolean(DFS_CLIENT_DEAD_NODE_DETECTION_ENABLED_KEY,
@@ -295,6 +334,57 @@ public DfsClientConf(Configuration conf) {
     Preconditions.checkArgument(stripedReadThreadpoolSize > 0, "The value of " +
         HdfsClientConfigKeys.StripedRead.THREADPOOL_SIZE_KEY +
         " must be greater than 0.");
+    stripedReadAheadStripes = conf.getInt(
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY,
+        HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_DEFAULT);
+    Preconditions.checkArgument(stripedReadAheadStripes >= 0,
+        "The value of " + HdfsClientConfigKeys.StripedRead.READAHEAD_STRIPES_KEY
+        + " must not be negative.");
+    stripedReadSlowCellThresholdMillis = conf.getLong(
+        HdfsClientConfigKeys.StripedRead.SLOW_CELL_THRESHOLD_MILLIS_KEY,
+        HdfsClientConfigKeys.StripedRead.SLOW_CELL_THRESHOLD_MILLIS_DEFAULT);
+    vectoredReadThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(vectoredReadThreadpoolSize >= 0,
+        "The value of " + HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY
+        + " must not be negative.");
+    asyncReadThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.AsyncRead.THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.AsyncRead.THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(asyncReadThreadpoolSize >= 0,
+        "The value of " + HdfsClientConfigKeys.AsyncRead.THREADPOOL_SIZE_KEY
+        + " must not be negative.");
+    asyncReadMaxQueued = conf.getInt(
+        HdfsClientConfigKeys.AsyncRead.MAX_QUEUED_KEY,
+        HdfsClientConfigKeys.AsyncRead.MAX_QUEUED_DEFAULT);
+    Preconditions.checkArgument(asyncReadMaxQueued > 0,
+        "The value of " + HdfsClientConfigKeys.AsyncRead.MAX_QUEUED_KEY
+        + " must be greater than 0.");
+    stripedEncodeThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.StripedWrite.ENCODE_THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.StripedWrite.ENCODE_THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(stripedEncodeThreadpoolSize >= 0,
+        "The value of "
+        + HdfsClientConfigKeys.StripedWrite.ENCODE_THREADPOOL_SIZE_KEY
+        + " must not be negative.");
+    stripedWriteMaxStripesInFlight = conf.getInt(
+        HdfsClientConfigKeys.StripedWrite.MAX_STRIPES_IN_FLIGHT_KEY,
+        HdfsClientConfigKeys.StripedWrite.MAX_STRIPES_IN_FLIGHT_DEFAULT);
+    Preconditions.checkArgument(stripedWriteMaxStripesInFlight > 0,
+        "The value of "
+        + HdfsClientConfigKeys.StripedWrite.MAX_STRIPES_IN_FLIGHT_KEY
+        + " must be greater than 0.");
+    blockPreallocationThreadpoolSize = conf.getInt(
+        HdfsClientConfigKeys.Write.BLOCK_PREALLOCATION_THREADPOOL_SIZE_KEY,
+        HdfsClientConfigKeys.Write.BLOCK_PREALLOCATION_THREADPOOL_SIZE_DEFAULT);
+    Preconditions.checkArgument(blockPreallocationThreadpoolSize >= 0,
+        "The value of "
+        + HdfsClientConfigKeys.Write.BLOCK_PREALLOCATION_THREADPOOL_SIZE_KEY
+        + " must not be negative.");
+    writeDirectBuffersEnabled = conf.getBoolean(
+        HdfsClientConfigKeys.Write.DIRECT_BUFFERS_ENABLED_KEY,
+        HdfsClientConfigKeys.Write.DIRECT_BUFFERS_ENABLED_DEFAULT);
     replicaAccessorBuilderClasses = loadReplicaAccessorBuilderClasses(conf);
 
     leaseHardLimitPeriod =
@@ -683,6 +773,13 @@ public int getHedgedReadThreadpoolSize() {
     return hedgedReadThreadpoolSize;
   }
 
+  /**
+   * @return the adaptiveHedgedReadEnabled
+   */
+  public boolean isAdaptiveHedgedReadEnabled() {
+    return adaptiveHedgedReadEnabled;
+  }
+
   /**
    * @return the stripedReadThreadpoolSize
    */
@@ -690,6 +787,69 @@ public int getStripedReadThreadpoolSize() {
     return stripedReadThreadpoolSize;
   }
 
+  /**
+   * @return the stripedReadAheadStripes
+   */
+  public int getStripedReadAheadStripes() {
+    return stripedReadAheadStripes;
+  }
+
+  /**
+   * @return the stripedReadSlowCellThresholdMillis
+   */
+  public long getStripedReadSlowCellThresholdMillis() {
+    return stripedReadSlowCellThresholdMillis;
+  }
+
+  /**
+   * @return the vectoredReadThreadpoolSize
+   */
+  public int getVectoredReadThreadpoolSize() {
+    return vectoredReadThreadpoolSize;
+  }
+
+  /**
+   * @return the asyncReadThreadpoolSize
+   */
+  public int getAsyncReadThreadpoolSize() {
+    return asyncReadThreadpoolSize;
+  }
+
+  /**
+   * @return the asyncReadMaxQueued
+   */
+  public int getAsyncReadMaxQueued() {
+    return asyncReadMaxQueued;
+  }
+
+  /**
+   * @return the stripedEncodeThreadpoolSize
+   */
+  public int getStripedEncodeThreadpoolSize() {
+    return stripedEncodeThreadpoolSize;
+  }
+
+  /**
+   * @return the stripedWriteMaxStripesInFlight
+   */
+  public int getStripedWriteMaxStripesInFlight() {
+    return stripedWriteMaxStripesInFlight;
+  }
+
+  /**
+   * @return the blockPreallocationThreadpoolSize
+   */
+  public int getBlockPreallocationThreadpoolSize() {
+    return blockPreallocationThreadpoolSize;
+  }
+
+  /**
+   * @return the writeDirectBuffersEnabled
+   */
+  public boolean isWriteDirectBuffersEnabled() {
+    return writeDirectBuffersEnabled;
+  }
+
   /**
    * @return the deadNodeDetectionEnabled
    */
@@ -731,6 +891,38 @@ public boolean isRefreshReadBlockLocationsAutomatically() {
     return refreshReadBlockLocationsAutomatically;
   }
 
+  public boolean isLocatedBlocksCacheEnabled() {
+    return locatedBlocksCacheTtlMs > 0;
+  }
+
+  public long getLocatedBlocksCacheTtlMs() {
+    return locatedBlocksCacheTtlMs;
+  }
+
+  public long getLocatedBlocksCacheMaxEntries() {
+    return locatedBlocksCacheMaxEntries;
+  }
+
+  public boolean isMetadataCacheEnabled() {
+    return metadataCacheTtlMs > 0 && metadataCachePaths.length > 0;
+  }
+
+  public long getMetadataCacheTtlMs() {
+    return metadataCacheTtlMs;
+  }
+
+  public long getMetadataCacheMaxEntries() {
+    return metadataCacheMaxEntries;
+  }
+
+  public String[] getMetadataCachePaths() {
+    return metadataCachePaths;
+  }
+
+  public boolean isMetadataCacheInotifyEnabled() {
+    return metadataCacheInotifyEnabled;
+  }
+
   /**
    * @return the shortCircuitConf
    */
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.client.impl.metrics;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.LocatedBlocksCache;
+import org.apache.hadoop.metrics2.annotation.Metric;
+import org.apache.hadoop.metrics2.annotation.Metrics;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
+
+/**
+ * This class exposes the counters of the {@link LocatedBlocksCache} of a
+ * client context.
+ */
+@InterfaceAudience.Private
+@Metrics(about = "Located blocks cache of a client context", context = "dfs")
+public class LocatedBlocksCacheMetrics {
+  private static final String REGISTERED_NAME_PREFIX = "LocatedBlocksCache-";
+
+  private final LocatedBlocksCache cache;
+
+  private LocatedBlocksCacheMetrics(LocatedBlocksCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Register the metrics of the cache of the client context.
+   */
+  public static LocatedBlocksCacheMetrics create(String contextName,
+      LocatedBlocksCache cache) {
+    return DefaultMetricsSystem.instance().register(
+        REGISTERED_NAME_PREFIX + contextName, null,
+        new LocatedBlocksCacheMetrics(cache));
+  }
+
+  @Metric(value = {"Hits", "Number of opens served from the cache"},
+      type = Metric.Type.COUNTER)
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  @Metric(value = {"Misses", "Number of opens not found in the cache"},
+      type = Metric.Type.COUNTER)
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  @Metric(value = {"Invalidations", "Number of paths invalidated"},
+      type = Metric.Type.COUNTER)
+  public long getInvalidations() {
+    return cache.getInvalidations();
+  }
+
+  @Metric(value = {"Size", "Number of cached files"})
+  public long getSize() {
+    return cache.size();
+  }
+}
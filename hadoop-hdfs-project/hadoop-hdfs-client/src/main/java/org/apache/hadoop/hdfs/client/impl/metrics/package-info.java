@@ -17,7 +17,8 @@
  */
 
 /**
- * Support for tracking Block Reader Local's latencies.
+ * Support for tracking Block Reader Local's latencies, and the caches of
+ * the client contexts.
  */
 @InterfaceAudience.Private
 @InterfaceStability.Evolving
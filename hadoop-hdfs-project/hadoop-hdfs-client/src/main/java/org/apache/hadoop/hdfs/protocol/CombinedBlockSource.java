@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.protocol;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
+import org.apache.hadoop.security.token.Token;
+
+/**
+ * A block to read in a combined read of blocks, with the datanode storing it
+ * and the GF(2^8) coefficient it is multiplied by for each combined output.
+ */
+@InterfaceAudience.Private
+@InterfaceStability.Evolving
+public class CombinedBlockSource {
+  private final DatanodeInfo datanode;
+  private final ExtendedBlock block;
+  private final Token<BlockTokenIdentifier> blockToken;
+  private final byte[] coefficients;
+
+  public CombinedBlockSource(DatanodeInfo datanode, ExtendedBlock block,
+      Token<BlockTokenIdentifier> blockToken, byte[] coefficients) {
+    this.datanode = datanode;
+    this.block = block;
+    this.blockToken = blockToken;
+    this.coefficients = coefficients;
+  }
+
+  public DatanodeInfo getDatanode() {
+    return datanode;
+  }
+
+  public ExtendedBlock getBlock() {
+    return block;
+  }
+
+  public Token<BlockTokenIdentifier> getBlockToken() {
+    return blockToken;
+  }
+
+  public byte[] getCoefficients() {
+    return coefficients;
+  }
+}
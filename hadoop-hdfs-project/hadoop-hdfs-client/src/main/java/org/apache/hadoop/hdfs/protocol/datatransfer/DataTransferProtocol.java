@@ -18,11 +18,13 @@
 package org.apache.hadoop.hdfs.protocol.datatransfer;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.protocol.BlockChecksumOptions;
+import org.apache.hadoop.hdfs.protocol.CombinedBlockSource;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.StripedBlockInfo;
@@ -64,6 +66,8 @@ public interface DataTransferProtocol {
    * @param sendChecksum if false, the DN should skip reading and sending
    *        checksums
    * @param cachingStrategy  The caching strategy to use.
+   * @param maxPacketSize the largest packet the client is willing to
+   *        receive, or 0 to let the DN use its default packet size.
    */
   void readBlock(final ExtendedBlock blk,
       final Token<BlockTokenIdentifier> blockToken,
@@ -71,7 +75,8 @@ void readBlock(final ExtendedBlock blk,
       final long blockOffset,
       final long length,
       final boolean sendChecksum,
-      final CachingStrategy cachingStrategy) throws IOException;
+      final CachingStrategy cachingStrategy,
+      final int maxPacketSize) throws IOException;
 
   /**
    * Write a block to a datanode pipeline.
@@ -238,4 +243,32 @@ void blockGroupChecksum(StripedBlockInfo stripedBlockInfo,
           Token<BlockTokenIdentifier> blockToken,
           long requestedNumBytes,
           BlockChecksumOptions blockChecksumOptions) throws IOException;
+
+  /**
+   * Read linear combinations of blocks stored on several datanodes, as used
+   * to reconstruct striped blocks. The datanode combines its own block with
+   * the combinations it reads from the datanodes of the other blocks, which
+   * it forwards the op to, so every link carries one combined block per
+   * output rather than every block.
+   *
+   * The response is followed by, for each window of windowSize bytes of the
+   * range, the window of every output then a CRC32 of those bytes. Blocks
+   * shorter than the range are read as padded with zeros.
+   *
+   * @param blk the block stored on the datanode.
+   * @param blockToken security token for accessing the block.
+   * @param coefficients the coefficient of the block for each output.
+   * @param offset the offset in the blocks, a multiple of bytesPerChecksum.
+   * @param len the number of bytes of every output.
+   * @param windowSize the number of bytes combined at a time, a multiple of
+   *                   bytesPerChecksum.
+   * @param sources the other blocks to combine.
+   */
+  void readCombinedBlocks(ExtendedBlock blk,
+      Token<BlockTokenIdentifier> blockToken,
+      byte[] coefficients,
+      long offset,
+      long len,
+      int windowSize,
+      List<CombinedBlockSource> sources) throws IOException;
 }
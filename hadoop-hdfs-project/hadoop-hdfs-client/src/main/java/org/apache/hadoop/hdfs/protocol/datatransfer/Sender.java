@@ -23,11 +23,13 @@
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.fs.StorageType;
 import org.apache.hadoop.hdfs.protocol.BlockChecksumOptions;
+import org.apache.hadoop.hdfs.protocol.CombinedBlockSource;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.StripedBlockInfo;
@@ -38,6 +40,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpBlockChecksumProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpBlockGroupChecksumProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpCopyBlockProto;
+import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpReadCombinedBlocksProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpReadBlockProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpReplaceBlockProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpRequestShortCircuitAccessProto;
@@ -56,6 +59,7 @@
 import org.apache.hadoop.tracing.Tracer;
 import org.apache.hadoop.tracing.TraceUtils;
 
+import org.apache.hadoop.thirdparty.protobuf.ByteString;
 import org.apache.hadoop.thirdparty.protobuf.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -108,18 +112,35 @@ public void readBlock(final ExtendedBlock blk,
       final long blockOffset,
       final long length,
       final boolean sendChecksum,
-      final CachingStrategy cachingStrategy) throws IOException {
+      final CachingStrategy cachingStrategy,
+      final int maxPacketSize) throws IOException {
 
-    OpReadBlockProto proto = OpReadBlockProto.newBuilder()
+    OpReadBlockProto.Builder builder = OpReadBlockProto.newBuilder()
         .setHeader(DataTransferProtoUtil.buildClientHeader(blk, clientName,
             blockToken))
         .setOffset(blockOffset)
         .setLen(length)
         .setSendChecksums(sendChecksum)
-        .setCachingStrategy(getCachingStrategy(cachingStrategy))
-        .build();
+        .setCachingStrategy(getCachingStrategy(cachingStrategy));
+    if (maxPacketSize > 0) {
+      builder.setMaxPacketSize(maxPacketSize);
+    }
 
-    send(out, Op.READ_BLOCK, proto);
+    send(out, Op.READ_BLOCK, builder.build());
+  }
+
+  /**
+   * Read a block using the DataNode's default packet size.
+   */
+  public void readBlock(final ExtendedBlock blk,
+      final Token<BlockTokenIdentifier> blockToken,
+      final String clientName,
+      final long blockOffset,
+      final long length,
+      final boolean sendChecksum,
+      final CachingStrategy cachingStrategy) throws IOException {
+    readBlock(blk, blockToken, clientName, blockOffset, length, sendChecksum,
+        cachingStrategy, 0);
   }
 
 
@@ -308,4 +329,26 @@ public void blockGroupChecksum(StripedBlockInfo stripedBlockInfo,
 
     send(out, Op.BLOCK_GROUP_CHECKSUM, proto);
   }
+
+  @Override
+  public void readCombinedBlocks(final ExtendedBlock blk,
+      final Token<BlockTokenIdentifier> blockToken,
+      final byte[] coefficients,
+      final long offset,
+      final long len,
+      final int windowSize,
+      final List<CombinedBlockSource> sources) throws IOException {
+    OpReadCombinedBlocksProto.Builder proto =
+        OpReadCombinedBlocksProto.newBuilder()
+        .setHeader(DataTransferProtoUtil.buildBaseHeader(blk, blockToken))
+        .setCoefficients(ByteString.copyFrom(coefficients))
+        .setOffset(offset)
+        .setLen(len)
+        .setWindowSize(windowSize);
+    for (CombinedBlockSource source : sources) {
+      proto.addSources(PBHelperClient.convert(source));
+    }
+
+    send(out, Op.READ_COMBINED_BLOCKS, proto.build());
+  }
 }
@@ -74,6 +74,7 @@
 import org.apache.hadoop.hdfs.protocol.CachePoolInfo;
 import org.apache.hadoop.hdfs.protocol.CachePoolStats;
 import org.apache.hadoop.hdfs.protocol.ClientProtocol;
+import org.apache.hadoop.hdfs.protocol.CombinedBlockSource;
 import org.apache.hadoop.hdfs.protocol.CorruptFileBlocks;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
@@ -142,6 +143,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.RollingUpgradeActionProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.RollingUpgradeInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.ClientNamenodeProtocolProtos.SafeModeActionProto;
+import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.CombinedBlockSourceProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.ShortCircuitShmIdProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.ShortCircuitShmSlotProto;
 import org.apache.hadoop.hdfs.protocol.proto.EncryptionZonesProtos.EncryptionZoneProto;
@@ -1082,6 +1084,26 @@ public static byte[] convertBlockIndices(List<Integer> blockIndices) {
     return blkIndices;
   }
 
+  public static CombinedBlockSourceProto convert(CombinedBlockSource source) {
+    return CombinedBlockSourceProto.newBuilder()
+        .setDatanode(convert(source.getDatanode()))
+        .setBlock(convert(source.getBlock()))
+        .setToken(convert(source.getBlockToken()))
+        .setCoefficients(ByteString.copyFrom(source.getCoefficients()))
+        .build();
+  }
+
+  public static List<CombinedBlockSource> convertCombinedBlockSources(
+      List<CombinedBlockSourceProto> protos) {
+    List<CombinedBlockSource> sources = new ArrayList<>(protos.size());
+    for (CombinedBlockSourceProto proto : protos) {
+      sources.add(new CombinedBlockSource(convert(proto.getDatanode()),
+          convert(proto.getBlock()), convert(proto.getToken()),
+          proto.getCoefficients().toByteArray()));
+    }
+    return sources;
+  }
+
   public static BlockStoragePolicy convert(BlockStoragePolicyProto proto) {
     List<StorageTypeProto> cList = proto.getCreationPolicy()
         .getStorageTypesList();
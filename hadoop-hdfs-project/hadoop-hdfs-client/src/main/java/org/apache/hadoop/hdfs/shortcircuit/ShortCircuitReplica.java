@@ -22,6 +22,7 @@
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.BitSet;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.hdfs.ExtendedBlockId;
@@ -87,6 +88,12 @@ public class ShortCircuitReplica {
    */
   private final Slot slot;
 
+  /**
+   * The regions whose checksums were verified, if there is no slot to keep
+   * them in.  Protected by itself.
+   */
+  private final BitSet verifiedRegions = new BitSet();
+
   /**
    * Current mmap state.
    *
@@ -203,6 +210,53 @@ public void removeNoChecksumAnchor() {
     }
   }
 
+  /**
+   * Check if the checksums of a region of the replica were verified.  See
+   * {@link #getVerifiedRegionSize(long, int)} for the size of the regions.
+   */
+  public boolean isRegionVerified(int region) {
+    if (slot != null) {
+      return slot.isRegionVerified(region);
+    }
+    synchronized (verifiedRegions) {
+      return verifiedRegions.get(region);
+    }
+  }
+
+  /**
+   * Record that the checksums of a region of the replica are verified.
+   *
+   * The record is kept in the shared memory slot if there is one, which the
+   * client allocates for this replica only, and which is released once the
+   * DataNode invalidates the replica.
+   */
+  public void markRegionVerified(int region) {
+    if (slot != null) {
+      slot.markRegionVerified(region);
+      return;
+    }
+    synchronized (verifiedRegions) {
+      verifiedRegions.set(region);
+    }
+  }
+
+  /**
+   * Get the size of the regions whose verification is recorded.  The block
+   * is split into at most {@link Slot#NUM_VERIFIED_REGIONS} regions, each a
+   * whole number of checksum chunks.
+   *
+   * @param blockLength       The length of the block file.
+   * @param bytesPerChecksum  The size of a checksum chunk.
+   * @return                  The size of a region in bytes.
+   */
+  public static long getVerifiedRegionSize(long blockLength,
+      int bytesPerChecksum) {
+    long chunks = (blockLength + bytesPerChecksum - 1) / bytesPerChecksum;
+    long chunksPerRegion = Math.max(1,
+        (chunks + Slot.NUM_VERIFIED_REGIONS - 1) / Slot.NUM_VERIFIED_REGIONS);
+    return chunksPerRegion * bytesPerChecksum;
+  }
+
   /**
    * Check if the replica has an associated mmap that has been fully loaded.
    *
@@ -234,7 +234,8 @@ public void remove() {
    *   bit 0:32   Slot flags (see below).
    *   bit 33:63  Anchor count.
    * word 1:7
-   *   Reserved for future use, such as statistics.
+   *   Bitmap of the regions of the replica whose checksums the client has
+   *   verified.  The DataNode does not use these words.
    *   Padding is also useful for avoiding false sharing.
    *
    * Little-endian versus big-endian is not relevant here since both the client
@@ -258,6 +259,12 @@ public class Slot {
      */
     private static final long ANCHORABLE_FLAG =     1L<<62;
 
+    /**
+     * The number of replica regions whose checksums can be recorded as
+     * verified, one bit each in words 1 to 7.
+     */
+    public static final int NUM_VERIFIED_REGIONS = 7 * 64;
+
     /**
      * The slot address in memory.
      */
@@ -314,7 +321,9 @@ public int getSlotIdx() {
      * Clear the slot.
      */
     void clear() {
-      unsafe.putLongVolatile(null, this.slotAddress, 0);
+      for (int offset = 0; offset < BYTES_PER_SLOT; offset += 8) {
+        unsafe.putLongVolatile(null, this.slotAddress + offset, 0);
+      }
     }
 
     private boolean isSet(long flag) {
@@ -417,6 +426,36 @@ public void removeAnchor() {
                   prev, prev - 1));
     }
 
+    private long verifiedWordAddress(int region) {
+      Preconditions.checkArgument(region >= 0 && region < NUM_VERIFIED_REGIONS,
+          "Invalid region %s", region);
+      return this.slotAddress + 8 * (1 + region / 64);
+    }
+
+    /**
+     * @return    True if the checksums of the region of the replica have
+     *            been verified since the slot was allocated.
+     */
+    public boolean isRegionVerified(int region) {
+      long word = unsafe.getLongVolatile(null, verifiedWordAddress(region));
+      return (word & (1L << (region % 64))) != 0;
+    }
+
+    /**
+     * Record that the checksums of the region of the replica are verified.
+     */
+    public void markRegionVerified(int region) {
+      final long address = verifiedWordAddress(region);
+      final long bit = 1L << (region % 64);
+      long prev;
+      do {
+        prev = unsafe.getLongVolatile(null, address);
+        if ((prev & bit) != 0) {
+          return;
+        }
+      } while (!unsafe.compareAndSwapLong(null, address, prev, prev | bit));
+    }
+
     @Override
     public String toString() {
       return "Slot(slotIdx=" + getSlotIdx() + ", shm=" + getShm() + ")";
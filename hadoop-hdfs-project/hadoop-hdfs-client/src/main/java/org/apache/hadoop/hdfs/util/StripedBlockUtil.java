@@ -32,6 +32,8 @@
 import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.DFSStripedOutputStream;
+import org.apache.hadoop.io.erasurecode.ErasureCodeConstants;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.LRCUtil;
 import org.apache.hadoop.security.token.Token;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -1025,4 +1027,129 @@ public static int getBlockIndex(Block reportedBlock) {
     return (int) (reportedBlock.getBlockId() &
         BLOCK_GROUP_INDEX_MASK);
   }
+
+  /**
+   * Get the internal blocks that the given missing internal blocks of a
+   * block group can be reconstructed from within their local groups, when the
+   * policy is a Locally Repairable Code, see {@link LRCUtil}.
+   *
+   * @param ecPolicy the erasure coding policy of the block group.
+   * @param blockGroupSize the size of the block group.
+   * @param missing the indices of the missing internal blocks.
+   * @return the sorted indices of the internal blocks to read, or null if
+   *         the missing internal blocks can't be reconstructed locally.
+   */
+  public static int[] getLocalRepairIndices(ErasureCodingPolicy ecPolicy,
+      long blockGroupSize, int[] missing) {
+    if (!isLocallyRepairable(ecPolicy) || missing.length == 0) {
+      return null;
+    }
+    // Some internal blocks of a group smaller than a full stripe are empty,
+    // leave those groups to the usual reconstruction.
+    if (blockGroupSize <=
+        (long) (ecPolicy.getNumDataUnits() - 1) * ecPolicy.getCellSize()) {
+      return null;
+    }
+    return LRCUtil.getLocalRepairIndexes(ecPolicy.getNumDataUnits(),
+        ecPolicy.getNumParityUnits(), missing);
+  }
+
+  /**
+   * @return whether the policy is a Locally Repairable Code, whose internal
+   *         blocks may be reconstructed from fewer than the number of data
+   *         blocks.
+   */
+  public static boolean isLocallyRepairable(ErasureCodingPolicy ecPolicy) {
+    return ErasureCodeConstants.LRC_CODEC_NAME.equals(
+        ecPolicy.getCodecName()) && LRCUtil.isValidLayout(
+            ecPolicy.getNumDataUnits(), ecPolicy.getNumParityUnits());
+  }
+
+  /**
+   * Check whether a block group can be decoded from the given internal blocks.
+   * Any numDataUnits internal blocks are enough for an MDS code such as RS,
+   * but not for a Locally Repairable Code.
+   *
+   * @param ecPolicy the erasure coding policy of the block group.
+   * @param liveIndices the indices of the available internal blocks.
+   * @return whether all the internal blocks can be decoded.
+   */
+  public static boolean isDecodable(ErasureCodingPolicy ecPolicy,
+      BitSet liveIndices) {
+    final int dataBlkNum = ecPolicy.getNumDataUnits();
+    final int parityBlkNum = ecPolicy.getNumParityUnits();
+    final BitSet live = liveIndices.get(0, dataBlkNum + parityBlkNum);
+    if (live.cardinality() < dataBlkNum) {
+      return false;
+    }
+    if (!isLocallyRepairable(ecPolicy)) {
+      return true;
+    }
+    return LRCUtil.isDecodable(dataBlkNum, parityBlkNum,
+        live.stream().toArray());
+  }
+
+  /**
+   * Rank the internal blocks of a Locally Repairable Code for reading: the
+   * given internal blocks first, then the data blocks, then the global parity
+   * blocks and last the local parity blocks. Any numDataUnits of the data and
+   * global parity blocks can be decoded from, but not always with local
+   * parity blocks among them.
+   *
+   * @param ecPolicy the erasure coding policy, a Locally Repairable Code.
+   * @param first the internal blocks to rank first, may be null.
+   * @return the rank of every internal block index, lower first.
+   */
+  public static int[] getLocalRepairRanks(ErasureCodingPolicy ecPolicy,
+      int[] first) {
+    final int dataBlkNum = ecPolicy.getNumDataUnits();
+    final int parityBlkNum = ecPolicy.getNumParityUnits();
+    int[] ranks = new int[dataBlkNum + parityBlkNum];
+    for (int i = 0; i < ranks.length; i++) {
+      if (i < dataBlkNum) {
+        ranks[i] = 1;
+      } else if (LRCUtil.getLocalGroup(dataBlkNum, parityBlkNum, i) < 0) {
+        ranks[i] = 2;
+      } else {
+        ranks[i] = 3;
+      }
+    }
+    if (first != null) {
+      for (int index : first) {
+        ranks[index] = 0;
+      }
+    }
+    return ranks;
+  }
+
+  /**
+   * Stable sort the sources of a reconstruction by the rank of their internal
+   * blocks, so that the sources to read first come first. Sources of an
+   * internal block already seen are moved after all the others.
+   *
+   * @param indices the internal block indices of the sources, sorted in
+   *                place.
+   * @param sources the sources, sorted in place along with the indices.
+   * @param ranks the rank of every internal block index, lower first.
+   */
+  public static <T> void sortSources(byte[] indices, T[] sources,
+      int[] ranks) {
+    Preconditions.checkArgument(indices.length == sources.length);
+    final int n = indices.length;
+    long[] keys = new long[n];
+    BitSet seen = new BitSet(ranks.length);
+    for (int i = 0; i < n; i++) {
+      int rank = seen.get(indices[i]) ? Integer.MAX_VALUE : ranks[indices[i]];
+      seen.set(indices[i]);
+      keys[i] = ((long) rank << 32) | i;
+    }
+    Arrays.sort(keys);
+    byte[] oldIndices = indices.clone();
+    T[] oldSources = sources.clone();
+    for (int i = 0; i < n; i++) {
+      int from = (int) keys[i];
+      indices[i] = oldIndices[from];
+      sources[i] = oldSources[from];
+    }
+  }
 }
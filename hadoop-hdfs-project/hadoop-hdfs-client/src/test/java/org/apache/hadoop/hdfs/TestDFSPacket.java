@@ -17,9 +17,14 @@
  */
 package org.apache.hadoop.hdfs;
 
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.Random;
 import org.apache.hadoop.hdfs.protocol.datatransfer.PacketHeader;
+import org.apache.hadoop.io.ByteBufferPool;
 import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.ElasticByteBufferPool;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -55,6 +60,49 @@ public void testPacket() throws Exception {
 
   }
 
+  @Test
+  public void testDirectPacket() throws Exception {
+    Random r = new Random(12345L);
+    byte[] data =  new byte[chunkSize];
+    r.nextBytes(data);
+    byte[] checksum = new byte[checksumSize];
+    r.nextBytes(checksum);
+    ByteBufferPool pool = new ElasticByteBufferPool();
+
+    // Written through the channel, and through the stream as with SASL.
+    for (boolean useChannel : new boolean[] {true, false}) {
+      DataOutputBuffer os =  new DataOutputBuffer(data.length * 2);
+      DataOutputStream stm = new DataOutputStream(os);
+      DFSPacket p = new DFSPacket(pool.getBuffer(true, data.length * 2), pool,
+          maxChunksPerPacket, 0, 0, checksumSize, false);
+      Assert.assertTrue(p.isDirect());
+      p.setSyncBlock(true);
+      // Half from an array and half from a buffer.
+      p.writeData(data, 0, data.length / 2);
+      ByteBuffer rest = ByteBuffer.wrap(data, data.length / 2,
+          data.length - data.length / 2);
+      p.writeData(rest, chunkSize);
+      Assert.assertFalse(rest.hasRemaining());
+      p.writeChecksum(checksum, 0, checksum.length);
+      p.writeTo(stm, useChannel ? Channels.newChannel(stm) : null);
+      stm.flush();
+
+      // The checksums were moved next to the data.
+      int headerLen = PacketHeader.PKT_MAX_HEADER_LEN;
+      byte[] readBuf = os.getData();
+      Assert.assertEquals(headerLen + checksum.length + data.length,
+          os.getLength());
+      assertArrayRegionsEqual(readBuf, headerLen, checksum, 0,
+          checksum.length);
+      assertArrayRegionsEqual(readBuf, headerLen + checksum.length, data, 0,
+          data.length);
+
+      // The buffer goes back to the pool, not to a ByteArrayManager.
+      p.releaseBuffer(null);
+      Assert.assertFalse(p.isDirect());
+    }
+  }
+
   public static void assertArrayRegionsEqual(byte []buf1, int off1, byte []buf2,
                                              int off2, int len) {
     for (int i = 0; i < len; i++) {
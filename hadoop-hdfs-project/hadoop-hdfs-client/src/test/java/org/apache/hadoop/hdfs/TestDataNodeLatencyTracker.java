@@ -0,0 +1,183 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.HedgedRead;
+import org.apache.hadoop.hdfs.protocol.DatanodeID;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.util.FakeTimer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link DataNodeLatencyTracker}.
+ */
+public class TestDataNodeLatencyTracker {
+  private static final long STATIC_THRESHOLD_MS = 500;
+  private static final long DECAY_INTERVAL_MS = 60000;
+
+  private FakeTimer timer;
+  private DataNodeLatencyTracker tracker;
+
+  @Before
+  public void setup() {
+    Configuration conf = new Configuration();
+    conf.setLong(HedgedRead.ADAPTIVE_DECAY_INTERVAL_MILLIS_KEY,
+        DECAY_INTERVAL_MS);
+    timer = new FakeTimer();
+    tracker = new DataNodeLatencyTracker(conf, timer);
+  }
+
+  private static DatanodeInfo datanode(int i) {
+    return new DatanodeInfo.DatanodeInfoBuilder()
+        .setNodeID(new DatanodeID("127.0.0." + i, "host" + i, "uuid" + i,
+            9866, 9864, 9865, 9867))
+        .build();
+  }
+
+  private void addLatencies(DatanodeInfo dn, long latencyMs, int count) {
+    for (int i = 0; i < count; i++) {
+      tracker.addLatency(dn, latencyMs);
+    }
+  }
+
+  @Test
+  public void testBuckets() {
+    assertEquals(0, DataNodeLatencyTracker.bucketOf(0));
+    assertEquals(0, DataNodeLatencyTracker.bucketOf(1));
+    for (long latency = 2; latency < 100000; latency = latency * 3 / 2) {
+      int bucket = DataNodeLatencyTracker.bucketOf(latency);
+      assertTrue(DataNodeLatencyTracker.bucketUpperBound(bucket) >= latency);
+      assertTrue(DataNodeLatencyTracker.bucketUpperBound(bucket - 1)
+          < latency);
+    }
+    assertEquals(DataNodeLatencyTracker.NUM_BUCKETS - 1,
+        DataNodeLatencyTracker.bucketOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testThresholdFollowsPercentile() {
+    DatanodeInfo dn = datanode(1);
+    // Too few samples to judge.
+    addLatencies(dn, 20, 5);
+    assertEquals(-1, tracker.getLatencyPercentile(dn));
+    assertEquals(STATIC_THRESHOLD_MS,
+        tracker.getHedgedReadThresholdMillis(dn, STATIC_THRESHOLD_MS));
+
+    // 95% of the reads take 20ms, so stragglers are hedged soon after.
+    addLatencies(dn, 20, 90);
+    addLatencies(dn, 2000, 5);
+    long threshold =
+        tracker.getHedgedReadThresholdMillis(dn, STATIC_THRESHOLD_MS);
+    assertTrue("threshold " + threshold, threshold >= 20 && threshold < 30);
+
+    // Fast nodes are bounded by the minimum threshold.
+    DatanodeInfo fast = datanode(2);
+    addLatencies(fast, 1, 100);
+    assertEquals(HedgedRead.ADAPTIVE_MIN_THRESHOLD_MILLIS_DEFAULT,
+        tracker.getHedgedReadThresholdMillis(fast, STATIC_THRESHOLD_MS));
+
+    // Slow nodes never wait longer than the static threshold.
+    DatanodeInfo slow = datanode(3);
+    addLatencies(slow, 5000, 100);
+    assertEquals(STATIC_THRESHOLD_MS,
+        tracker.getHedgedReadThresholdMillis(slow, STATIC_THRESHOLD_MS));
+  }
+
+  @Test
+  public void testThresholdScalesWithReadSize() {
+    DatanodeInfo dn = datanode(1);
+    final long bytes = 4 * DataNodeLatencyTracker.REFERENCE_READ_BYTES;
+    // Large reads taking 80ms count as reference reads of 20ms.
+    for (int i = 0; i < 100; i++) {
+      tracker.addLatency(dn, 80, bytes);
+    }
+    long threshold =
+        tracker.getHedgedReadThresholdMillis(dn, STATIC_THRESHOLD_MS);
+    assertTrue("threshold " + threshold, threshold >= 20 && threshold < 30);
+    threshold =
+        tracker.getHedgedReadThresholdMillis(dn, bytes, STATIC_THRESHOLD_MS);
+    assertTrue("threshold " + threshold, threshold >= 80 && threshold < 120);
+    // Reads smaller than the reference size are not scaled down.
+    assertEquals(tracker.getHedgedReadThresholdMillis(dn,
+        STATIC_THRESHOLD_MS),
+        tracker.getHedgedReadThresholdMillis(dn, 512, STATIC_THRESHOLD_MS));
+  }
+
+  @Test
+  public void testIdleDataNodesAreDropped() {
+    addLatencies(datanode(1), 10, 50);
+    addLatencies(datanode(2), 10, 50);
+    assertEquals(2, tracker.getNumDataNodes());
+
+    timer.advance(DataNodeLatencyTracker.IDLE_DECAY_INTERVALS
+        * DECAY_INTERVAL_MS / 2);
+    addLatencies(datanode(2), 10, 1);
+    timer.advance(DataNodeLatencyTracker.IDLE_DECAY_INTERVALS
+        * DECAY_INTERVAL_MS / 2 + 1);
+    // Only the node read from since is left, with the new one.
+    addLatencies(datanode(3), 10, 1);
+    assertEquals(2, tracker.getNumDataNodes());
+    assertEquals(-1, tracker.getLatencyPercentile(datanode(1)));
+  }
+
+  @Test
+  public void testSlowNodeDetection() {
+    DatanodeInfo dn1 = datanode(1);
+    DatanodeInfo dn2 = datanode(2);
+    DatanodeInfo dn3 = datanode(3);
+    addLatencies(dn1, 10, 50);
+    // A node without peers is never slow.
+    assertFalse(tracker.isSlow(dn1));
+
+    addLatencies(dn2, 10, 50);
+    addLatencies(dn3, 200, 50);
+    timer.advance(2000);
+    assertFalse(tracker.isSlow(dn1));
+    assertFalse(tracker.isSlow(dn2));
+    assertTrue(tracker.isSlow(dn3));
+    assertFalse(tracker.isSlow(datanode(4)));
+  }
+
+  @Test
+  public void testOldSamplesDecay() {
+    DatanodeInfo dn1 = datanode(1);
+    DatanodeInfo dn2 = datanode(2);
+    DatanodeInfo dn3 = datanode(3);
+    addLatencies(dn1, 10, 40);
+    addLatencies(dn2, 10, 40);
+    addLatencies(dn3, 200, 40);
+    assertTrue(tracker.isSlow(dn3));
+
+    // After two halvings the slow node is no longer judged on old reads.
+    timer.advance(2 * DECAY_INTERVAL_MS);
+    assertEquals(-1, tracker.getLatencyPercentile(dn3));
+    assertFalse(tracker.isSlow(dn3));
+    assertEquals(STATIC_THRESHOLD_MS,
+        tracker.getHedgedReadThresholdMillis(dn3, STATIC_THRESHOLD_MS));
+
+    // New reads soon outweigh what is left of the old ones.
+    addLatencies(dn3, 10, 200);
+    assertEquals(12, tracker.getLatencyPercentile(dn3));
+  }
+}
@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.net.URI;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.protocol.DirectoryListing;
+import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.util.FakeTimer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link FileStatusCache}.
+ */
+public class TestFileStatusCache {
+  private static final String NN = "hdfs://ns1";
+  private static final long TTL_MS = 10000;
+
+  private FakeTimer timer;
+  private FileStatusCache cache;
+
+  @Before
+  public void setup() {
+    timer = new FakeTimer();
+    cache = new FileStatusCache(TTL_MS, 100,
+        new String[] {"/warehouse", "hdfs://ns1/data/"}, timer);
+  }
+
+  private static HdfsFileStatus status(String name, boolean isdir) {
+    return new HdfsFileStatus.Builder()
+        .isdir(isdir)
+        .length(isdir ? 0 : 1024)
+        .perm(FsPermission.getDefault())
+        .owner("alice")
+        .group("users")
+        .path(DFSUtilClient.string2Bytes(name))
+        .build();
+  }
+
+  private static DirectoryListing listing(String... names) {
+    HdfsFileStatus[] statuses = new HdfsFileStatus[names.length];
+    for (int i = 0; i < names.length; i++) {
+      statuses[i] = status(names[i], false);
+    }
+    return new DirectoryListing(statuses, 0);
+  }
+
+  private void putFileInfo(String src) {
+    cache.putFileInfo(NN, "alice", src, status(new Path(src).getName(), false),
+        cache.getGeneration());
+  }
+
+  private void putListing(String src) {
+    cache.putListing(NN, "alice", src, HdfsFileStatus.EMPTY_NAME,
+        listing("a", "b"), cache.getGeneration());
+  }
+
+  @Test
+  public void testOnlyConfiguredPathsAreCached() {
+    assertTrue(cache.isCached("/warehouse"));
+    assertTrue(cache.isCached("/warehouse/t/p=1"));
+    assertTrue(cache.isCached("/data/x"));
+    assertFalse(cache.isCached("/warehouse2"));
+    assertFalse(cache.isCached("/tmp/warehouse"));
+  }
+
+  @Test
+  public void testHitsAreCopies() throws Exception {
+    putFileInfo("/warehouse/t/f");
+    HdfsFileStatus cached = cache.getFileInfo(NN, "alice", "/warehouse/t/f");
+    assertNotNull(cached);
+    assertEquals(1024, cached.getLen());
+    // Callers qualify the statuses they are given.
+    cached.makeQualified(new URI(NN), new Path("/warehouse/t"));
+    assertNotNull(cached.getPath());
+    assertNull(cache.getFileInfo(NN, "alice", "/warehouse/t/f").getPath());
+    assertNull(cache.getFileInfo(NN, "bob", "/warehouse/t/f"));
+
+    putListing("/warehouse/t");
+    DirectoryListing cachedListing = cache.getListing(NN, "alice",
+        "/warehouse/t", HdfsFileStatus.EMPTY_NAME);
+    assertEquals(2, cachedListing.getPartialListing().length);
+    // Listings are cached per batch.
+    assertNull(cache.getListing(NN, "alice", "/warehouse/t",
+        DFSUtilClient.string2Bytes("a")));
+    assertEquals(3, cache.getHits());
+    assertEquals(2, cache.getMisses());
+
+    // Files that do not exist are not cached.
+    cache.putFileInfo(NN, "alice", "/warehouse/none", null,
+        cache.getGeneration());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testEntriesExpire() {
+    putFileInfo("/warehouse/f");
+    timer.advance(TTL_MS - 1);
+    assertNotNull(cache.getFileInfo(NN, "alice", "/warehouse/f"));
+    timer.advance(1);
+    assertNull(cache.getFileInfo(NN, "alice", "/warehouse/f"));
+  }
+
+  @Test
+  public void testInvalidation() {
+    putListing("/warehouse");
+    putFileInfo("/warehouse/t");
+    putListing("/warehouse/t");
+    putFileInfo("/warehouse/t/p/f");
+    putFileInfo("/warehouse/u");
+
+    // A change to a file changes the listing and times of its directory.
+    cache.invalidate(NN, "/warehouse/t/p/f");
+    assertNull(cache.getFileInfo(NN, "alice", "/warehouse/t/p/f"));
+    assertNotNull(cache.getFileInfo(NN, "alice", "/warehouse/t"));
+
+    cache.invalidate(NN, "/warehouse/t");
+    assertNull(cache.getFileInfo(NN, "alice", "/warehouse/t"));
+    assertNull(cache.getListing(NN, "alice", "/warehouse/t",
+        HdfsFileStatus.EMPTY_NAME));
+    assertNull(cache.getListing(NN, "alice", "/warehouse",
+        HdfsFileStatus.EMPTY_NAME));
+    assertNotNull(cache.getFileInfo(NN, "alice", "/warehouse/u"));
+
+    // Other namenodes are not affected.
+    cache.invalidate("hdfs://ns2", "/warehouse/u");
+    assertNotNull(cache.getFileInfo(NN, "alice", "/warehouse/u"));
+    cache.invalidateAll(NN);
+    assertEquals(0, cache.size());
+    assertEquals(4, cache.getInvalidations());
+  }
+
+  @Test
+  public void testUncoveredPathsAreNotInvalidated() {
+    putFileInfo("/warehouse/t");
+    cache.invalidate(NN, "/tmp/f");
+    cache.invalidate(NN, "/warehouse2");
+    assertEquals(0, cache.getInvalidations());
+    assertNotNull(cache.getFileInfo(NN, "alice", "/warehouse/t"));
+
+    // A change above a configured prefix changes everything under it.
+    cache.invalidate(NN, "/");
+    assertEquals(1, cache.getInvalidations());
+    assertNull(cache.getFileInfo(NN, "alice", "/warehouse/t"));
+  }
+
+  @Test
+  public void testSlowFetchIsNotCached() {
+    long generation = cache.getGeneration();
+    timer.advance(TTL_MS + 1);
+    cache.putFileInfo(NN, "alice", "/warehouse/f", status("f", false),
+        generation);
+    assertNull(cache.getFileInfo(NN, "alice", "/warehouse/f"));
+  }
+
+  @Test
+  public void testFetchRacingInvalidationIsNotCached() {
+    long generation = cache.getGeneration();
+    cache.invalidate(NN, "/warehouse/f");
+    cache.putFileInfo(NN, "alice", "/warehouse/f", status("f", false),
+        generation);
+    assertNull(cache.getFileInfo(NN, "alice", "/warehouse/f"));
+  }
+}
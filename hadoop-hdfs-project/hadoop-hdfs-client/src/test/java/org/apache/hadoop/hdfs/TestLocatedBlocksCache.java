@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
+import org.apache.hadoop.util.FakeTimer;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link LocatedBlocksCache}.
+ */
+public class TestLocatedBlocksCache {
+  private static final String NN = "hdfs://ns1";
+  private static final long TTL_MS = 10000;
+
+  private FakeTimer timer;
+  private LocatedBlocksCache cache;
+
+  @Before
+  public void setup() {
+    timer = new FakeTimer();
+    cache = new LocatedBlocksCache(TTL_MS, 100, timer);
+  }
+
+  private static LocatedBlocks blocks(int numBlocks, boolean complete) {
+    List<LocatedBlock> list = new ArrayList<>();
+    for (int i = 0; i < numBlocks; i++) {
+      list.add(new LocatedBlock(new ExtendedBlock("bp", i, 1024, 1000),
+          new DatanodeInfo[0]));
+    }
+    return new LocatedBlocks(1024L * numBlocks, !complete, list,
+        list.get(numBlocks - 1), complete, null, null);
+  }
+
+  private void put(String user, String src, LocatedBlocks blocks) {
+    cache.put(NN, user, src, blocks, cache.getGeneration());
+  }
+
+  @Test
+  public void testHitsAreCopies() {
+    put("alice", "/f", blocks(3, true));
+    LocatedBlocks cached = cache.get(NN, "alice", "/f");
+    assertNotNull(cached);
+    assertEquals(3, cached.locatedBlockCount());
+    // Streams insert into the list they are given.
+    cached.getLocatedBlocks().clear();
+    assertEquals(3, cache.get(NN, "alice", "/f").locatedBlockCount());
+    assertEquals(2, cache.getHits());
+
+    // Entries are per user and per namenode.
+    assertNull(cache.get(NN, "bob", "/f"));
+    assertNull(cache.get("hdfs://ns2", "alice", "/f"));
+    assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void testBlocksAreCopies() {
+    put("alice", "/f", blocks(2, true));
+    LocatedBlocks cached = cache.get(NN, "alice", "/f");
+    // Streams update the blocks they are given in place.
+    cached.get(0).getBlock().setNumBytes(1);
+    cached.get(0).setStartOffset(7);
+    cached.getLastLocatedBlock().getBlock().setGenerationStamp(2000);
+
+    LocatedBlocks again = cache.get(NN, "alice", "/f");
+    assertEquals(1024, again.get(0).getBlock().getNumBytes());
+    assertEquals(-1, again.get(0).getStartOffset());
+    assertEquals(1000,
+        again.getLastLocatedBlock().getBlock().getGenerationStamp());
+  }
+
+  @Test
+  public void testFilesBeingWrittenAreNotCached() {
+    put("alice", "/f", blocks(2, false));
+    assertNull(cache.get(NN, "alice", "/f"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testEntriesExpire() {
+    put("alice", "/f", blocks(1, true));
+    timer.advance(TTL_MS - 1);
+    assertNotNull(cache.get(NN, "alice", "/f"));
+    timer.advance(1);
+    assertNull(cache.get(NN, "alice", "/f"));
+  }
+
+  @Test
+  public void testInvalidation() {
+    put("alice", "/dir/a", blocks(1, true));
+    put("bob", "/dir/b", blocks(1, true));
+    put("alice", "/dir2/c", blocks(1, true));
+    put("alice", "/dir", blocks(1, true));
+
+    cache.invalidate(NN, "/dir/a");
+    assertNull(cache.get(NN, "alice", "/dir/a"));
+    assertNotNull(cache.get(NN, "bob", "/dir/b"));
+
+    // A directory takes everything under it, but not its siblings.
+    cache.invalidate(NN, "/dir");
+    assertNull(cache.get(NN, "bob", "/dir/b"));
+    assertNull(cache.get(NN, "alice", "/dir"));
+    assertNotNull(cache.get(NN, "alice", "/dir2/c"));
+    assertEquals(2, cache.getInvalidations());
+  }
+
+  @Test
+  public void testSlowFetchIsNotCached() {
+    long generation = cache.getGeneration();
+    timer.advance(TTL_MS + 1);
+    cache.put(NN, "alice", "/f", blocks(1, true), generation);
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testFetchRacingInvalidationIsNotCached() {
+    long generation = cache.getGeneration();
+    // The file changes while the locations are being fetched.
+    cache.invalidate(NN, "/f");
+    cache.put(NN, "alice", "/f", blocks(1, true), generation);
+    assertNull(cache.get(NN, "alice", "/f"));
+
+    cache.put(NN, "alice", "/f", blocks(1, true), cache.getGeneration());
+    assertNotNull(cache.get(NN, "alice", "/f"));
+  }
+}
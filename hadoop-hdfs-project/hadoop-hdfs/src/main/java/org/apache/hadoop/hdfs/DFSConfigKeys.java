@@ -282,6 +282,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.read.considerLoad";
   public static final boolean DFS_NAMENODE_READ_CONSIDERLOAD_DEFAULT =
       false;
+  public static final String  DFS_NAMENODE_READ_CONSIDERDIRECTEDREADS_KEY =
+      "dfs.namenode.read.considerLoad.directedReads";
+  public static final boolean DFS_NAMENODE_READ_CONSIDERDIRECTEDREADS_DEFAULT =
+      false;
   public static final String DFS_NAMENODE_READ_CONSIDERSTORAGETYPE_KEY =
       "dfs.namenode.read.considerStorageType";
   public static final boolean DFS_NAMENODE_READ_CONSIDERSTORAGETYPE_DEFAULT =
@@ -302,6 +306,21 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.namenode.redundancy.queue.restart.iterations";
   public static final int
       DFS_NAMENODE_REDUNDANCY_QUEUE_RESTART_ITERATIONS_DEFAULT = 2400;
+  public static final String
+      DFS_NAMENODE_REDUNDANCY_BATCH_PLACEMENT_ENABLED_KEY =
+      "dfs.namenode.redundancy.batch-placement.enabled";
+  public static final boolean
+      DFS_NAMENODE_REDUNDANCY_BATCH_PLACEMENT_ENABLED_DEFAULT = false;
+  public static final String
+      DFS_NAMENODE_REDUNDANCY_TARGET_SELECTION_THREADS_KEY =
+      "dfs.namenode.redundancy.target-selection.threads";
+  public static final int
+      DFS_NAMENODE_REDUNDANCY_TARGET_SELECTION_THREADS_DEFAULT = 1;
+  public static final String
+      DFS_NAMENODE_REDUNDANCY_ADAPTIVE_WORK_ENABLED_KEY =
+      "dfs.namenode.redundancy.adaptive-work.enabled";
+  public static final boolean
+      DFS_NAMENODE_REDUNDANCY_ADAPTIVE_WORK_ENABLED_DEFAULT = false;
   public static final String  DFS_NAMENODE_REPLICATION_MIN_KEY =
       HdfsClientConfigKeys.DeprecatedKeys.DFS_NAMENODE_REPLICATION_MIN_KEY;
   public static final int     DFS_NAMENODE_REPLICATION_MIN_DEFAULT = 1;
@@ -480,6 +499,14 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_DATANODE_CACHE_REVOCATION_POLLING_MS = "dfs.datanode.cache.revocation.polling.ms";
   public static final long DFS_DATANODE_CACHE_REVOCATION_POLLING_MS_DEFAULT = 500L;
 
+  public static final String DFS_DATANODE_BLOCK_READ_CACHE_CAPACITY_KEY =
+      "dfs.datanode.block.read.cache.capacity";
+  public static final long DFS_DATANODE_BLOCK_READ_CACHE_CAPACITY_DEFAULT = 0;
+  public static final String DFS_DATANODE_BLOCK_READ_CACHE_MAX_BLOCK_SIZE_KEY =
+      "dfs.datanode.block.read.cache.max.block.size";
+  public static final long
+      DFS_DATANODE_BLOCK_READ_CACHE_MAX_BLOCK_SIZE_DEFAULT = 1024 * 1024;
+
   // Multiple dirs separated by "," are acceptable.
   public static final String DFS_DATANODE_PMEM_CACHE_DIRS_KEY =
       "dfs.datanode.pmem.cache.dirs";
@@ -821,6 +848,12 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final int     DFS_BALANCER_MAX_NO_MOVE_INTERVAL_DEFAULT = 60*1000; // One minute
   public static final String  DFS_BALANCER_MAX_ITERATION_TIME_KEY = "dfs.balancer.max-iteration-time";
   public static final long    DFS_BALANCER_MAX_ITERATION_TIME_DEFAULT = 20 * 60 * 1000L; // 20 mins
+  public static final String  DFS_BALANCER_STREAMING_ENABLED_KEY = "dfs.balancer.streaming.enabled";
+  public static final boolean DFS_BALANCER_STREAMING_ENABLED_DEFAULT = false;
+  public static final String  DFS_BALANCER_STREAMING_REFRESH_INTERVAL_KEY =
+      "dfs.balancer.streaming.refresh-interval";
+  public static final long    DFS_BALANCER_STREAMING_REFRESH_INTERVAL_DEFAULT =
+      TimeUnit.MINUTES.toMillis(10);
   public static final String  DFS_BALANCER_SERVICE_INTERVAL_KEY = "dfs.balancer.service.interval";
   public static final long    DFS_BALANCER_SERVICE_INTERVAL_DEFAULT = TimeUnit.MINUTES.toMillis(5); //5 mins
   public static final String  DFS_BALANCER_SERVICE_RETRIES_ON_EXCEPTION = "dfs.balancer.service.retries.on.exception";
@@ -856,6 +889,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.mover.kerberos.principal";
   public static final String  DFS_MOVER_MAX_NO_MOVE_INTERVAL_KEY = "dfs.mover.max-no-move-interval";
   public static final int    DFS_MOVER_MAX_NO_MOVE_INTERVAL_DEFAULT = 60*1000; // One minute
+  public static final String  DFS_MOVER_NAMESPACE_WALKER_THREADS_KEY =
+      "dfs.mover.namespace-walker.threads";
+  public static final int     DFS_MOVER_NAMESPACE_WALKER_THREADS_DEFAULT = 1;
+  public static final String  DFS_MOVER_NAMESPACE_WALKER_QUEUE_SIZE_KEY =
+      "dfs.mover.namespace-walker.queue-size";
+  public static final int     DFS_MOVER_NAMESPACE_WALKER_QUEUE_SIZE_DEFAULT =
+      1000;
+  public static final String  DFS_MOVER_CHECKPOINT_PATH_KEY =
+      "dfs.mover.checkpoint.path";
+  public static final String  DFS_MOVER_CHECKPOINT_PATH_DEFAULT = "";
+  public static final String  DFS_MOVER_CHECKPOINT_INTERVAL_KEY =
+      "dfs.mover.checkpoint.interval";
+  public static final long    DFS_MOVER_CHECKPOINT_INTERVAL_DEFAULT =
+      10 * 60 * 1000; // Ten minutes
 
   // StoragePolicySatisfier (SPS) related configurations
   public static final String  DFS_STORAGE_POLICY_SATISFIER_MODE_KEY =
@@ -899,6 +946,15 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.storage.policy.satisfier.datanode.cache.refresh.interval.ms";
   public static final long DFS_SPS_DATANODE_CACHE_REFRESH_INTERVAL_MS_DEFAULT =
       300000L;
+  public static final String DFS_SPS_WORKER_THREADS_KEY =
+      "dfs.storage.policy.satisfier.worker.threads";
+  public static final int DFS_SPS_WORKER_THREADS_DEFAULT = 1;
+  public static final String DFS_SPS_DATANODE_BANDWIDTH_PER_SEC_KEY =
+      "dfs.storage.policy.satisfier.datanode.bandwidthPerSec";
+  public static final long DFS_SPS_DATANODE_BANDWIDTH_PER_SEC_DEFAULT = 0L;
+  public static final String DFS_SPS_INFLIGHT_PATHS_FILE_KEY =
+      "dfs.storage.policy.satisfier.inflight.paths.file";
+  public static final String DFS_SPS_INFLIGHT_PATHS_FILE_DEFAULT = "";
 
   // SPS keytab configurations, by default it is disabled.
   public static final String  DFS_SPS_ADDRESS_KEY =
@@ -960,6 +1016,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
   public static final String DFS_DN_EC_RECONSTRUCTION_VALIDATION_KEY =
       "dfs.datanode.ec.reconstruction.validation";
   public static final boolean DFS_DN_EC_RECONSTRUCTION_VALIDATION_VALUE = false;
+  public static final String DFS_DN_EC_RECONSTRUCTION_COMBINED_READ_ENABLED_KEY =
+      "dfs.datanode.ec.reconstruction.combined-read.enabled";
+  public static final boolean
+      DFS_DN_EC_RECONSTRUCTION_COMBINED_READ_ENABLED_DEFAULT = false;
 
   public static final String
       DFS_DATANODE_DIRECTORYSCAN_THROTTLE_LIMIT_MS_PER_SEC_KEY =
@@ -1013,6 +1073,10 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       false;
   public static final String  DFS_DATANODE_TRANSFERTO_ALLOWED_KEY = "dfs.datanode.transferTo.allowed";
   public static final boolean DFS_DATANODE_TRANSFERTO_ALLOWED_DEFAULT = true;
+  public static final String  DFS_DATANODE_TRANSFERTO_MAX_PACKET_SIZE_KEY =
+      "dfs.datanode.transferTo.max.packet.size";
+  public static final int     DFS_DATANODE_TRANSFERTO_MAX_PACKET_SIZE_DEFAULT =
+      4 * 1024 * 1024;
   public static final String  DFS_HEARTBEAT_INTERVAL_KEY = "dfs.heartbeat.interval";
   public static final long    DFS_HEARTBEAT_INTERVAL_DEFAULT = 3;
   public static final String  DFS_DATANODE_LIFELINE_INTERVAL_SECONDS_KEY =
@@ -1100,6 +1164,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       = "dfs.blockreport.incremental.intervalMsec";
   public static final long    DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_DEFAULT
       = 0;
+  public static final String  DFS_BLOCKREPORT_INCREMENTAL_ASYNC_ENABLED_KEY
+      = "dfs.blockreport.incremental.async.enabled";
+  public static final boolean DFS_BLOCKREPORT_INCREMENTAL_ASYNC_ENABLED_DEFAULT
+      = false;
+  public static final String
+      DFS_BLOCKREPORT_INCREMENTAL_SLOW_THRESHOLD_MSEC_KEY
+      = "dfs.blockreport.incremental.slow.threshold.msec";
+  public static final long
+      DFS_BLOCKREPORT_INCREMENTAL_SLOW_THRESHOLD_MSEC_DEFAULT = 100;
+  public static final String
+      DFS_BLOCKREPORT_INCREMENTAL_MAX_BATCH_DELAY_MSEC_KEY
+      = "dfs.blockreport.incremental.max.batch.delay.msec";
+  public static final long
+      DFS_BLOCKREPORT_INCREMENTAL_MAX_BATCH_DELAY_MSEC_DEFAULT = 1000;
   public static final String  DFS_BLOCKREPORT_INTERVAL_MSEC_KEY = "dfs.blockreport.intervalMsec";
   public static final long    DFS_BLOCKREPORT_INTERVAL_MSEC_DEFAULT = 6 * 60 * 60 * 1000;
   public static final String  DFS_BLOCKREPORT_INITIAL_DELAY_KEY = "dfs.blockreport.initialDelay";
@@ -1198,6 +1276,19 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.datanode.fileio.profiling.sampling.percentage";
   public static final int
       DFS_DATANODE_FILEIO_PROFILING_SAMPLING_PERCENTAGE_DEFAULT = 0;
+  public static final String DFS_DATANODE_IO_ENGINE_KEY =
+      "dfs.datanode.io.engine";
+  public static final String DFS_DATANODE_IO_ENGINE_POSIX = "posix";
+  public static final String DFS_DATANODE_IO_ENGINE_IO_URING = "io_uring";
+  public static final String DFS_DATANODE_IO_ENGINE_DEFAULT =
+      DFS_DATANODE_IO_ENGINE_POSIX;
+  public static final String DFS_DATANODE_IO_URING_QUEUE_DEPTH_KEY =
+      "dfs.datanode.io.uring.queue.depth";
+  public static final int DFS_DATANODE_IO_URING_QUEUE_DEPTH_DEFAULT = 64;
+  public static final String DFS_DATANODE_IO_URING_BUFFER_SIZE_KEY =
+      "dfs.datanode.io.uring.buffer.size";
+  public static final int DFS_DATANODE_IO_URING_BUFFER_SIZE_DEFAULT =
+      128 * 1024;
 
   //Keys with no defaults
   public static final String  DFS_DATANODE_PLUGINS_KEY = "dfs.datanode.plugins";
@@ -1687,6 +1778,20 @@ public class DFSConfigKeys extends CommonConfigurationKeys {
       "dfs.disk.balancer.plan.threshold.percent";
   public static final int DFS_DISK_BALANCER_PLAN_THRESHOLD_DEFAULT = 10;
 
+  public static final String DFS_DISK_BALANCER_MAX_PARALLEL_MOVES =
+      "dfs.disk.balancer.max.parallel.moves";
+  public static final int DFS_DISK_BALANCER_MAX_PARALLEL_MOVES_DEFAULT = 1;
+
+  public static final String DFS_DISK_BALANCER_LATENCY_THRESHOLD =
+      "dfs.disk.balancer.foreground.latency.threshold";
+  public static final String DFS_DISK_BALANCER_LATENCY_THRESHOLD_DEFAULT =
+      "0ms";
+
+  public static final String DFS_DISK_BALANCER_MIN_THROUGHPUT_PERCENT =
+      "dfs.disk.balancer.min.throughput.percent";
+  public static final int DFS_DISK_BALANCER_MIN_THROUGHPUT_PERCENT_DEFAULT =
+      10;
+
   public static final String HTTPFS_BUFFER_SIZE_KEY =
       "httpfs.buffer.size";
   public static final int HTTP_BUFFER_SIZE_DEFAULT = 4096;
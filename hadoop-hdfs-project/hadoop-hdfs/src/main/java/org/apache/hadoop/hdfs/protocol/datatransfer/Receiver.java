@@ -34,6 +34,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.ClientOperationHeaderProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpBlockChecksumProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpBlockGroupChecksumProto;
+import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpReadCombinedBlocksProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpCopyBlockProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpReadBlockProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.OpReplaceBlockProto;
@@ -121,6 +122,9 @@ protected final void processOp(Op op) throws IOException {
     case BLOCK_GROUP_CHECKSUM:
       opStripedBlockChecksum(in);
       break;
+    case READ_COMBINED_BLOCKS:
+      opReadCombinedBlocks(in);
+      break;
     case TRANSFER_BLOCK:
       opTransferBlock(in);
       break;
@@ -160,7 +164,8 @@ private void opReadBlock() throws IOException {
         proto.getSendChecksums(),
         (proto.hasCachingStrategy() ?
             getCachingStrategy(proto.getCachingStrategy()) :
-          CachingStrategy.newDefaultStrategy()));
+          CachingStrategy.newDefaultStrategy()),
+        proto.getMaxPacketSize());
     } finally {
       if (traceScope != null) traceScope.close();
     }
@@ -339,4 +344,25 @@ private void opStripedBlockChecksum(DataInputStream dis) throws IOException {
       }
     }
   }
+
+  /** Receive OP_READ_COMBINED_BLOCKS. */
+  private void opReadCombinedBlocks(DataInputStream dis) throws IOException {
+    OpReadCombinedBlocksProto proto =
+        OpReadCombinedBlocksProto.parseFrom(vintPrefixed(dis));
+    TraceScope traceScope = continueTraceSpan(proto.getHeader(),
+        proto.getClass().getSimpleName());
+    try {
+      readCombinedBlocks(PBHelperClient.convert(proto.getHeader().getBlock()),
+          PBHelperClient.convert(proto.getHeader().getToken()),
+          proto.getCoefficients().toByteArray(),
+          proto.getOffset(),
+          proto.getLen(),
+          proto.getWindowSize(),
+          PBHelperClient.convertCombinedBlockSources(proto.getSourcesList()));
+    } finally {
+      if (traceScope != null) {
+        traceScope.close();
+      }
+    }
+  }
 }
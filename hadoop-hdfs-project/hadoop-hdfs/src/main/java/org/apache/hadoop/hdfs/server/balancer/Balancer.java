@@ -246,6 +246,8 @@ public class Balancer implements BalancerMXBean {
   private final int limitOverUtilizedNum;
   private final BalancerMetrics metrics;
   private ObjectName balancerInfoBeanName;
+  /** The utilization model when streaming, or null. */
+  private final UtilizationModel utilizationModel;
 
   // all data node lists
   private final Collection<Source> overUtilized = new LinkedList<Source>();
@@ -383,8 +385,45 @@ static int getFailedTimesSinceLastSuccessfulBalance() {
         DFSConfigKeys.DFS_BLOCK_SIZE_DEFAULT);
     this.metrics = BalancerMetrics.create(this);
 
+    if (isStreaming(conf)) {
+      final long refreshInterval = conf.getTimeDuration(
+          DFSConfigKeys.DFS_BALANCER_STREAMING_REFRESH_INTERVAL_KEY,
+          DFSConfigKeys.DFS_BALANCER_STREAMING_REFRESH_INTERVAL_DEFAULT,
+          TimeUnit.MILLISECONDS);
+      this.utilizationModel = new UtilizationModel(nnc, refreshInterval,
+          getHeartbeatDelay(conf));
+      dispatcher.setStreaming(utilizationModel,
+          new MoveConcurrencyTuner(maxConcurrentMovesPerNode));
+    } else {
+      this.utilizationModel = null;
+    }
+
     registerBalancerMXBean();
   }
+
+  /**
+   * @return how long the moves of an iteration take to be reported to the
+   *         namenode: two heartbeats and a redundancy interval.
+   */
+  static long getHeartbeatDelay(Configuration conf) {
+    return conf.getTimeDuration(DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_KEY,
+            DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_DEFAULT,
+            TimeUnit.SECONDS, TimeUnit.MILLISECONDS) * 2 +
+        conf.getTimeDuration(
+            DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_INTERVAL_SECONDS_KEY,
+            DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_INTERVAL_SECONDS_DEFAULT,
+            TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return whether the balancers stream the balancing, reusing the
+   *         utilization model and the moved blocks of the previous rounds
+   *         instead of starting every iteration from scratch.
+   */
+  static boolean isStreaming(Configuration conf) {
+    return conf.getBoolean(DFSConfigKeys.DFS_BALANCER_STREAMING_ENABLED_KEY,
+        DFSConfigKeys.DFS_BALANCER_STREAMING_ENABLED_DEFAULT);
+  }
   
   private static long getCapacity(DatanodeStorageReport report, StorageType t) {
     long capacity = 0L;
@@ -696,17 +735,26 @@ private void registerBalancerMXBean() {
 
   /* reset all fields in a balancer preparing for the next iteration */
   void resetData(Configuration conf) {
+    resetIteration(conf);
+    this.dispatcher.shutdownNow();
+    DefaultMetricsSystem.removeSourceName(metrics.getName());
+    if (balancerInfoBeanName != null) {
+      MBeans.unregister(balancerInfoBeanName);
+      balancerInfoBeanName = null;
+    }
+  }
+
+  /**
+   * Reset the storage groups of the iteration, keeping the balancer running
+   * for the next round of a streaming balancing.
+   */
+  void resetIteration(Configuration conf) {
     this.overUtilized.clear();
     this.aboveAvgUtilized.clear();
     this.belowAvgUtilized.clear();
     this.underUtilized.clear();
     this.policy.reset();
     this.dispatcher.reset(conf);
-    DefaultMetricsSystem.removeSourceName(metrics.getName());
-    if (balancerInfoBeanName != null) {
-      MBeans.unregister(balancerInfoBeanName);
-      balancerInfoBeanName = null;
-    }
   }
 
   NameNodeConnector getNnc() {
@@ -805,6 +853,11 @@ Result runOneIteration() {
       final long bytesLeftToMove = init(reports);
       metrics.setBytesLeftToMove(bytesLeftToMove);
       if (bytesLeftToMove == 0) {
+        if (utilizationModel != null
+            && utilizationModel.invalidateIfUpdated()) {
+          // Confirm with the reports of the namenode in the next round.
+          return newResult(ExitStatus.IN_PROGRESS, bytesLeftToMove, 0);
+        }
         return newResult(ExitStatus.SUCCESS, bytesLeftToMove, 0);
       } else {
         LOG.info( "Need to move "+ StringUtils.byteDesc(bytesLeftToMove)
@@ -859,7 +912,9 @@ Result runOneIteration() {
       return newResult(ExitStatus.INTERRUPTED);
     } finally {
       metrics.setIterateRunning(false);
-      dispatcher.shutdownNow();
+      if (utilizationModel == null) {
+        dispatcher.shutdownNow();
+      }
     }
   }
 
@@ -872,14 +927,7 @@ Result runOneIteration() {
   static private int doBalance(Collection<URI> namenodes,
       Collection<String> nsIds, final BalancerParameters p, Configuration conf)
       throws IOException, InterruptedException {
-    final long sleeptime =
-        conf.getTimeDuration(DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_KEY,
-            DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_DEFAULT,
-            TimeUnit.SECONDS, TimeUnit.MILLISECONDS) * 2 +
-        conf.getTimeDuration(
-            DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_INTERVAL_SECONDS_KEY,
-            DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_INTERVAL_SECONDS_DEFAULT,
-            TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+    final long sleeptime = getHeartbeatDelay(conf);
     LOG.info("namenodes  = " + namenodes);
     LOG.info("parameters = " + p);
     LOG.info("included nodes = " + p.getIncludedNodes());
@@ -894,6 +942,9 @@ static private int doBalance(Collection<URI> namenodes,
         + "  NameNode");
     
     List<NameNodeConnector> connectors = Collections.emptyList();
+    // The balancers kept from one round to the next when streaming.
+    final boolean streaming = isStreaming(conf);
+    final Map<NameNodeConnector, Balancer> balancers = new HashMap<>();
     BalancerHttpServer balancerHttpServer = startBalancerHttpServer(conf);
     try {
       connectors = NameNodeConnector.newNameNodeConnectors(namenodes, nsIds,
@@ -902,19 +953,30 @@ static private int doBalance(Collection<URI> namenodes,
       boolean done = false;
       for(int iteration = 0; !done; iteration++) {
         done = true;
+        boolean moved = false;
         Collections.shuffle(connectors);
         for(NameNodeConnector nnc : connectors) {
           if (p.getBlockPools().size() == 0
               || p.getBlockPools().contains(nnc.getBlockpoolID())) {
-            final Balancer b = new Balancer(nnc, p, conf);
+            Balancer b = balancers.remove(nnc);
+            if (b == null) {
+              b = new Balancer(nnc, p, conf);
+            }
             if (balancerHttpServer != null) {
               balancerHttpServer.setBalancerAttribute(b);
             }
+            final long bytesMovedBefore = b.dispatcher.getBytesMoved();
             final Result r = b.runOneIteration();
             r.print(iteration, nnc, System.out);
+            moved |= b.dispatcher.getBytesMoved() > bytesMovedBefore;
 
             // clean all lists
-            b.resetData(conf);
+            if (streaming && r.exitStatus == ExitStatus.IN_PROGRESS) {
+              b.resetIteration(conf);
+              balancers.put(nnc, b);
+            } else {
+              b.resetData(conf);
+            }
             if (r.exitStatus == ExitStatus.IN_PROGRESS) {
               done = false;
             } else if (r.exitStatus != ExitStatus.SUCCESS) {
@@ -928,11 +990,19 @@ static private int doBalance(Collection<URI> namenodes,
             System.out.println("The cluster is balanced. Exiting...");
           }
         }
-        if (!done) {
+        // A streaming balancer applies its own moves to its utilization
+        // model, so it does not wait for the heartbeats to report them. After
+        // a round that moved nothing, e.g. one waiting to confirm that the
+        // cluster is balanced, it waits like the classic balancer so that it
+        // does not spin through its no-move iterations.
+        if (!done && (!streaming || !moved)) {
           Thread.sleep(sleeptime);
         }
       }
     } finally {
+      for (Balancer b : balancers.values()) {
+        b.resetData(conf);
+      }
       for(NameNodeConnector nnc : connectors) {
         IOUtils.cleanupWithLogger(LOG, nnc);
       }
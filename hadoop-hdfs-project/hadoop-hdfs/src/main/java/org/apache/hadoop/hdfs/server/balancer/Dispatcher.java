@@ -143,6 +143,11 @@ public class Dispatcher {
 
   private long maxIterationTime;
 
+  /** The utilization model of a streaming balancer, or null. */
+  private UtilizationModel utilizationModel;
+  /** The concurrency tuner of a streaming balancer, or null. */
+  private MoveConcurrencyTuner concurrencyTuner;
+
   static class Allocator {
     private final int max;
     private int count = 0;
@@ -177,6 +182,10 @@ synchronized void reset() {
     synchronized void setLotSize(int lotSize) {
       this.lotSize = lotSize;
     }
+
+    synchronized int getLotSize() {
+      return lotSize;
+    }
   }
 
   private static class GlobalBlockMap {
@@ -371,6 +380,7 @@ private void dispatch() {
         }
         LOG.info("Start moving " + this);
         assert !(reportedBlock instanceof DBlockStriped);
+        final long moveStartTime = Time.monotonicNow();
 
         sock.connect(
             NetUtils.createSocketAddr(target.getDatanodeInfo().
@@ -404,11 +414,24 @@ private void dispatch() {
         receiveResponse(in);
         nnc.addBytesMoved(reportedBlock.getNumBytes());
         target.getDDatanode().setHasSuccess();
+        if (utilizationModel != null) {
+          utilizationModel.addMove(source.getDatanodeInfo(),
+              source.getStorageType(), target.getDatanodeInfo(),
+              target.getStorageType(), reportedBlock.getNumBytes());
+        }
+        if (concurrencyTuner != null) {
+          concurrencyTuner.addMove(target.getDatanodeInfo(),
+              reportedBlock.getNumBytes(),
+              Time.monotonicNow() - moveStartTime);
+        }
         LOG.info("Successfully moved " + this);
       } catch (IOException e) {
         LOG.warn("Failed to move " + this, e);
         nnc.getBlocksFailed().incrementAndGet();
         target.getDDatanode().setHasFailure();
+        if (concurrencyTuner != null) {
+          concurrencyTuner.addFailure(target.getDatanodeInfo());
+        }
         // Check that the failure is due to block pinning errors.
         if (e instanceof BlockPinningException) {
           // Pinned block can't be moved. Add this block into failure list.
@@ -1119,6 +1142,16 @@ public DistributedFileSystem getDistributedFileSystem() {
     return nnc.getDistributedFileSystem();
   }
 
+  /**
+   * Stream the balancing: get the storage reports from the utilization model
+   * and tune the number of concurrent moves to each target, see
+   * {@link UtilizationModel} and {@link MoveConcurrencyTuner}.
+   */
+  void setStreaming(UtilizationModel model, MoveConcurrencyTuner tuner) {
+    this.utilizationModel = model;
+    this.concurrencyTuner = tuner;
+  }
+
   public StorageGroupMap<StorageGroup> getStorageGroupMap() {
     return storageGroupMap;
   }
@@ -1184,7 +1217,9 @@ private boolean shouldIgnore(DatanodeInfo dn) {
 
   /** Get live datanode storage reports and then build the network topology. */
   public List<DatanodeStorageReport> init() throws IOException {
-    final DatanodeStorageReport[] reports = nnc.getLiveDatanodeStorageReport();
+    final DatanodeStorageReport[] reports = utilizationModel != null ?
+        utilizationModel.getLiveDatanodeStorageReport() :
+        nnc.getLiveDatanodeStorageReport();
     final List<DatanodeStorageReport> trimmed = new ArrayList<DatanodeStorageReport>(); 
     // create network topology and classify utilization collections:
     // over-utilized, above-average, below-average and under-utilized.
@@ -1210,7 +1245,10 @@ public void executePendingMove(final PendingMove p) {
     final DDatanode targetDn = p.target.getDDatanode();
     ExecutorService moveExecutor = targetDn.getMoveExecutor();
     if (moveExecutor == null) {
-      final int nThreads = moverThreadAllocator.allocate();
+      final int nThreads = concurrencyTuner == null ?
+          moverThreadAllocator.allocate() :
+          moverThreadAllocator.allocate(concurrencyTuner.getConcurrency(
+              targetDn.getDatanodeInfo(), moverThreadAllocator.getLotSize()));
       if (nThreads > 0) {
         moveExecutor = targetDn.initMoveExecutor(nThreads);
       }
@@ -1286,6 +1324,9 @@ public void run() {
 
     // wait for all reportedBlock moving to be done
     waitForMoveCompletion(targets);
+    if (concurrencyTuner != null) {
+      concurrencyTuner.endRound();
+    }
     LOG.info("Total bytes (blocks) moved in this iteration {} ({})",
         StringUtils.byteDesc(getBytesMoved() - bytesLastMoved),
         (getBlocksMoved() - blocksLastMoved));
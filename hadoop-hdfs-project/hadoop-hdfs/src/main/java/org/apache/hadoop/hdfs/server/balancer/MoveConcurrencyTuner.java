@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.balancer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+
+/**
+ * Tunes the number of concurrent block moves to every target datanode from
+ * the move throughput observed in the previous rounds of a streaming
+ * {@link Balancer}.
+ *
+ * The throughput of a target in a round is its concurrency times the rate
+ * of its moves. The concurrency is increased by one while the throughput
+ * grows, decreased by one when it drops, and halved when a move to the
+ * target fails.
+ */
+@InterfaceAudience.Private
+class MoveConcurrencyTuner {
+  /** The relative change of throughput considered significant. */
+  private static final double THROUGHPUT_CHANGE = 0.1;
+
+  private static class TargetStats {
+    private int concurrency;
+    private double lastThroughput = -1;
+    private long bytesMoved = 0L;
+    private long moveTime = 0L;
+    private int failures = 0;
+
+    TargetStats(int concurrency) {
+      this.concurrency = concurrency;
+    }
+  }
+
+  private final int maxConcurrency;
+  /** Map datanodeUuid -> the stats of the target. */
+  private final Map<String, TargetStats> targets = new HashMap<>();
+
+  MoveConcurrencyTuner(int maxConcurrency) {
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  /**
+   * @param target a target datanode.
+   * @param initial the concurrency of a target without stats yet.
+   * @return the number of concurrent moves to the target.
+   */
+  synchronized int getConcurrency(DatanodeInfo target, int initial) {
+    return targets.computeIfAbsent(target.getDatanodeUuid(),
+        k -> new TargetStats(Math.max(1, Math.min(initial, maxConcurrency))))
+        .concurrency;
+  }
+
+  /** Record a successful move of numBytes to the target in moveTime ms. */
+  synchronized void addMove(DatanodeInfo target, long numBytes,
+      long moveTime) {
+    final TargetStats stats = targets.get(target.getDatanodeUuid());
+    if (stats != null) {
+      stats.bytesMoved += numBytes;
+      stats.moveTime += Math.max(1L, moveTime);
+    }
+  }
+
+  /** Record a failed move to the target. */
+  synchronized void addFailure(DatanodeInfo target) {
+    final TargetStats stats = targets.get(target.getDatanodeUuid());
+    if (stats != null) {
+      stats.failures++;
+    }
+  }
+
+  /** Tune the concurrency of the targets from the moves of the round. */
+  synchronized void endRound() {
+    for (TargetStats stats : targets.values()) {
+      if (stats.failures > 0) {
+        stats.concurrency = Math.max(1, stats.concurrency / 2);
+        stats.lastThroughput = -1;
+      } else if (stats.moveTime > 0) {
+        final double throughput =
+            stats.concurrency * (double) stats.bytesMoved / stats.moveTime;
+        if (stats.lastThroughput < 0
+            || throughput > stats.lastThroughput * (1 + THROUGHPUT_CHANGE)) {
+          stats.concurrency = Math.min(maxConcurrency, stats.concurrency + 1);
+        } else if (
+            throughput < stats.lastThroughput * (1 - THROUGHPUT_CHANGE)) {
+          stats.concurrency = Math.max(1, stats.concurrency - 1);
+        }
+        stats.lastThroughput = throughput;
+      }
+      stats.bytesMoved = 0L;
+      stats.moveTime = 0L;
+      stats.failures = 0;
+    }
+  }
+}
@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.balancer;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
+import org.apache.hadoop.hdfs.server.protocol.StorageReport;
+import org.apache.hadoop.util.Timer;
+
+/**
+ * The utilization of the datanodes as seen by a streaming {@link Balancer}.
+ *
+ * The storage reports are fetched from the namenode only once per refresh
+ * interval. In between, every block moved by the balancer is applied to the
+ * reports, as the space it frees on the source and takes on the target, so
+ * that the next round can be planned right away without waiting for the
+ * datanode heartbeats to reach the namenode. Once the moves make the
+ * cluster look balanced, the reports are fetched again to confirm it, but
+ * not before the heartbeats had the time to report the last move.
+ */
+@InterfaceAudience.Private
+class UtilizationModel {
+  private final NameNodeConnector nnc;
+  private final long refreshInterval;
+  private final long confirmDelay;
+  private final Timer timer;
+
+  /** Map datanodeUuid -> the report of the datanode. */
+  private final Map<String, DatanodeStorageReport> reports = new HashMap<>();
+  private boolean fetched = false;
+  private long lastRefresh;
+  /** Whether the reports are to be fetched again to confirm the moves. */
+  private boolean stale = false;
+  /** Whether moves were applied to the reports since the last refresh. */
+  private boolean updated = false;
+  private long lastMove;
+
+  /**
+   * @param refreshInterval how often to fetch the reports from the namenode.
+   * @param confirmDelay how long the heartbeats take to report a move to the
+   *                     namenode.
+   */
+  UtilizationModel(NameNodeConnector nnc, long refreshInterval,
+      long confirmDelay) {
+    this(nnc, refreshInterval, confirmDelay, new Timer());
+  }
+
+  @VisibleForTesting
+  UtilizationModel(NameNodeConnector nnc, long refreshInterval,
+      long confirmDelay, Timer timer) {
+    this.nnc = nnc;
+    this.refreshInterval = refreshInterval;
+    this.confirmDelay = confirmDelay;
+    this.timer = timer;
+  }
+
+  /**
+   * @return the reports of the live datanodes, fetched from the namenode if
+   *         the model is older than the refresh interval, or if the moves
+   *         are to be confirmed and the heartbeats had the time to report
+   *         them.
+   */
+  synchronized DatanodeStorageReport[] getLiveDatanodeStorageReport()
+      throws IOException {
+    final long now = timer.monotonicNow();
+    if (!fetched || now - lastRefresh >= refreshInterval
+        || (stale && now - lastMove >= confirmDelay)) {
+      reports.clear();
+      for (DatanodeStorageReport r : nnc.getLiveDatanodeStorageReport()) {
+        reports.put(r.getDatanodeInfo().getDatanodeUuid(), r);
+      }
+      fetched = true;
+      lastRefresh = now;
+      stale = false;
+      updated = false;
+      Balancer.LOG.info("Refreshed the utilization of {} datanodes from {}",
+          reports.size(), nnc.getNameNodeUri());
+    }
+    return reports.values().toArray(new DatanodeStorageReport[0]);
+  }
+
+  /**
+   * Fetch the reports from the namenode once the heartbeats had the time to
+   * report the moves applied to them, e.g. to confirm that the cluster is
+   * balanced.
+   *
+   * @return whether the reports were invalidated.
+   */
+  synchronized boolean invalidateIfUpdated() {
+    if (updated) {
+      stale = true;
+    }
+    return updated;
+  }
+
+  /**
+   * Apply a block move to the reports.
+   *
+   * @param source the datanode the block is moved from.
+   * @param sourceType the storage type on the source.
+   * @param target the datanode the block is moved to.
+   * @param targetType the storage type on the target.
+   * @param numBytes the size of the block.
+   */
+  synchronized void addMove(DatanodeInfo source, StorageType sourceType,
+      DatanodeInfo target, StorageType targetType, long numBytes) {
+    update(source, sourceType, -numBytes);
+    update(target, targetType, numBytes);
+    updated = true;
+    lastMove = timer.monotonicNow();
+  }
+
+  private void update(DatanodeInfo datanode, StorageType type, long delta) {
+    final DatanodeStorageReport report =
+        reports.get(datanode.getDatanodeUuid());
+    if (report == null) {
+      return;
+    }
+    // Charge the storage with the most remaining space when adding and the
+    // one with the most used space when freeing.
+    final StorageReport[] storages = report.getStorageReports().clone();
+    int chosen = -1;
+    for (int i = 0; i < storages.length; i++) {
+      final StorageReport s = storages[i];
+      if (s.getStorage().getStorageType() != type || s.isFailed()) {
+        continue;
+      }
+      if (chosen < 0 || (delta > 0
+          ? s.getRemaining() > storages[chosen].getRemaining()
+          : s.getBlockPoolUsed() > storages[chosen].getBlockPoolUsed())) {
+        chosen = i;
+      }
+    }
+    if (chosen < 0) {
+      return;
+    }
+    final StorageReport s = storages[chosen];
+    storages[chosen] = new StorageReport(s.getStorage(), s.isFailed(),
+        s.getCapacity(), Math.max(0, s.getDfsUsed() + delta),
+        Math.max(0, s.getRemaining() - delta),
+        Math.max(0, s.getBlockPoolUsed() + delta), s.getNonDfsUsed(),
+        s.getMount());
+    reports.put(datanode.getDatanodeUuid(),
+        new DatanodeStorageReport(report.getDatanodeInfo(), storages));
+  }
+
+  @VisibleForTesting
+  synchronized DatanodeStorageReport getReport(String datanodeUuid) {
+    return reports.get(datanodeUuid);
+  }
+}
@@ -31,9 +31,11 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -45,6 +47,9 @@
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -121,6 +126,7 @@
 
 import org.apache.hadoop.hdfs.util.LightWeightHashSet;
 import org.apache.hadoop.hdfs.util.RwLockMode;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.metrics2.util.MBeans;
 import org.apache.hadoop.net.Node;
 import org.apache.hadoop.security.UserGroupInformation;
@@ -133,6 +139,8 @@
 
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.util.Preconditions;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.Uninterruptibles;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -332,6 +340,24 @@ public int getPendingSPSPaths() {
   private int replQueueResetToHeadThreshold;
   private int replQueueCallsSinceReset = 0;
 
+  /**
+   * Whether the targets of the reconstruction work computed in an iteration
+   * are chosen in one batch per placement policy.
+   */
+  private final boolean batchPlacementEnabled;
+
+  /**
+   * The threads choosing the targets of the reconstruction work, or null to
+   * choose them in the RedundancyMonitor thread.
+   */
+  private final ExecutorService targetSelectionExecutor;
+
+  /**
+   * Whether the number of blocks scheduled for reconstruction per iteration
+   * follows the free reconstruction capacity of the datanodes.
+   */
+  private final boolean adaptiveWorkEnabled;
+
   /**
    * Mapping: Block {@literal ->} { BlockCollection, datanodes, self ref }
    * Updated only in response to client-sent information.
@@ -588,6 +614,29 @@ public BlockManager(final Namesystem namesystem, boolean haEnabled,
         (short) initMinReplicationToBeInMaintenance(conf);
     this.replQueueResetToHeadThreshold =
         initReplQueueResetToHeadThreshold(conf);
+    this.batchPlacementEnabled = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_BATCH_PLACEMENT_ENABLED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_BATCH_PLACEMENT_ENABLED_DEFAULT);
+    final int targetSelectionThreads = conf.getInt(
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_TARGET_SELECTION_THREADS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_TARGET_SELECTION_THREADS_DEFAULT);
+    if (targetSelectionThreads > 1 && batchPlacementEnabled) {
+      LOG.warn("{} = {} is ignored, the targets are chosen in a batch as {}"
+          + " is true.",
+          DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_TARGET_SELECTION_THREADS_KEY,
+          targetSelectionThreads,
+          DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_BATCH_PLACEMENT_ENABLED_KEY);
+      this.targetSelectionExecutor = null;
+    } else if (targetSelectionThreads > 1) {
+      this.targetSelectionExecutor = Executors.newFixedThreadPool(
+          targetSelectionThreads, new ThreadFactoryBuilder().setDaemon(true)
+              .setNameFormat("RedundancyMonitor-TargetSelection-%d").build());
+    } else {
+      this.targetSelectionExecutor = null;
+    }
+    this.adaptiveWorkEnabled = conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_ADAPTIVE_WORK_ENABLED_KEY,
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_ADAPTIVE_WORK_ENABLED_DEFAULT);
 
     long heartbeatIntervalSecs = conf.getTimeDuration(
         DFSConfigKeys.DFS_HEARTBEAT_INTERVAL_KEY,
@@ -831,6 +880,9 @@ public void close() {
       markedDeleteBlockScrubberThread.join(3000);
     } catch (InterruptedException ie) {
     }
+    if (targetSelectionExecutor != null) {
+      targetSelectionExecutor.shutdown();
+    }
     datanodeManager.close();
     pendingReconstruction.stop();
     blocksMap.close();
@@ -2164,24 +2216,18 @@ int computeReconstructionWorkForBlocks(
     }
 
     // Step 2: choose target nodes for each reconstruction task
-    for (BlockReconstructionWork rw : reconWork) {
-      // Exclude all of the containing nodes from being targets.
-      // This list includes decommissioning or corrupt nodes.
-      final Set<Node> excludedNodes = new HashSet<>(rw.getContainingNodes());
-
-      // Exclude all nodes which already exists as targets for the block
-      List<DatanodeStorageInfo> targets =
-          pendingReconstruction.getTargets(rw.getBlock());
-      if (targets != null) {
-        for (DatanodeStorageInfo dn : targets) {
-          excludedNodes.add(dn.getDatanodeDescriptor());
-        }
+    if (batchPlacementEnabled) {
+      chooseTargetsInBatch(reconWork);
+    } else if (targetSelectionExecutor != null) {
+      chooseTargetsInParallel(reconWork);
+    } else {
+      for (BlockReconstructionWork rw : reconWork) {
+        final Set<Node> excludedNodes = getExcludedTargets(rw);
+        // choose replication targets: NOT HOLDING THE GLOBAL LOCK
+        final BlockPlacementPolicy placementPolicy =
+            placementPolicies.getPolicy(rw.getBlock().getBlockType());
+        rw.chooseTargets(placementPolicy, storagePolicySuite, excludedNodes);
       }
-
-      // choose replication targets: NOT HOLDING THE GLOBAL LOCK
-      final BlockPlacementPolicy placementPolicy =
-          placementPolicies.getPolicy(rw.getBlock().getBlockType());
-      rw.chooseTargets(placementPolicy, storagePolicySuite, excludedNodes);
     }
 
     // Step 3: add tasks to the DN
@@ -2226,6 +2272,113 @@ int computeReconstructionWorkForBlocks(
     return scheduledWork;
   }
 
+  /**
+   * @return the nodes that must not be chosen as targets of the
+   *         reconstruction work.
+   */
+  private Set<Node> getExcludedTargets(BlockReconstructionWork rw) {
+    // Exclude all of the containing nodes from being targets.
+    // This list includes decommissioning or corrupt nodes.
+    final Set<Node> excludedNodes = new HashSet<>(rw.getContainingNodes());
+
+    // Exclude all nodes which already exists as targets for the block
+    List<DatanodeStorageInfo> targets =
+        pendingReconstruction.getTargets(rw.getBlock());
+    if (targets != null) {
+      for (DatanodeStorageInfo dn : targets) {
+        excludedNodes.add(dn.getDatanodeDescriptor());
+      }
+    }
+    return excludedNodes;
+  }
+
+  /**
+   * Choose the targets of the reconstruction work in the target selection
+   * threads, waiting for all of them. The work is submitted in priority
+   * order. Not holding the global lock.
+   */
+  private void chooseTargetsInParallel(
+      List<BlockReconstructionWork> reconWork) {
+    final List<Future<?>> futures = new ArrayList<>(reconWork.size());
+    for (BlockReconstructionWork rw : reconWork) {
+      final Set<Node> excludedNodes = getExcludedTargets(rw);
+      final BlockPlacementPolicy placementPolicy =
+          placementPolicies.getPolicy(rw.getBlock().getBlockType());
+      futures.add(targetSelectionExecutor.submit(() -> rw.chooseTargets(
+          placementPolicy, storagePolicySuite, excludedNodes)));
+    }
+
+    // Every work must be done before step 3, even if another one failed.
+    RuntimeException failure = null;
+    for (Future<?> future : futures) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
+        }
+        if (failure == null) {
+          failure = e.getCause() instanceof RuntimeException ?
+              (RuntimeException) e.getCause() :
+              new RuntimeException(e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Choose the targets of the reconstruction work with one batch per
+   * placement policy, so that the policy can spread the work over the
+   * cluster, see {@link BlockPlacementPolicy#chooseTargets(List)}.
+   * Not holding the global lock.
+   */
+  private void chooseTargetsInBatch(List<BlockReconstructionWork> reconWork) {
+    final Map<BlockType, List<BlockReconstructionWork>> batchWork =
+        new EnumMap<>(BlockType.class);
+    final Map<BlockType, List<BlockPlacementPolicy.TargetRequest>> requests =
+        new EnumMap<>(BlockType.class);
+    // The works given their targets. If choosing fails, every other work is
+    // given no target, which releases its source nodes.
+    final Set<BlockReconstructionWork> chosen =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    try {
+      for (BlockReconstructionWork rw : reconWork) {
+        BlockPlacementPolicy.TargetRequest request =
+            rw.getTargetRequest(storagePolicySuite, getExcludedTargets(rw));
+        if (request == null) {
+          chosen.add(rw);
+          rw.setChosenTargets(null);
+          continue;
+        }
+        final BlockType blockType = rw.getBlock().getBlockType();
+        batchWork.computeIfAbsent(blockType, k -> new ArrayList<>()).add(rw);
+        requests.computeIfAbsent(blockType, k -> new ArrayList<>())
+            .add(request);
+      }
+
+      for (Map.Entry<BlockType, List<BlockReconstructionWork>> entry
+          : batchWork.entrySet()) {
+        final List<BlockReconstructionWork> works = entry.getValue();
+        final List<DatanodeStorageInfo[]> targets =
+            placementPolicies.getPolicy(entry.getKey())
+                .chooseTargets(requests.get(entry.getKey()));
+        for (int i = 0; i < works.size(); i++) {
+          chosen.add(works.get(i));
+          works.get(i).setChosenTargets(targets.get(i));
+        }
+      }
+    } finally {
+      for (BlockReconstructionWork rw : reconWork) {
+        if (chosen.add(rw)) {
+          rw.setChosenTargets(null);
+        }
+      }
+    }
+  }
+
   // Check if the number of live + pending replicas satisfies
   // the expected redundancy.
   boolean hasEnoughEffectiveReplicas(BlockInfo block,
@@ -2266,9 +2419,16 @@ BlockReconstructionWork scheduleReconstruction(BlockInfo block,
     }
 
     // skip if source datanodes for reconstructing ec block are not enough
+    int[] localRepairIndices = null;
     if (block.isStriped()) {
       BlockInfoStriped stripedBlock = (BlockInfoStriped) block;
-      if (stripedBlock.getRealDataBlockNum() > srcNodes.length) {
+      // Internal blocks of a Locally Repairable Code may be reconstructed from
+      // the rest of their local groups, with fewer sources.
+      localRepairIndices = getLocalRepairIndices(stripedBlock,
+          liveBlockIndices, excludeReconstructed);
+      if (localRepairIndices == null
+          && (stripedBlock.getRealDataBlockNum() > srcNodes.length
+              || !isDecodable(stripedBlock, liveBlockIndices))) {
         LOG.debug("Block {} cannot be reconstructed due to shortage of source datanodes ", block);
         NameNode.getNameNodeMetrics().incNumTimesReReplicationNotScheduled();
         return null;
@@ -2319,6 +2479,13 @@ BlockReconstructionWork scheduleReconstruction(BlockInfo block,
       byte[] newIndices = new byte[liveBlockIndices.size()];
       adjustSrcNodesAndIndices((BlockInfoStriped)block,
           srcNodes, liveBlockIndices, newSrcNodes, newIndices);
+      if (localRepairIndices != null) {
+        // Read the local groups first, and place the targets close to them.
+        StripedBlockUtil.sortSources(newIndices, newSrcNodes,
+            StripedBlockUtil.getLocalRepairRanks(
+                ((BlockInfoStriped) block).getErasureCodingPolicy(),
+                localRepairIndices));
+      }
       byte[] busyIndices = new byte[liveBusyBlockIndices.size()];
       for (int i = 0; i < liveBusyBlockIndices.size(); i++) {
         busyIndices[i] = liveBusyBlockIndices.get(i);
@@ -2337,6 +2504,65 @@ BlockReconstructionWork scheduleReconstruction(BlockInfo block,
     }
   }
 
+  /**
+   * @return whether the block group can be decoded from the given internal
+   *         blocks, which is not always the case for as many internal blocks
+   *         as the data blocks of a Locally Repairable Code.
+   */
+  private static boolean isDecodable(BlockInfoStriped block,
+      List<Byte> liveBlockIndices) {
+    final ErasureCodingPolicy ecPolicy = block.getErasureCodingPolicy();
+    if (!StripedBlockUtil.isLocallyRepairable(ecPolicy)) {
+      return true;
+    }
+    BitSet live = new BitSet(ecPolicy.getNumDataUnits()
+        + ecPolicy.getNumParityUnits());
+    for (byte index : liveBlockIndices) {
+      live.set(index);
+    }
+    // The data blocks past the end of a small block group are empty.
+    live.set(block.getRealDataBlockNum(), block.getDataBlockNum());
+    return StripedBlockUtil.isDecodable(ecPolicy, live);
+  }
+
+  /**
+   * @return the internal blocks to read if the missing internal blocks of a
+   *         Locally Repairable Code can be reconstructed from the live
+   *         internal blocks of their local groups, otherwise null.
+   */
+  private int[] getLocalRepairIndices(BlockInfoStriped block,
+      List<Byte> liveBlockIndices, List<Byte> excludeReconstructed) {
+    ErasureCodingPolicy ecPolicy = block.getErasureCodingPolicy();
+    if (!StripedBlockUtil.isLocallyRepairable(ecPolicy)) {
+      return null;
+    }
+    BitSet live = new BitSet(block.getTotalBlockNum());
+    for (byte index : liveBlockIndices) {
+      live.set(index);
+    }
+    for (byte index : excludeReconstructed) {
+      live.set(index);
+    }
+    int[] missing = new int[block.getTotalBlockNum()];
+    int numMissing = 0;
+    for (int i = 0; i < block.getTotalBlockNum(); i++) {
+      if (!live.get(i)) {
+        missing[numMissing++] = i;
+      }
+    }
+    int[] repairIndices = StripedBlockUtil.getLocalRepairIndices(ecPolicy,
+        block.getNumBytes(), Arrays.copyOf(missing, numMissing));
+    if (repairIndices == null) {
+      return null;
+    }
+    for (int index : repairIndices) {
+      if (!liveBlockIndices.contains((byte) index)) {
+        return null;
+      }
+    }
+    return repairIndices;
+  }
+
   /**
    * Adjust srcNodes and indices which are used to reconstruction block.
    * We should guarantee the indexes of first minRequiredSources nodes
@@ -5431,8 +5657,9 @@ int computeDatanodeWork() {
     }
 
     final int numlive = heartbeatManager.getLiveDatanodeCount();
-    final int blocksToProcess = numlive
-        * this.blocksReplWorkMultiplier;
+    final int blocksToProcess = adaptiveWorkEnabled ?
+        Math.max(numlive, getReconstructionWorkCapacity()) :
+        numlive * this.blocksReplWorkMultiplier;
     final int nodesToProcess = (int) Math.ceil(numlive
         * this.blocksInvalidateWorkPct);
 
@@ -5451,6 +5678,24 @@ int computeDatanodeWork() {
     return workFound;
   }
 
+  /**
+   * @return the number of blocks the live datanodes can start to reconstruct
+   *         as sources without exceeding maxReplicationStreams, given the
+   *         reconstruction work already queued on them.
+   */
+  @VisibleForTesting
+  int getReconstructionWorkCapacity() {
+    int capacity = 0;
+    for (DatanodeDescriptor node : heartbeatManager.getDatanodes()) {
+      if (node.isAlive()) {
+        capacity += Math.max(0, maxReplicationStreams
+            - node.getNumberOfBlocksToBeReplicated()
+            - node.getNumberOfBlocksToBeErasureCoded());
+      }
+    }
+    return capacity;
+  }
+
   /**
    * Clear all queues that hold decisions previously made by
    * this NameNode.
@@ -113,6 +113,107 @@ public DatanodeStorageInfo[] chooseTarget(String srcPath, int numOfReplicas,
         returnChosenNodes, excludedNodes, blocksize, storagePolicy, flags);
   }
 
+  /**
+   * Choose the targets of a batch of blocks, e.g. all the blocks scheduled
+   * for reconstruction by one iteration of the redundancy monitor. The
+   * targets chosen for the first blocks of the batch may be taken into
+   * account to choose the targets of the next ones, to spread the batch over
+   * the cluster.
+   *
+   * The default implementation chooses the targets of every block in turn.
+   *
+   * @param requests the blocks to choose targets for.
+   * @return the targets chosen for every block, in the order of the requests.
+   */
+  public List<DatanodeStorageInfo[]> chooseTargets(
+      List<TargetRequest> requests) {
+    List<DatanodeStorageInfo[]> targets = new ArrayList<>(requests.size());
+    for (TargetRequest request : requests) {
+      targets.add(chooseTarget(request));
+    }
+    return targets;
+  }
+
+  /**
+   * Choose the targets of a single block of a batch.
+   */
+  protected DatanodeStorageInfo[] chooseTarget(TargetRequest request) {
+    return chooseTarget(request.getSrcPath(), request.getNumOfReplicas(),
+        request.getWriter(), request.getChosen(),
+        request.isReturnChosenNodes(), request.getExcludedNodes(),
+        request.getBlocksize(), request.getStoragePolicy(),
+        request.getFlags());
+  }
+
+  /**
+   * A block to choose targets for in a batch, with the arguments of
+   * {@link #chooseTarget(String, int, Node, List, boolean, Set, long,
+   * BlockStoragePolicy, EnumSet)}.
+   */
+  @InterfaceAudience.Private
+  public static class TargetRequest {
+    private final String srcPath;
+    private final int numOfReplicas;
+    private final Node writer;
+    private final List<DatanodeStorageInfo> chosen;
+    private final boolean returnChosenNodes;
+    private final Set<Node> excludedNodes;
+    private final long blocksize;
+    private final BlockStoragePolicy storagePolicy;
+    private final EnumSet<AddBlockFlag> flags;
+
+    public TargetRequest(String srcPath, int numOfReplicas, Node writer,
+        List<DatanodeStorageInfo> chosen, boolean returnChosenNodes,
+        Set<Node> excludedNodes, long blocksize,
+        BlockStoragePolicy storagePolicy, EnumSet<AddBlockFlag> flags) {
+      this.srcPath = srcPath;
+      this.numOfReplicas = numOfReplicas;
+      this.writer = writer;
+      this.chosen = chosen;
+      this.returnChosenNodes = returnChosenNodes;
+      this.excludedNodes = excludedNodes;
+      this.blocksize = blocksize;
+      this.storagePolicy = storagePolicy;
+      this.flags = flags;
+    }
+
+    public String getSrcPath() {
+      return srcPath;
+    }
+
+    public int getNumOfReplicas() {
+      return numOfReplicas;
+    }
+
+    public Node getWriter() {
+      return writer;
+    }
+
+    public List<DatanodeStorageInfo> getChosen() {
+      return chosen;
+    }
+
+    public boolean isReturnChosenNodes() {
+      return returnChosenNodes;
+    }
+
+    public Set<Node> getExcludedNodes() {
+      return excludedNodes;
+    }
+
+    public long getBlocksize() {
+      return blocksize;
+    }
+
+    public BlockStoragePolicy getStoragePolicy() {
+      return storagePolicy;
+    }
+
+    public EnumSet<AddBlockFlag> getFlags() {
+      return flags;
+    }
+  }
+
   /**
    * Verify if the block's placement meets requirement of placement policy,
    * i.e. replicas are placed on no less than minRacks racks in the system.
@@ -80,6 +80,10 @@ protected StringBuilder initialValue() {
   private static final BlockPlacementStatus ONE_RACK_PLACEMENT =
       new BlockPlacementStatusDefault(1, 1, 1);
 
+  /** The batch the targets are being chosen for, see {@link #chooseTargets}. */
+  private static final ThreadLocal<PlacementBatch> PLACEMENT_BATCH =
+      new ThreadLocal<>();
+
   protected enum NodeNotChosenReason {
     NOT_IN_SERVICE("the node is not in service"),
     NODE_STALE("the node is stale"),
@@ -284,6 +288,39 @@ protected void chooseFavouredNodes(String src, int numOfReplicas,
     }
   }
 
+  /**
+   * Choose the targets of every block in turn, counting every target chosen
+   * in the batch as one more xceiver of its datanode when considering load,
+   * since it is going to receive a replica before its next heartbeat. The
+   * cluster load statistics are read once for the whole batch.
+   */
+  @Override
+  public List<DatanodeStorageInfo[]> chooseTargets(
+      List<TargetRequest> requests) {
+    if (!considerLoad || stats == null) {
+      return super.chooseTargets(requests);
+    }
+    final PlacementBatch batch = new PlacementBatch(
+        stats.getNumDatanodesInService(), stats.getInServiceXceiverAverage());
+    PLACEMENT_BATCH.set(batch);
+    try {
+      List<DatanodeStorageInfo[]> targets = new ArrayList<>(requests.size());
+      for (TargetRequest request : requests) {
+        DatanodeStorageInfo[] chosen = chooseTarget(request);
+        for (DatanodeStorageInfo storage : chosen) {
+          if (!request.isReturnChosenNodes()
+              || !request.getChosen().contains(storage)) {
+            batch.addTarget(storage.getDatanodeDescriptor());
+          }
+        }
+        targets.add(chosen);
+      }
+      return targets;
+    } finally {
+      PLACEMENT_BATCH.remove();
+    }
+  }
+
   /** This is the implementation. */
   private DatanodeStorageInfo[] chooseTarget(int numOfReplicas,
                                     Node writer,
@@ -1011,10 +1048,16 @@ protected static void logNodeIsNotChosen(DatanodeDescriptor node,
    * @return Return true if the datanode should be excluded, otherwise false
    */
   boolean excludeNodeByLoad(DatanodeDescriptor node){
-    double inServiceXceiverCount = getInServiceXceiverAverage(node);
+    final PlacementBatch batch = PLACEMENT_BATCH.get();
+    double inServiceXceiverCount = getInServiceXceiverAverage(node, batch);
+    int nodeLoad = node.getXceiverCount();
+    if (batch != null) {
+      // account for the targets already chosen in the batch
+      inServiceXceiverCount += batch.getAverageLoad();
+      nodeLoad += batch.getLoad(node);
+    }
     final double maxLoad = considerLoadFactor * inServiceXceiverCount;
 
-    final int nodeLoad = node.getXceiverCount();
     if ((nodeLoad > maxLoad) && (maxLoad > 0)) {
       logNodeIsNotChosen(node, NodeNotChosenReason.NODE_TOO_BUSY,
           "(load: " + nodeLoad + " > " + maxLoad + ")");
@@ -1024,6 +1067,7 @@ boolean excludeNodeByLoad(DatanodeDescriptor node){
       final int numVolumesAvailable = node.getNumVolumesAvailable();
       final double maxLoadForVolumes = considerLoadFactor * numVolumesAvailable *
           stats.getInServiceXceiverAverageForVolume();
+      nodeLoad = node.getXceiverCount();
       if (maxLoadForVolumes > 0.0 && nodeLoad > maxLoadForVolumes) {
         logNodeIsNotChosen(node, NodeNotChosenReason.NODE_TOO_BUSY_BY_VOLUME,
             "(load: " + nodeLoad + " > " + maxLoadForVolumes + ") ");
@@ -1038,19 +1082,58 @@ boolean excludeNodeByLoad(DatanodeDescriptor node){
    * considerLoadByStorageType is true, then load is calculated only for the
    * storage types present on the datanode.
    * @param node the datanode whose storage types are to be taken into account.
+   * @param batch the batch being placed, whose statistics are used if not
+   *              null.
    * @return the InServiceXceiverAverage count.
    */
-  private double getInServiceXceiverAverage(DatanodeDescriptor node) {
+  private double getInServiceXceiverAverage(DatanodeDescriptor node,
+      PlacementBatch batch) {
     double inServiceXceiverCount;
     if (considerLoadByStorageType) {
       inServiceXceiverCount =
           getInServiceXceiverAverageByStorageType(node.getStorageTypes());
+    } else if (batch != null) {
+      inServiceXceiverCount = batch.getInServiceXceiverAverage();
     } else {
       inServiceXceiverCount = stats.getInServiceXceiverAverage();
     }
     return inServiceXceiverCount;
   }
 
+  /**
+   * The load added by the targets chosen in a batch, see
+   * {@link #chooseTargets(List)}.
+   */
+  private static final class PlacementBatch {
+    private final int numOfNodesInService;
+    private final double inServiceXceiverAverage;
+    private final Map<DatanodeDescriptor, Integer> loads = new HashMap<>();
+    private int totalLoad = 0;
+
+    PlacementBatch(int numOfNodesInService, double inServiceXceiverAverage) {
+      this.numOfNodesInService = numOfNodesInService;
+      this.inServiceXceiverAverage = inServiceXceiverAverage;
+    }
+
+    void addTarget(DatanodeDescriptor node) {
+      loads.merge(node, 1, Integer::sum);
+      totalLoad++;
+    }
+
+    int getLoad(DatanodeDescriptor node) {
+      return loads.getOrDefault(node, 0);
+    }
+
+    double getAverageLoad() {
+      return numOfNodesInService == 0 ?
+          0 : (double) totalLoad / numOfNodesInService;
+    }
+
+    double getInServiceXceiverAverage() {
+      return inServiceXceiverAverage;
+    }
+  }
+
   /**
    * Gets the average xceiver count with respect to the storage types.
    * @param storageTypes the storage types.
@@ -140,6 +140,50 @@ abstract void chooseTargets(BlockPlacementPolicy blockplacement,
       BlockStoragePolicySuite storagePolicySuite,
       Set<Node> excludedNodes);
 
+  /**
+   * Get the request to choose the targets of this work in a batch, see
+   * {@link BlockPlacementPolicy#chooseTargets(List)}. The targets
+   * chosen must then be passed to {@link #setChosenTargets}.
+   *
+   * @return the request, or null if the block is deleted and needs no target.
+   */
+  BlockPlacementPolicy.TargetRequest getTargetRequest(
+      BlockStoragePolicySuite storagePolicySuite, Set<Node> excludedNodes) {
+    // HDFS-14720 If the block is deleted, the block size will become
+    // BlockCommand.NO_ACK (LONG.MAX_VALUE) . This kind of block we don't need
+    // to send for replication or reconstruction
+    if (block.isDeleted()) {
+      LOG.warn("{} could not need choose targets for {}",
+          getClass().getSimpleName(), block);
+      return null;
+    }
+    return new BlockPlacementPolicy.TargetRequest(srcPath,
+        additionalReplRequired, srcNodes[0], liveReplicaStorages, false,
+        excludedNodes, blockSize,
+        storagePolicySuite.getPolicy(storagePolicyID), null);
+  }
+
+  /**
+   * Choose the targets of a single request of {@link #getTargetRequest}.
+   *
+   * @return the targets, or null if the request is null.
+   */
+  static DatanodeStorageInfo[] chooseTargets(
+      BlockPlacementPolicy blockplacement,
+      BlockPlacementPolicy.TargetRequest request) {
+    return request == null ? null : blockplacement.chooseTarget(request);
+  }
+
+  /**
+   * Set the targets chosen in a batch for the request of
+   * {@link #getTargetRequest}.
+   *
+   * @param chosenTargets the targets, or null if none was chosen.
+   */
+  void setChosenTargets(DatanodeStorageInfo[] chosenTargets) {
+    setTargets(chosenTargets);
+  }
+
   /**
    * Add reconstruction task into a source datanode.
    *
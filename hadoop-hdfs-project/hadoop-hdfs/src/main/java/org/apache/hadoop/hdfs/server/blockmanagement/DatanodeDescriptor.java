@@ -29,6 +29,7 @@
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.classification.VisibleForTesting;
 
@@ -227,7 +228,8 @@ public Type getType() {
   private boolean disallowed = false;
 
   // The number of replication work pending before targets are determined
-  private int pendingReplicationWithoutTargets = 0;
+  private final AtomicInteger pendingReplicationWithoutTargets =
+      new AtomicInteger();
 
   // HB processing can use it to tell if it is the first HB since DN restarted
   private boolean heartbeatedSinceRegistration = false;
@@ -670,12 +672,12 @@ Iterator<BlockInfo> getBlockIterator(
 
   @VisibleForTesting
   public void incrementPendingReplicationWithoutTargets() {
-    pendingReplicationWithoutTargets++;
+    pendingReplicationWithoutTargets.incrementAndGet();
   }
 
   @VisibleForTesting
   public void decrementPendingReplicationWithoutTargets() {
-    pendingReplicationWithoutTargets--;
+    pendingReplicationWithoutTargets.decrementAndGet();
   }
 
   /**
@@ -739,7 +741,7 @@ void addBlocksToBeInvalidated(List<Block> blocklist) {
    * The number of work items that are pending to be replicated.
    */
   int getNumberOfBlocksToBeReplicated() {
-    return pendingReplicationWithoutTargets + replicateBlocks.size()
+    return pendingReplicationWithoutTargets.get() + replicateBlocks.size()
         + ecBlocksToBeReplicated.size();
   }
 
@@ -147,6 +147,12 @@ public class DatanodeManager {
   /** Whether or not to consider lad for reading. */
   private final boolean readConsiderLoad;
 
+  /**
+   * Tracks the reads directed to the datanodes when the load considered for
+   * reading includes them, null otherwise.
+   */
+  private final ReadLoadTracker readLoadTracker;
+
   /** Whether or not to consider storageType for reading. */
   private final boolean readConsiderStorageType;
 
@@ -340,6 +346,10 @@ public class DatanodeManager {
           DFSConfigKeys.DFS_NAMENODE_READ_CONSIDERSTORAGETYPE_KEY,
           DFSConfigKeys.DFS_NAMENODE_READ_CONSIDERSTORAGETYPE_KEY);
     }
+    this.readLoadTracker = readConsiderLoad && conf.getBoolean(
+        DFSConfigKeys.DFS_NAMENODE_READ_CONSIDERDIRECTEDREADS_KEY,
+        DFSConfigKeys.DFS_NAMENODE_READ_CONSIDERDIRECTEDREADS_DEFAULT) ?
+        new ReadLoadTracker() : null;
     this.avoidStaleDataNodesForWrite = conf.getBoolean(
         DFSConfigKeys.DFS_NAMENODE_AVOID_STALE_DATANODE_FOR_WRITE_KEY,
         DFSConfigKeys.DFS_NAMENODE_AVOID_STALE_DATANODE_FOR_WRITE_DEFAULT);
@@ -669,12 +679,20 @@ private void sortLocatedBlock(final LocatedBlock lb, String targetHost,
       networktopology.sortByDistance(client, lb.getLocations(), activeLen,
           createSecondaryNodeSorter());
     }
+    if (readLoadTracker != null && activeLen > 0) {
+      readLoadTracker.addRead(di[0]);
+    }
     // move PROVIDED storage to the end to prefer local replicas.
     lb.moveProvidedToEnd(activeLen);
     // must update cache since we modified locations array
     lb.updateCachedStorageInfo();
   }
 
+  @VisibleForTesting
+  ReadLoadTracker getReadLoadTracker() {
+    return readLoadTracker;
+  }
+
   private Consumer<List<DatanodeInfoWithStorage>> createSecondaryNodeSorter() {
     Consumer<List<DatanodeInfoWithStorage>> secondarySort = null;
     if (readConsiderStorageType) {
@@ -690,7 +708,9 @@ private Consumer<List<DatanodeInfoWithStorage>> createSecondaryNodeSorter() {
           });
       secondarySort = list -> Collections.sort(list, comp);
     }
-    if (readConsiderLoad) {
+    if (readLoadTracker != null) {
+      secondarySort = readLoadTracker::sort;
+    } else if (readConsiderLoad) {
       Comparator<DatanodeInfoWithStorage> comp =
           Comparator.comparingInt(DatanodeInfo::getXceiverCount);
       secondarySort = list -> Collections.sort(list, comp);
@@ -872,6 +892,9 @@ private void removeDatanode(DatanodeDescriptor nodeInfo,
     networktopology.remove(nodeInfo);
     decrementVersionCount(nodeInfo.getSoftwareVersion());
     blockManager.getBlockReportLeaseManager().unregister(nodeInfo);
+    if (readLoadTracker != null) {
+      readLoadTracker.remove(nodeInfo.getDatanodeUuid());
+    }
 
     LOG.debug("remove datanode {}.", nodeInfo);
     blockManager.checkSafeMode();
@@ -62,19 +62,8 @@ void chooseTargets(BlockPlacementPolicy blockplacement,
       BlockStoragePolicySuite storagePolicySuite,
       Set<Node> excludedNodes) {
     // TODO: new placement policy for EC considering multiple writers
-    DatanodeStorageInfo[] chosenTargets = null;
-    // HDFS-14720. If the block is deleted, the block size will become
-    // BlockCommand.NO_ACK (LONG.MAX_VALUE) . This kind of block we don't need
-    // to send for replication or reconstruction
-    if (!getBlock().isDeleted()) {
-      chosenTargets = blockplacement.chooseTarget(
-          getSrcPath(), getAdditionalReplRequired(), getSrcNodes()[0],
-          getLiveReplicaStorages(), false, excludedNodes, getBlockSize(),
-          storagePolicySuite.getPolicy(getStoragePolicyID()), null);
-    } else {
-      LOG.warn("ErasureCodingWork could not need choose targets for {}", getBlock());
-    }
-    setTargets(chosenTargets);
+    setTargets(chooseTargets(blockplacement,
+        getTargetRequest(storagePolicySuite, excludedNodes)));
   }
 
   /**
@@ -18,14 +18,19 @@
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.LongAdder;
 
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockInfoStriped.StorageAndBlockIndex;
 import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
 import org.apache.hadoop.hdfs.util.LightWeightLinkedSet;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 
 /**
  * Keep prioritized queues of low redundant blocks.
@@ -226,8 +231,16 @@ private int getPriority(BlockInfo block,
     }
     if (block.isStriped()) {
       BlockInfoStriped sblk = (BlockInfoStriped) block;
-      return getPriorityStriped(curReplicas, outOfServiceReplicas,
-          sblk.getRealDataBlockNum(), sblk.getParityBlockNum());
+      final int priority = getPriorityStriped(curReplicas,
+          outOfServiceReplicas, sblk.getRealDataBlockNum(),
+          sblk.getParityBlockNum());
+      if (priority != QUEUE_HIGHEST_PRIORITY
+          && priority != QUEUE_WITH_CORRUPT_BLOCKS
+          && StripedBlockUtil.isLocallyRepairable(
+              sblk.getErasureCodingPolicy())) {
+        return getPriorityLocallyRepairable(sblk, priority);
+      }
+      return priority;
     } else {
       return getPriorityContiguous(curReplicas, readOnlyReplicas,
           outOfServiceReplicas, expectedReplicas);
@@ -284,6 +297,52 @@ private int getPriorityStriped(int curReplicas, int outOfServiceReplicas,
     }
   }
 
+  /**
+   * Unlike with RS, the internal blocks of a Locally Repairable Code may not
+   * be decodable even if there are as many as the data blocks. Give the
+   * highest priority to the block groups that can only be decoded with their
+   * out of service internal blocks, or that can't afford to lose any
+   * internal block, and treat the others that can't be decoded as corrupt.
+   * Only the corrupt replicas are not known here, they are left out of the
+   * count the priority was computed from.
+   */
+  private int getPriorityLocallyRepairable(BlockInfoStriped block,
+      int priority) {
+    final ErasureCodingPolicy ecPolicy = block.getErasureCodingPolicy();
+    final BitSet live = new BitSet(block.getTotalBlockNum());
+    final BitSet all = new BitSet(block.getTotalBlockNum());
+    for (StorageAndBlockIndex si : block.getStorageAndIndexInfos()) {
+      final DatanodeStorageInfo storage = si.getStorage();
+      if (storage.getState() == DatanodeStorage.State.NORMAL) {
+        all.set(si.getBlockIndex());
+        if (storage.getDatanodeDescriptor().isInService()) {
+          live.set(si.getBlockIndex());
+        }
+      }
+    }
+    // The data blocks past the end of a small block group are empty.
+    final int realDataBlkNum = block.getRealDataBlockNum();
+    live.set(realDataBlkNum, block.getDataBlockNum());
+    all.set(realDataBlkNum, block.getDataBlockNum());
+
+    if (!StripedBlockUtil.isDecodable(ecPolicy, live)) {
+      return StripedBlockUtil.isDecodable(ecPolicy, all) ?
+          QUEUE_HIGHEST_PRIORITY : QUEUE_WITH_CORRUPT_BLOCKS;
+    }
+    for (int i = live.nextSetBit(0); i >= 0; i = live.nextSetBit(i + 1)) {
+      if (i >= realDataBlkNum && i < block.getDataBlockNum()) {
+        continue;
+      }
+      live.clear(i);
+      final boolean decodable = StripedBlockUtil.isDecodable(ecPolicy, live);
+      live.set(i);
+      if (!decodable) {
+        return QUEUE_HIGHEST_PRIORITY;
+      }
+    }
+    return priority;
+  }
+
   /**
    * Add a block to insufficiently redundant queue according to its priority.
    *
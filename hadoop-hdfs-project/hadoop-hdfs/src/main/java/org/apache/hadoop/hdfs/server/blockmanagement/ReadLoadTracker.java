@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.blockmanagement;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfoWithStorage;
+import org.apache.hadoop.hdfs.server.namenode.NameNode;
+import org.apache.hadoop.hdfs.server.namenode.metrics.NameNodeMetrics;
+
+/**
+ * Orders the replicas at the same network distance by their read load, so
+ * that the reads of hot blocks are spread across the replicas.
+ *
+ * The load of a datanode is its xceiver count, as of its last heartbeat,
+ * plus the number of reads the namenode directed to it since then, i.e.
+ * the number of times it was sorted first. Without the latter, all the
+ * reads between two heartbeats would go to the same lightly loaded node.
+ */
+@InterfaceAudience.Private
+class ReadLoadTracker {
+  /** The reads directed to a datanode since one of its heartbeats. */
+  private static final class DirectedReads {
+    private final long lastUpdateMonotonic;
+    private final AtomicInteger count = new AtomicInteger();
+
+    DirectedReads(long lastUpdateMonotonic) {
+      this.lastUpdateMonotonic = lastUpdateMonotonic;
+    }
+  }
+
+  /** Map datanodeUuid -> the reads directed to the datanode. */
+  private final ConcurrentMap<String, DirectedReads> directedReads =
+      new ConcurrentHashMap<>();
+
+  /**
+   * @return the read load of the datanode.
+   */
+  int getLoad(DatanodeInfo dn) {
+    return dn.getXceiverCount() + getDirectedReads(dn);
+  }
+
+  @VisibleForTesting
+  int getDirectedReads(DatanodeInfo dn) {
+    final DirectedReads reads = directedReads.get(dn.getDatanodeUuid());
+    return reads != null
+        && reads.lastUpdateMonotonic >= dn.getLastUpdateMonotonic()
+        ? reads.count.get() : 0;
+  }
+
+  /**
+   * Sort the replicas at the same distance by load, least loaded first. The
+   * order of the replicas with the same load is left unchanged, so they stay
+   * shuffled.
+   */
+  void sort(List<DatanodeInfoWithStorage> nodes) {
+    if (nodes.size() < 2) {
+      return;
+    }
+    final Map<DatanodeInfo, Integer> loads = new HashMap<>(nodes.size());
+    for (DatanodeInfo dn : nodes) {
+      loads.put(dn, getLoad(dn));
+    }
+    final DatanodeInfo first = nodes.get(0);
+    nodes.sort((a, b) -> Integer.compare(loads.get(a), loads.get(b)));
+
+    final NameNodeMetrics metrics = NameNode.getNameNodeMetrics();
+    if (metrics != null) {
+      metrics.incrReadLoadSortOps();
+      if (nodes.get(0) != first) {
+        metrics.incrReadLoadSortReorderedOps();
+      }
+    }
+  }
+
+  /**
+   * Record a read directed to the datanode, i.e. the datanode was sorted
+   * first. The count is reset by the next heartbeat of the datanode, whose
+   * xceiver count includes the reads.
+   */
+  void addRead(DatanodeInfo dn) {
+    final long lastUpdate = dn.getLastUpdateMonotonic();
+    directedReads.compute(dn.getDatanodeUuid(), (uuid, reads) ->
+        reads != null && reads.lastUpdateMonotonic >= lastUpdate ? reads
+            : new DirectedReads(lastUpdate))
+        .count.incrementAndGet();
+  }
+
+  /** Forget a datanode removed from the cluster. */
+  void remove(String datanodeUuid) {
+    directedReads.remove(datanodeUuid);
+  }
+}
@@ -42,19 +42,17 @@ void chooseTargets(BlockPlacementPolicy blockplacement,
     assert getSrcNodes().length > 0
         : "At least 1 source node should have been selected";
     try {
-      DatanodeStorageInfo[] chosenTargets = null;
-      // HDFS-14720 If the block is deleted, the block size will become
-      // BlockCommand.NO_ACK (LONG.MAX_VALUE) . This kind of block we don't need
-      // to send for replication or reconstruction
-      if (!getBlock().isDeleted()) {
-        chosenTargets = blockplacement.chooseTarget(getSrcPath(),
-            getAdditionalReplRequired(), getSrcNodes()[0],
-            getLiveReplicaStorages(), false, excludedNodes, getBlockSize(),
-            storagePolicySuite.getPolicy(getStoragePolicyID()), null);
-      } else {
-        LOG.warn("ReplicationWork could not need choose targets for {}", getBlock());
-      }
-      setTargets(chosenTargets);
+      setTargets(chooseTargets(blockplacement,
+          getTargetRequest(storagePolicySuite, excludedNodes)));
+    } finally {
+      getSrcNodes()[0].decrementPendingReplicationWithoutTargets();
+    }
+  }
+
+  @Override
+  void setChosenTargets(DatanodeStorageInfo[] chosenTargets) {
+    try {
+      super.setChosenTargets(chosenTargets);
     } finally {
       getSrcNodes()[0].decrementPendingReplicationWithoutTargets();
     }
@@ -138,9 +138,17 @@ enum RunningState {
     this.initialRegistrationComplete = lifelineNnAddr != null ?
         new CountDownLatch(1) : null;
     this.dnConf = dn.getDnConf();
-    this.ibrManager = new IncrementalBlockReportManager(
-        dnConf.ibrInterval,
-        dn.getMetrics());
+    if (dnConf.ibrAsyncEnabled) {
+      this.ibrManager = new IncrementalBlockReportManager(
+          dnConf.ibrInterval, dn.getMetrics(), dnConf.ibrSlowThresholdMs,
+          dnConf.ibrMaxBatchDelayMs);
+      this.ibrSender = new IBRSender();
+    } else {
+      this.ibrManager = new IncrementalBlockReportManager(
+          dnConf.ibrInterval,
+          dn.getMetrics());
+      this.ibrSender = null;
+    }
     prevBlockReportId = ThreadLocalRandom.current().nextLong();
     fullBlockReportLeaseId = 0;
     scheduler = new Scheduler(dnConf.heartBeatInterval,
@@ -211,6 +219,8 @@ Map<String, String> getActorInfoMap() {
 
   private final CountDownLatch initialRegistrationComplete;
   private final LifelineSender lifelineSender;
+  /** Sends IBRs off the heartbeat thread, if enabled. */
+  private final IBRSender ibrSender;
 
   /**
    * Used to inject a spy NN in the unit tests.
@@ -622,6 +632,9 @@ void stop() {
     if (lifelineSender != null) {
       lifelineSender.stop();
     }
+    if (ibrSender != null) {
+      ibrSender.stop();
+    }
     if (bpThread != null) {
       bpThread.interrupt();
     }
@@ -636,6 +649,9 @@ void join() {
       if (lifelineSender != null) {
         lifelineSender.join();
       }
+      if (ibrSender != null) {
+        ibrSender.join();
+      }
       if (bpThread != null) {
         bpThread.join();
       }
@@ -648,6 +664,7 @@ private synchronized void cleanUp() {
     shouldServiceRun = false;
     IOUtils.cleanupWithLogger(null, bpNamenode);
     IOUtils.cleanupWithLogger(null, lifelineSender);
+    IOUtils.cleanupWithLogger(null, ibrSender);
     bpos.shutdownActor(this);
   }
 
@@ -744,7 +761,7 @@ private void offerService() throws Exception {
             isSlownode = resp.getIsSlownode();
           }
         }
-        if (!dn.areIBRDisabledForTests() &&
+        if (ibrSender == null && !dn.areIBRDisabledForTests() &&
             (ibrManager.sendImmediately()|| sendHeartbeat)) {
           ibrManager.sendIBRs(bpNamenode, bpRegistration,
               bpos.getBlockPoolId(), getRpcMetricSuffix());
@@ -774,7 +791,11 @@ private void offerService() throws Exception {
 
         // There is no work to do;  sleep until hearbeat timer elapses, 
         // or work arrives, and then iterate again.
-        ibrManager.waitTillNextIBR(scheduler.getHeartbeatWaitTime());
+        if (ibrSender == null) {
+          ibrManager.waitTillNextIBR(scheduler.getHeartbeatWaitTime());
+        } else {
+          waitTillNextHeartbeat();
+        }
       } catch(RemoteException re) {
         String reClass = re.getClassName();
         if (UnregisteredNodeException.class.getName().equals(reClass) ||
@@ -799,6 +820,29 @@ private void offerService() throws Exception {
     } // while (shouldRun())
   } // offerService
 
+  /**
+   * Wait on {@link #ibrManager} until the next heartbeat is due, a full
+   * block report is requested or the actor stops. Used when IBRs are sent
+   * by {@link IBRSender}. New blocks still notify {@link #ibrManager} and so
+   * wake this thread, but it goes back to waiting without sending anything,
+   * the IBRs being left to {@link IBRSender}.
+   */
+  private void waitTillNextHeartbeat() {
+    synchronized (ibrManager) {
+      long waitTime = scheduler.getHeartbeatWaitTime();
+      while (waitTime > 0 && shouldRun()
+          && !scheduler.forceFullBlockReport.get()) {
+        try {
+          ibrManager.wait(waitTime);
+        } catch (InterruptedException ie) {
+          LOG.warn(getClass().getSimpleName() + " interrupted");
+          return;
+        }
+        waitTime = scheduler.getHeartbeatWaitTime();
+      }
+    }
+  }
+
   private void sleepAfterException() {
     try {
       long sleepTime = Math.min(1000, dnConf.heartBeatInterval);
@@ -914,6 +958,9 @@ public void run() {
       if (initialRegistrationComplete != null) {
         initialRegistrationComplete.countDown();
       }
+      if (ibrSender != null) {
+        ibrSender.start();
+      }
 
       while (shouldRun()) {
         try {
@@ -1147,6 +1194,83 @@ private void sendLifeline() throws IOException {
     }
   }
 
+  /**
+   * Sends incremental block reports from a dedicated thread, so that a large
+   * IBR or a slow NameNode never delays heartbeats. While IBR RPCs are slow,
+   * the sender waits longer before each report to batch more blocks into it.
+   */
+  private final class IBRSender implements Runnable, Closeable {
+    private Thread ibrThread;
+
+    @Override
+    public void close() {
+      stop();
+      try {
+        join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void run() {
+      while (shouldRun()) {
+        try {
+          ibrManager.waitTillNextIBR(dnConf.heartBeatInterval);
+          if (dn.areIBRDisabledForTests()) {
+            Thread.sleep(dnConf.heartBeatInterval);
+            continue;
+          }
+          if (!ibrManager.sendImmediately()) {
+            continue;
+          }
+          long batchDelay = ibrManager.getBatchDelay();
+          if (batchDelay > 0) {
+            Thread.sleep(batchDelay);
+          }
+          ibrManager.sendIBRs(bpNamenode, bpRegistration,
+              bpos.getBlockPoolId(), getRpcMetricSuffix());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        } catch (IOException e) {
+          LOG.warn("IOException in IBRSender for " + BPServiceActor.this, e);
+          sleepAfterException();
+        }
+      }
+
+      LOG.info("IBRSender for " + BPServiceActor.this + " exiting.");
+    }
+
+    public void start() {
+      if (ibrThread != null) {
+        return;
+      }
+      ibrThread = new Thread(this, formatThreadName("IBR", nnAddr));
+      ibrThread.setDaemon(true);
+      ibrThread.setUncaughtExceptionHandler(
+          new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable t) {
+              LOG.error(thread + " terminating on unexpected exception", t);
+            }
+          });
+      ibrThread.start();
+    }
+
+    public void stop() {
+      if (ibrThread != null) {
+        ibrThread.interrupt();
+      }
+    }
+
+    public void join() throws InterruptedException {
+      if (ibrThread != null) {
+        ibrThread.join();
+      }
+    }
+  }
+
   /**
    * Utility class that wraps the timestamp computations for scheduling
    * heartbeats and block reports.
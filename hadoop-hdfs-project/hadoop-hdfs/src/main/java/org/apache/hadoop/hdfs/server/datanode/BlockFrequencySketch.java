@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+
+/**
+ * A count-min sketch of recent block read frequencies, used as the
+ * TinyLFU admission filter of {@link BlockReadCache}.
+ *
+ * Each key is counted in {@link #DEPTH} rows of small saturating counters.
+ * The estimate of a key is the minimum of its counters. Once the number of
+ * recorded accesses reaches the sample size, every counter is halved so
+ * that the sketch tracks recent popularity rather than all-time totals.
+ *
+ * This class is not thread safe; callers must synchronize.
+ */
+@InterfaceAudience.Private
+class BlockFrequencySketch {
+  static final int DEPTH = 4;
+  static final int MAX_COUNT = 15;
+
+  private static final long[] SEEDS = {
+      0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+  private final int[][] counters;
+  private final int mask;
+  private final int sampleSize;
+  private int additions;
+
+  /**
+   * @param expectedEntries the number of distinct keys the sketch should
+   *                        be able to tell apart.
+   */
+  BlockFrequencySketch(int expectedEntries) {
+    int width = Integer.highestOneBit(
+        Math.max(16, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+    this.counters = new int[DEPTH][width];
+    this.mask = width - 1;
+    this.sampleSize = 10 * width;
+  }
+
+  /**
+   * Record one access of the key with the given hash.
+   */
+  void increment(long hash) {
+    boolean added = false;
+    for (int i = 0; i < DEPTH; i++) {
+      int index = indexOf(hash, i);
+      if (counters[i][index] < MAX_COUNT) {
+        counters[i][index]++;
+        added = true;
+      }
+    }
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  /**
+   * @return the estimated number of recent accesses of the key with the
+   *         given hash.
+   */
+  int frequency(long hash) {
+    int frequency = MAX_COUNT;
+    for (int i = 0; i < DEPTH; i++) {
+      frequency = Math.min(frequency, counters[i][indexOf(hash, i)]);
+    }
+    return frequency;
+  }
+
+  /** Halve every counter to age out old accesses. */
+  private void reset() {
+    for (int[] row : counters) {
+      for (int j = 0; j < row.length; j++) {
+        row[j] >>>= 1;
+      }
+    }
+    additions >>>= 1;
+  }
+
+  private int indexOf(long hash, int row) {
+    long h = (hash + SEEDS[row]) * SEEDS[row];
+    h ^= h >>> 32;
+    return (int) h & mask;
+  }
+}
@@ -0,0 +1,291 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.hdfs.ExtendedBlockId;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An automatic, DataNode-local cache of the data of small, frequently read
+ * finalized replicas.
+ *
+ * Unlike {@link org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.FsDatasetCache},
+ * which caches whatever the NameNode asks it to, this cache is filled from
+ * the reads served by {@link BlockSender}. Block data is kept in direct
+ * buffers, bounded by a configured capacity, and evicted in LRU order.
+ * Admission follows TinyLFU: when the cache is full, a block is only
+ * admitted if it has been read more often recently than the blocks it
+ * would displace, as estimated by a {@link BlockFrequencySketch}. This
+ * keeps one-off scans from flushing hot blocks out of the cache.
+ *
+ * Entries are tied to a replica's generation stamp and length, so appends
+ * and truncates make them unusable. They are dropped the next time they are
+ * looked up, or as soon as the replica is invalidated or deleted, see
+ * {@link #invalidate}.
+ */
+@InterfaceAudience.Private
+public class BlockReadCache {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(BlockReadCache.class);
+
+  /** Blocks are assumed to be at least this big when sizing the sketch. */
+  private static final long MIN_EXPECTED_BLOCK_SIZE = 64 * 1024;
+
+  private static final class Entry {
+    private final long genStamp;
+    private final ByteBuffer data;
+
+    private Entry(long genStamp, ByteBuffer data) {
+      this.genStamp = genStamp;
+      this.data = data;
+    }
+  }
+
+  private final long capacity;
+  private final long maxBlockSize;
+  private final DataNodeMetrics metrics;
+  private final BlockFrequencySketch sketch;
+  /** Cached blocks, in least recently used order. */
+  private final LinkedHashMap<ExtendedBlockId, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private long used;
+
+  public BlockReadCache(long capacity, long maxBlockSize,
+      DataNodeMetrics metrics) {
+    this.capacity = capacity;
+    this.maxBlockSize = Math.min(maxBlockSize, capacity);
+    this.metrics = metrics;
+    this.sketch = new BlockFrequencySketch((int) Math.min(Integer.MAX_VALUE,
+        capacity / MIN_EXPECTED_BLOCK_SIZE));
+  }
+
+  /**
+   * Record a read of a replica and, if its data is cached or is admitted to
+   * the cache by this read, return a stream of the data from memory.
+   *
+   * @param block the block being read.
+   * @param replica the replica being read.
+   * @param offset the offset in the block to start reading from.
+   * @param dataset the dataset to load the replica from on a cache miss.
+   * @return a stream over the cached block data, positioned at offset, or
+   *         null if the caller should read from disk.
+   */
+  InputStream getBlockInputStream(ExtendedBlock block, Replica replica,
+      long offset, FsDatasetSpi<?> dataset) {
+    final ExtendedBlockId key = ExtendedBlockId.fromExtendedBlock(block);
+    final long hash = hash(key);
+    final long length = replica.getNumBytes();
+    synchronized (this) {
+      sketch.increment(hash);
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        if (entry.genStamp == replica.getGenerationStamp()
+            && entry.data.capacity() == length
+            && replica.getState() == ReplicaState.FINALIZED) {
+          metrics.incrBlockReadCacheHits();
+          return new CachedBlockInputStream(entry.data, offset);
+        }
+        // The replica changed since it was cached.
+        remove(key, entry);
+      }
+      metrics.incrBlockReadCacheMisses();
+      if (replica.getState() != ReplicaState.FINALIZED
+          || length == 0 || length > maxBlockSize) {
+        return null;
+      }
+      if (!canAdmit(hash, length)) {
+        metrics.incrBlockReadCacheRejections();
+        return null;
+      }
+    }
+
+    // Load outside the lock so that other readers are not held up by disk.
+    ByteBuffer data;
+    try {
+      data = load(block, (int) length, dataset);
+    } catch (IOException e) {
+      LOG.debug("Failed to load {} into the block read cache", block, e);
+      return null;
+    }
+
+    synchronized (this) {
+      if (!entries.containsKey(key)) {
+        // Other blocks may have been admitted while this one was loaded.
+        if (canAdmit(hash, length)) {
+          evict(length);
+          entries.put(key, new Entry(replica.getGenerationStamp(), data));
+          used += length;
+          metrics.incrBlockReadCacheAdmissions();
+        } else {
+          metrics.incrBlockReadCacheRejections();
+        }
+      }
+    }
+    return new CachedBlockInputStream(data, offset);
+  }
+
+  /**
+   * @return true if a block of the given size and key hash may enter the
+   *         cache: either it fits, or it is more popular than every block
+   *         that would be evicted to make room for it.
+   */
+  private boolean canAdmit(long hash, long length) {
+    long free = capacity - used;
+    if (free >= length) {
+      return true;
+    }
+    int candidateFrequency = sketch.frequency(hash);
+    for (Map.Entry<ExtendedBlockId, Entry> e : entries.entrySet()) {
+      if (sketch.frequency(hash(e.getKey())) >= candidateFrequency) {
+        return false;
+      }
+      free += e.getValue().data.capacity();
+      if (free >= length) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Evict least recently used blocks until length bytes are free. */
+  private void evict(long length) {
+    Iterator<Entry> it = entries.values().iterator();
+    while (capacity - used < length && it.hasNext()) {
+      Entry entry = it.next();
+      it.remove();
+      used -= entry.data.capacity();
+      metrics.incrBlockReadCacheEvictions();
+    }
+  }
+
+  /**
+   * Drop the data of a replica that is invalidated or deleted, so that it
+   * does not hold on to cache capacity until it is evicted.
+   */
+  public synchronized void invalidate(ExtendedBlockId key) {
+    Entry entry = entries.get(key);
+    if (entry != null) {
+      remove(key, entry);
+    }
+  }
+
+  private void remove(ExtendedBlockId key, Entry entry) {
+    entries.remove(key);
+    used -= entry.data.capacity();
+    metrics.incrBlockReadCacheEvictions();
+  }
+
+  private static ByteBuffer load(ExtendedBlock block, int length,
+      FsDatasetSpi<?> dataset) throws IOException {
+    // Read straight into the direct buffer, through the channel of the
+    // block file, without staging the block on the heap.
+    ByteBuffer data = ByteBuffer.allocateDirect(length);
+    try (InputStream in = dataset.getBlockInputStream(block, 0)) {
+      ReadableByteChannel channel = in instanceof FileInputStream
+          ? ((FileInputStream) in).getChannel() : Channels.newChannel(in);
+      while (data.hasRemaining()) {
+        if (channel.read(data) < 0) {
+          throw new EOFException("Premature EOF reading " + block + " at "
+              + data.position() + " of " + length + " bytes");
+        }
+      }
+    }
+    data.flip();
+    return data;
+  }
+
+  private static long hash(ExtendedBlockId key) {
+    return key.getBlockId() * 31 + key.getBlockPoolId().hashCode();
+  }
+
+  /**
+   * @return the number of bytes of block data currently cached.
+   */
+  public synchronized long getCacheUsed() {
+    return used;
+  }
+
+  public long getCapacity() {
+    return capacity;
+  }
+
+  @VisibleForTesting
+  synchronized int getNumBlocksCached() {
+    return entries.size();
+  }
+
+  /**
+   * An InputStream over a read-only view of cached block data.
+   */
+  private static final class CachedBlockInputStream extends InputStream {
+    private final ByteBuffer buf;
+
+    private CachedBlockInputStream(ByteBuffer data, long offset) {
+      this.buf = data.asReadOnlyBuffer();
+      this.buf.position((int) Math.min(offset, buf.limit()));
+    }
+
+    @Override
+    public int read() {
+      return buf.hasRemaining() ? buf.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buf.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buf.remaining());
+      buf.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public long skip(long n) {
+      int skipped = (int) Math.max(0, Math.min(n, buf.remaining()));
+      buf.position(buf.position() + skipped);
+      return skipped;
+    }
+
+    @Override
+    public int available() {
+      return buf.remaining();
+    }
+  }
+}
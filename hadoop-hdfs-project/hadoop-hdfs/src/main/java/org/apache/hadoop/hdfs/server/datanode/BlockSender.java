@@ -144,6 +144,11 @@ class BlockSender implements java.io.Closeable {
   private long seqno;
   /** Set to true if transferTo is allowed for sending data to the client */
   private final boolean transferToAllowed;
+  /**
+   * Largest packet the receiver accepts for long transferTo() reads, or 0
+   * to use the default packet size.
+   */
+  private final int largePacketSize;
   /** Set to true once entire requested byte range has been sent to the client */
   private boolean sentEntireByteRange;
   /** When true, verify checksum while reading from checksum file */
@@ -204,6 +209,30 @@ class BlockSender implements java.io.Closeable {
               boolean sendChecksum, DataNode datanode, String clientTraceFmt,
               CachingStrategy cachingStrategy)
       throws IOException {
+    this(block, startOffset, length, corruptChecksumOk, verifyChecksum,
+        sendChecksum, datanode, clientTraceFmt, cachingStrategy, 0);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param block Block that is being read
+   * @param startOffset starting offset to read from
+   * @param length length of data to read
+   * @param corruptChecksumOk if true, corrupt checksum is okay
+   * @param verifyChecksum verify checksum while reading the data
+   * @param sendChecksum send checksum to client.
+   * @param datanode datanode from which the block is being read
+   * @param clientTraceFmt format string used to print client trace logs
+   * @param maxPacketSize largest packet the receiver is willing to accept,
+   *        or 0 to use the default packet size
+   * @throws IOException
+   */
+  BlockSender(ExtendedBlock block, long startOffset, long length,
+              boolean corruptChecksumOk, boolean verifyChecksum,
+              boolean sendChecksum, DataNode datanode, String clientTraceFmt,
+              CachingStrategy cachingStrategy, int maxPacketSize)
+      throws IOException {
     InputStream blockIn = null;
     DataInputStream checksumIn = null;
     FsVolumeReference volumeRef = null;
@@ -294,6 +323,10 @@ class BlockSender implements java.io.Closeable {
       // use normal transfer in those cases
       this.transferToAllowed = datanode.getDnConf().transferToAllowed &&
         (!is32Bit || length <= Integer.MAX_VALUE);
+      // Large packets are only used for transferTo() reads, and never exceed
+      // what the DataNode is configured to send.
+      this.largePacketSize = Math.max(0, Math.min(maxPacketSize,
+          datanode.getDnConf().getTransferToMaxPacketSize()));
 
       // Obtain a reference before reading data
       FsVolumeSpi volume = datanode.data.getVolume(block);
@@ -431,7 +464,15 @@ class BlockSender implements java.io.Closeable {
       if (DataNode.LOG.isDebugEnabled()) {
         DataNode.LOG.debug("replica=" + replica);
       }
-      blockIn = datanode.data.getBlockInputStream(block, offset); // seek to offset
+      BlockReadCache readCache = datanode.getBlockReadCache();
+      if (readCache != null) {
+        // Hot small blocks are served from memory when cached.
+        blockIn = readCache.getBlockInputStream(block, replica, offset,
+            datanode.data);
+      }
+      if (blockIn == null) {
+        blockIn = datanode.data.getBlockInputStream(block, offset); // seek to offset
+      }
       ris = new ReplicaInputStreams(
           blockIn, checksumIn, volumeRef, fileIoProvider);
     } catch (Throwable t) {
@@ -802,7 +843,14 @@ private long doSendBlock(DataOutputStream out, OutputStream baseStream,
         blockInPosition = fileChannel.position();
         streamForSendChunks = baseStream;
         maxChunksPerPacket = numberOfChunks(TRANSFERTO_BUFFER_SIZE);
-        
+        if (isLongRead() && largePacketSize > TRANSFERTO_BUFFER_SIZE) {
+          // The receiver accepts bigger packets, so send as many whole
+          // chunks as fit in one packet along with their checksums.
+          maxChunksPerPacket = Math.max(maxChunksPerPacket,
+              (largePacketSize - PacketHeader.PKT_MAX_HEADER_LEN)
+                  / (chunkSize + checksumSize));
+        }
+
         // Smaller packet size to only hold checksum when doing transferTo
         pktBufSize += checksumSize * maxChunksPerPacket;
       } else {
@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.Checksum;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.ChecksumException;
+import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.protocol.CombinedBlockSource;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.datatransfer.DataTransferProtoUtil;
+import org.apache.hadoop.hdfs.protocol.datatransfer.IOStreamPair;
+import org.apache.hadoop.hdfs.protocol.datatransfer.Sender;
+import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.BlockOpResponseProto;
+import org.apache.hadoop.hdfs.protocolPB.PBHelperClient;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.util.DataChecksum;
+
+/**
+ * Reads the linear combinations of a list of blocks, see
+ * {@link org.apache.hadoop.hdfs.protocol.datatransfer.DataTransferProtocol
+ * #readCombinedBlocks}. The op is sent to the datanode of the first block,
+ * which reads the others through the datanodes it forwards the op to.
+ */
+@InterfaceAudience.Private
+public class CombinedBlockReader implements Closeable {
+  private final DatanodeInfo datanode;
+  private final IOStreamPair pair;
+  private final DataInputStream in;
+  private final int numOutputs;
+  private final Checksum crc = DataChecksum.newCrc32();
+  private byte[] buf;
+  private long position;
+
+  private CombinedBlockReader(DatanodeInfo datanode, IOStreamPair pair,
+      DataInputStream in, int numOutputs, long offset) {
+    this.datanode = datanode;
+    this.pair = pair;
+    this.in = in;
+    this.numOutputs = numOutputs;
+    this.position = offset;
+  }
+
+  /**
+   * Send a combined read of the sources and wait for it to be accepted by
+   * all the datanodes.
+   *
+   * @param dn the datanode reading.
+   * @param sources the blocks to combine.
+   * @param offset the offset in the blocks.
+   * @param len the number of bytes of every output.
+   * @param windowSize the number of bytes combined at a time.
+   * @return the reader of the combined outputs.
+   * @throws IOException if any of the datanodes fails to start the read.
+   */
+  public static CombinedBlockReader open(DataNode dn,
+      List<CombinedBlockSource> sources, long offset, long len,
+      int windowSize) throws IOException {
+    final CombinedBlockSource head = sources.get(0);
+    IOStreamPair pair = dn.connectToDN(head.getDatanode(),
+        dn.getDnConf().getSocketTimeout(), head.getBlock(),
+        head.getBlockToken());
+    boolean success = false;
+    try {
+      new Sender((DataOutputStream) pair.out).readCombinedBlocks(
+          head.getBlock(), head.getBlockToken(), head.getCoefficients(),
+          offset, len, windowSize, sources.subList(1, sources.size()));
+      DataInputStream in = new DataInputStream(new BufferedInputStream(
+          pair.in, DFSUtilClient.getIoFileBufferSize(dn.getConf())));
+      BlockOpResponseProto reply =
+          BlockOpResponseProto.parseFrom(PBHelperClient.vintPrefixed(in));
+      DataTransferProtoUtil.checkBlockOpStatus(reply,
+          "combined read of " + sources.size() + " blocks from "
+          + head.getDatanode() + " for " + head.getBlock());
+      success = true;
+      return new CombinedBlockReader(head.getDatanode(), pair, in,
+          head.getCoefficients().length, offset);
+    } finally {
+      if (!success) {
+        IOUtils.closeStream(pair);
+      }
+    }
+  }
+
+  /**
+   * Read the next window of every output.
+   *
+   * @param outputs the buffers of the outputs.
+   * @param len the length of the window.
+   * @param add whether to add the window to the outputs rather than
+   *            overwrite them.
+   * @throws IOException if the window can not be read or is corrupt.
+   */
+  public void readWindow(byte[][] outputs, int len, boolean add)
+      throws IOException {
+    if (add && (buf == null || buf.length < len)) {
+      buf = new byte[len];
+    }
+    crc.reset();
+    for (int l = 0; l < numOutputs; l++) {
+      byte[] output = outputs[l];
+      if (add) {
+        in.readFully(buf, 0, len);
+        crc.update(buf, 0, len);
+        for (int i = 0; i < len; i++) {
+          output[i] ^= buf[i];
+        }
+      } else {
+        in.readFully(output, 0, len);
+        crc.update(output, 0, len);
+      }
+    }
+    if (in.readInt() != (int) crc.getValue()) {
+      throw new ChecksumException("Checksum error in combined read from "
+          + datanode, position);
+    }
+    position += len;
+  }
+
+  @Override
+  public void close() {
+    IOUtils.closeStream(pair);
+  }
+}
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Checksum;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.DFSUtilClient;
+import org.apache.hadoop.hdfs.protocol.CombinedBlockSource;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.GF256;
+import org.apache.hadoop.util.DataChecksum;
+
+/**
+ * Serves a combined read of blocks, see
+ * {@link org.apache.hadoop.hdfs.protocol.datatransfer.DataTransferProtocol
+ * #readCombinedBlocks}.
+ *
+ * The other blocks are split in two halves, each read through a
+ * {@link CombinedBlockReader} from the datanode of its first block, so the
+ * datanodes form a binary tree and the combination of n blocks takes
+ * log2(n) hops. Every window of the local block is multiplied by its
+ * coefficients, then the windows of the two halves are added to it.
+ */
+@InterfaceAudience.Private
+class CombinedBlockSender implements Closeable {
+  private final ExtendedBlock block;
+  private final byte[] coefficients;
+  private final long offset;
+  private final long len;
+  private final int windowSize;
+
+  private final List<CombinedBlockReader> children = new ArrayList<>(2);
+  private InputStream blockIn;
+  private DataInputStream checksumIn;
+  private DataChecksum checksum;
+
+  CombinedBlockSender(DataNode datanode, ExtendedBlock block,
+      byte[] coefficients, long offset, long len, int windowSize,
+      List<CombinedBlockSource> sources) throws IOException {
+    this.block = block;
+    this.coefficients = coefficients;
+    this.offset = offset;
+    this.len = len;
+    this.windowSize = windowSize;
+    if (coefficients.length == 0 || windowSize <= 0 || offset < 0
+        || len < 0) {
+      throw new IOException("Invalid combined read of " + block
+          + ": outputs=" + coefficients.length + ", offset=" + offset
+          + ", len=" + len + ", windowSize=" + windowSize);
+    }
+    for (CombinedBlockSource source : sources) {
+      if (source.getCoefficients().length != coefficients.length) {
+        throw new IOException("Combined read of " + block + " has "
+            + coefficients.length + " outputs but " + source.getBlock()
+            + " has " + source.getCoefficients().length);
+      }
+    }
+
+    boolean success = false;
+    try {
+      if (offset < block.getNumBytes()) {
+        openBlock(datanode);
+      }
+      int half = (sources.size() + 1) / 2;
+      if (half > 0) {
+        children.add(CombinedBlockReader.open(datanode,
+            sources.subList(0, half), offset, len, windowSize));
+      }
+      if (half < sources.size()) {
+        children.add(CombinedBlockReader.open(datanode,
+            sources.subList(half, sources.size()), offset, len, windowSize));
+      }
+      success = true;
+    } finally {
+      if (!success) {
+        close();
+      }
+    }
+  }
+
+  private void openBlock(DataNode datanode) throws IOException {
+    if (!datanode.data.isValidBlock(block)) {
+      throw new ReplicaNotFoundException("Replica " + block
+          + " is not finalized");
+    }
+    long visibleLength = datanode.data.getReplicaVisibleLength(block);
+    if (visibleLength < block.getNumBytes()) {
+      throw new IOException("Replica " + block + " has only "
+          + visibleLength + " bytes");
+    }
+
+    checksumIn = new DataInputStream(new BufferedInputStream(
+        datanode.data.getMetaDataInputStream(block),
+        DFSUtilClient.getIoFileBufferSize(datanode.getConf())));
+    checksum = BlockMetadataHeader.readHeader(checksumIn).getChecksum();
+    int bytesPerChecksum = checksum.getBytesPerChecksum();
+    if (offset % bytesPerChecksum != 0 || windowSize % bytesPerChecksum != 0) {
+      throw new IOException("Combined read of " + block + " at " + offset
+          + " with windows of " + windowSize + " bytes is not aligned to "
+          + bytesPerChecksum + " bytes per checksum");
+    }
+    IOUtils.skipFully(checksumIn,
+        offset / bytesPerChecksum * checksum.getChecksumSize());
+    blockIn = datanode.data.getBlockInputStream(block, offset);
+  }
+
+  /**
+   * Send the combined outputs, window after window.
+   *
+   * @param out the stream to the reader.
+   * @throws IOException if a block can not be read or the reader is gone.
+   */
+  void sendCombinedBlocks(DataOutputStream out) throws IOException {
+    final int numOutputs = coefficients.length;
+    final int bufLen = (int) Math.min(windowSize, len);
+    final byte[] window = new byte[bufLen];
+    final byte[][] outputs = new byte[numOutputs][bufLen];
+    final Checksum crc = DataChecksum.newCrc32();
+    for (long pos = offset; pos < offset + len; pos += windowSize) {
+      final int windowLen = (int) Math.min(windowSize, offset + len - pos);
+      readWindow(window, pos, windowLen);
+      for (int l = 0; l < numOutputs; l++) {
+        multiply(coefficients[l], window, outputs[l], windowLen);
+      }
+      for (CombinedBlockReader child : children) {
+        child.readWindow(outputs, windowLen, true);
+      }
+
+      crc.reset();
+      for (int l = 0; l < numOutputs; l++) {
+        out.write(outputs[l], 0, windowLen);
+        crc.update(outputs[l], 0, windowLen);
+      }
+      out.writeInt((int) crc.getValue());
+      out.flush();
+    }
+  }
+
+  /**
+   * Read a window of the local block, verifying its checksums. The bytes
+   * past the end of the block are zeros.
+   */
+  private void readWindow(byte[] window, long pos, int windowLen)
+      throws IOException {
+    int n = (int) Math.max(0, Math.min(windowLen, block.getNumBytes() - pos));
+    Arrays.fill(window, n, windowLen, (byte) 0);
+    if (n == 0) {
+      return;
+    }
+    IOUtils.readFully(blockIn, window, 0, n);
+    int bytesPerChecksum = checksum.getBytesPerChecksum();
+    byte[] checksums = new byte[(n + bytesPerChecksum - 1) / bytesPerChecksum
+        * checksum.getChecksumSize()];
+    checksumIn.readFully(checksums);
+    checksum.verifyChunkedSums(ByteBuffer.wrap(window, 0, n),
+        ByteBuffer.wrap(checksums), block.getBlockName(), pos);
+  }
+
+  private static void multiply(byte coefficient, byte[] input,
+      byte[] output, int n) {
+    if (coefficient == 0) {
+      Arrays.fill(output, 0, n, (byte) 0);
+    } else if (coefficient == 1) {
+      System.arraycopy(input, 0, output, 0, n);
+    } else {
+      final byte[] tableLine = GF256.gfMulTab()[coefficient & 0xff];
+      for (int i = 0; i < n; i++) {
+        output[i] = tableLine[input[i] & 0xff];
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    for (CombinedBlockReader child : children) {
+      child.close();
+    }
+    children.clear();
+    IOUtils.closeStream(blockIn);
+    IOUtils.closeStream(checksumIn);
+  }
+}
@@ -94,6 +94,7 @@ public class DNConf {
   private final boolean tcpNoDelay;
 
   final boolean transferToAllowed;
+  private final int transferToMaxPacketSize;
   final boolean dropCacheBehindWrites;
   final boolean syncBehindWrites;
   final boolean syncBehindWritesInBackground;
@@ -113,6 +114,9 @@ public class DNConf {
   volatile boolean diskStatsEnabled;
   volatile long outliersReportIntervalMs;
   final long ibrInterval;
+  final boolean ibrAsyncEnabled;
+  final long ibrSlowThresholdMs;
+  final long ibrMaxBatchDelayMs;
   volatile long initialBlockReportDelayMs;
   volatile long cacheReportInterval;
   private volatile long datanodeSlowIoWarningThresholdMs;
@@ -129,6 +133,8 @@ public class DNConf {
   private final long processCommandsThresholdMs;
 
   final long maxLockedMemory;
+  private final long blockReadCacheCapacity;
+  private final long blockReadCacheMaxBlockSize;
   private final String[] pmemDirs;
 
   private final long bpReadyTimeout;
@@ -139,6 +145,7 @@ public class DNConf {
   private final int volFailuresTolerated;
   private final int volsConfigured;
   private final int maxDataLength;
+  private final int maxEcCellSize;
   private Configurable dn;
 
   public DNConf(final Configurable dn) {
@@ -168,12 +175,18 @@ public DNConf(final Configurable dn) {
     transferToAllowed = getConf().getBoolean(
         DFS_DATANODE_TRANSFERTO_ALLOWED_KEY,
         DFS_DATANODE_TRANSFERTO_ALLOWED_DEFAULT);
+    transferToMaxPacketSize = getConf().getInt(
+        DFSConfigKeys.DFS_DATANODE_TRANSFERTO_MAX_PACKET_SIZE_KEY,
+        DFSConfigKeys.DFS_DATANODE_TRANSFERTO_MAX_PACKET_SIZE_DEFAULT);
 
     readaheadLength = getConf().getLong(
         HdfsClientConfigKeys.DFS_DATANODE_READAHEAD_BYTES_KEY,
         HdfsClientConfigKeys.DFS_DATANODE_READAHEAD_BYTES_DEFAULT);
     maxDataLength = getConf().getInt(DFSConfigKeys.IPC_MAXIMUM_DATA_LENGTH,
         DFSConfigKeys.IPC_MAXIMUM_DATA_LENGTH_DEFAULT);
+    maxEcCellSize = getConf().getInt(
+        DFSConfigKeys.DFS_NAMENODE_EC_POLICIES_MAX_CELLSIZE_KEY,
+        DFSConfigKeys.DFS_NAMENODE_EC_POLICIES_MAX_CELLSIZE_DEFAULT);
     dropCacheBehindWrites = getConf().getBoolean(
         DFSConfigKeys.DFS_DATANODE_DROP_CACHE_BEHIND_WRITES_KEY,
         DFSConfigKeys.DFS_DATANODE_DROP_CACHE_BEHIND_WRITES_DEFAULT);
@@ -206,6 +219,15 @@ public DNConf(final Configurable dn) {
     this.ibrInterval = getConf().getLong(
         DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_KEY,
         DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_INTERVAL_MSEC_DEFAULT);
+    this.ibrAsyncEnabled = getConf().getBoolean(
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_ASYNC_ENABLED_KEY,
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_ASYNC_ENABLED_DEFAULT);
+    this.ibrSlowThresholdMs = getConf().getLong(
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_SLOW_THRESHOLD_MSEC_KEY,
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_SLOW_THRESHOLD_MSEC_DEFAULT);
+    this.ibrMaxBatchDelayMs = getConf().getLong(
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_MAX_BATCH_DELAY_MSEC_KEY,
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_MAX_BATCH_DELAY_MSEC_DEFAULT);
     this.blockReportSplitThreshold = getConf().getLong(
         DFS_BLOCKREPORT_SPLIT_THRESHOLD_KEY,
         DFS_BLOCKREPORT_SPLIT_THRESHOLD_DEFAULT);
@@ -265,6 +287,12 @@ public DNConf(final Configurable dn) {
     this.maxLockedMemory = getConf().getLongBytes(
         DFS_DATANODE_MAX_LOCKED_MEMORY_KEY,
         DFS_DATANODE_MAX_LOCKED_MEMORY_DEFAULT);
+    this.blockReadCacheCapacity = getConf().getLongBytes(
+        DFSConfigKeys.DFS_DATANODE_BLOCK_READ_CACHE_CAPACITY_KEY,
+        DFSConfigKeys.DFS_DATANODE_BLOCK_READ_CACHE_CAPACITY_DEFAULT);
+    this.blockReadCacheMaxBlockSize = getConf().getLongBytes(
+        DFSConfigKeys.DFS_DATANODE_BLOCK_READ_CACHE_MAX_BLOCK_SIZE_KEY,
+        DFSConfigKeys.DFS_DATANODE_BLOCK_READ_CACHE_MAX_BLOCK_SIZE_DEFAULT);
 
     this.pmemDirs = getConf().getTrimmedStrings(
         DFS_DATANODE_PMEM_CACHE_DIRS_KEY);
@@ -354,6 +382,14 @@ public long getMaxLockedMemory() {
     return maxLockedMemory;
   }
 
+  public long getBlockReadCacheCapacity() {
+    return blockReadCacheCapacity;
+  }
+
+  public long getBlockReadCacheMaxBlockSize() {
+    return blockReadCacheMaxBlockSize;
+  }
+
   /**
    * Returns true if connect to datanode via hostname
    * 
@@ -437,6 +473,16 @@ public boolean getDataTransferServerTcpNoDelay() {
     return tcpNoDelay;
   }
 
+  /**
+   * Returns the largest packet size the DataNode will honor when a client
+   * asks for large packets on a transferTo() read.
+   *
+   * @return maximum packet size in bytes, or 0 if large packets are disabled
+   */
+  public int getTransferToMaxPacketSize() {
+    return transferToMaxPacketSize;
+  }
+
   public long getBpReadyTimeout() {
     return bpReadyTimeout;
   }
@@ -466,6 +512,14 @@ int getMaxDataLength() {
     return maxDataLength;
   }
 
+  /**
+   * @return the largest cell size of an erasure coding policy, which bounds
+   *         the windows of the combined reads.
+   */
+  int getMaxEcCellSize() {
+    return maxEcCellSize;
+  }
+
   public String[] getPmemVolumes() {
     return pmemDirs;
   }
@@ -452,6 +452,7 @@ public static InetSocketAddress createSocketAddr(String target) {
   private final List<String> usersWithLocalPathAccess;
   private final boolean connectToDnViaHostname;
   ReadaheadPool readaheadPool;
+  private BlockReadCache blockReadCache;
   SaslDataTransferClient saslClient;
   SaslDataTransferServer saslServer;
   private ObjectName dataNodeInfoBeanName;
@@ -1126,6 +1127,13 @@ public FileIoProvider getFileIoProvider() {
     return fileIoProvider;
   }
 
+  /**
+   * @return the automatic block read cache, or null if it is disabled.
+   */
+  public BlockReadCache getBlockReadCache() {
+    return blockReadCache;
+  }
+
   /**
    * Contains the StorageLocations for changed data volumes.
    */
@@ -1957,6 +1965,10 @@ void startDataNode(List<StorageLocation> dataDirectories,
     // Create the ReadaheadPool from the DataNode context so we can
     // exit without having to explicitly shutdown its thread pool.
     readaheadPool = ReadaheadPool.getInstance();
+    if (dnConf.getBlockReadCacheCapacity() > 0) {
+      blockReadCache = new BlockReadCache(dnConf.getBlockReadCacheCapacity(),
+          dnConf.getBlockReadCacheMaxBlockSize(), metrics);
+    }
     saslClient = new SaslDataTransferClient(dnConf.getConf(),
         dnConf.saslPropsResolver, dnConf.trustedChannelResolver);
     saslServer = new SaslDataTransferServer(dnConf, blockPoolTokenSecretManager);
@@ -2673,6 +2685,9 @@ public void shutdown() {
     if (data != null) {
       data.shutdown();
     }
+    if (fileIoProvider != null) {
+      fileIoProvider.shutdown();
+    }
     if (metrics != null) {
       metrics.shutdown();
     }
@@ -28,6 +28,7 @@
 import org.apache.hadoop.hdfs.ExtendedBlockId;
 import org.apache.hadoop.hdfs.net.Peer;
 import org.apache.hadoop.hdfs.protocol.BlockChecksumOptions;
+import org.apache.hadoop.hdfs.protocol.CombinedBlockSource;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
@@ -51,6 +52,7 @@
 import org.apache.hadoop.hdfs.protocolPB.PBHelperClient;
 import org.apache.hadoop.hdfs.security.token.block.BlockKey;
 import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
 import org.apache.hadoop.hdfs.server.datanode.BlockChecksumHelper.BlockChecksumComputer;
 import org.apache.hadoop.hdfs.server.datanode.BlockChecksumHelper.AbstractBlockChecksumComputer;
 import org.apache.hadoop.hdfs.server.datanode.BlockChecksumHelper.ReplicatedBlockChecksumComputer;
@@ -87,6 +89,7 @@
 import java.net.SocketTimeoutException;
 import java.nio.channels.ClosedChannelException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.ShortCircuitFdResponse.DO_NOT_USE_RECEIPT_VERIFICATION;
@@ -583,7 +586,8 @@ public void readBlock(final ExtendedBlock block,
       final long blockOffset,
       final long length,
       final boolean sendChecksum,
-      final CachingStrategy cachingStrategy) throws IOException {
+      final CachingStrategy cachingStrategy,
+      final int maxPacketSize) throws IOException {
     previousOpClientName = clientName;
     long read = 0;
     updateCurrentThreadName("Sending block " + block);
@@ -605,7 +609,7 @@ public void readBlock(final ExtendedBlock block,
       try {
         blockSender = new BlockSender(block, blockOffset, length,
             true, false, sendChecksum, datanode, clientTraceFmt,
-            cachingStrategy);
+            cachingStrategy, maxPacketSize);
       } catch(IOException e) {
         String msg = "opReadBlock " + block + " received exception " + e; 
         LOG.info(msg);
@@ -1088,6 +1092,64 @@ public void blockGroupChecksum(final StripedBlockInfo stripedBlockInfo,
     datanode.metrics.addBlockChecksumOp(elapsed());
   }
 
+  @Override
+  public void readCombinedBlocks(final ExtendedBlock block,
+      final Token<BlockTokenIdentifier> blockToken,
+      final byte[] coefficients,
+      final long offset,
+      final long len,
+      final int windowSize,
+      final List<CombinedBlockSource> sources) throws IOException {
+    updateCurrentThreadName("Combining block " + block + " with "
+        + sources.size() + " other blocks");
+    final DataOutputStream out = getBufferedOutputStream();
+    checkAccess(out, true, block, blockToken, Op.READ_COMBINED_BLOCKS,
+        BlockTokenIdentifier.AccessMode.READ);
+
+    // A combined read decodes within one block group, so bound the buffers
+    // the request makes us allocate before opening anything.
+    if (windowSize > dnConf.getMaxEcCellSize()
+        || coefficients.length >= HdfsServerConstants.MAX_BLOCKS_IN_GROUP
+        || sources.size() >= HdfsServerConstants.MAX_BLOCKS_IN_GROUP) {
+      String msg = "opReadCombinedBlocks " + block + " with "
+          + coefficients.length + " outputs, " + sources.size()
+          + " other blocks and windows of " + windowSize
+          + " bytes exceeds the limits of a block group";
+      LOG.info(msg);
+      sendResponse(ERROR_INVALID, msg);
+      return;
+    }
+
+    CombinedBlockSender sender = null;
+    try {
+      try {
+        sender = new CombinedBlockSender(datanode, block, coefficients,
+            offset, len, windowSize, sources);
+      } catch (IOException e) {
+        String msg = "opReadCombinedBlocks " + block
+            + " received exception " + e;
+        LOG.info(msg);
+        sendResponse(ERROR, msg);
+        throw e;
+      }
+      writeResponse(SUCCESS, null, out);
+      // Closing the stream on a failure tells the reader, which falls back
+      // to reading the blocks one by one.
+      sender.sendCombinedBlocks(out);
+    } catch (IOException ioe) {
+      LOG.info("readCombinedBlocks {} received exception {}",
+          block, ioe.toString());
+      incrDatanodeNetworkErrors();
+      throw ioe;
+    } finally {
+      IOUtils.closeStream(sender);
+      IOUtils.closeStream(out);
+    }
+
+    //update metrics
+    datanode.metrics.addReadCombinedBlocksOp(elapsed());
+  }
+
   @Override
   public void copyBlock(final ExtendedBlock block,
       final Token<BlockTokenIdentifier> blockToken) throws IOException {
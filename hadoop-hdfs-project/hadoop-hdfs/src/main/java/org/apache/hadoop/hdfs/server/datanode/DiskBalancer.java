@@ -30,6 +30,7 @@
 import org.apache.hadoop.hdfs.server.datanode.DiskBalancerWorkStatus
     .DiskBalancerWorkEntry;
 import org.apache.hadoop.hdfs.server.datanode.DiskBalancerWorkStatus.Result;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.DataNodeVolumeMetrics;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.diskbalancer.DiskBalancerConstants;
@@ -37,6 +38,7 @@
 import org.apache.hadoop.hdfs.server.diskbalancer.planner.NodePlan;
 import org.apache.hadoop.hdfs.server.diskbalancer.planner.Step;
 import org.apache.hadoop.hdfs.web.JsonUtil;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.hadoop.util.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,15 +47,22 @@
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -64,7 +73,10 @@
  * is admitted and put into workMap.
  * <p>
  * The executePlan launches a thread that picks up work from workMap and hands
- * it over to the BlockMover#copyBlocks function.
+ * it over to the BlockMover#copyBlocks function. If
+ * {@link DFSConfigKeys#DFS_DISK_BALANCER_MAX_PARALLEL_MOVES} is more than one,
+ * work items that share neither a source nor a destination volume are handed
+ * over concurrently from a pool of mover threads.
  * <p>
  * Constraints :
  * <p>
@@ -90,6 +102,7 @@ public class DiskBalancer {
   private DiskBalancerWorkStatus.Result currentResult;
   private long bandwidth;
   private volatile long planValidityInterval;
+  private final int maxParallelMoves;
   private final Configuration config;
 
   /**
@@ -122,6 +135,9 @@ public DiskBalancer(String dataNodeUUID,
         DFSConfigKeys.DFS_DISK_BALANCER_PLAN_VALID_INTERVAL,
         DFSConfigKeys.DFS_DISK_BALANCER_PLAN_VALID_INTERVAL_DEFAULT,
         TimeUnit.MILLISECONDS);
+    this.maxParallelMoves = Math.max(1, conf.getInt(
+        DFSConfigKeys.DFS_DISK_BALANCER_MAX_PARALLEL_MOVES,
+        DFSConfigKeys.DFS_DISK_BALANCER_MAX_PARALLEL_MOVES_DEFAULT));
   }
 
   /**
@@ -586,6 +602,10 @@ public void run() {
         Thread.currentThread().setName("DiskBalancerThread");
         LOG.info("Executing Disk balancer plan. Plan File: {}, Plan ID: {}",
             planFile, planID);
+        if (maxParallelMoves > 1 && workMap.size() > 1) {
+          executeInParallel();
+          return;
+        }
         for (Map.Entry<VolumePair, DiskBalancerWorkItem> entry :
             workMap.entrySet()) {
           blockMover.setRunnable();
@@ -595,6 +615,74 @@ public void run() {
     });
   }
 
+  /**
+   * Runs the work items on up to maxParallelMoves mover threads. An item is
+   * started only when no running item uses its source or destination
+   * volume, so that no disk is read or written by two movers at once.
+   * Returns when all items are done or the plan is cancelled.
+   */
+  private void executeInParallel() {
+    final ExecutorService movers = Executors.newFixedThreadPool(
+        maxParallelMoves, new ThreadFactoryBuilder().setDaemon(true)
+            .setNameFormat("DiskBalancerMover-%d").build());
+    final CompletionService<VolumePair> completions =
+        new ExecutorCompletionService<>(movers);
+    final List<Map.Entry<VolumePair, DiskBalancerWorkItem>> pending =
+        new LinkedList<>(workMap.entrySet());
+    final Set<String> busyVolumes = new HashSet<>();
+    int running = 0;
+    try {
+      while (!pending.isEmpty() || running > 0) {
+        Iterator<Map.Entry<VolumePair, DiskBalancerWorkItem>> it =
+            pending.iterator();
+        while (it.hasNext() && running < maxParallelMoves
+            && !scheduler.isShutdown()) {
+          Map.Entry<VolumePair, DiskBalancerWorkItem> entry = it.next();
+          final VolumePair pair = entry.getKey();
+          final DiskBalancerWorkItem item = entry.getValue();
+          if (busyVolumes.contains(pair.getSourceVolUuid())
+              || busyVolumes.contains(pair.getDestVolUuid())) {
+            continue;
+          }
+          it.remove();
+          busyVolumes.add(pair.getSourceVolUuid());
+          busyVolumes.add(pair.getDestVolUuid());
+          running++;
+          completions.submit(() -> {
+            // A failed item must not stop the items running next to it.
+            try {
+              blockMover.copyBlocks(pair, item);
+            } catch (RuntimeException e) {
+              LOG.error("Disk balancer mover failed to copy from {} to {}.",
+                  pair.getSourceVolBasePath(), pair.getDestVolBasePath(), e);
+              item.incErrorCount();
+              item.setErrMsg("Copy failed: " + e);
+            }
+            return pair;
+          });
+        }
+        if (running == 0) {
+          // The plan was cancelled before the remaining items started.
+          break;
+        }
+        VolumePair done = completions.take().get();
+        busyVolumes.remove(done.getSourceVolUuid());
+        busyVolumes.remove(done.getDestVolUuid());
+        running--;
+      }
+    } catch (InterruptedException e) {
+      LOG.info("Disk balancer plan {} interrupted, stopping movers.", planID);
+      blockMover.setExitFlag();
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      LOG.error("Disk balancer mover failed, stopping plan {}.", planID,
+          e.getCause());
+      blockMover.setExitFlag();
+    } finally {
+      movers.shutdownNow();
+    }
+  }
+
   /**
    * Insert work items to work map.
    * @param volumePair - VolumePair
@@ -764,16 +852,23 @@ public int hashCode() {
   /**
    * Actual DataMover class for DiskBalancer.
    * <p>
+   * copyBlocks may be called concurrently for different volume pairs. The
+   * throughput of each call is limited separately, and, if
+   * {@link DFSConfigKeys#DFS_DISK_BALANCER_LATENCY_THRESHOLD} is set, is
+   * lowered while foreground reads on its source volume are slow. A call
+   * that fails or reaches its maximum error count only ends its own copy.
    */
   public static class DiskBalancerMover implements BlockMover {
     private final FsDatasetSpi dataset;
     private long diskBandwidth;
     private long blockTolerance;
     private long maxDiskErrors;
-    private int poolIndex;
+    private final long latencyThresholdMs;
+    private final int minThroughputPercent;
+    private final AtomicInteger poolIndex = new AtomicInteger();
     private AtomicBoolean shouldRun;
-    private long startTime;
-    private long secondsElapsed;
+    private volatile long startTime;
+    private volatile long secondsElapsed;
 
     /**
      * Constructs diskBalancerMover.
@@ -797,6 +892,15 @@ public DiskBalancerMover(FsDatasetSpi dataset, Configuration conf) {
           DFSConfigKeys.DFS_DISK_BALANCER_MAX_DISK_ERRORS,
           DFSConfigKeys.DFS_DISK_BALANCER_MAX_DISK_ERRORS_DEFAULT);
 
+      this.latencyThresholdMs = conf.getTimeDuration(
+          DFSConfigKeys.DFS_DISK_BALANCER_LATENCY_THRESHOLD,
+          DFSConfigKeys.DFS_DISK_BALANCER_LATENCY_THRESHOLD_DEFAULT,
+          TimeUnit.MILLISECONDS);
+
+      this.minThroughputPercent = Math.max(1, Math.min(100, conf.getInt(
+          DFSConfigKeys.DFS_DISK_BALANCER_MIN_THROUGHPUT_PERCENT,
+          DFSConfigKeys.DFS_DISK_BALANCER_MIN_THROUGHPUT_PERCENT_DEFAULT)));
+
       // Since these are user provided values make sure it is sane
       // or ignore faulty values.
       if (this.diskBandwidth <= 0) {
@@ -913,6 +1017,23 @@ private long getDiskBandwidth(DiskBalancerWorkItem item) {
     @VisibleForTesting
     public long computeDelay(long bytesCopied, long timeUsed,
                               DiskBalancerWorkItem item) {
+      return computeDelay(bytesCopied, timeUsed, item, 100);
+    }
+
+    /**
+     * Computes the sleep delay like {@link #computeDelay(long, long,
+     * DiskBalancerWorkItem)}, with the bandwidth scaled down to the given
+     * percentage.
+     *
+     * @param bytesCopied - byteCopied.
+     * @param timeUsed    in milliseconds
+     * @param item        DiskBalancerWorkItem
+     * @param throughputPercent percentage of the bandwidth to use.
+     * @return sleep delay in Milliseconds.
+     */
+    @VisibleForTesting
+    public long computeDelay(long bytesCopied, long timeUsed,
+        DiskBalancerWorkItem item, int throughputPercent) {
 
       // we had an overflow, ignore this reading and continue.
       if (timeUsed == 0) {
@@ -925,11 +1046,48 @@ public long computeDelay(long bytesCopied, long timeUsed,
       long bytesInMB = bytesCopied / megaByte;
 
       // converting disk bandwidth in MB/millisec
-      float bandwidth = getDiskBandwidth(item) / 1000f;
+      float bandwidth =
+          getDiskBandwidth(item) * throughputPercent / 100f / 1000f;
       float delay = ((long) (bytesInMB / bandwidth) - timeUsed);
       return (delay <= 0) ? 0 : (long) delay;
     }
 
+    /**
+     * Adjusts the throughput percentage of a copy to the recent foreground
+     * read latency of its source volume: halve it while the mean read
+     * latency is above the threshold, and raise it gradually back to 100
+     * otherwise.
+     * <p>
+     * The copies themselves are counted as native copies, not reads, so the
+     * signal excludes the balancer's own IO. The write latency of the
+     * destination is not used: it mostly waits on the writeback of the
+     * balancer's own copies, and would throttle the balancer even without
+     * any foreground load.
+     *
+     * @param current the current throughput percentage.
+     * @param source the source volume.
+     * @return the new throughput percentage.
+     */
+    @VisibleForTesting
+    public int adjustThroughputPercent(int current, FsVolumeSpi source) {
+      if (latencyThresholdMs <= 0) {
+        return 100;
+      }
+      DataNodeVolumeMetrics sourceMetrics = source.getMetrics();
+      double latency =
+          sourceMetrics != null ? sourceMetrics.getReadIoMean() : 0;
+      if (latency > latencyThresholdMs) {
+        int reduced = Math.max(minThroughputPercent, current / 2);
+        if (reduced != current) {
+          LOG.debug("Foreground read latency {} ms on {} is above {} ms," +
+              " reducing disk balancer throughput to {}%.", latency,
+              source.getBaseURI(), latencyThresholdMs, reduced);
+        }
+        return reduced;
+      }
+      return Math.min(100, current + 10);
+    }
+
     /**
      * Returns maximum errors to tolerate for the specific plan or the default.
      *
@@ -1011,7 +1169,8 @@ ExtendedBlock getNextBlock(List<FsVolumeSpi.BlockIterator> poolIters,
       ExtendedBlock block = null;
       while (block == null && currentCount < poolIters.size()) {
         currentCount++;
-        int index = poolIndex++ % poolIters.size();
+        int index = (poolIndex.getAndIncrement() & Integer.MAX_VALUE)
+            % poolIters.size();
         FsVolumeSpi.BlockIterator currentPoolIter = poolIters.get(index);
         block = getBlockToCopy(currentPoolIter, item);
       }
@@ -1082,9 +1241,11 @@ public void copyBlocks(VolumePair pair, DiskBalancerWorkItem item) {
       }
 
       List<FsVolumeSpi.BlockIterator> poolIters = new LinkedList<>();
-      startTime = Time.now();
-      item.setStartTime(startTime);
+      final long itemStartTime = Time.now();
+      startTime = itemStartTime;
+      item.setStartTime(itemStartTime);
       secondsElapsed = 0;
+      int throughputPercent = 100;
 
       try {
         openPoolIters(source, poolIters);
@@ -1111,8 +1272,7 @@ public void copyBlocks(VolumePair pair, DiskBalancerWorkItem item) {
                       "blocks.",
                   source.getBaseURI(), dest.getBaseURI(),
                   item.getBytesCopied(), item.getBlocksCopied());
-              this.setExitFlag();
-              continue;
+              break;
             }
 
             ExtendedBlock block = getNextBlock(poolIters, item);
@@ -1120,8 +1280,7 @@ public void copyBlocks(VolumePair pair, DiskBalancerWorkItem item) {
             if (block == null) {
               LOG.error("No source blocks, exiting the copy. Source: {}, " +
                   "Dest:{}", source.getBaseURI(), dest.getBaseURI());
-              this.setExitFlag();
-              continue;
+              break;
             }
 
             // check if someone told us exit, treat this as an interruption
@@ -1161,8 +1320,10 @@ public void copyBlocks(VolumePair pair, DiskBalancerWorkItem item) {
             // to make sure that our promise is good on average.
             // Because we sleep, if a shutdown or cancel call comes in
             // we exit via Thread Interrupted exception.
+            throughputPercent =
+                adjustThroughputPercent(throughputPercent, source);
             Thread.sleep(computeDelay(block.getNumBytes(), TimeUnit.NANOSECONDS
-                .toMillis(timeUsed), item));
+                .toMillis(timeUsed), item, throughputPercent));
 
             // We delay updating the info to avoid confusing the user.
             // This way we report the copy only if it is under the
@@ -1170,21 +1331,23 @@ public void copyBlocks(VolumePair pair, DiskBalancerWorkItem item) {
             item.incCopiedSoFar(block.getNumBytes());
             item.incBlocksCopied();
             secondsElapsed = TimeUnit.MILLISECONDS.toSeconds(Time.now() -
-                startTime);
+                itemStartTime);
             item.setSecondsElapsed(secondsElapsed);
           } catch (IOException ex) {
             LOG.error("Exception while trying to copy blocks. error: ", ex);
             item.incErrorCount();
           } catch (InterruptedException e) {
+            // Only this copy exits, the other parallel copies keep running
+            // until the plan is cancelled.
             LOG.error("Copy Block Thread interrupted, exiting the copy.");
             Thread.currentThread().interrupt();
             item.incErrorCount();
-            this.setExitFlag();
+            break;
           } catch (RuntimeException ex) {
-            // Exiting if any run time exceptions.
+            // Exiting this copy if any run time exceptions.
             LOG.error("Got an unexpected Runtime Exception ", ex);
             item.incErrorCount();
-            this.setExitFlag();
+            break;
           }
         }
       } finally {
@@ -21,6 +21,7 @@
 import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
+import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.HardLink;
@@ -30,6 +31,7 @@
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.FsDatasetUtil;
 import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.nativeio.IoUringEngine;
 import org.apache.hadoop.io.nativeio.NativeIO;
 import org.apache.hadoop.io.nativeio.NativeIOException;
 import org.apache.hadoop.net.SocketOutputStream;
@@ -47,11 +49,15 @@
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.nio.channels.FileChannel;
 import java.nio.file.CopyOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 
 import static org.apache.hadoop.hdfs.server.datanode.FileIoProvider.OPERATION.*;
 
@@ -69,6 +75,16 @@
  * Most functions accept an optional {@link FsVolumeSpi} parameter for
  * instrumentation/logging.
  *
+ * When {@link DFSConfigKeys#DFS_DATANODE_IO_ENGINE_KEY} is "io_uring", reads
+ * of the input streams and writes of the output streams that are known not
+ * to append, including the block and meta file streams of replicas being
+ * written, are issued as positional requests through a shared
+ * {@link IoUringEngine} instead of the JDK's read(2)/write(2) calls. The
+ * streams keep their file position themselves, and only move the position
+ * of the descriptor when their channel is used. Writes are asynchronous:
+ * an output stream waits for its writes in flight when it is flushed,
+ * synced or closed, or when its channel is used.
+ *
  * Some methods may look redundant, especially the multiple variations of
  * move/rename/list. They exist to retain behavior compatibility for existing
  * code.
@@ -82,6 +98,8 @@ public class FileIoProvider {
   private final ProfilingFileIoEvents profilingEventHook;
   private final FaultInjectorFileIoEvents faultInjectorEventHook;
   private final DataNode datanode;
+  @Nullable
+  private final IoUringEngine ioUringEngine;
 
   private static final int LEN_INT = 4;
 
@@ -93,9 +111,68 @@ public class FileIoProvider {
    */
   public FileIoProvider(@Nullable Configuration conf,
                         final DataNode datanode) {
+    this(conf, datanode, createIoUringEngine(conf));
+  }
+
+  @VisibleForTesting
+  FileIoProvider(@Nullable Configuration conf, final DataNode datanode,
+      @Nullable IoUringEngine ioUringEngine) {
     profilingEventHook = new ProfilingFileIoEvents(conf);
     faultInjectorEventHook = new FaultInjectorFileIoEvents(conf);
     this.datanode = datanode;
+    this.ioUringEngine = ioUringEngine;
+  }
+
+  @Nullable
+  private static IoUringEngine createIoUringEngine(
+      @Nullable Configuration conf) {
+    if (conf == null || !DFSConfigKeys.DFS_DATANODE_IO_ENGINE_IO_URING
+        .equalsIgnoreCase(conf.getTrimmed(
+            DFSConfigKeys.DFS_DATANODE_IO_ENGINE_KEY,
+            DFSConfigKeys.DFS_DATANODE_IO_ENGINE_DEFAULT))) {
+      return null;
+    }
+    if (!NativeIO.POSIX.IoUring.isAvailable()) {
+      LOG.warn("{} is {} but io_uring is not available, using {}",
+          DFSConfigKeys.DFS_DATANODE_IO_ENGINE_KEY,
+          DFSConfigKeys.DFS_DATANODE_IO_ENGINE_IO_URING,
+          DFSConfigKeys.DFS_DATANODE_IO_ENGINE_POSIX);
+      return null;
+    }
+    try {
+      IoUringEngine engine = new IoUringEngine("DataNode",
+          conf.getInt(DFSConfigKeys.DFS_DATANODE_IO_URING_QUEUE_DEPTH_KEY,
+              DFSConfigKeys.DFS_DATANODE_IO_URING_QUEUE_DEPTH_DEFAULT),
+          conf.getInt(DFSConfigKeys.DFS_DATANODE_IO_URING_BUFFER_SIZE_KEY,
+              DFSConfigKeys.DFS_DATANODE_IO_URING_BUFFER_SIZE_DEFAULT));
+      LOG.info("Using io_uring for DataNode file IO");
+      return engine;
+    } catch (IOException e) {
+      LOG.warn("Failed to set up io_uring, using {}",
+          DFSConfigKeys.DFS_DATANODE_IO_ENGINE_POSIX, e);
+      return null;
+    }
+  }
+
+  /**
+   * @return true if file IO goes through io_uring.
+   */
+  public boolean isIoUringEnabled() {
+    return ioUringEngine != null;
+  }
+
+  /**
+   * Release resources held by this provider, such as the io_uring.
+   * Streams created by this provider must not be used afterwards.
+   */
+  public void shutdown() {
+    if (ioUringEngine != null) {
+      try {
+        ioUringEngine.close();
+      } catch (IOException e) {
+        LOG.warn("Failed to close the io_uring engine", e);
+      }
+    }
   }
 
   /**
@@ -149,6 +226,8 @@ public void sync(
     final long begin = profilingEventHook.beforeFileIo(volume, SYNC, 0);
     try {
       faultInjectorEventHook.beforeFileIo(volume, SYNC, 0);
+      // Wait for the writes through the io_uring still in flight.
+      fos.flush();
       IOUtils.fsync(fos.getChannel(), false);
       profilingEventHook.afterFileIo(volume, SYNC, begin, 0);
     } catch (Exception e) {
@@ -403,7 +482,26 @@ public FileOutputStream getFileOutputStream(
    */
   public FileOutputStream getFileOutputStream(
       @Nullable FsVolumeSpi volume, FileDescriptor fd) {
-    return new WrappedFileOutputStream(volume, fd);
+    return new WrappedFileOutputStream(volume, fd, false);
+  }
+
+  /**
+   * Create a FileOutputStream over the descriptor of a RandomAccessFile,
+   * which is never opened for appending, so the writes of the stream may go
+   * through the io_uring.
+   *
+   * Wraps the created output stream to intercept write calls
+   * before delegating to the wrapped stream.
+   *
+   * @param volume  target volume. null if unavailable.
+   * @param raf  an open RandomAccessFile.
+   * @return  FileOutputStream writing from the file pointer of raf.
+   * @throws IOException if the descriptor of raf cannot be obtained.
+   */
+  public FileOutputStream getFileOutputStream(
+      @Nullable FsVolumeSpi volume, RandomAccessFile raf) throws IOException {
+    return new WrappedFileOutputStream(volume, raf.getFD(),
+        ioUringEngine != null);
   }
 
   /**
@@ -817,6 +915,11 @@ public boolean exists(@Nullable FsVolumeSpi volume, File f) {
    */
   private final class WrappedFileInputStream extends FileInputStream {
     private @Nullable final FsVolumeSpi volume;
+    /**
+     * The file position of the reads through the io_uring, or -1 if it is
+     * the position of the descriptor.
+     */
+    private long position = -1;
 
     /**
      * {@inheritDoc}.
@@ -844,6 +947,7 @@ public int read() throws IOException {
       final long begin = profilingEventHook.beforeFileIo(volume, READ, LEN_INT);
       try {
         faultInjectorEventHook.beforeFileIo(volume, READ, LEN_INT);
+        syncPosition();
         int b = super.read();
         profilingEventHook.afterFileIo(volume, READ, begin, LEN_INT);
         return b;
@@ -862,7 +966,8 @@ public int read(@Nonnull byte[] b) throws IOException {
           .length);
       try {
         faultInjectorEventHook.beforeFileIo(volume, READ, b.length);
-        int numBytesRead = super.read(b);
+        int numBytesRead = ioUringEngine != null ?
+            pread(b, 0, b.length) : super.read(b);
         profilingEventHook.afterFileIo(volume, READ, begin, numBytesRead);
         return numBytesRead;
       } catch(Exception e) {
@@ -879,7 +984,8 @@ public int read(@Nonnull byte[] b, int off, int len) throws IOException {
       final long begin = profilingEventHook.beforeFileIo(volume, READ, len);
       try {
         faultInjectorEventHook.beforeFileIo(volume, READ, len);
-        int numBytesRead = super.read(b, off, len);
+        int numBytesRead = ioUringEngine != null ?
+            pread(b, off, len) : super.read(b, off, len);
         profilingEventHook.afterFileIo(volume, READ, begin, numBytesRead);
         return numBytesRead;
       } catch(Exception e) {
@@ -887,6 +993,61 @@ public int read(@Nonnull byte[] b, int off, int len) throws IOException {
         throw e;
       }
     }
+
+    /**
+     * Read through the io_uring at the current file position, and move the
+     * position past the bytes read, as {@link FileInputStream#read} would.
+     */
+    private int pread(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (position < 0) {
+        position = super.getChannel().position();
+      }
+      int n = ioUringEngine.pread(getFD(), position, b, off, len);
+      if (n == 0) {
+        return -1;
+      }
+      position += n;
+      return n;
+    }
+
+    /** Move the descriptor to the position of the reads, if it is behind. */
+    private void syncPosition() throws IOException {
+      if (position >= 0) {
+        final long pos = position;
+        position = -1;
+        super.getChannel().position(pos);
+      }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      syncPosition();
+      return super.skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+      syncPosition();
+      return super.available();
+    }
+
+    /**
+     * {@inheritDoc}.
+     *
+     * The position of the returned channel is the position of the stream.
+     */
+    @Override
+    public FileChannel getChannel() {
+      try {
+        syncPosition();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return super.getChannel();
+    }
   }
 
   /**
@@ -895,6 +1056,20 @@ public int read(@Nonnull byte[] b, int off, int len) throws IOException {
    */
   private final class WrappedFileOutputStream extends FileOutputStream {
     private @Nullable final FsVolumeSpi volume;
+    /**
+     * Whether writes may go through the io_uring. Appending streams, and
+     * streams over descriptors that may have O_APPEND set, cannot use
+     * positional writes.
+     */
+    private final boolean positional;
+    /**
+     * The file position of the writes through the io_uring, or -1 if it is
+     * the position of the descriptor.
+     */
+    private long position = -1;
+    /** The writes through the io_uring that may still be in flight. */
+    private final Queue<CompletableFuture<Void>> writesInFlight =
+        new ArrayDeque<>();
 
     /**
      * {@inheritDoc}.
@@ -904,15 +1079,17 @@ private WrappedFileOutputStream(
         boolean append) throws FileNotFoundException {
       super(f, append);
       this.volume = volume;
+      this.positional = ioUringEngine != null && !append;
     }
 
     /**
      * {@inheritDoc}.
      */
     private WrappedFileOutputStream(
-        @Nullable FsVolumeSpi volume, FileDescriptor fd) {
+        @Nullable FsVolumeSpi volume, FileDescriptor fd, boolean positional) {
       super(fd);
       this.volume = volume;
+      this.positional = positional;
     }
 
     /**
@@ -924,6 +1101,7 @@ public void write(int b) throws IOException {
           LEN_INT);
       try {
         faultInjectorEventHook.beforeFileIo(volume, WRITE, LEN_INT);
+        syncPosition();
         super.write(b);
         profilingEventHook.afterFileIo(volume, WRITE, begin, LEN_INT);
       } catch(Exception e) {
@@ -941,7 +1119,11 @@ public void write(@Nonnull byte[] b) throws IOException {
           .length);
       try {
         faultInjectorEventHook.beforeFileIo(volume, WRITE, b.length);
-        super.write(b);
+        if (positional) {
+          pwrite(b, 0, b.length);
+        } else {
+          super.write(b);
+        }
         profilingEventHook.afterFileIo(volume, WRITE, begin, b.length);
       } catch(Exception e) {
         onFailure(volume, begin);
@@ -957,13 +1139,101 @@ public void write(@Nonnull byte[] b, int off, int len) throws IOException {
       final long begin = profilingEventHook.beforeFileIo(volume, WRITE, len);
       try {
         faultInjectorEventHook.beforeFileIo(volume, WRITE, len);
-        super.write(b, off, len);
+        if (positional) {
+          pwrite(b, off, len);
+        } else {
+          super.write(b, off, len);
+        }
         profilingEventHook.afterFileIo(volume, WRITE, begin, len);
       } catch(Exception e) {
         onFailure(volume, begin);
         throw e;
       }
     }
+
+    /**
+     * Start a write through the io_uring at the current file position, and
+     * move the position past the bytes written, as
+     * {@link FileOutputStream#write} would. The failure of an earlier write
+     * is thrown here if it is known already.
+     */
+    private void pwrite(byte[] b, int off, int len) throws IOException {
+      if (position < 0) {
+        position = super.getChannel().position();
+      }
+      while (!writesInFlight.isEmpty() && writesInFlight.peek().isDone()) {
+        IoUringEngine.await(writesInFlight.poll());
+      }
+      writesInFlight.add(
+          ioUringEngine.pwriteAsync(getFD(), position, b, off, len));
+      position += len;
+    }
+
+    /** Wait for the writes in flight, and throw the first failure. */
+    private void awaitWrites() throws IOException {
+      IOException failure = null;
+      while (!writesInFlight.isEmpty()) {
+        try {
+          IoUringEngine.await(writesInFlight.poll());
+        } catch (IOException e) {
+          if (failure == null) {
+            failure = e;
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+
+    /**
+     * {@inheritDoc}.
+     *
+     * Waits for the writes through the io_uring.
+     */
+    @Override
+    public void flush() throws IOException {
+      awaitWrites();
+      super.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        awaitWrites();
+      } finally {
+        super.close();
+      }
+    }
+
+    /**
+     * Move the descriptor to the position of the writes, if it is behind,
+     * once the writes are done.
+     */
+    private void syncPosition() throws IOException {
+      awaitWrites();
+      if (position >= 0) {
+        final long pos = position;
+        position = -1;
+        super.getChannel().position(pos);
+      }
+    }
+
+    /**
+     * {@inheritDoc}.
+     *
+     * The position of the returned channel is the position of the stream,
+     * and setting it moves the stream.
+     */
+    @Override
+    public FileChannel getChannel() {
+      try {
+        syncPosition();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return super.getChannel();
+    }
   }
 
   /**
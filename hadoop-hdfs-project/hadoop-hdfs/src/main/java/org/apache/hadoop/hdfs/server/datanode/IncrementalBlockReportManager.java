@@ -140,18 +140,64 @@ int putMissing(ReceivedDeletedBlockInfo[] rdbis) {
   private volatile long lastIBR;
   private DataNodeMetrics dnMetrics;
 
+  /**
+   * IBR RPCs slower than this are taken as a sign that the NameNode is
+   * loaded, and make the next report wait longer to batch more blocks.
+   */
+  private final long slowIbrThresholdMs;
+  /** The upper bound of {@link #batchDelayMs}. */
+  private final long maxBatchDelayMs;
+  /** How long an asynchronous sender waits before the next IBR. */
+  private volatile long batchDelayMs = 0;
+
+  /** Serializes IBR RPCs so that reports reach the NameNode in order. */
+  private final Object sendLock = new Object();
+
   IncrementalBlockReportManager(
       final long ibrInterval,
       final DataNodeMetrics dnMetrics) {
+    this(ibrInterval, dnMetrics, Long.MAX_VALUE, 0);
+  }
+
+  IncrementalBlockReportManager(
+      final long ibrInterval,
+      final DataNodeMetrics dnMetrics,
+      final long slowIbrThresholdMs,
+      final long maxBatchDelayMs) {
     this.ibrInterval = ibrInterval;
     this.lastIBR = monotonicNow() - ibrInterval;
     this.dnMetrics = dnMetrics;
+    this.slowIbrThresholdMs = slowIbrThresholdMs;
+    this.maxBatchDelayMs = maxBatchDelayMs;
   }
 
   boolean sendImmediately() {
     return readyToSend && monotonicNow() - ibrInterval >= lastIBR;
   }
 
+  /**
+   * @return how long to wait before sending the next IBR, so that more
+   *         blocks are batched into it while the NameNode is loaded.
+   */
+  long getBatchDelay() {
+    return batchDelayMs;
+  }
+
+  /**
+   * Adapt the batch delay to the latency of the last IBR RPC: double it
+   * while RPCs are slow, halve it once they are fast again.
+   */
+  @VisibleForTesting
+  void updateBatchDelay(long rpcLatencyMs) {
+    if (rpcLatencyMs > slowIbrThresholdMs) {
+      batchDelayMs = Math.min(maxBatchDelayMs,
+          Math.max(2 * batchDelayMs, Math.min(slowIbrThresholdMs,
+              maxBatchDelayMs)));
+    } else {
+      batchDelayMs = batchDelayMs / 2;
+    }
+  }
+
   synchronized void waitTillNextIBR(long waitTime) {
     if (waitTime > 0 && !sendImmediately()) {
       try {
@@ -195,6 +241,14 @@ private synchronized void putMissing(StorageReceivedDeletedBlocks[] reports) {
   /** Send IBRs to namenode. */
   void sendIBRs(DatanodeProtocol namenode, DatanodeRegistration registration,
       String bpid, String nnRpcLatencySuffix) throws IOException {
+    synchronized (sendLock) {
+      doSendIBRs(namenode, registration, bpid, nnRpcLatencySuffix);
+    }
+  }
+
+  private void doSendIBRs(DatanodeProtocol namenode,
+      DatanodeRegistration registration, String bpid,
+      String nnRpcLatencySuffix) throws IOException {
     // Generate a list of the pending reports for each storage under the lock
     final StorageReceivedDeletedBlocks[] reports = generateIBRs();
     if (reports.length == 0) {
@@ -214,8 +268,9 @@ void sendIBRs(DatanodeProtocol namenode, DatanodeRegistration registration,
     } finally {
 
       if (success) {
-        dnMetrics.addIncrementalBlockReport(monotonicNow() - startTime,
-            nnRpcLatencySuffix);
+        final long latency = monotonicNow() - startTime;
+        dnMetrics.addIncrementalBlockReport(latency, nnRpcLatencySuffix);
+        updateBatchDelay(latency);
         lastIBR = startTime;
       } else {
         // If we didn't succeed in sending the report, put all of the
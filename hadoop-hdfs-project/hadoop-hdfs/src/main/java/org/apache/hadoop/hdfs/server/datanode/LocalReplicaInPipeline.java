@@ -351,8 +351,8 @@ public ReplicaOutputStreams createStreams(boolean isCreate,
     FileOutputStream crcOut = null;
     try {
       blockOut = fileIoProvider.getFileOutputStream(
-          getVolume(), new RandomAccessFile(blockFile, "rw").getFD());
-      crcOut = fileIoProvider.getFileOutputStream(getVolume(), metaRAF.getFD());
+          getVolume(), new RandomAccessFile(blockFile, "rw"));
+      crcOut = fileIoProvider.getFileOutputStream(getVolume(), metaRAF);
       if (!isCreate) {
         blockOut.getChannel().position(blockDiskSize);
         crcOut.getChannel().position(crcDiskSize);
@@ -21,6 +21,7 @@
 import java.nio.ByteBuffer;
 
 import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
 import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
 import org.apache.hadoop.io.erasurecode.rawcoder.InvalidDecodingException;
@@ -36,6 +37,8 @@ class StripedBlockReconstructor extends StripedReconstructor
     implements Runnable {
 
   private StripedWriter stripedWriter;
+  // Whether the source datanodes combine their blocks for the targets.
+  private final boolean combinedReadEnabled;
 
   StripedBlockReconstructor(ErasureCodingWorker worker,
       StripedReconstructionInfo stripedReconInfo) {
@@ -43,6 +46,11 @@ class StripedBlockReconstructor extends StripedReconstructor
 
     stripedWriter = new StripedWriter(this, getDatanode(),
         getConf(), stripedReconInfo);
+    // Validation needs the source blocks.
+    combinedReadEnabled = getConf().getBoolean(
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_COMBINED_READ_ENABLED_KEY,
+        DFSConfigKeys.DFS_DN_EC_RECONSTRUCTION_COMBINED_READ_ENABLED_DEFAULT)
+        && !isValidationEnabled();
   }
 
   boolean hasValidTargets() {
@@ -60,6 +68,10 @@ public void run() {
 
       stripedWriter.init();
 
+      if (combinedReadEnabled) {
+        reconstructFromCombinedRead();
+      }
+
       reconstruct();
 
       stripedWriter.endTargetBlocks();
@@ -109,14 +121,7 @@ void reconstruct() throws IOException {
       long decodeEnd = Time.monotonicNow();
 
       // step3: transfer data
-      long bytesToWrite = (long) toReconstructLen * stripedWriter.getTargets();
-      if (getDatanode().getEcReconstuctWriteThrottler() != null) {
-        getDatanode().getEcReconstuctWriteThrottler().throttle(bytesToWrite);
-      }
-      if (stripedWriter.transferData2Targets() == 0) {
-        String error = "Transfer failed for all targets.";
-        throw new IOException(error);
-      }
+      transferData2Targets(toReconstructLen);
       long writeEnd = Time.monotonicNow();
 
       // Only the succeed reconstructions are recorded.
@@ -131,6 +136,83 @@ void reconstruct() throws IOException {
     }
   }
 
+  /**
+   * Reconstruct the targets from a combined read of the sources, see
+   * {@link StripedCombinedReader}, so that this datanode receives one block
+   * per target rather than one per source. If the combined read fails, the
+   * rest of the targets is reconstructed by {@link #reconstruct()} from the
+   * sources read one by one.
+   */
+  private void reconstructFromCombinedRead() throws IOException {
+    final StripedReader stripedReader = getStripedReader();
+    StripedCombinedReader combinedReader = new StripedCombinedReader(this,
+        getDatanode(), stripedWriter.getRealTargetIndices());
+    try {
+      try {
+        combinedReader.init(stripedReader.getSuccessSources(),
+            stripedReader.getZeroStripeIndices(),
+            stripedReader.getBufferSize());
+      } catch (IOException e) {
+        LOG.info("Failed to start a combined read for {}, reading the "
+            + "sources one by one", getBlockGroup(), e);
+        getDatanode().getMetrics().incrECCombinedReadFallbacks();
+        return;
+      }
+      stripedReader.closeReaders();
+
+      while (getPositionInBlock() < getMaxTargetLength()) {
+        DataNodeFaultInjector.get().stripedBlockReconstruction();
+        long remaining = getMaxTargetLength() - getPositionInBlock();
+        final int toReconstructLen =
+            (int) Math.min(stripedReader.getBufferSize(), remaining);
+
+        long start = Time.monotonicNow();
+        long bytesToRead = (long) toReconstructLen * stripedWriter.getTargets();
+        if (getDatanode().getEcReconstuctReadThrottler() != null) {
+          getDatanode().getEcReconstuctReadThrottler().throttle(bytesToRead);
+        }
+        try {
+          combinedReader.readTargets(toReconstructLen,
+              stripedWriter.getRealTargetIndices(),
+              stripedWriter.getRealTargetBuffers(toReconstructLen));
+        } catch (IOException e) {
+          LOG.info("Combined read for {} failed at {}, reading the sources "
+              + "one by one", getBlockGroup(), getPositionInBlock(), e);
+          getDatanode().getMetrics().incrECCombinedReadFallbacks();
+          stripedReader.reopenReaders();
+          return;
+        }
+        stripedWriter.updateRealTargetBuffers(toReconstructLen);
+        long readEnd = Time.monotonicNow();
+
+        transferData2Targets(toReconstructLen);
+        long writeEnd = Time.monotonicNow();
+
+        final DataNodeMetrics metrics = getDatanode().getMetrics();
+        metrics.incrECReconstructionReadTime(readEnd - start);
+        metrics.incrECReconstructionWriteTime(writeEnd - readEnd);
+        metrics.incrECCombinedReadStripes();
+
+        updatePositionInBlock(toReconstructLen);
+
+        clearBuffers();
+      }
+    } finally {
+      combinedReader.close();
+    }
+  }
+
+  private void transferData2Targets(int toReconstructLen) throws IOException {
+    long bytesToWrite = (long) toReconstructLen * stripedWriter.getTargets();
+    if (getDatanode().getEcReconstuctWriteThrottler() != null) {
+      getDatanode().getEcReconstuctWriteThrottler().throttle(bytesToWrite);
+    }
+    if (stripedWriter.transferData2Targets() == 0) {
+      String error = "Transfer failed for all targets.";
+      throw new IOException(error);
+    }
+  }
+
   private void reconstructTargets(int toReconstructLen) throws IOException {
     ByteBuffer[] inputs = getStripedReader().getInputBuffers(toReconstructLen);
 
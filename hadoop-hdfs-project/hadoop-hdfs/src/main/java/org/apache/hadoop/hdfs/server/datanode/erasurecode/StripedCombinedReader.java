@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode.erasurecode;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.protocol.CombinedBlockSource;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.security.token.block.BlockTokenIdentifier;
+import org.apache.hadoop.hdfs.server.datanode.CombinedBlockReader;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+import org.apache.hadoop.security.token.Token;
+
+/**
+ * Reads the blocks to reconstruct directly, as linear combinations of the
+ * source blocks computed by the source datanodes, see
+ * {@link CombinedBlockReader}. The decoding of the coders is linear over
+ * GF(2^8), so the coefficient of every source block for every target block
+ * is the output of decoding a unit vector.
+ */
+@InterfaceAudience.Private
+class StripedCombinedReader {
+  private final StripedReconstructor reconstructor;
+  private final DataNode datanode;
+  private final int[] targetIndices;
+
+  private CombinedBlockReader blockReader;
+  private byte[][] outputs;
+
+  StripedCombinedReader(StripedReconstructor reconstructor,
+      DataNode datanode, int[] targetIndices) {
+    this.reconstructor = reconstructor;
+    this.datanode = datanode;
+    this.targetIndices = targetIndices;
+  }
+
+  /**
+   * Start the combined read from the current position in block.
+   *
+   * @param sources the datanodes of the blocks to decode from, indexed by
+   *                block index, null for the other blocks.
+   * @param zeroIndices the indices of the blocks of length 0, or null.
+   * @param bufferSize the number of bytes to read at a time.
+   * @throws IOException if a source datanode can not serve the read.
+   */
+  void init(DatanodeInfo[] sources, short[] zeroIndices, int bufferSize)
+      throws IOException {
+    byte[][] coefficients = getCoefficients(reconstructor.getDecoder(),
+        sources, zeroIndices, targetIndices);
+    List<CombinedBlockSource> blocks = new ArrayList<>();
+    for (int i = 0; i < sources.length; i++) {
+      if (sources[i] != null) {
+        ExtendedBlock block = reconstructor.getBlock(i);
+        Token<BlockTokenIdentifier> blockToken =
+            datanode.getBlockAccessToken(block,
+                EnumSet.of(BlockTokenIdentifier.AccessMode.READ),
+                StorageType.EMPTY_ARRAY, new String[0]);
+        blocks.add(new CombinedBlockSource(sources[i], block, blockToken,
+            coefficients[i]));
+      }
+    }
+
+    long offset = reconstructor.getPositionInBlock();
+    blockReader = CombinedBlockReader.open(datanode, blocks, offset,
+        reconstructor.getMaxTargetLength() - offset, bufferSize);
+    outputs = new byte[targetIndices.length][bufferSize];
+  }
+
+  /**
+   * @return the coefficient of every source block for every target block,
+   *         indexed by block index then target.
+   */
+  static byte[][] getCoefficients(RawErasureDecoder decoder,
+      DatanodeInfo[] sources, short[] zeroIndices, int[] targetIndices)
+      throws IOException {
+    byte[][] coefficients = new byte[sources.length][];
+    byte[][] inputs = new byte[sources.length][];
+    byte[][] probeOutputs = new byte[targetIndices.length][1];
+    for (int i = 0; i < sources.length; i++) {
+      if (sources[i] == null) {
+        continue;
+      }
+      for (int j = 0; j < sources.length; j++) {
+        inputs[j] = sources[j] != null ? new byte[1] : null;
+      }
+      if (zeroIndices != null) {
+        for (short j : zeroIndices) {
+          inputs[j] = new byte[1];
+        }
+      }
+      inputs[i][0] = 1;
+      decoder.decode(inputs, targetIndices, probeOutputs);
+      coefficients[i] = new byte[targetIndices.length];
+      for (int l = 0; l < targetIndices.length; l++) {
+        coefficients[i][l] = probeOutputs[l][0];
+      }
+    }
+    return coefficients;
+  }
+
+  /**
+   * Read the next window of the targets into their buffers, leaving the
+   * positions of the buffers unchanged.
+   *
+   * @param len the length of the window.
+   * @param realTargetIndices the indices of the targets still written to.
+   * @param targetBuffers their buffers.
+   * @throws IOException if the combined read failed.
+   */
+  void readTargets(int len, int[] realTargetIndices,
+      ByteBuffer[] targetBuffers) throws IOException {
+    blockReader.readWindow(outputs, len, false);
+    reconstructor.incrBytesRead(false, (long) len * outputs.length);
+    for (int t = 0; t < realTargetIndices.length; t++) {
+      for (int l = 0; l < targetIndices.length; l++) {
+        if (targetIndices[l] == realTargetIndices[t]) {
+          targetBuffers[t].duplicate().put(outputs[l], 0, len);
+          break;
+        }
+      }
+    }
+  }
+
+  void close() {
+    IOUtils.closeStream(blockReader);
+    blockReader = null;
+  }
+}
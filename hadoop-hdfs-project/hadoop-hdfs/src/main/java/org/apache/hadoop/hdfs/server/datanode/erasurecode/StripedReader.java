@@ -24,11 +24,13 @@
 import org.apache.hadoop.hdfs.DFSConfigKeys;
 import org.apache.hadoop.hdfs.DFSUtilClient.CorruptedBlocks;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
 import org.apache.hadoop.hdfs.server.datanode.CachingStrategy;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.BlockReadStats;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil.StripingChunkReadResult;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.LRCUtil;
 import org.apache.hadoop.util.DataChecksum;
 import org.slf4j.Logger;
 
@@ -36,6 +38,7 @@
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
@@ -69,7 +72,11 @@ class StripedReader {
   private int bufferSize;
   private int[] successList;
 
-  private final int minRequiredSources;
+  private int minRequiredSources;
+  // The sources required when the blocks are not reconstructed locally.
+  private final int fullRequiredSources;
+  // Whether only the local groups of the blocks to reconstruct are read.
+  private boolean localRepair;
   // the number of xmits used by the re-construction task.
   private final int xmits;
   // The buffers and indices for striped blocks whose length is 0
@@ -98,37 +105,119 @@ class StripedReader {
     this.datanode = datanode;
     this.conf = conf;
 
-    dataBlkNum = stripedReconInfo.getEcPolicy().getNumDataUnits();
-    parityBlkNum = stripedReconInfo.getEcPolicy().getNumParityUnits();
+    ErasureCodingPolicy ecPolicy = stripedReconInfo.getEcPolicy();
+    dataBlkNum = ecPolicy.getNumDataUnits();
+    parityBlkNum = ecPolicy.getNumParityUnits();
 
     int cellsNum = (int) ((stripedReconInfo.getBlockGroup().getNumBytes() - 1)
-        / stripedReconInfo.getEcPolicy().getCellSize() + 1);
-    minRequiredSources = Math.min(cellsNum, dataBlkNum);
+        / ecPolicy.getCellSize() + 1);
+    int requiredSources = Math.min(cellsNum, dataBlkNum);
 
-    if (minRequiredSources < dataBlkNum) {
-      int zeroStripNum = dataBlkNum - minRequiredSources;
+    if (requiredSources < dataBlkNum) {
+      int zeroStripNum = dataBlkNum - requiredSources;
       zeroStripeBuffers = new ByteBuffer[zeroStripNum];
       zeroStripeIndices = new short[zeroStripNum];
     }
 
+    this.liveIndices = stripedReconInfo.getLiveIndices().clone();
+    this.sources = stripedReconInfo.getSources().clone();
+    Preconditions.checkArgument(liveIndices.length == sources.length,
+        "liveBlockIndices and source datanodes should match");
+
+    // A Locally Repairable Code is not MDS, read the sources most likely to
+    // be decoded from first, and only the local groups of the blocks to
+    // reconstruct if they are enough.
+    int[] localRepairIndices = null;
+    if (StripedBlockUtil.isLocallyRepairable(ecPolicy)) {
+      localRepairIndices = getLocalRepairIndices(stripedReconInfo);
+      StripedBlockUtil.sortSources(liveIndices, sources,
+          StripedBlockUtil.getLocalRepairRanks(ecPolicy, localRepairIndices));
+      if (!canDecodeFromDataBlkNumSources()) {
+        requiredSources = sources.length;
+      }
+    }
+    fullRequiredSources = requiredSources;
+    localRepair = localRepairIndices != null;
+    minRequiredSources = localRepair ? localRepairIndices.length :
+        fullRequiredSources;
+
     // It is calculated by the maximum number of connections from either sources
     // or targets.
     xmits = Math.max(minRequiredSources,
         stripedReconInfo.getTargets() != null ?
         stripedReconInfo.getTargets().length : 0);
 
-    this.liveIndices = stripedReconInfo.getLiveIndices();
-    assert liveIndices != null;
-    this.sources = stripedReconInfo.getSources();
-    assert sources != null;
-
     readers = new ArrayList<>(sources.length);
     readService = reconstructor.createReadService();
 
     Preconditions.checkArgument(liveIndices.length >= minRequiredSources,
         "No enough live striped blocks.");
-    Preconditions.checkArgument(liveIndices.length == sources.length,
-        "liveBlockIndices and source datanodes should match");
+  }
+
+  /**
+   * @return the blocks to read if the blocks to reconstruct can be
+   *         reconstructed from the live blocks of their local groups,
+   *         otherwise null.
+   */
+  private int[] getLocalRepairIndices(StripedReconstructionInfo info) {
+    BitSet liveBitSet = reconstructor.getLiveBitSet();
+    int[] erasedIndices;
+    if (info.getTargetIndices() != null) {
+      erasedIndices = new int[info.getTargetIndices().length];
+      for (int i = 0; i < erasedIndices.length; i++) {
+        erasedIndices[i] = info.getTargetIndices()[i];
+      }
+    } else {
+      // The same blocks as StripedWriter reconstructs.
+      int numTargets = info.getTargets().length;
+      BitSet excludeBitSet = reconstructor.getExcludeBitSet();
+      erasedIndices = new int[numTargets];
+      int m = 0;
+      for (int i = 0; i < dataBlkNum + parityBlkNum && m < numTargets; i++) {
+        if (!liveBitSet.get(i) && !excludeBitSet.get(i)
+            && reconstructor.getBlockLen(i) > 0) {
+          erasedIndices[m++] = i;
+        }
+      }
+      erasedIndices = Arrays.copyOf(erasedIndices, m);
+    }
+
+    int[] repairIndices = StripedBlockUtil.getLocalRepairIndices(
+        info.getEcPolicy(), info.getBlockGroup().getNumBytes(),
+        erasedIndices);
+    if (repairIndices == null) {
+      return null;
+    }
+    for (int index : repairIndices) {
+      if (!liveBitSet.get(index)) {
+        return null;
+      }
+    }
+    return repairIndices;
+  }
+
+  /**
+   * @return whether the blocks of a Locally Repairable Code can be
+   *         reconstructed from as many sources as for an RS code, which are
+   *         data and global parity blocks as long as no more of those are
+   *         missing than there are global parity blocks.
+   */
+  private boolean canDecodeFromDataBlkNumSources() {
+    BitSet liveBitSet = reconstructor.getLiveBitSet();
+    int numGlobal = 0;
+    int missing = 0;
+    for (int i = 0; i < dataBlkNum + parityBlkNum; i++) {
+      boolean global = i >= dataBlkNum
+          && LRCUtil.getLocalGroup(dataBlkNum, parityBlkNum, i) < 0;
+      if (global) {
+        numGlobal++;
+      }
+      if ((i < dataBlkNum || global) && !liveBitSet.get(i)
+          && reconstructor.getBlockLen(i) > 0) {
+        missing++;
+      }
+    }
+    return missing <= numGlobal;
   }
 
   void init() throws IOException {
@@ -144,18 +233,31 @@ private void initReaders() throws IOException {
     // In each iteration of read, the successList list may be updated if
     // some source DN is corrupted or slow. And use the updated successList
     // list of DNs for next iteration read.
-    successList = new int[minRequiredSources];
+    successList = new int[sources.length];
+    final long offsetInBlock = reconstructor.getPositionInBlock();
 
     StripedBlockReader reader;
     int nSuccess = 0;
     for (int i = 0; i < sources.length && nSuccess < minRequiredSources; i++) {
-      reader = createReader(i, 0);
-      readers.add(reader);
+      if (i < readers.size()) {
+        // Reopened after a combined read, see closeReaders().
+        reader = readers.get(i);
+        reader.resetBlockReader(offsetInBlock);
+      } else {
+        reader = createReader(i, offsetInBlock);
+        readers.add(reader);
+      }
       if (reader.getBlockReader() != null) {
         initOrVerifyChecksum(reader);
         successList[nSuccess++] = i;
+      } else if (offsetInBlock >= reconstructor.getBlockLen(liveIndices[i])) {
+        // Nothing is left to read from the source.
+        successList[nSuccess++] = i;
+      } else if (localRepair) {
+        fallBackToFullRepair();
       }
     }
+    successList = Arrays.copyOf(successList, nSuccess);
 
     if (nSuccess < minRequiredSources) {
       String error = "Can't find minimum sources required by "
@@ -165,6 +267,44 @@ private void initReaders() throws IOException {
     }
   }
 
+  /**
+   * Close the connections to the sources while the blocks are reconstructed
+   * from a combined read, see {@link StripedCombinedReader}.
+   */
+  void closeReaders() {
+    for (StripedBlockReader reader : readers) {
+      reader.closeBlockReader();
+    }
+  }
+
+  /**
+   * Reopen the connections to the sources at the position in block, after
+   * {@link #closeReaders()}.
+   */
+  void reopenReaders() throws IOException {
+    initReaders();
+  }
+
+  /**
+   * @return the datanodes of the sources read from, indexed by block index,
+   *         null for the other blocks.
+   */
+  DatanodeInfo[] getSuccessSources() {
+    DatanodeInfo[] successSources =
+        new DatanodeInfo[dataBlkNum + parityBlkNum];
+    for (int i : successList) {
+      successSources[liveIndices[i]] = sources[i];
+    }
+    return successSources;
+  }
+
+  /**
+   * @return the indices of the blocks of length 0, or null.
+   */
+  short[] getZeroStripeIndices() {
+    return zeroStripeIndices;
+  }
+
   StripedBlockReader createReader(int idxInSources, long offsetInBlock) {
     return new StripedBlockReader(this, datanode,
         conf, liveIndices[idxInSources],
@@ -229,7 +369,7 @@ ByteBuffer[] getInputBuffers(int toReconstructLen) {
       inputs[reader.getIndex()] = (ByteBuffer)buffer.flip();
     }
 
-    if (successList.length < dataBlkNum) {
+    if (zeroStripeBuffers != null) {
       for (int i = 0; i < zeroStripeBuffers.length; i++) {
         ByteBuffer buffer = zeroStripeBuffers[i];
         paddingBufferToLen(buffer, toReconstructLen);
@@ -280,7 +420,7 @@ int[] doReadMinimumSources(int reconstructLength,
     Preconditions.checkArgument(reconstructLength >= 0 &&
         reconstructLength <= bufferSize);
     int nSuccess = 0;
-    int[] newSuccess = new int[minRequiredSources];
+    int[] newSuccess = new int[sources.length];
     BitSet usedFlag = new BitSet(sources.length);
     /*
      * Read from minimum source DNs required, the success list contains
@@ -325,14 +465,30 @@ int[] doReadMinimumSources(int reconstructLength,
         }
         if (resultIndex >= 0) {
           newSuccess[nSuccess++] = resultIndex;
-          if (nSuccess >= minRequiredSources) {
-            // cancel remaining reads if we read successfully from minimum
-            // number of source DNs required by reconstruction.
-            cancelReads(futures.keySet());
-            clearFuturesAndService();
-            break;
+        }
+        if (localRepair &&
+            result.state != StripingChunkReadResult.SUCCESSFUL) {
+          // The rest of the local groups can't make up for a failed or slow
+          // source, read as many sources as without local repair.
+          fallBackToFullRepair();
+          while (nSuccess + futures.size() < minRequiredSources) {
+            int numFutures = futures.size();
+            resultIndex = scheduleNewRead(usedFlag,
+                reconstructLength, corruptedBlocks);
+            if (resultIndex >= 0) {
+              newSuccess[nSuccess++] = resultIndex;
+            } else if (futures.size() == numFutures) {
+              break; // No more sources to read from.
+            }
           }
         }
+        if (nSuccess >= minRequiredSources) {
+          // cancel remaining reads if we read successfully from minimum
+          // number of source DNs required by reconstruction.
+          cancelReads(futures.keySet());
+          clearFuturesAndService();
+          break;
+        }
       } catch (InterruptedException e) {
         LOG.info("Read data interrupted.", e);
         cancelReads(futures.keySet());
@@ -348,7 +504,19 @@ int[] doReadMinimumSources(int reconstructLength,
       throw new IOException(error);
     }
 
-    return newSuccess;
+    return Arrays.copyOf(newSuccess, nSuccess);
+  }
+
+  /**
+   * Stop reconstructing from the local groups only, after some of their
+   * sources failed.
+   */
+  private void fallBackToFullRepair() {
+    LOG.info("Can't reconstruct from the local groups of block group {}, "
+        + "reading from {} sources", reconstructor.getBlockGroup(),
+        fullRequiredSources);
+    localRepair = false;
+    minRequiredSources = fullRequiredSources;
   }
 
   /**
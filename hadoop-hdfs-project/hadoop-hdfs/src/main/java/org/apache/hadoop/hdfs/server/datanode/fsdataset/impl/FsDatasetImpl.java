@@ -79,6 +79,7 @@
 import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
 import org.apache.hadoop.hdfs.server.common.Storage;
 import org.apache.hadoop.hdfs.server.datanode.BlockMetadataHeader;
+import org.apache.hadoop.hdfs.server.datanode.BlockReadCache;
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
 import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetricHelper;
 import org.apache.hadoop.hdfs.server.datanode.DataStorage;
@@ -2408,6 +2409,7 @@ public void invalidate(String bpid, ReplicaInfo block) {
 
     // If the block is cached, start uncaching it.
     cacheManager.uncacheBlock(bpid, block.getBlockId());
+    invalidateBlockReadCache(new ExtendedBlockId(block.getBlockId(), bpid));
 
     datanode.notifyNamenodeDeletedBlock(new ExtendedBlock(bpid, block),
         block.getStorageUuid());
@@ -2530,9 +2532,18 @@ boolean removeReplicaFromMem(final ExtendedBlock block, final FsVolumeImpl volum
 
     // If the block is cached, start uncaching it.
     cacheManager.uncacheBlock(bpid, blockId);
+    invalidateBlockReadCache(ExtendedBlockId.fromExtendedBlock(block));
     return true;
   }
 
+  /** Drop the block from the automatic block read cache, if enabled. */
+  private void invalidateBlockReadCache(ExtendedBlockId key) {
+    final BlockReadCache readCache = datanode.getBlockReadCache();
+    if (readCache != null) {
+      readCache.invalidate(key);
+    }
+  }
+
   /**
    * Asynchronously attempts to cache a single block via {@link FsDatasetCache}.
    */
@@ -128,6 +128,7 @@ public class DataNodeMetrics {
   @Metric MutableRate blockChecksumOp;
   @Metric MutableRate copyBlockOp;
   @Metric MutableRate replaceBlockOp;
+  @Metric MutableRate readCombinedBlocksOp;
   @Metric MutableRate heartbeats;
   @Metric MutableRate heartbeatsTotal;
   @Metric MutableRate lifelines;
@@ -179,6 +180,10 @@ public class DataNodeMetrics {
   private MutableCounterLong ecReconstructionWriteTimeMillis;
   @Metric("Milliseconds spent on validating by erasure coding worker")
   private MutableCounterLong ecReconstructionValidateTimeMillis;
+  @Metric("Stripes reconstructed from reads combined by the sources")
+  private MutableCounterLong ecCombinedReadStripes;
+  @Metric("Combined reads falling back to reading the sources one by one")
+  private MutableCounterLong ecCombinedReadFallbacks;
   @Metric("Sum of all BPServiceActors command queue length")
   private MutableCounterLong sumOfActorCommandQueueLength;
   @Metric("Num of processed commands of all BPServiceActors")
@@ -188,6 +193,17 @@ public class DataNodeMetrics {
   @Metric("Number of blocks in IBRs that failed due to null storage")
   private MutableCounterLong nullStorageBlockReports;
 
+  @Metric("Number of block reads served from the block read cache")
+  private MutableCounterLong blockReadCacheHits;
+  @Metric("Number of block reads not found in the block read cache")
+  private MutableCounterLong blockReadCacheMisses;
+  @Metric("Number of blocks admitted to the block read cache")
+  private MutableCounterLong blockReadCacheAdmissions;
+  @Metric("Number of blocks refused by the block read cache admission policy")
+  private MutableCounterLong blockReadCacheRejections;
+  @Metric("Number of blocks evicted from the block read cache")
+  private MutableCounterLong blockReadCacheEvictions;
+
   // FsDatasetImpl local file process metrics.
   @Metric private MutableRate createRbwOp;
   @Metric private MutableRate recoverRbwOp;
@@ -388,6 +404,26 @@ public void incrBlocksUncached(int delta) {
     blocksUncached.incr(delta);
   }
 
+  public void incrBlockReadCacheHits() {
+    blockReadCacheHits.incr();
+  }
+
+  public void incrBlockReadCacheMisses() {
+    blockReadCacheMisses.incr();
+  }
+
+  public void incrBlockReadCacheAdmissions() {
+    blockReadCacheAdmissions.incr();
+  }
+
+  public void incrBlockReadCacheRejections() {
+    blockReadCacheRejections.incr();
+  }
+
+  public void incrBlockReadCacheEvictions() {
+    blockReadCacheEvictions.incr();
+  }
+
   public void addReadBlockOp(long latency) {
     readBlockOp.add(latency);
   }
@@ -408,6 +444,10 @@ public void addBlockChecksumOp(long latency) {
     blockChecksumOp.add(latency);
   }
 
+  public void addReadCombinedBlocksOp(long latency) {
+    readCombinedBlocksOp.add(latency);
+  }
+
   public void incrBytesRead(int delta) {
     bytesRead.incr(delta);
   }
@@ -704,6 +744,14 @@ public void incrECReconstructionValidateTime(long millis) {
     ecReconstructionValidateTimeMillis.incr(millis);
   }
 
+  public void incrECCombinedReadStripes() {
+    ecCombinedReadStripes.incr();
+  }
+
+  public void incrECCombinedReadFallbacks() {
+    ecCombinedReadFallbacks.incr();
+  }
+
   public DataNodeUsageReport getDNUsageReport(long timeSinceLastReport) {
     return dnUsageReportUtil.getUsageReport(bytesWritten.value(), bytesRead
             .value(), totalWriteTime.value(), totalReadTime.value(),
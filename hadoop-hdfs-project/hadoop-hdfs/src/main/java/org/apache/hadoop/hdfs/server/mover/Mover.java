@@ -57,6 +57,7 @@
 
 import org.apache.hadoop.classification.VisibleForTesting;
 import org.apache.hadoop.thirdparty.com.google.common.collect.Maps;
+import org.apache.hadoop.thirdparty.com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,13 +66,19 @@
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 @InterfaceAudience.Private
 public class Mover {
@@ -124,6 +131,11 @@ private List<StorageGroup> getTargetStorages(StorageType t) {
   private final Map<Long, Set<DatanodeInfo>> excludedPinnedBlocks;
   private final MoverMetrics metrics;
   private final NameNodeConnector nnc;
+  private final int walkerThreads;
+  private final int walkerQueueSize;
+  private final String checkpointPath;
+  private final long checkpointInterval;
+  private MoverCheckpoint checkpoint;
 
   private final BlockStoragePolicy[] blockStoragePolicies;
 
@@ -163,10 +175,27 @@ Collections.<String> emptySet(), movedWinWidth, moverThreads, 0,
     this.excludedPinnedBlocks = excludedPinnedBlocks;
     this.nnc = nnc;
     this.metrics = MoverMetrics.create(this);
+    this.walkerThreads = conf.getInt(
+        DFSConfigKeys.DFS_MOVER_NAMESPACE_WALKER_THREADS_KEY,
+        DFSConfigKeys.DFS_MOVER_NAMESPACE_WALKER_THREADS_DEFAULT);
+    this.walkerQueueSize = conf.getInt(
+        DFSConfigKeys.DFS_MOVER_NAMESPACE_WALKER_QUEUE_SIZE_KEY,
+        DFSConfigKeys.DFS_MOVER_NAMESPACE_WALKER_QUEUE_SIZE_DEFAULT);
+    this.checkpointPath = conf.getTrimmed(
+        DFSConfigKeys.DFS_MOVER_CHECKPOINT_PATH_KEY,
+        DFSConfigKeys.DFS_MOVER_CHECKPOINT_PATH_DEFAULT);
+    this.checkpointInterval = conf.getTimeDuration(
+        DFSConfigKeys.DFS_MOVER_CHECKPOINT_INTERVAL_KEY,
+        DFSConfigKeys.DFS_MOVER_CHECKPOINT_INTERVAL_DEFAULT,
+        TimeUnit.MILLISECONDS);
   }
 
   void init() throws IOException {
     initStoragePolicies();
+    if (!checkpointPath.isEmpty()) {
+      checkpoint = MoverCheckpoint.load(dispatcher.getDistributedFileSystem(),
+          new Path(checkpointPath), checkpointInterval);
+    }
     final List<DatanodeStorageReport> reports = dispatcher.init();
     for(DatanodeStorageReport r : reports) {
       final DDatanode dn = dispatcher.newDatanode(r.getDatanodeInfo());
@@ -191,7 +220,12 @@ private void initStoragePolicies() throws IOException {
   private ExitStatus run() {
     try {
       init();
-      return new Processor().processNamespace().getExitStatus();
+      final ExitStatus status =
+          new Processor().processNamespace().getExitStatus();
+      if (status == ExitStatus.SUCCESS && checkpoint != null) {
+        checkpoint.delete();
+      }
+      return status;
     } catch (IllegalArgumentException e) {
       System.out.println(e + ".  Exiting ...");
       return ExitStatus.ILLEGAL_ARGUMENTS;
@@ -278,6 +312,11 @@ private static String convertSnapshotPath(String[] pathComponents) {
   class Processor {
     private final DFSClient dfs;
     private final List<String> snapshottableDirs = new ArrayList<String>();
+    private final AtomicReference<RuntimeException> walkFailure =
+        new AtomicReference<>();
+    private Result result;
+    private ExecutorService walkers;
+    private CountDownLatch walked;
 
     Processor() {
       dfs = dispatcher.getDistributedFileSystem().getClient();
@@ -325,9 +364,14 @@ private boolean isSnapshotPathInCurrent(String path) throws IOException {
     private Result processNamespace() throws IOException {
       metrics.setProcessingNamespace(true);
       getSnapshottableDirs();
-      Result result = new Result();
-      for (Path target : targetPaths) {
-        processPath(target.toUri().getPath(), result);
+      result = new Result();
+      walkNamespace();
+      if (checkpoint != null) {
+        try {
+          checkpoint.save();
+        } catch (IOException e) {
+          LOG.warn("Failed to save the checkpoint. Ignore and continue.", e);
+        }
       }
       // wait for pending move to finish and retry the failed migration
       boolean hasFailed = Dispatcher.waitForMoveCompletion(storages.targets
@@ -355,10 +399,108 @@ private Result processNamespace() throws IOException {
     }
 
     /**
-     * @return whether there is still remaing migration work for the next
-     *         round
+     * Walk the target paths and schedule the moves of their blocks. The
+     * directories are listed by the walker threads if there are more than
+     * one; the moves are scheduled one file at a time.
      */
-    private void processPath(String fullPath, Result result) {
+    private void walkNamespace() throws IOException {
+      walked = new CountDownLatch(targetPaths.size());
+      if (walkerThreads > 1) {
+        walkers = new ThreadPoolExecutor(walkerThreads, walkerThreads,
+            0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<Runnable>(walkerQueueSize),
+            new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("Mover-NamespaceWalker-%d").build(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+      }
+      try {
+        for (Path target : targetPaths) {
+          walk(new DirTask(target.toUri().getPath(), null));
+        }
+        walked.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            "Interrupted while walking the namespace");
+      } finally {
+        if (walkers != null) {
+          walkers.shutdownNow();
+          walkers = null;
+        }
+      }
+      if (walkFailure.get() != null) {
+        throw walkFailure.get();
+      }
+    }
+
+    private void walk(DirTask dir) {
+      if (dir.parent != null) {
+        dir.parent.pending.incrementAndGet();
+      }
+      if (walkers != null) {
+        // runs in the calling thread when the queue is full
+        walkers.execute(dir);
+      } else {
+        dir.run();
+      }
+    }
+
+    /**
+     * A directory to walk. It is complete once it is listed and all its
+     * subdirectories are complete, and clean if no block of its subtree is
+     * left to move.
+     */
+    private class DirTask implements Runnable {
+      private final String path;
+      private final DirTask parent;
+      /** The listing of the directory plus its incomplete subdirectories. */
+      private final AtomicInteger pending = new AtomicInteger(1);
+      private volatile boolean clean = true;
+
+      DirTask(String path, DirTask parent) {
+        this.path = path;
+        this.parent = parent;
+      }
+
+      @Override
+      public void run() {
+        try {
+          if (walkFailure.get() != null) {
+            clean = false;
+          } else if (checkpoint == null || !checkpoint.contains(path)) {
+            processPath(this);
+          }
+        } catch (RuntimeException e) {
+          clean = false;
+          walkFailure.compareAndSet(null, e);
+        } finally {
+          arrive(true);
+        }
+      }
+
+      private void arrive(boolean subdirClean) {
+        if (!subdirClean) {
+          clean = false;
+        }
+        if (pending.decrementAndGet() == 0) {
+          if (clean && checkpoint != null) {
+            checkpoint.add(path);
+          }
+          if (parent != null) {
+            parent.arrive(clean);
+          } else {
+            walked.countDown();
+          }
+        }
+      }
+    }
+
+    /**
+     * List the directory, with the block locations of its files, and process
+     * its children.
+     */
+    private void processPath(DirTask dir) {
+      final String fullPath = dir.path;
       for (byte[] lastReturnedName = HdfsFileStatus.EMPTY_NAME;;) {
         final DirectoryListing children;
         try {
@@ -366,13 +508,15 @@ private void processPath(String fullPath, Result result) {
         } catch(IOException e) {
           LOG.warn("Failed to list directory " + fullPath
               + ". Ignore the directory and continue.", e);
+          dir.clean = false;
           return;
         }
         if (children == null) {
+          dir.clean = false;
           return;
         }
         for (HdfsFileStatus child : children.getPartialListing()) {
-          processRecursively(fullPath, child, result);
+          processRecursively(dir, child);
         }
         if (children.hasMore()) {
           lastReturnedName = children.getLastName();
@@ -382,38 +526,44 @@ private void processPath(String fullPath, Result result) {
       }
     }
 
-    /** @return whether the migration requires next round */
-    private void processRecursively(String parent, HdfsFileStatus status,
-        Result result) {
-      String fullPath = status.getFullName(parent);
+    private void processRecursively(DirTask dir, HdfsFileStatus status) {
+      String fullPath = status.getFullName(dir.path);
       if (status.isDirectory()) {
         if (!fullPath.endsWith(Path.SEPARATOR)) {
           fullPath = fullPath + Path.SEPARATOR;
         }
 
-        processPath(fullPath, result);
+        walk(new DirTask(fullPath, dir));
         // process snapshots if this is a snapshottable directory
         if (snapshottableDirs.contains(fullPath)) {
-          final String dirSnapshot = fullPath + HdfsConstants.DOT_SNAPSHOT_DIR;
-          processPath(dirSnapshot, result);
+          final String dirSnapshot = fullPath + HdfsConstants.DOT_SNAPSHOT_DIR
+              + Path.SEPARATOR;
+          walk(new DirTask(dirSnapshot, dir));
         }
       } else if (!status.isSymlink()) { // file
         try {
           if (!isSnapshotPathInCurrent(fullPath)) {
             // the full path is a snapshot path but it is also included in the
             // current directory tree, thus ignore it.
-            processFile(fullPath, (HdfsLocatedFileStatus) status, result);
+            if (!processFile(fullPath, (HdfsLocatedFileStatus) status,
+                result)) {
+              dir.clean = false;
+            }
             metrics.incrFilesProcessed();
           }
         } catch (IOException e) {
-          LOG.warn("Failed to check the status of " + parent
+          LOG.warn("Failed to check the status of " + dir.path
               + ". Ignore it and continue.", e);
+          dir.clean = false;
         }
       }
     }
 
-    /** @return true if it is necessary to run another round of migration */
-    private void processFile(String fullPath, HdfsLocatedFileStatus status,
+    /**
+     * @return whether all the blocks of the file satisfy its storage policy
+     *         or can not be moved by the Mover.
+     */
+    private boolean processFile(String fullPath, HdfsLocatedFileStatus status,
         Result result) {
       byte policyId = status.getStoragePolicy();
       if (policyId == HdfsConstants.BLOCK_STORAGE_POLICY_ID_UNSPECIFIED) {
@@ -422,13 +572,13 @@ private void processFile(String fullPath, HdfsLocatedFileStatus status,
           policyId = dfs.getServerDefaults().getDefaultStoragePolicyId();
         } catch (IOException e) {
           LOG.warn("Failed to get default policy for " + fullPath, e);
-          return;
+          return false;
         }
       }
       final BlockStoragePolicy policy = blockStoragePolicies[policyId];
       if (policy == null) {
         LOG.warn("Failed to get the storage policy of file " + fullPath);
-        return;
+        return false;
       }
       List<StorageType> types = policy.chooseStorageTypes(
           status.getReplication());
@@ -437,6 +587,7 @@ private void processFile(String fullPath, HdfsLocatedFileStatus status,
       final LocatedBlocks locatedBlocks = status.getLocatedBlocks();
       final boolean lastBlkComplete = locatedBlocks.isLastBlockComplete();
       List<LocatedBlock> lbs = locatedBlocks.getLocatedBlocks();
+      boolean satisfied = lastBlkComplete;
       for (int i = 0; i < lbs.size(); i++) {
         if (i == lbs.size() - 1 && !lastBlkComplete) {
           // last block is incomplete, skip it
@@ -455,12 +606,13 @@ private void processFile(String fullPath, HdfsLocatedFileStatus status,
             LOG.warn("The storage policy " + policy.getName()
                 + " is not suitable for Striped EC files. "
                 + "So, Ignoring to move the blocks");
-            return;
+            return true;
           }
         }
         final StorageTypeDiff diff = new StorageTypeDiff(types,
             lb.getStorageTypes());
         if (!diff.removeOverlap(true)) {
+          satisfied = false;
           if (scheduleMoves4Block(diff, lb, ecPolicy)) {
             result.updateHasRemaining(diff.existing.size() > 1
                 && diff.expected.size() > 1);
@@ -471,9 +623,14 @@ private void processFile(String fullPath, HdfsLocatedFileStatus status,
           }
         }
       }
+      return satisfied;
     }
 
-    boolean scheduleMoves4Block(StorageTypeDiff diff, LocatedBlock lb,
+    /**
+     * Schedule the move of a replica of the block. Synchronized since the
+     * files are processed by the namespace walker threads.
+     */
+    synchronized boolean scheduleMoves4Block(StorageTypeDiff diff, LocatedBlock lb,
                                 ErasureCodingPolicy ecPolicy) {
       final List<MLocation> locations = MLocation.toLocations(lb);
       if (!(lb instanceof LocatedStripedBlock)) {
@@ -874,23 +1031,23 @@ private static class Result {
       retryFailed = false;
     }
 
-    boolean isHasRemaining() {
+    synchronized boolean isHasRemaining() {
       return hasRemaining;
     }
 
-    boolean isNoBlockMoved() {
+    synchronized boolean isNoBlockMoved() {
       return noBlockMoved;
     }
 
-    void updateHasRemaining(boolean hasRemaining) {
+    synchronized void updateHasRemaining(boolean hasRemaining) {
       this.hasRemaining |= hasRemaining;
     }
 
-    void setNoBlockMoved(boolean noBlockMoved) {
+    synchronized void setNoBlockMoved(boolean noBlockMoved) {
       this.noBlockMoved = noBlockMoved;
     }
 
-    void setRetryFailed() {
+    synchronized void setRetryFailed() {
       this.retryFailed = true;
     }
 
@@ -901,7 +1058,7 @@ void setRetryFailed() {
      *         cannot be scheduled. Otherwise, return IN_PROGRESS since there
      *         must be some remaining moves.
      */
-    ExitStatus getExitStatus() {
+    synchronized ExitStatus getExitStatus() {
       if (retryFailed) {
         return ExitStatus.NO_MOVE_PROGRESS;
       } else {
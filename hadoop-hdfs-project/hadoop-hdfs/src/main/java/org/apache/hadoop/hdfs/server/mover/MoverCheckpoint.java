@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.mover;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.classification.VisibleForTesting;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.util.Time;
+
+/**
+ * The directories of the namespace whose subtree needs no more block moves,
+ * persisted in a file of the namespace so that a {@link Mover} restarted
+ * after a failure, as well as the next rounds of the same run, skip them.
+ *
+ * The file has one directory per line. Only the topmost directories are
+ * written, since the subdirectories of a directory are never walked.
+ * The file is deleted once all the blocks satisfy their storage policy.
+ * A directory whose storage policy was changed since it was recorded is not
+ * walked again as long as the file exists; delete it to force a full walk.
+ */
+@InterfaceAudience.Private
+class MoverCheckpoint {
+  private final DistributedFileSystem dfs;
+  private final Path path;
+  private final long saveInterval;
+
+  private final Set<String> done = ConcurrentHashMap.newKeySet();
+  private long lastSave;
+  private volatile boolean dirty = false;
+
+  private MoverCheckpoint(DistributedFileSystem dfs, Path path,
+      long saveInterval) {
+    this.dfs = dfs;
+    this.path = path;
+    this.saveInterval = saveInterval;
+    this.lastSave = Time.monotonicNow();
+  }
+
+  /**
+   * Load the checkpoint from the given file, if it exists.
+   *
+   * @param dfs the file system of the namespace to migrate.
+   * @param path the path of the checkpoint file.
+   * @param saveInterval the minimum time between two saves, in ms.
+   */
+  static MoverCheckpoint load(DistributedFileSystem dfs, Path path,
+      long saveInterval) throws IOException {
+    final MoverCheckpoint checkpoint =
+        new MoverCheckpoint(dfs, path, saveInterval);
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+        dfs.open(path), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isEmpty()) {
+          checkpoint.done.add(line);
+        }
+      }
+      Mover.LOG.info("Loaded {} completed directories from {}",
+          checkpoint.done.size(), path);
+    } catch (FileNotFoundException e) {
+      // first run
+    }
+    return checkpoint;
+  }
+
+  /** @return whether the subtree of the directory needs no more moves. */
+  boolean contains(String dir) {
+    return done.contains(dir);
+  }
+
+  /**
+   * Record that the subtree of the directory needs no more moves, and save
+   * the checkpoint if the save interval elapsed.
+   */
+  void add(String dir) {
+    if (done.add(dir)) {
+      dirty = true;
+    }
+    if (Time.monotonicNow() - lastSave >= saveInterval) {
+      try {
+        save();
+      } catch (IOException e) {
+        Mover.LOG.warn("Failed to save the checkpoint to " + path
+            + ". Ignore and continue.", e);
+      }
+    }
+  }
+
+  /** Write the topmost completed directories to the checkpoint file. */
+  synchronized void save() throws IOException {
+    if (!dirty) {
+      return;
+    }
+    dirty = false;
+    final Path tmp = path.suffix(".tmp");
+    int count = 0;
+    try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+        dfs.create(tmp, true), StandardCharsets.UTF_8))) {
+      for (String dir : done) {
+        if (!done.contains(getParent(dir))) {
+          writer.write(dir);
+          writer.newLine();
+          count++;
+        }
+      }
+    }
+    dfs.rename(tmp, path, Options.Rename.OVERWRITE);
+    lastSave = Time.monotonicNow();
+    Mover.LOG.info("Saved {} completed directories to {}", count, path);
+  }
+
+  /** Delete the checkpoint file once the migration is complete. */
+  void delete() throws IOException {
+    done.clear();
+    dirty = false;
+    dfs.delete(path, false);
+  }
+
+  /**
+   * @return the parent of a directory walked by the Mover, e.g. /foo/ for
+   *         /foo/bar/ and /foo/.snapshot/.
+   */
+  @VisibleForTesting
+  static String getParent(String dir) {
+    final int end = dir.endsWith(Path.SEPARATOR) ? dir.length() - 1
+        : dir.length();
+    final int i = dir.lastIndexOf(Path.SEPARATOR_CHAR, end - 1);
+    return i < 0 ? "" : dir.substring(0, i + 1);
+  }
+
+  @VisibleForTesting
+  int size() {
+    return done.size();
+  }
+}
@@ -32,6 +32,7 @@
 
 import org.apache.hadoop.io.erasurecode.CodecUtil;
 import org.apache.hadoop.io.erasurecode.ErasureCodeConstants;
+import org.apache.hadoop.io.erasurecode.rawcoder.util.LRCUtil;
 import org.apache.hadoop.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -311,6 +312,11 @@ public synchronized ErasureCodingPolicy addPolicy(
           blocksInGroup + " should not exceed maximum " + HdfsServerConstants.MAX_BLOCKS_IN_GROUP);
     }
 
+    if (policy.getCodecName().equals(ErasureCodeConstants.LRC_CODEC_NAME)) {
+      LRCUtil.checkLayout(policy.getNumDataUnits(),
+          policy.getNumParityUnits());
+    }
+
     if (policy.getCellSize() > maxCellSize) {
       throw new HadoopIllegalArgumentException("Cell size " +
           policy.getCellSize() + " should not exceed maximum " +
@@ -83,6 +83,10 @@ public class NameNodeMetrics {
   MutableCounterLong snapshotDiffReportOps;
   @Metric("Number of blockReceivedAndDeleted calls")
   MutableCounterLong blockReceivedAndDeletedOps;
+  @Metric("Number of sorts of replicas at the same distance by read load")
+  MutableCounterLong readLoadSortOps;
+  @Metric("Number of read load sorts that changed the first replica")
+  MutableCounterLong readLoadSortReorderedOps;
   @Metric("Number of blockReports and blockReceivedAndDeleted queued")
   MutableGaugeInt blockOpsQueued;
   @Metric("Number of blockReports and blockReceivedAndDeleted batch processed")
@@ -341,6 +345,14 @@ public void incrBlockReceivedAndDeletedOps() {
     blockReceivedAndDeletedOps.incr();
   }
 
+  public void incrReadLoadSortOps() {
+    readLoadSortOps.incr();
+  }
+
+  public void incrReadLoadSortReorderedOps() {
+    readLoadSortReorderedOps.incr();
+  }
+
   public void setBlockOpsQueued(int size) {
     blockOpsQueued.set(size);
   }
@@ -17,13 +17,23 @@
  */
 package org.apache.hadoop.hdfs.server.namenode.sps;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.util.Daemon;
@@ -39,6 +49,11 @@
  * schedule the block collection IDs for movement. It track the info of
  * scheduled items and remove the SPS xAttr from the file/Directory once
  * movement is success.
+ *
+ * The ids of the paths fetched from the namenode and not satisfied yet can be
+ * persisted, as a list of longs, in a local file. They are then resumed after
+ * a restart instead of waiting for the namenode to hand them out again, and
+ * skipped when a namenode hands them out again after a failover.
  */
 @InterfaceAudience.Private
 public class BlockStorageMovementNeeded {
@@ -62,12 +77,30 @@ public class BlockStorageMovementNeeded {
 
   private SPSPathIdProcessor pathIDProcessor;
 
+  /** The paths fetched from the namenode and not satisfied yet. */
+  private final Set<Long> inflightPaths = new LinkedHashSet<>();
+
+  /** The inflight paths loaded from the file, to process first. */
+  private final Queue<Long> recoveredPaths = new LinkedList<>();
+
+  /** The file persisting the inflight paths, null if disabled. */
+  private final File inflightPathsFile;
+
   // Amount of time to cache the SUCCESS status of path before turning it to
   // NOT_AVAILABLE.
   private static long statusClearanceElapsedTimeMs = 300000;
 
   public BlockStorageMovementNeeded(Context context) {
+    this(context, null);
+  }
+
+  /**
+   * @param context the context of the SPS.
+   * @param inflightPathsFile the file persisting the inflight paths, or null.
+   */
+  public BlockStorageMovementNeeded(Context context, File inflightPathsFile) {
     this.ctxt = context;
+    this.inflightPathsFile = inflightPathsFile;
     pathIDProcessor = new SPSPathIdProcessor();
   }
 
@@ -157,6 +190,11 @@ public synchronized int size() {
   public synchronized void clearAll() {
     storageMovementNeeded.clear();
     pendingWorkForDirectory.clear();
+    recoveredPaths.clear();
+    if (!inflightPaths.isEmpty()) {
+      inflightPaths.clear();
+      saveInflightPaths();
+    }
   }
 
   /**
@@ -172,6 +210,7 @@ public synchronized void removeItemTrackInfo(ItemInfo trackInfo,
       if (!ctxt.isFileExist(startId)) {
         // directory deleted just remove it.
         this.pendingWorkForDirectory.remove(startId);
+        removeInflightPath(startId);
       } else {
         DirPendingWorkInfo pendingWork = pendingWorkForDirectory.get(startId);
         if (pendingWork != null) {
@@ -179,6 +218,7 @@ public synchronized void removeItemTrackInfo(ItemInfo trackInfo,
           if (pendingWork.isDirWorkDone()) {
             ctxt.removeSPSHint(startId);
             pendingWorkForDirectory.remove(startId);
+            removeInflightPath(startId);
           }
         }
       }
@@ -186,9 +226,104 @@ public synchronized void removeItemTrackInfo(ItemInfo trackInfo,
       // Remove xAttr if trackID doesn't exist in
       // storageMovementAttemptedItems or file policy satisfied.
       ctxt.removeSPSHint(trackInfo.getFile());
+      removeInflightPath(trackInfo.getFile());
+    }
+  }
+
+  /**
+   * @return the next path to satisfy, the recovered ones first, or null if
+   *         there is none. The paths already inflight are skipped.
+   */
+  @VisibleForTesting
+  Long getNextPath() {
+    Long path;
+    while ((path = pollPath()) != null) {
+      if (addInflightPath(path)) {
+        return path;
+      }
+      LOG.info("Skipping path {} handed out again, it is already inflight.",
+          path);
+    }
+    return null;
+  }
+
+  private Long pollPath() {
+    synchronized (this) {
+      Long path = recoveredPaths.poll();
+      if (path != null) {
+        // already inflight
+        inflightPaths.remove(path);
+        return path;
+      }
+    }
+    return ctxt.getNextSPSPath();
+  }
+
+  private synchronized boolean addInflightPath(long path) {
+    if (!inflightPaths.add(path)) {
+      return false;
+    }
+    saveInflightPaths();
+    return true;
+  }
+
+  private synchronized void removeInflightPath(long path) {
+    if (inflightPaths.remove(path)) {
+      saveInflightPaths();
+    }
+  }
+
+  /** Replace the file with the current inflight paths. */
+  private void saveInflightPaths() {
+    if (inflightPathsFile == null) {
+      return;
+    }
+    File tmp = new File(inflightPathsFile.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+        for (long path : inflightPaths) {
+          out.writeLong(path);
+        }
+      }
+      Files.move(tmp.toPath(), inflightPathsFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Failed to save the inflight SPS paths to "
+          + inflightPathsFile, e);
     }
   }
 
+  /** Load the inflight paths of the previous run from the file. */
+  @VisibleForTesting
+  synchronized void loadInflightPaths() {
+    if (inflightPathsFile == null || !inflightPathsFile.exists()) {
+      return;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        Files.newInputStream(inflightPathsFile.toPath())))) {
+      while (true) {
+        long path = in.readLong();
+        if (inflightPaths.add(path)) {
+          recoveredPaths.add(path);
+        }
+      }
+    } catch (EOFException e) {
+      // end of the file
+    } catch (IOException e) {
+      LOG.warn("Failed to load the inflight SPS paths from "
+          + inflightPathsFile, e);
+    }
+    LOG.info("Recovered {} inflight SPS paths from {}",
+        recoveredPaths.size(), inflightPathsFile);
+  }
+
+  @VisibleForTesting
+  synchronized Set<Long> getInflightPaths() {
+    return new LinkedHashSet<>(inflightPaths);
+  }
+
   /**
    * Clean all the movements in spsDirsToBeTraveresed/storageMovementNeeded
    * and notify to clean up required resources.
@@ -196,7 +331,8 @@ public synchronized void removeItemTrackInfo(ItemInfo trackInfo,
   public synchronized void clearQueuesWithNotification() {
     // Remove xAttr from directories
     Long trackId;
-    while ((trackId = ctxt.getNextSPSPath()) != null) {
+    while ((trackId = recoveredPaths.poll()) != null
+        || (trackId = ctxt.getNextSPSPath()) != null) {
       try {
         // Remove xAttr for file
         ctxt.removeSPSHint(trackId);
@@ -240,7 +376,7 @@ public void run() {
           if (!ctxt.isInSafeMode()) {
             if (startINode == null) {
               retryCount = 0;
-              startINode = ctxt.getNextSPSPath();
+              startINode = getNextPath();
             } // else same id will be retried
             if (startINode == null) {
               // Waiting for SPS path
@@ -256,9 +392,9 @@ public void run() {
                   ctxt.removeSPSHint(startINode);
                 } catch (FileNotFoundException e) {
                   // ignore if the file doesn't already exist
-                  startINode = null;
                 }
                 pendingWorkForDirectory.remove(startINode);
+                removeInflightPath(startINode);
               }
             }
             startINode = null; // Current inode successfully scanned.
@@ -280,6 +416,7 @@ public void run() {
           retryCount++;
           if (retryCount >= MAX_RETRY_COUNT) {
             LOG.warn("Skipping this inode {} due to too many retries.", startINode);
+            removeInflightPath(startINode);
             startINode = null;
           }
         }
@@ -327,6 +464,7 @@ public synchronized void markScanCompleted() {
   }
 
   public void activate() {
+    loadInflightPaths();
     pathIdCollector = new Daemon(pathIDProcessor);
     pathIdCollector.setName("SPSPathIdProcessor");
     pathIdCollector.start();
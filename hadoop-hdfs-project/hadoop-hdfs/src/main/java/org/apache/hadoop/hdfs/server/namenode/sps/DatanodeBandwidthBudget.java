@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.sps;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.classification.InterfaceAudience;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.server.protocol.BlockStorageMovementCommand.BlockMovingInfo;
+
+/**
+ * The bandwidth budget of the block moves scheduled from or to every
+ * datanode. A move is given a time slot on its source and target datanodes
+ * at once, so its delay is the longer of the waits of the two datanodes, not
+ * their sum.
+ */
+@InterfaceAudience.Private
+class DatanodeBandwidthBudget {
+  private final long bandwidthPerSec;
+  /** Map datanodeUuid -> the time the budget of the datanode is free. */
+  private final Map<String, Long> freeAt = new HashMap<>();
+
+  DatanodeBandwidthBudget(long bandwidthPerSec) {
+    this.bandwidthPerSec = bandwidthPerSec;
+  }
+
+  /**
+   * Reserve the budget of the sources and targets of the moves.
+   *
+   * @param moves the block moves of a file.
+   * @param now the current time in milliseconds.
+   * @return the time all the moves fit in the budget, no earlier than now.
+   */
+  synchronized long reserve(List<BlockMovingInfo> moves, long now) {
+    long start = now;
+    for (BlockMovingInfo move : moves) {
+      final DatanodeInfo source = move.getSource();
+      final DatanodeInfo target = move.getTarget();
+      final long moveStart = Math.max(now,
+          Math.max(getFreeAt(source), getFreeAt(target)));
+      final long end = moveStart
+          + move.getBlock().getNumBytes() * 1000 / bandwidthPerSec;
+      freeAt.put(source.getDatanodeUuid(), end);
+      freeAt.put(target.getDatanodeUuid(), end);
+      start = Math.max(start, moveStart);
+    }
+    return start;
+  }
+
+  private long getFreeAt(DatanodeInfo dn) {
+    final Long time = freeAt.get(dn.getDatanodeUuid());
+    return time != null ? time : 0;
+  }
+}
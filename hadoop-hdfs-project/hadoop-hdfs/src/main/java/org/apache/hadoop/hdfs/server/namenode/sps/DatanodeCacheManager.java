@@ -47,7 +47,7 @@ public class DatanodeCacheManager {
   private static final Logger LOG = LoggerFactory
       .getLogger(DatanodeCacheManager.class);
 
-  private final DatanodeMap datanodeMap;
+  private DatanodeMap datanodeMap;
   private NetworkTopology cluster;
 
   /**
@@ -77,7 +77,7 @@ public DatanodeCacheManager(Configuration conf) {
    *
    * @throws IOException
    */
-  public DatanodeMap getLiveDatanodeStorageReport(
+  public synchronized DatanodeMap getLiveDatanodeStorageReport(
       Context spsContext) throws IOException {
     long now = Time.monotonicNow();
     long elapsedTimeMs = now - lastAccessedTime;
@@ -88,7 +88,9 @@ public DatanodeMap getLiveDatanodeStorageReport(
         LOG.debug("elapsedTimeMs > refreshIntervalMs : {} > {},"
             + " so refreshing cache", elapsedTimeMs, refreshIntervalMs);
       }
-      datanodeMap.reset(); // clear all previously cached items.
+      // Build a new map, the previous one may still be used by the SPS
+      // workers.
+      datanodeMap = new DatanodeMap();
 
       // Fetch live datanodes from namenode and prepare DatanodeMap.
       DatanodeStorageReport[] liveDns = spsContext
@@ -115,7 +117,7 @@ public DatanodeMap getLiveDatanodeStorageReport(
     return datanodeMap;
   }
 
-  NetworkTopology getCluster() {
+  synchronized NetworkTopology getCluster() {
     return cluster;
   }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@
 
 import static org.apache.hadoop.util.Time.monotonicNow;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,6 +32,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.conf.Configuration;
@@ -74,18 +76,25 @@
  * location and expected storage type and location to move. After that this
  * class will also prepare requests to send to Datanode for processing the
  * physical block movements.
+ *
+ * The files are analysed by a configurable number of worker threads, and the
+ * block moves scheduled from or to every datanode can be limited to a
+ * bandwidth budget.
  */
 @InterfaceAudience.Private
 public class StoragePolicySatisfier implements SPSService, Runnable {
   public static final Logger LOG =
       LoggerFactory.getLogger(StoragePolicySatisfier.class);
-  private Daemon storagePolicySatisfierThread;
+  private Daemon[] storagePolicySatisfierThreads;
   private BlockStorageMovementNeeded storageMovementNeeded;
   private BlockStorageMovementAttemptedItems storageMovementsMonitor;
   private volatile boolean isRunning = false;
   private int spsWorkMultiplier;
-  private long blockCount = 0L;
+  private final AtomicLong blockCount = new AtomicLong();
   private int blockMovementMaxRetry;
+  private int workerThreads;
+  /** The budget of the moves from or to each datanode, null if unlimited. */
+  private DatanodeBandwidthBudget bandwidthBudget;
   private Context ctxt;
   private final Configuration conf;
   private DatanodeCacheManager dnCacheMgr;
@@ -136,13 +145,25 @@ enum Status {
 
   public void init(final Context context) {
     this.ctxt = context;
-    this.storageMovementNeeded = new BlockStorageMovementNeeded(context);
+    final String inflightPathsFile = getConf().getTrimmed(
+        DFSConfigKeys.DFS_SPS_INFLIGHT_PATHS_FILE_KEY,
+        DFSConfigKeys.DFS_SPS_INFLIGHT_PATHS_FILE_DEFAULT);
+    this.storageMovementNeeded = new BlockStorageMovementNeeded(context,
+        inflightPathsFile.isEmpty() ? null : new File(inflightPathsFile));
     this.storageMovementsMonitor = new BlockStorageMovementAttemptedItems(
         this, storageMovementNeeded, context);
     this.spsWorkMultiplier = getSPSWorkMultiplier(getConf());
     this.blockMovementMaxRetry = getConf().getInt(
         DFSConfigKeys.DFS_STORAGE_POLICY_SATISFIER_MAX_RETRY_ATTEMPTS_KEY,
         DFSConfigKeys.DFS_STORAGE_POLICY_SATISFIER_MAX_RETRY_ATTEMPTS_DEFAULT);
+    this.workerThreads = Math.max(1, getConf().getInt(
+        DFSConfigKeys.DFS_SPS_WORKER_THREADS_KEY,
+        DFSConfigKeys.DFS_SPS_WORKER_THREADS_DEFAULT));
+    final long datanodeBandwidth = getConf().getLongBytes(
+        DFSConfigKeys.DFS_SPS_DATANODE_BANDWIDTH_PER_SEC_KEY,
+        DFSConfigKeys.DFS_SPS_DATANODE_BANDWIDTH_PER_SEC_DEFAULT);
+    this.bandwidthBudget = datanodeBandwidth > 0
+        ? new DatanodeBandwidthBudget(datanodeBandwidth) : null;
   }
 
   /**
@@ -159,9 +180,13 @@ public synchronized void start(StoragePolicySatisfierMode serviceMode) {
     LOG.info("Starting {} StoragePolicySatisfier.",
         StringUtils.toLowerCase(serviceMode.toString()));
     isRunning = true;
-    storagePolicySatisfierThread = new Daemon(this);
-    storagePolicySatisfierThread.setName("StoragePolicySatisfier");
-    storagePolicySatisfierThread.start();
+    storagePolicySatisfierThreads = new Daemon[workerThreads];
+    for (int i = 0; i < workerThreads; i++) {
+      storagePolicySatisfierThreads[i] = new Daemon(this);
+      storagePolicySatisfierThreads[i].setName(workerThreads == 1
+          ? "StoragePolicySatisfier" : "StoragePolicySatisfier-" + i);
+      storagePolicySatisfierThreads[i].start();
+    }
     this.storageMovementsMonitor.start();
     this.storageMovementNeeded.activate();
     dnCacheMgr = new DatanodeCacheManager(conf);
@@ -170,13 +195,15 @@ public synchronized void start(StoragePolicySatisfierMode serviceMode) {
   @Override
   public synchronized void stop(boolean forceStop) {
     isRunning = false;
-    if (storagePolicySatisfierThread == null) {
+    if (storagePolicySatisfierThreads == null) {
       return;
     }
 
     storageMovementNeeded.close();
 
-    storagePolicySatisfierThread.interrupt();
+    for (Daemon thread : storagePolicySatisfierThreads) {
+      thread.interrupt();
+    }
     this.storageMovementsMonitor.stop();
     if (forceStop) {
       storageMovementNeeded.clearQueuesWithNotification();
@@ -195,9 +222,11 @@ public synchronized void stopGracefully() {
       this.storageMovementsMonitor.stopGracefully();
     }
 
-    if (storagePolicySatisfierThread != null) {
+    if (storagePolicySatisfierThreads != null) {
       try {
-        storagePolicySatisfierThread.join(3000);
+        for (Daemon thread : storagePolicySatisfierThreads) {
+          thread.join(3000);
+        }
       } catch (InterruptedException ie) {
         if (LOG.isDebugEnabled()) {
           LOG.debug("Interrupted Exception while waiting to join sps thread,"
@@ -311,10 +340,13 @@ public void run() {
           Thread.sleep(3000);
         }
         int numLiveDn = ctxt.getNumLiveDataNodes();
+        final long scheduledBlocks = blockCount.get();
         if (storageMovementNeeded.size() == 0
-            || blockCount > (numLiveDn * spsWorkMultiplier)) {
+            || scheduledBlocks > (numLiveDn * spsWorkMultiplier)) {
           Thread.sleep(3000);
-          blockCount = 0L;
+          // Only one of the workers that backed off resets the count, and
+          // not if blocks were scheduled in the meantime.
+          blockCount.compareAndSet(scheduledBlocks, 0L);
         }
         if (retryItem) {
           this.storageMovementNeeded.add(itemInfo);
@@ -432,6 +464,7 @@ private BlocksMovingAnalysis analyseBlocksStorageMovementsAndAssignToDN(
       status = BlocksMovingAnalysis.Status.FEW_LOW_REDUNDANCY_BLOCKS;
     }
     Map<Block, Set<StorageTypeNodePair>> assignedBlocks = new HashMap<>();
+    throttle(blockMovingInfos);
     for (BlockMovingInfo blkMovingInfo : blockMovingInfos) {
       // Check for at least one block storage movement has been chosen
       try {
@@ -446,7 +479,7 @@ private BlocksMovingAnalysis analyseBlocksStorageMovementsAndAssignToDN(
           assignedBlocks.put(blkMovingInfo.getBlock(), nodesWithStorage);
         }
         nodesWithStorage.add(nodeStorage);
-        blockCount++;
+        blockCount.incrementAndGet();
       } catch (IOException e) {
         LOG.warn("Exception while scheduling movement task", e);
         // failed to move the block.
@@ -456,6 +489,27 @@ private BlocksMovingAnalysis analyseBlocksStorageMovementsAndAssignToDN(
     return new BlocksMovingAnalysis(status, assignedBlocks);
   }
 
+  /**
+   * Wait until the block moves of a file fit in the bandwidth budget of all
+   * their source and target datanodes, which are reserved together.
+   */
+  private void throttle(List<BlockMovingInfo> blkMovingInfos) {
+    if (bandwidthBudget == null || blkMovingInfos.isEmpty()) {
+      return;
+    }
+    final long now = monotonicNow();
+    final long start = bandwidthBudget.reserve(blkMovingInfos, now);
+    if (start > now) {
+      try {
+        Thread.sleep(start - now);
+      } catch (InterruptedException e) {
+        // The moves are reserved, submit them and let the caller see the
+        // interruption.
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
   /**
    * The given block is considered as low redundancy when the block locations
    * length is less than expected replication factor. For EC blocks, redundancy
@@ -759,8 +813,7 @@ private StorageTypeNodePair chooseTargetTypeInSameNode(LocatedBlock blockInfo,
       for (DatanodeWithStorage.StorageDetails targetNode : targetNodeStorages) {
         if (targetNode.getDatanodeInfo().equals(source)) {
           // Good target with enough space to write the given block size.
-          if (targetNode.hasSpaceForScheduling(blockInfo.getBlockSize())) {
-            targetNode.incScheduledSize(blockInfo.getBlockSize());
+          if (targetNode.tryReserve(blockInfo.getBlockSize())) {
             return new StorageTypeNodePair(t, source);
           }
           if (LOG.isDebugEnabled()) {
@@ -790,8 +843,7 @@ private StorageTypeNodePair chooseTarget(LocatedBlock block,
         if (!excludeNodes.contains(target)
             && matcher.match(dnCacheMgr.getCluster(), source, target)) {
           // Good target with enough space to write the given block size.
-          if (targetNode.hasSpaceForScheduling(block.getBlockSize())) {
-            targetNode.incScheduledSize(block.getBlockSize());
+          if (targetNode.tryReserve(block.getBlockSize())) {
             return new StorageTypeNodePair(t, target);
           }
           if (LOG.isDebugEnabled()) {
@@ -1012,11 +1064,18 @@ private DatanodeInfo getDatanodeInfo() {
       }
 
       /**
-       * Checks whether this datanode storage has sufficient space to occupy the
-       * given block size.
+       * Schedule the given block size on this datanode storage if it has
+       * sufficient space for it. The check and the update are atomic, since
+       * several SPS workers may pick the same target.
+       *
+       * @return true if the size was scheduled.
        */
-      private synchronized boolean hasSpaceForScheduling(long size) {
-        return availableSizeToMove() > size;
+      private synchronized boolean tryReserve(long size) {
+        if (availableSizeToMove() <= size) {
+          return false;
+        }
+        scheduledSize += size;
+        return true;
       }
 
       /**
@@ -1026,11 +1085,6 @@ private synchronized long availableSizeToMove() {
         return maxSize2Move - scheduledSize;
       }
 
-      /** Increment scheduled size. */
-      private synchronized void incScheduledSize(long size) {
-        scheduledSize += size;
-      }
-
       @Override
       public String toString() {
         return new StringBuilder().append("StorageDetails(\n  ")
@@ -1159,10 +1213,12 @@ public void markScanCompletedForPath(long inodeId) {
   }
 
   /**
-   * Join main SPS thread.
+   * Join the SPS worker threads.
    */
   public void join() throws InterruptedException {
-    storagePolicySatisfierThread.join();
+    for (Daemon thread : storagePolicySatisfierThreads) {
+      thread.join();
+    }
   }
 
   /**
@@ -289,6 +289,104 @@ public void testZeroCopyReadsNoFallback() throws Exception {
     }
   }
 
+  @Test
+  public void testVerifiedZeroCopyReads() throws Exception {
+    HdfsConfiguration conf = initZeroCopyTest();
+    conf.setBoolean(HdfsClientConfigKeys.Read.ShortCircuit.SKIP_CHECKSUM_KEY,
+        false);
+    final String CONTEXT = "testVerifiedZeroCopyReads";
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT, CONTEXT);
+    final Path TEST_PATH = new Path("/a");
+    final Path CORRUPT_PATH = new Path("/b");
+    final int TEST_FILE_LENGTH = 2 * BLOCK_SIZE;
+    final int RANDOM_SEED = 7567;
+    MiniDFSCluster cluster = null;
+    FSDataInputStream fsIn = null;
+    DistributedFileSystem fs = null;
+    try {
+      cluster = new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+      cluster.waitActive();
+      fs = cluster.getFileSystem();
+      DFSTestUtil.createFile(fs, TEST_PATH,
+          TEST_FILE_LENGTH, (short)1, RANDOM_SEED);
+      DFSTestUtil.waitReplication(fs, TEST_PATH, (short)1);
+      byte original[] = DFSTestUtil.
+          calculateFileContentsFromSeed(RANDOM_SEED, TEST_FILE_LENGTH);
+
+      // The enhanced read can't map the replica without SKIP_CHECKSUMS.
+      fsIn = fs.open(TEST_PATH);
+      try {
+        fsIn.read(null, BLOCK_SIZE, EnumSet.noneOf(ReadOption.class));
+        Assert.fail("expected UnsupportedOperationException");
+      } catch (UnsupportedOperationException e) {
+        // expected
+      }
+      fsIn.seek(0);
+      HdfsDataInputStream dfsIn = (HdfsDataInputStream)fsIn;
+      ByteBuffer result = dfsIn.readMapped(BLOCK_SIZE);
+      Assert.assertEquals(BLOCK_SIZE, result.remaining());
+      Assert.assertEquals(BLOCK_SIZE,
+          dfsIn.getReadStatistics().getTotalZeroCopyBytesRead());
+      Assert.assertArrayEquals(Arrays.copyOfRange(original, 0, BLOCK_SIZE),
+          byteBufferToArray(result));
+      fsIn.releaseBuffer(result);
+
+      // The verification is recorded in the slot of the replica.
+      final ExtendedBlock firstBlock =
+          DFSTestUtil.getFirstBlock(fs, TEST_PATH);
+      final ShortCircuitCache cache = ClientContext.get(
+          CONTEXT, conf).getShortCircuitCache(0);
+      cache.accept(new CacheVisitor() {
+        @Override
+        public void visit(int numOutstandingMmaps,
+            Map<ExtendedBlockId, ShortCircuitReplica> replicas,
+            Map<ExtendedBlockId, InvalidToken> failedLoads,
+            LinkedMap evictable,
+            LinkedMap evictableMmapped) {
+          ShortCircuitReplica replica =
+              replicas.get(ExtendedBlockId.fromExtendedBlock(firstBlock));
+          Assert.assertNotNull(replica);
+          Assert.assertNotNull(replica.getSlot());
+          int regions = (int) (BLOCK_SIZE / ShortCircuitReplica.
+              getVerifiedRegionSize(BLOCK_SIZE, replica.getMetaHeader()
+                  .getChecksum().getBytesPerChecksum()));
+          for (int i = 0; i < regions; i++) {
+            Assert.assertTrue(replica.getSlot().isRegionVerified(i));
+          }
+          Assert.assertFalse(replica.getSlot().isRegionVerified(regions));
+        }
+      });
+
+      // Reads stop at the end of the block.
+      result = dfsIn.readMapped(TEST_FILE_LENGTH);
+      Assert.assertEquals(BLOCK_SIZE, result.remaining());
+      Assert.assertArrayEquals(Arrays.copyOfRange(original, BLOCK_SIZE,
+          TEST_FILE_LENGTH), byteBufferToArray(result));
+      fsIn.releaseBuffer(result);
+      Assert.assertNull(dfsIn.readMapped(1));
+      fsIn.close();
+      fsIn = null;
+
+      // Corrupt data is not handed out.
+      DFSTestUtil.createFile(fs, CORRUPT_PATH,
+          BLOCK_SIZE, (short)1, RANDOM_SEED);
+      DFSTestUtil.waitReplication(fs, CORRUPT_PATH, (short)1);
+      Assert.assertEquals(1, cluster.corruptBlockOnDataNodes(
+          DFSTestUtil.getFirstBlock(fs, CORRUPT_PATH)));
+      fsIn = fs.open(CORRUPT_PATH);
+      try {
+        ((HdfsDataInputStream)fsIn).readMapped(BLOCK_SIZE);
+        Assert.fail("expected ChecksumException");
+      } catch (ChecksumException e) {
+        // expected
+      }
+    } finally {
+      if (fsIn != null) fsIn.close();
+      if (fs != null) fs.close();
+      if (cluster != null) cluster.shutdown();
+    }
+  }
+
   private static class CountingVisitor implements CacheVisitor {
     private final int expectedNumOutstandingMmaps;
     private final int expectedNumReplicas;
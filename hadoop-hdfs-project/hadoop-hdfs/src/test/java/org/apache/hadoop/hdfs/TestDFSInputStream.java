@@ -18,27 +18,44 @@
 package org.apache.hadoop.hdfs;
 
 import static org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.DFS_CLIENT_READ_USE_CACHE_PRIORITY;
+import static org.apache.hadoop.test.MetricsAsserts.assertCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileRange;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.fs.StreamCapabilities;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfoWithStorage;
@@ -46,12 +63,14 @@
 import org.apache.hadoop.hdfs.security.token.block.InvalidBlockTokenException;
 import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeDescriptor;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
 import org.apache.hadoop.net.unix.DomainSocket;
 import org.apache.hadoop.net.unix.TemporarySocketDirectory;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
 import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.Retry;
 
 import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.test.LambdaTestUtils;
 import org.apache.log4j.Level;
 import org.junit.Assume;
 import org.junit.Test;
@@ -359,4 +378,226 @@ public Void answer(InvocationOnMock invocation) throws Throwable {
       IOUtils.closeStream(out);
     }
   }
+
+  @Test(timeout=60000)
+  public void testVectoredReadAcrossBlocks() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY, 0);
+    final int blockSize = 4096;
+    try (MiniDFSCluster cluster =
+             new MiniDFSCluster.Builder(conf).numDataNodes(3).build()) {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path path = new Path("/testVectoredRead");
+      byte[] data = new byte[5 * blockSize];
+      new Random(0).nextBytes(data);
+      try (FSDataOutputStream out = fs.create(path, true, 4096, (short) 3,
+          blockSize)) {
+        out.write(data);
+      }
+
+      List<FileRange> ranges = new ArrayList<>();
+      // Two ranges close enough to be merged into one read.
+      ranges.add(FileRange.createFileRange(100, 200));
+      ranges.add(FileRange.createFileRange(400, 100));
+      // Ranges in other blocks, one crossing a block boundary.
+      ranges.add(FileRange.createFileRange(2 * blockSize + 10, 1000));
+      ranges.add(FileRange.createFileRange(4 * blockSize - 50, 100));
+      ranges.add(FileRange.createFileRange(5 * blockSize - 1, 1));
+
+      try (DFSInputStream in = fs.dfs.open(path.toString())) {
+        assertTrue(in.hasCapability(StreamCapabilities.VECTOREDIO));
+        in.readVectored(ranges, ByteBuffer::allocate);
+        for (FileRange range : ranges) {
+          ByteBuffer buf = range.getData().get();
+          assertEquals(range.getLength(), buf.remaining());
+          byte[] actual = new byte[buf.remaining()];
+          buf.get(actual);
+          assertArrayEquals(Arrays.copyOfRange(data, (int) range.getOffset(),
+              (int) range.getOffset() + range.getLength()), actual);
+        }
+        assertEquals(0, in.getPos());
+
+        // Ranges past the end of the file are rejected up front.
+        LambdaTestUtils.intercept(EOFException.class, () ->
+            in.readVectored(Collections.singletonList(
+                FileRange.createFileRange(5 * blockSize - 10, 20)),
+                ByteBuffer::allocate));
+      }
+
+      // A client that disabled the pool reads on the calling thread, even
+      // though the other client created the shared pool.
+      Configuration noPoolConf = new Configuration(conf);
+      noPoolConf.setInt(
+          HdfsClientConfigKeys.VectoredRead.THREADPOOL_SIZE_KEY, 0);
+      try (DistributedFileSystem noPoolFs = (DistributedFileSystem)
+          FileSystem.newInstance(cluster.getURI(), noPoolConf)) {
+        assertNotNull(fs.getClient().getVectoredReadsThreadPool());
+        assertNull(noPoolFs.getClient().getVectoredReadsThreadPool());
+        try (DFSInputStream in = noPoolFs.dfs.open(path.toString())) {
+          FileRange range = FileRange.createFileRange(2 * blockSize, 100);
+          in.readVectored(Collections.singletonList(range),
+              ByteBuffer::allocate);
+          byte[] actual = new byte[100];
+          range.getData().get().get(actual);
+          assertArrayEquals(Arrays.copyOfRange(data, 2 * blockSize,
+              2 * blockSize + 100), actual);
+        }
+      }
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testAsyncPositionalRead() throws Exception {
+    Configuration conf = new Configuration();
+    conf.setLong(DFSConfigKeys.DFS_NAMENODE_MIN_BLOCK_SIZE_KEY, 0);
+    final int blockSize = 4096;
+    try (MiniDFSCluster cluster =
+             new MiniDFSCluster.Builder(conf).numDataNodes(3).build()) {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path path = new Path("/testAsyncRead");
+      byte[] data = new byte[5 * blockSize];
+      new Random(0).nextBytes(data);
+      try (FSDataOutputStream out = fs.create(path, true, 4096, (short) 3,
+          blockSize)) {
+        out.write(data);
+      }
+
+      try (HdfsDataInputStream in = (HdfsDataInputStream) fs.open(path)) {
+        // Far more reads in flight than threads in the pool.
+        List<CompletableFuture<ByteBuffer>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+          futures.add(in.readAsync(i * 200, 300, ByteBuffer::allocate));
+        }
+        for (int i = 0; i < futures.size(); i++) {
+          ByteBuffer buf = futures.get(i).get();
+          byte[] actual = new byte[buf.remaining()];
+          buf.get(actual);
+          assertArrayEquals(Arrays.copyOfRange(data, i * 200, i * 200 + 300),
+              actual);
+        }
+        assertEquals(0, in.getPos());
+
+        // Failures are reported through the future.
+        CompletableFuture<ByteBuffer> pastEnd =
+            in.readAsync(5 * blockSize - 10, 20, ByteBuffer::allocate);
+        try {
+          pastEnd.get();
+          fail("expected the read past the end of the file to fail");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof EOFException);
+        }
+      }
+
+      // A client that disabled the pool reads on the calling thread, even
+      // though the other client created the shared pool.
+      Configuration noPoolConf = new Configuration(conf);
+      noPoolConf.setInt(HdfsClientConfigKeys.AsyncRead.THREADPOOL_SIZE_KEY, 0);
+      try (DistributedFileSystem noPoolFs = (DistributedFileSystem)
+          FileSystem.newInstance(cluster.getURI(), noPoolConf)) {
+        assertNotNull(fs.getClient().getAsyncReadsThreadPool());
+        assertNull(noPoolFs.getClient().getAsyncReadsThreadPool());
+        try (HdfsDataInputStream in =
+                 (HdfsDataInputStream) noPoolFs.open(path)) {
+          CompletableFuture<ByteBuffer> read =
+              in.readAsync(blockSize - 50, 100, ByteBuffer::allocate);
+          assertTrue(read.isDone());
+          byte[] actual = new byte[100];
+          read.get().get(actual);
+          assertArrayEquals(Arrays.copyOfRange(data, blockSize - 50,
+              blockSize + 50), actual);
+        }
+      }
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testAsyncReadBackPressure() throws Exception {
+    Configuration conf = new Configuration();
+    try (MiniDFSCluster cluster =
+             new MiniDFSCluster.Builder(conf).numDataNodes(1).build()) {
+      DistributedFileSystem fs = cluster.getFileSystem();
+      Path path = new Path("/testAsyncReadBackPressure");
+      byte[] data = new byte[1024];
+      new Random(0).nextBytes(data);
+      DFSTestUtil.writeFile(fs, path, data);
+
+      ThreadPoolExecutor pool = fs.getClient().getAsyncReadsThreadPool();
+      assertNotNull(pool);
+      assertTrue(pool != fs.getClient().getVectoredReadsThreadPool());
+      // Keep all the threads of the pool busy and fill its queue.
+      CountDownLatch release = new CountDownLatch(1);
+      for (int i = 0; i < pool.getMaximumPoolSize(); i++) {
+        pool.execute(() -> {
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        });
+      }
+      while (pool.getQueue().remainingCapacity() > 0) {
+        pool.execute(() -> { });
+      }
+      try (HdfsDataInputStream in = (HdfsDataInputStream) fs.open(path)) {
+        // The read is done by the caller before readAsync returns.
+        CompletableFuture<ByteBuffer> future =
+            in.readAsync(100, 200, ByteBuffer::allocate);
+        assertTrue(future.isDone());
+        ByteBuffer buf = future.get();
+        byte[] actual = new byte[buf.remaining()];
+        buf.get(actual);
+        assertArrayEquals(Arrays.copyOfRange(data, 100, 300), actual);
+      } finally {
+        release.countDown();
+      }
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testLocatedBlocksCacheSharedAcrossClients() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT,
+        "testLocatedBlocksCacheSharedAcrossClients");
+    conf.setLong(
+        HdfsClientConfigKeys.DFS_CLIENT_LOCATED_BLOCKS_CACHE_TTL_MS_KEY,
+        60000);
+    try (MiniDFSCluster cluster =
+             new MiniDFSCluster.Builder(conf).numDataNodes(1).build()) {
+      cluster.waitActive();
+      DistributedFileSystem fs1 = cluster.getFileSystem();
+      DistributedFileSystem fs2 = (DistributedFileSystem)
+          FileSystem.newInstance(cluster.getURI(), conf);
+      try {
+        Path path = new Path("/testLocatedBlocksCache");
+        DFSTestUtil.createFile(fs1, path, 1024, (short) 1, 1L);
+        LocatedBlocksCache cache = fs1.getClient().getLocatedBlocksCache();
+        assertNotNull(cache);
+        assertTrue(cache == fs2.getClient().getLocatedBlocksCache());
+
+        byte[] expected = DFSTestUtil.readFileAsBytes(fs1, path);
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        // The second client opens the file from the cache.
+        assertArrayEquals(expected, DFSTestUtil.readFileAsBytes(fs2, path));
+        assertEquals(hits + 1, cache.getHits());
+        assertEquals(misses, cache.getMisses());
+
+        // Rewriting the file through either client invalidates it.
+        DFSTestUtil.createFile(fs2, path, 2048, (short) 1, 2L);
+        byte[] rewritten = DFSTestUtil.readFileAsBytes(fs1, path);
+        assertEquals(2048, rewritten.length);
+        assertEquals(misses + 1, cache.getMisses());
+        assertArrayEquals(rewritten, DFSTestUtil.readFileAsBytes(fs2, path));
+
+        // The counters are exposed through the metrics of the context.
+        MetricsRecordBuilder rb = getMetrics(
+            "LocatedBlocksCache-testLocatedBlocksCacheSharedAcrossClients");
+        assertCounter("Hits", cache.getHits(), rb);
+        assertCounter("Misses", cache.getMisses(), rb);
+        assertCounter("Invalidations", cache.getInvalidations(), rb);
+      } finally {
+        fs2.close();
+      }
+    }
+  }
 }
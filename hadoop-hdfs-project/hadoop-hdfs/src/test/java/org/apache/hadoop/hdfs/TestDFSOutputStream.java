@@ -42,12 +42,14 @@
 import org.apache.hadoop.fs.StreamCapabilities.StreamCapability;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.hdfs.DataStreamer.LastExceptionInStreamer;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
 import org.apache.hadoop.hdfs.client.impl.DfsClientConf;
 import org.apache.hadoop.hdfs.protocol.BlockListAsLongs;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.HdfsConstants;
 import org.apache.hadoop.hdfs.protocol.HdfsFileStatus;
+import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.datatransfer.BlockConstructionStage;
 import org.apache.hadoop.hdfs.protocol.datatransfer.PacketHeader;
 import org.apache.hadoop.hdfs.protocol.datatransfer.PacketReceiver;
@@ -549,6 +551,97 @@ public void testFirstPacketSizeInNewBlocks() throws IOException {
     fs.delete(new Path("/testfile.dat"), true);
   }
 
+  @Test(timeout=60000)
+  public void testBlockPreallocation() throws IOException {
+    final int blockSize = 1024 * 1024;
+    Configuration conf = new Configuration(cluster.getConfiguration(0));
+    conf.setInt(
+        HdfsClientConfigKeys.Write.BLOCK_PREALLOCATION_THREADPOOL_SIZE_KEY, 2);
+    try (DistributedFileSystem fs = (DistributedFileSystem)
+        FileSystem.newInstance(cluster.getURI(), conf)) {
+      Random r = new Random();
+      // A file that ends on a block boundary abandons the extra block.
+      for (int length : new int[] {3 * blockSize, 5 * blockSize / 2}) {
+        Path p = new Path("/testBlockPreallocation" + length);
+        byte[] data = new byte[length];
+        r.nextBytes(data);
+        try (FSDataOutputStream out = fs.create(p, true, 4096, (short) 3,
+            blockSize)) {
+          out.write(data);
+        }
+        assertTrue(fs.isFileClosed(p));
+        assertEquals((length + blockSize - 1) / blockSize,
+            fs.getClient().getLocatedBlocks(p.toString(), 0)
+                .locatedBlockCount());
+        Assert.assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, p));
+        fs.delete(p, false);
+      }
+    }
+  }
+
+  /**
+   * A failure closing a block whose successor is already allocated does not
+   * trigger a pipeline recovery, since the block is committed.
+   */
+  @Test(timeout=60000)
+  public void testBlockPreallocationWithCloseFailure() throws IOException {
+    final int blockSize = 1024 * 1024;
+    Configuration conf = new Configuration(cluster.getConfiguration(0));
+    conf.setInt(
+        HdfsClientConfigKeys.Write.BLOCK_PREALLOCATION_THREADPOOL_SIZE_KEY, 2);
+    DFSClientFaultInjector oldInjector = DFSClientFaultInjector.get();
+    DFSClientFaultInjector faultInjector = mock(DFSClientFaultInjector.class);
+    // Fail the ack of the end-of-block packet of every block.
+    when(faultInjector.failPacket()).thenReturn(true);
+    DFSClientFaultInjector.set(faultInjector);
+    try (DistributedFileSystem fs = (DistributedFileSystem)
+        FileSystem.newInstance(cluster.getURI(), conf)) {
+      Path p = new Path("/testBlockPreallocationWithCloseFailure");
+      byte[] data = new byte[3 * blockSize];
+      new Random().nextBytes(data);
+      try (FSDataOutputStream out = fs.create(p, true, 4096, (short) 3,
+          blockSize)) {
+        out.write(data);
+      }
+      assertTrue(fs.isFileClosed(p));
+
+      // A recovery would have bumped the generation stamp of the block
+      // after its successor was allocated.
+      LocatedBlocks blocks = fs.getClient().getLocatedBlocks(p.toString(), 0);
+      assertEquals(3, blocks.locatedBlockCount());
+      for (int i = 1; i < blocks.locatedBlockCount(); i++) {
+        assertEquals(
+            blocks.get(i - 1).getBlock().getGenerationStamp() + 1,
+            blocks.get(i).getBlock().getGenerationStamp());
+      }
+      Assert.assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, p));
+      fs.delete(p, false);
+    } finally {
+      DFSClientFaultInjector.set(oldInjector);
+    }
+  }
+
+  @Test(timeout=60000)
+  public void testDirectPacketBuffers() throws IOException {
+    Configuration conf = new Configuration(cluster.getConfiguration(0));
+    conf.setBoolean(HdfsClientConfigKeys.Write.DIRECT_BUFFERS_ENABLED_KEY,
+        true);
+    try (DistributedFileSystem fs = (DistributedFileSystem)
+        FileSystem.newInstance(cluster.getURI(), conf)) {
+      Path p = new Path("/testDirectPacketBuffers");
+      byte[] data = new byte[1024 * 1024 + 1000];
+      new Random().nextBytes(data);
+      try (FSDataOutputStream out = fs.create(p)) {
+        out.write(data, 0, 1000);
+        // A partial chunk is sent and then sent again with the rest.
+        out.hflush();
+        out.write(data, 1000, data.length - 1000);
+      }
+      Assert.assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, p));
+      fs.delete(p, false);
+    }
+  }
+
   @AfterClass
   public static void tearDown() {
     if (cluster != null) {
@@ -25,8 +25,10 @@
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hdfs.MiniDFSCluster.DataNodeProperties;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.StripedRead;
 import org.apache.hadoop.hdfs.protocol.Block;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedBlocks;
 import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
@@ -35,6 +37,7 @@
 import org.apache.hadoop.hdfs.server.datanode.SimulatedFSDataset;
 import org.apache.hadoop.hdfs.util.StripedBlockUtil;
 import org.apache.hadoop.io.ElasticByteBufferPool;
+import org.apache.hadoop.io.IOUtils;
 import org.apache.hadoop.io.erasurecode.CodecUtil;
 import org.apache.hadoop.io.erasurecode.ErasureCodeNative;
 import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
@@ -54,6 +57,8 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_DEFAULT;
 import static org.apache.hadoop.fs.CommonConfigurationKeysPublic.IO_FILE_BUFFER_SIZE_KEY;
@@ -405,6 +410,57 @@ private void testStatefulRead(boolean useByteBuffer,
     fs.delete(filePath, true);
   }
 
+  @Test
+  public void testStatefulReadAhead() throws Exception {
+    conf.setInt(StripedRead.READAHEAD_STRIPES_KEY, stripesPerBlock);
+    tearDown();
+    startUp();
+    testStatefulRead(false, false);
+    testStatefulRead(true, false);
+  }
+
+  @Test
+  public void testStatefulReadWithSlowCell() throws Exception {
+    // Store the data, so that decoded cells can be checked.
+    conf.unset(DFSConfigKeys.DFS_DATANODE_FSDATASET_FACTORY_KEY);
+    conf.setInt(StripedRead.READAHEAD_STRIPES_KEY, 1);
+    conf.setLong(StripedRead.SLOW_CELL_THRESHOLD_MILLIS_KEY, 100);
+    tearDown();
+    startUp();
+    // The second block group has data in its first two cells.
+    final int fileSize = blockGroupSize + cellSize + 123;
+    final byte[] expected = StripedFileTestUtil.generateBytes(fileSize);
+    DFSTestUtil.writeFile(fs, filePath, expected);
+
+    // Reads from the second internal block do not return until the end.
+    final CountDownLatch slowReads = new CountDownLatch(1);
+    final AtomicInteger numSlowReads = new AtomicInteger();
+    final DFSClientFaultInjector oldInjector = DFSClientFaultInjector.get();
+    DFSClientFaultInjector.set(new DFSClientFaultInjector() {
+      @Override
+      public void readFromStripedBlockDelay(ExtendedBlock block) {
+        if (StripedBlockUtil.getBlockIndex(block.getLocalBlock()) == 1) {
+          numSlowReads.incrementAndGet();
+          try {
+            slowReads.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    });
+    try (FSDataInputStream in = fs.open(filePath)) {
+      byte[] readBuffer = new byte[fileSize];
+      IOUtils.readFully(in, readBuffer, 0, fileSize);
+      assertArrayEquals(expected, readBuffer);
+      // The slow block is decoded for the rest of its block group.
+      assertEquals(2, numSlowReads.get());
+    } finally {
+      slowReads.countDown();
+      DFSClientFaultInjector.set(oldInjector);
+    }
+  }
+
   @Test
   public void testStatefulReadWithDNFailure() throws Exception {
     final int numBlocks = 4;
@@ -37,8 +37,10 @@
 import org.slf4j.LoggerFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.StreamCapabilities.StreamCapability;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys.StripedWrite;
 import org.apache.hadoop.hdfs.client.HdfsDataOutputStream.SyncFlag;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
@@ -193,6 +195,25 @@ public void testFileMoreThanABlockGroup3() throws Exception {
         + cellSize + 123);
   }
 
+  @Test
+  public void testFileWithParallelEncoding() throws Exception {
+    Configuration encodeConf = new Configuration(conf);
+    encodeConf.setInt(StripedWrite.ENCODE_THREADPOOL_SIZE_KEY, 4);
+    encodeConf.setInt(StripedWrite.MAX_STRIPES_IN_FLIGHT_KEY, 3);
+    final int writeBytes = blockSize * dataBlocks * 2
+        + cellSize * dataBlocks + cellSize + 123;
+    final Path testPath = new Path("/ParallelEncoding");
+    byte[] bytes = StripedFileTestUtil.generateBytes(writeBytes);
+    try (DistributedFileSystem encodeFs = (DistributedFileSystem)
+        FileSystem.newInstance(cluster.getURI(), encodeConf)) {
+      DFSTestUtil.writeFile(encodeFs, testPath, bytes);
+    }
+    StripedFileTestUtil.waitBlockGroupsReported(fs, testPath.toString());
+    // checkData also re-encodes the data and compares the parity blocks.
+    StripedFileTestUtil.checkData(fs, testPath, writeBytes,
+        new ArrayList<DatanodeInfo>(), null, blockSize * dataBlocks);
+  }
+
   /**
    * {@link DFSStripedOutputStream} doesn't support hflush() or hsync() yet.
    * This test is to make sure that DFSStripedOutputStream doesn't throw any
@@ -17,6 +17,7 @@
  */
 package org.apache.hadoop.hdfs;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -31,6 +32,7 @@
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.util.Collections;
 import java.util.Random;
 
 import org.apache.hadoop.hdfs.server.datanode.DataNode;
@@ -43,6 +45,8 @@
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.protocol.CombinedBlockSource;
 import org.apache.hadoop.hdfs.protocol.DatanodeID;
 import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
 import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
@@ -61,6 +65,7 @@
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.ReadOpChecksumInfoProto;
 import org.apache.hadoop.hdfs.protocol.proto.DataTransferProtos.Status;
 import org.apache.hadoop.hdfs.security.token.block.BlockTokenSecretManager;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants;
 import org.apache.hadoop.hdfs.server.datanode.CachingStrategy;
 import org.apache.hadoop.hdfs.server.datanode.InternalDataNodeTestUtils;
 import org.apache.hadoop.io.IOUtils;
@@ -650,4 +655,79 @@ public void testReleaseVolumeRefIfExceptionThrown()
       cluster.shutdown();
     }
   }
+
+  @Test(timeout = 60000)
+  public void testOversizedCombinedRead() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      datanode = cluster.getFileSystem().getDataNodeStats(
+          DatanodeReportType.LIVE)[0];
+      dnAddr = NetUtils.createSocketAddr(datanode.getXferAddr());
+      FileSystem fileSys = cluster.getFileSystem();
+      Path file = new Path("/combined.dat");
+      DFSTestUtil.createFile(fileSys, file, 4096, (short) 1, 0L);
+      ExtendedBlock blk = DFSTestUtil.getFirstBlock(fileSys, file);
+
+      // A window larger than any cell.
+      sendBuf.reset();
+      recvBuf.reset();
+      sendResponse(Status.ERROR_INVALID, null, "opReadCombinedBlocks " + blk
+          + " with 1 outputs, 0 other blocks and windows of "
+          + Integer.MAX_VALUE + " bytes exceeds the limits of a block group",
+          recvOut);
+      sender.readCombinedBlocks(blk, BlockTokenSecretManager.DUMMY_TOKEN,
+          new byte[] {1}, 0L, 4096L, Integer.MAX_VALUE,
+          Collections.<CombinedBlockSource>emptyList());
+      sendRecvData("Oversized window for a combined read", false);
+
+      // More outputs than a block group has parity blocks.
+      sendBuf.reset();
+      recvBuf.reset();
+      sendResponse(Status.ERROR_INVALID, null, "opReadCombinedBlocks " + blk
+          + " with " + HdfsServerConstants.MAX_BLOCKS_IN_GROUP
+          + " outputs, 0 other blocks and windows of 4096 bytes exceeds"
+          + " the limits of a block group", recvOut);
+      sender.readCombinedBlocks(blk, BlockTokenSecretManager.DUMMY_TOKEN,
+          new byte[HdfsServerConstants.MAX_BLOCKS_IN_GROUP], 0L, 4096L, 4096,
+          Collections.<CombinedBlockSource>emptyList());
+      sendRecvData("Too many outputs for a combined read", false);
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testReadWithLargePackets() throws IOException {
+    Configuration conf = new HdfsConfiguration();
+    conf.setInt(DFSConfigKeys.DFS_DATANODE_TRANSFERTO_MAX_PACKET_SIZE_KEY,
+        1024 * 1024);
+    conf.setInt(
+        HdfsClientConfigKeys.DFS_CLIENT_BLOCK_READER_REMOTE_MAX_PACKET_SIZE_KEY,
+        4 * 1024 * 1024);
+    MiniDFSCluster cluster =
+        new MiniDFSCluster.Builder(conf).numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      FileSystem fileSys = cluster.getFileSystem();
+      Path file = new Path("/largepackets.dat");
+      // Not a multiple of the chunk size, so the last packet is partial.
+      byte[] data = new byte[3 * 1024 * 1024 + 123];
+      new Random(0xDEADBEEF).nextBytes(data);
+      DFSTestUtil.writeFile(fileSys, file, data);
+
+      assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fileSys, file));
+      try (FSDataInputStream in = fileSys.open(file)) {
+        byte[] buf = new byte[1024 * 1024];
+        in.readFully(512 * 1024 + 7, buf);
+        byte[] expected = new byte[buf.length];
+        System.arraycopy(data, 512 * 1024 + 7, expected, 0, expected.length);
+        assertArrayEquals(expected, buf);
+      }
+    } finally {
+      cluster.shutdown();
+    }
+  }
 }
@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.qjournal.MiniQJMHACluster;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+/**
+ * Tests that the {@link FileStatusCache} of DFSClients is invalidated by the
+ * changes other clients make, through the inotify edits of the NameNode.
+ */
+public class TestFileStatusCacheInotify {
+  private static final String DIR = "/warehouse/t";
+
+  private MiniQJMHACluster cluster;
+  private InetSocketAddress nnAddress;
+  private Configuration conf;
+  private DFSClient writer;
+
+  @Rule
+  public TestName name = new TestName();
+
+  @Before
+  public void setup() throws Exception {
+    cluster = new MiniQJMHACluster.Builder(new HdfsConfiguration()).build();
+    cluster.getDfsCluster().waitActive();
+    cluster.getDfsCluster().transitionToActive(0);
+    nnAddress = cluster.getDfsCluster().getNameNode(0).getNameNodeAddress();
+
+    conf = new HdfsConfiguration();
+    // A context of its own, the caches are shared by the clients of one.
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT, name.getMethodName());
+    conf.setLong(HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_TTL_MS_KEY,
+        600000);
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_PATHS_KEY,
+        "/warehouse");
+    conf.setBoolean(
+        HdfsClientConfigKeys.DFS_CLIENT_METADATA_CACHE_INOTIFY_ENABLED_KEY,
+        true);
+
+    // Changes are made through a client without the cache.
+    writer = new DFSClient(nnAddress, new HdfsConfiguration());
+    writer.mkdirs(DIR, null, true);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (writer != null) {
+      writer.close();
+    }
+    if (cluster != null) {
+      cluster.shutdown();
+    }
+  }
+
+  private static short getPermission(DFSClient client) {
+    try {
+      return client.getFileInfo(DIR).getPermission().toShort();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Change the permission of the directory with the writer, and wait for
+   * the client to see it.
+   */
+  private void changeAndWait(DFSClient client, short permission)
+      throws Exception {
+    final FileStatusCache cache = client.getFileStatusCache();
+    assertNotNull(cache);
+    // Wait for the status of the directory to be served from the cache.
+    final long hits = cache.getHits();
+    GenericTestUtils.waitFor(() -> {
+      getPermission(client);
+      return cache.getHits() > hits;
+    }, 100, 30000);
+
+    writer.setPermission(DIR, new FsPermission(permission));
+    GenericTestUtils.waitFor(() -> getPermission(client) == permission,
+        100, 30000);
+  }
+
+  @Test(timeout = 120000)
+  public void testOtherClientInvalidates() throws Exception {
+    try (DFSClient client = new DFSClient(nnAddress, conf)) {
+      final long invalidations = client.getFileStatusCache()
+          .getInvalidations();
+      changeAndWait(client, (short) 0700);
+      changeAndWait(client, (short) 0750);
+      assertEquals(0750, getPermission(client));
+      GenericTestUtils.waitFor(() -> client.getFileStatusCache()
+          .getInvalidations() >= invalidations + 2, 100, 30000);
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testTailingIsHandedOver() throws Exception {
+    DFSClient first = new DFSClient(nnAddress, conf);
+    try {
+      // The edits are tailed through the first client, the only one.
+      changeAndWait(first, (short) 0700);
+      try (DFSClient second = new DFSClient(nnAddress, conf)) {
+        first.close();
+        // The second client of the context takes over.
+        changeAndWait(second, (short) 0750);
+      }
+    } finally {
+      first.close();
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.protocol.AddErasureCodingPolicyResponse;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
+import org.apache.hadoop.hdfs.server.blockmanagement.BlockManagerTestUtil;
+import org.apache.hadoop.hdfs.server.blockmanagement.DatanodeDescriptor;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.namenode.NameNodeAdapter;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil;
+import org.apache.hadoop.io.erasurecode.ErasureCodeConstants;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Test reading and reconstructing the files of a user added Locally
+ * Repairable Code policy, LRC-6-4, whose data blocks 0-2 and 3-5 form two
+ * local groups with the local parity blocks 6 and 7.
+ */
+public class TestLocallyRepairableStripedFile {
+  private static final Logger LOG =
+      LoggerFactory.getLogger(TestLocallyRepairableStripedFile.class);
+
+  private final int cellSize = 64 * 1024;
+  private final int dataBlocks = 6;
+  private final int parityBlocks = 4;
+  private final int blockSize = cellSize * 2;
+  private final int groupSize = dataBlocks + parityBlocks;
+  private final int blockGroupSize = blockSize * dataBlocks;
+  private final int numDNs = groupSize + 2;
+
+  private MiniDFSCluster cluster;
+  private DistributedFileSystem fs;
+
+  @Before
+  public void setup() throws IOException {
+    Configuration conf = new Configuration();
+    conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, blockSize);
+    conf.setInt(DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_INTERVAL_SECONDS_KEY, 1);
+    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(numDNs).build();
+    cluster.waitActive();
+    fs = cluster.getFileSystem();
+
+    AddErasureCodingPolicyResponse[] responses =
+        fs.addErasureCodingPolicies(new ErasureCodingPolicy[] {
+            new ErasureCodingPolicy(ErasureCodeConstants.LRC_6_2_2_SCHEMA,
+                cellSize)});
+    assertTrue(responses[0].getErrorMsg(), responses[0].isSucceed());
+    String policyName = responses[0].getPolicy().getName();
+    fs.enableErasureCodingPolicy(policyName);
+    fs.setErasureCodingPolicy(new Path("/"), policyName);
+  }
+
+  @After
+  public void tearDown() {
+    if (cluster != null) {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  @Test(timeout = 120000)
+  public void testDegradedRead() throws Exception {
+    Path file = new Path("/testDegradedRead");
+    byte[] data = writeFile(file);
+    LocatedStripedBlock block = getBlockGroup(file);
+
+    // Data block 1 is read from blocks 0, 2 and 6 of its local group.
+    stopDataNodes(block, 1);
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+
+    // With data block 4 lost as well, each group is repaired on its own.
+    stopDataNodes(block, 4);
+    assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+  }
+
+  @Test(timeout = 120000)
+  public void testLocalReconstruction() throws Exception {
+    Path file = new Path("/testLocalReconstruction");
+    writeFile(file);
+    LocatedStripedBlock block = getBlockGroup(file);
+    byte[] lost = readInternalBlock(block, 1);
+
+    stopDataNodes(block, 1);
+    waitForReconstruction(file);
+    assertArrayEquals(lost, readInternalBlock(getBlockGroup(file), 1));
+    // Only the two other data blocks and the local parity of the group.
+    assertBytesRead(3L * blockSize);
+  }
+
+  @Test(timeout = 120000)
+  public void testFallBackToFullReconstruction() throws Exception {
+    Path file = new Path("/testFallBackToFullReconstruction");
+    writeFile(file);
+    LocatedStripedBlock block = getBlockGroup(file);
+    byte[] lost0 = readInternalBlock(block, 0);
+    byte[] lost1 = readInternalBlock(block, 1);
+
+    // Two blocks of the same local group can't be repaired locally.
+    stopDataNodes(block, 0, 1);
+    waitForReconstruction(file);
+    LocatedStripedBlock reconstructed = getBlockGroup(file);
+    assertArrayEquals(lost0, readInternalBlock(reconstructed, 0));
+    assertArrayEquals(lost1, readInternalBlock(reconstructed, 1));
+    // The four other data blocks and the two global parities.
+    assertBytesRead(6L * blockSize);
+  }
+
+  private byte[] writeFile(Path file) throws Exception {
+    byte[] data = StripedFileTestUtil.generateBytes(blockGroupSize);
+    DFSTestUtil.writeFile(fs, file, data);
+    StripedFileTestUtil.waitBlockGroupsReported(fs, file.toString());
+    return data;
+  }
+
+  private LocatedStripedBlock getBlockGroup(Path file) throws IOException {
+    return (LocatedStripedBlock) StripedFileTestUtil.getLocatedBlocks(file, fs)
+        .getLastLocatedBlock();
+  }
+
+  private DataNode getDataNode(LocatedStripedBlock block, int index) {
+    byte[] indices = block.getBlockIndices();
+    for (int i = 0; i < indices.length; i++) {
+      if (indices[i] == index) {
+        return cluster.getDataNode(block.getLocations()[i].getIpcPort());
+      }
+    }
+    throw new AssertionError("No internal block " + index + " in " + block);
+  }
+
+  private byte[] readInternalBlock(LocatedStripedBlock block, int index)
+      throws IOException {
+    ExtendedBlock internal = StripedBlockUtil.constructInternalBlock(
+        block.getBlock(), cellSize, dataBlocks, index);
+    DataNode dn = getDataNode(block, index);
+    File replica = cluster.getBlockFile(cluster.getDataNodes().indexOf(dn),
+        internal);
+    return DFSTestUtil.readFileAsBytes(replica);
+  }
+
+  private void stopDataNodes(LocatedStripedBlock block, int... indices)
+      throws Exception {
+    for (int index : indices) {
+      DataNode dn = getDataNode(block, index);
+      LOG.info("Stopping {} with internal block {}", dn, index);
+      dn.shutdown();
+      DatanodeDescriptor dnd = NameNodeAdapter.getDatanode(
+          cluster.getNamesystem(), dn.getDatanodeId());
+      DFSTestUtil.setDatanodeDead(dnd);
+    }
+    BlockManagerTestUtil.checkHeartbeat(
+        cluster.getNamesystem().getBlockManager());
+  }
+
+  private void waitForReconstruction(Path file) throws Exception {
+    StripedFileTestUtil.waitForReconstructionFinished(file, fs, groupSize);
+    for (DatanodeInfo dn : getBlockGroup(file).getLocations()) {
+      LOG.info("Block group stored on {}", dn);
+    }
+  }
+
+  private void assertBytesRead(long expected) throws Exception {
+    // The metrics are updated once the reconstruction is reported.
+    GenericTestUtils.waitFor(
+        () -> getLongMetric("EcReconstructionBytesRead") >= expected,
+        100, 10000);
+    assertEquals(expected, getLongMetric("EcReconstructionBytesRead"));
+  }
+
+  private long getLongMetric(String metricName) {
+    long metricValue = 0;
+    // Add the reconstruction metric values from all the live datanodes.
+    for (DataNode dn : cluster.getDataNodes()) {
+      if (dn.isDatanodeUp()) {
+        MetricsRecordBuilder rb = getMetrics(dn.getMetrics().name());
+        metricValue += getLongCounter(metricName, rb);
+      }
+    }
+    return metricValue;
+  }
+}
@@ -29,6 +29,7 @@
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -783,6 +784,51 @@ public Void answer(InvocationOnMock invocation) throws Throwable {
     }
   }
 
+  @Test(timeout=60000)
+  public void testAdaptiveHedgedReadRecordsLosers() throws Exception {
+    Configuration conf = new Configuration();
+    conf.set(HdfsClientConfigKeys.DFS_CLIENT_CONTEXT,
+        "testAdaptiveHedgedReadRecordsLosers");
+    conf.setInt(HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY, 5);
+    conf.setLong(HdfsClientConfigKeys.HedgedRead.THRESHOLD_MILLIS_KEY, 50);
+    conf.setBoolean(HdfsClientConfigKeys.HedgedRead.ADAPTIVE_ENABLED_KEY,
+        true);
+    // The first read from a datanode hangs until the test releases it.
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicInteger reads = new AtomicInteger();
+    DFSClientFaultInjector.set(Mockito.mock(DFSClientFaultInjector.class));
+    DFSClientFaultInjector injector = DFSClientFaultInjector.get();
+    Mockito.doAnswer(invocation -> {
+      if (reads.getAndIncrement() == 0) {
+        release.await();
+      }
+      return null;
+    }).when(injector).readFromDatanodeDelay();
+
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf).numDataNodes(2)
+        .format(true).build();
+    DistributedFileSystem fileSys = cluster.getFileSystem();
+    DFSClient dfsClient = fileSys.getClient();
+    DFSInputStream input = null;
+    try {
+      Path file = new Path("/hedgedReadLosers.dat");
+      DFSTestUtil.createFile(fileSys, file, 64 * 1024, (short) 2, 0L);
+      input = dfsClient.open(file.toString());
+      byte[] buffer = new byte[1024];
+      assertEquals(1024, input.read(0, buffer, 0, 1024));
+      // The hanging read lost to the hedged one, and is recorded for as
+      // long as it ran, without waiting for it to complete.
+      assertEquals(2, dfsClient.getDataNodeLatencyTracker()
+          .getNumDataNodes());
+    } finally {
+      release.countDown();
+      Mockito.reset(injector);
+      IOUtils.cleanupWithLogger(LOG, input);
+      fileSys.close();
+      cluster.shutdown();
+    }
+  }
+
   /**
    * Scenario: 1. Write a file with RF=2, DN1 and DN2<br>
    * 2. Open the stream, Consider Locations are [DN1, DN2] in LocatedBlock.<br>
@@ -0,0 +1,156 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs;
+
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
+import org.apache.hadoop.hdfs.server.datanode.DataNode;
+import org.apache.hadoop.hdfs.server.datanode.DataNodeFaultInjector;
+import org.apache.hadoop.hdfs.util.StripedBlockUtil;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This test extends {@link TestReconstructStripedFile} to test
+ * ec reconstruction from blocks combined by the source datanodes.
+ */
+public class TestReconstructStripedFileWithCombinedRead
+    extends TestReconstructStripedFile {
+  private static final Logger LOG = LoggerFactory.getLogger(
+      TestReconstructStripedFileWithCombinedRead.class);
+
+  public TestReconstructStripedFileWithCombinedRead() {
+    LOG.info("run {} with combined read.",
+        TestReconstructStripedFileWithCombinedRead.class.getSuperclass()
+            .getSimpleName());
+  }
+
+  @Override
+  public boolean isCombinedReadEnabled() {
+    return true;
+  }
+
+  @Test(timeout = 120000)
+  public void testCombinedReadIsUsed() throws Exception {
+    ErasureCodingPolicy policy = getEcPolicy();
+    int fileLen = policy.getNumDataUnits() * getBlockSize();
+    assertFileBlocksReconstruction("/testCombinedReadIsUsed", fileLen,
+        ReconstructionType.DataOnly, 1);
+    assertTrue(getLongMetric("EcCombinedReadStripes") > 0);
+    assertEquals(0, getLongMetric("EcCombinedReadFallbacks"));
+  }
+
+  /**
+   * A source datanode of the combined read is killed after the first window,
+   * the rest of the block is reconstructed from the sources read one by one.
+   */
+  @Test(timeout = 120000)
+  public void testSourceKilledDuringCombinedRead() throws Exception {
+    ErasureCodingPolicy policy = getEcPolicy();
+    MiniDFSCluster cluster = getCluster();
+    DistributedFileSystem fs = cluster.getFileSystem();
+    // Each internal block is read in several windows.
+    int fileLen = policy.getNumDataUnits() * getBlockSize();
+    Path file = new Path("/testSourceKilledDuringCombinedRead");
+    DFSTestUtil.writeFile(fs, file, StripedFileTestUtil.generateBytes(fileLen));
+    StripedFileTestUtil.waitBlockGroupsReported(fs, file.toString());
+
+    LocatedStripedBlock block = (LocatedStripedBlock) StripedFileTestUtil
+        .getLocatedBlocks(file, fs).getLastLocatedBlock();
+    List<DataNode> datanodes = cluster.getDataNodes();
+    // The datanode of data block 0 is lost, the one of data block 1 is
+    // killed during the reconstruction.
+    DataNode lost = null;
+    DataNode victim = null;
+    byte[] indices = block.getBlockIndices();
+    for (int i = 0; i < indices.length; i++) {
+      DataNode dn = cluster.getDataNode(block.getLocations()[i].getIpcPort());
+      if (indices[i] == 0) {
+        lost = dn;
+      } else if (indices[i] == 1) {
+        victim = dn;
+      }
+    }
+    ExtendedBlock lostBlock = StripedBlockUtil.constructInternalBlock(
+        block.getBlock(), policy.getCellSize(), policy.getNumDataUnits(), 0);
+    int lostIndex = datanodes.indexOf(lost);
+    byte[] expected = DFSTestUtil.readFileAsBytes(
+        cluster.getBlockFile(lostIndex, lostBlock));
+
+    final DataNode toKill = victim;
+    final AtomicInteger windows = new AtomicInteger();
+    DataNodeFaultInjector oldInjector = DataNodeFaultInjector.get();
+    DataNodeFaultInjector.set(new DataNodeFaultInjector() {
+      @Override
+      public void stripedBlockReconstruction() throws IOException {
+        if (windows.incrementAndGet() == 2) {
+          LOG.info("Stopping source {} during the combined read", toKill);
+          toKill.shutdown();
+          cluster.setDataNodeDead(toKill.getDatanodeId());
+        }
+      }
+    });
+    try {
+      lost.shutdown();
+      cluster.setDataNodeDead(lost.getDatanodeId());
+      StripedFileTestUtil.waitForReconstructionFinished(file, fs,
+          policy.getNumDataUnits() + policy.getNumParityUnits());
+    } finally {
+      DataNodeFaultInjector.set(oldInjector);
+    }
+
+    assertTrue(getLongMetric("EcCombinedReadStripes") > 0);
+    assertTrue(getLongMetric("EcCombinedReadFallbacks") > 0);
+    File reconstructed = null;
+    for (int i = 0; i < datanodes.size(); i++) {
+      if (i != lostIndex && cluster.getBlockFile(i, lostBlock) != null) {
+        reconstructed = cluster.getBlockFile(i, lostBlock);
+      }
+    }
+    assertTrue("Block " + lostBlock + " was not reconstructed",
+        reconstructed != null);
+    assertArrayEquals(expected, DFSTestUtil.readFileAsBytes(reconstructed));
+  }
+
+  private long getLongMetric(String metricName) {
+    long metricValue = 0;
+    // Add the metric values from all the live datanodes.
+    for (DataNode dn : getCluster().getDataNodes()) {
+      if (dn.isDatanodeUp()) {
+        MetricsRecordBuilder rb = getMetrics(dn.getMetrics().name());
+        metricValue += getLongCounter(metricName, rb);
+      }
+    }
+    return metricValue;
+  }
+}
@@ -1208,6 +1208,13 @@ public void testBalancerWithNonZeroThreadsForMove() throws Exception {
     testBalancer1Internal(conf);
   }
 
+  @Test(timeout=100000)
+  public void testStreamingBalancer() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_BALANCER_STREAMING_ENABLED_KEY, true);
+    testBalancer1Internal(conf);
+  }
+
   @Test(timeout=100000)
   public void testBalancer2() throws Exception {
     testBalancer2Internal(new HdfsConfiguration());
@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.balancer;
+
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test MoveConcurrencyTuner class.
+ */
+public class TestMoveConcurrencyTuner {
+
+  @Test
+  public void testConcurrencyFollowsThroughput() {
+    final DatanodeInfo target = DFSTestUtil.getDatanodeInfo("1.1.1.1",
+        "target", 9866);
+    final MoveConcurrencyTuner tuner = new MoveConcurrencyTuner(8);
+    assertEquals(2, tuner.getConcurrency(target, 2));
+
+    // Grows while the throughput grows.
+    tuner.addMove(target, 1000L, 10L);
+    tuner.endRound();
+    assertEquals(3, tuner.getConcurrency(target, 2));
+    tuner.addMove(target, 1000L, 10L);
+    tuner.endRound();
+    assertEquals(4, tuner.getConcurrency(target, 2));
+
+    // Stays when the throughput no longer grows.
+    tuner.addMove(target, 1000L, 13L);
+    tuner.endRound();
+    assertEquals(4, tuner.getConcurrency(target, 2));
+
+    // Backs off when the throughput drops.
+    tuner.addMove(target, 1000L, 20L);
+    tuner.endRound();
+    assertEquals(3, tuner.getConcurrency(target, 2));
+
+    // Halves on failures.
+    tuner.addMove(target, 1000L, 10L);
+    tuner.addFailure(target);
+    tuner.endRound();
+    assertEquals(1, tuner.getConcurrency(target, 2));
+
+    // Never above the maximum.
+    for (int i = 0; i < 20; i++) {
+      tuner.addMove(target, 1000L * (i + 1), 10L);
+      tuner.endRound();
+    }
+    assertEquals(8, tuner.getConcurrency(target, 2));
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.balancer;
+
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorage;
+import org.apache.hadoop.hdfs.server.protocol.DatanodeStorageReport;
+import org.apache.hadoop.hdfs.server.protocol.StorageReport;
+import org.apache.hadoop.util.FakeTimer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test UtilizationModel class.
+ */
+public class TestUtilizationModel {
+  private static final long CAPACITY = 1000L;
+
+  private static DatanodeStorageReport newReport(DatanodeInfo dn,
+      long used) {
+    final StorageReport storage = new StorageReport(
+        new DatanodeStorage("s-" + dn.getDatanodeUuid(),
+            DatanodeStorage.State.NORMAL, StorageType.DISK),
+        false, CAPACITY, used, CAPACITY - used, used, 0L);
+    return new DatanodeStorageReport(dn, new StorageReport[] {storage});
+  }
+
+  @Test
+  public void testMovesAppliedUntilRefresh() throws Exception {
+    final DatanodeInfo source = DFSTestUtil.getDatanodeInfo("1.1.1.1",
+        "source", 9866);
+    final DatanodeInfo target = DFSTestUtil.getDatanodeInfo("2.2.2.2",
+        "target", 9866);
+    final NameNodeConnector nnc = mock(NameNodeConnector.class);
+    when(nnc.getLiveDatanodeStorageReport()).thenReturn(
+        new DatanodeStorageReport[] {newReport(source, 800L),
+            newReport(target, 200L)});
+
+    final UtilizationModel model =
+        new UtilizationModel(nnc, Long.MAX_VALUE, 0L);
+    assertEquals(2, model.getLiveDatanodeStorageReport().length);
+    assertFalse(model.invalidateIfUpdated());
+
+    model.addMove(source, StorageType.DISK, target, StorageType.DISK, 100L);
+    model.getLiveDatanodeStorageReport();
+    verify(nnc, times(1)).getLiveDatanodeStorageReport();
+    final StorageReport s =
+        model.getReport(source.getDatanodeUuid()).getStorageReports()[0];
+    assertEquals(700L, s.getBlockPoolUsed());
+    assertEquals(300L, s.getRemaining());
+    final StorageReport t =
+        model.getReport(target.getDatanodeUuid()).getStorageReports()[0];
+    assertEquals(300L, t.getBlockPoolUsed());
+    assertEquals(700L, t.getRemaining());
+
+    // The moves are confirmed with the namenode before exiting.
+    assertTrue(model.invalidateIfUpdated());
+    model.getLiveDatanodeStorageReport();
+    verify(nnc, times(2)).getLiveDatanodeStorageReport();
+    assertEquals(800L, model.getReport(source.getDatanodeUuid())
+        .getStorageReports()[0].getBlockPoolUsed());
+  }
+
+  @Test
+  public void testConfirmationWaitsForHeartbeats() throws Exception {
+    final DatanodeInfo source = DFSTestUtil.getDatanodeInfo("1.1.1.1",
+        "source", 9866);
+    final DatanodeInfo target = DFSTestUtil.getDatanodeInfo("2.2.2.2",
+        "target", 9866);
+    final NameNodeConnector nnc = mock(NameNodeConnector.class);
+    when(nnc.getLiveDatanodeStorageReport()).thenReturn(
+        new DatanodeStorageReport[] {newReport(source, 800L),
+            newReport(target, 200L)});
+    final long confirmDelay = 3000L;
+    final FakeTimer timer = new FakeTimer();
+    final UtilizationModel model =
+        new UtilizationModel(nnc, Long.MAX_VALUE, confirmDelay, timer);
+    model.getLiveDatanodeStorageReport();
+
+    model.addMove(source, StorageType.DISK, target, StorageType.DISK, 100L);
+    assertTrue(model.invalidateIfUpdated());
+    // The heartbeats may not have reported the move yet.
+    timer.advance(confirmDelay - 1);
+    model.getLiveDatanodeStorageReport();
+    verify(nnc, times(1)).getLiveDatanodeStorageReport();
+    assertEquals(700L, model.getReport(source.getDatanodeUuid())
+        .getStorageReports()[0].getBlockPoolUsed());
+
+    timer.advance(1);
+    model.getLiveDatanodeStorageReport();
+    verify(nnc, times(2)).getLiveDatanodeStorageReport();
+    assertFalse(model.invalidateIfUpdated());
+  }
+}
@@ -713,6 +713,79 @@ public void testGetBlockLocationConsiderLoadWithNodesOfSameDistance()
     assertEquals(2, ipSet.size());
   }
 
+  @Test
+  public void testGetBlockLocationConsiderDirectedReads()
+      throws IOException, URISyntaxException {
+    Configuration conf = new Configuration();
+    conf.setBoolean(DFSConfigKeys.DFS_NAMENODE_READ_CONSIDERLOAD_KEY, true);
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_READ_CONSIDERDIRECTEDREADS_KEY, true);
+    FSNamesystem fsn = Mockito.mock(FSNamesystem.class);
+    Mockito.when(fsn.hasWriteLock()).thenReturn(true);
+    Mockito.when(fsn.hasWriteLock(RwLockMode.BM)).thenReturn(true);
+    URL shellScript = getClass()
+        .getResource("/" + Shell.appendScriptExtension("topology-script"));
+    Path resourcePath = Paths.get(shellScript.toURI());
+    FileUtil.setExecutable(resourcePath.toFile(), true);
+    conf.set(DFSConfigKeys.NET_TOPOLOGY_SCRIPT_FILE_NAME_KEY,
+        resourcePath.toString());
+    DatanodeManager dm = mockDatanodeManager(fsn, conf);
+    ReadLoadTracker tracker = dm.getReadLoadTracker();
+    assertNotNull(tracker);
+
+    int totalDNs = 5;
+    // Register 5 datanodes and 2 nodes per rack.
+    DatanodeDescriptor[] locs = new DatanodeDescriptor[totalDNs];
+    for (int i = 0; i < totalDNs; i++) {
+      String uuid = "UUID-" + i;
+      String ip = "IP-" + i / 2 + "-" + i;
+      DatanodeRegistration dr = Mockito.mock(DatanodeRegistration.class);
+      Mockito.when(dr.getDatanodeUuid()).thenReturn(uuid);
+      Mockito.when(dr.getIpAddr()).thenReturn(ip);
+      dm.registerDatanode(dr);
+      locs[i] = dm.getDatanode(uuid);
+    }
+    // locs[2] and locs[3] are in the rack of the client.
+    locs[2].setXceiverCount(2);
+    locs[3].setXceiverCount(4);
+
+    ExtendedBlock b = new ExtendedBlock("somePoolID", 1234);
+    LocatedBlock block = new LocatedBlock(b, locs);
+    List<LocatedBlock> blocks = new ArrayList<>();
+    blocks.add(block);
+
+    // Every read directed to a node counts towards its load until its next
+    // heartbeat, so the reads are spread until the loads are even.
+    final String targetIpNotInCluster = locs[3].getIpAddr() + "-client";
+    Map<String, Integer> firsts = new HashMap<>();
+    for (int i = 0; i < 6; i++) {
+      dm.sortLocatedBlocks(targetIpNotInCluster, blocks);
+      DatanodeInfo[] sortedLocs = block.getLocations();
+      assertEquals(totalDNs, sortedLocs.length);
+      if (i < 2) {
+        assertEquals(locs[2].getIpAddr(), sortedLocs[0].getIpAddr());
+      }
+      firsts.merge(sortedLocs[0].getIpAddr(), 1, Integer::sum);
+    }
+    assertEquals(Integer.valueOf(4), firsts.get(locs[2].getIpAddr()));
+    assertEquals(Integer.valueOf(2), firsts.get(locs[3].getIpAddr()));
+    assertEquals(4, tracker.getDirectedReads(locs[2]));
+    assertEquals(2, tracker.getDirectedReads(locs[3]));
+
+    // The next heartbeats report the xceiver counts including those reads.
+    for (int i = 2; i <= 3; i++) {
+      locs[i].setLastUpdateMonotonic(locs[i].getLastUpdateMonotonic() + 1);
+      assertEquals(0, tracker.getDirectedReads(locs[i]));
+    }
+    locs[2].setXceiverCount(5);
+    locs[3].setXceiverCount(6);
+    block = new LocatedBlock(b, locs);
+    blocks.set(0, block);
+    dm.sortLocatedBlocks(targetIpNotInCluster, blocks);
+    assertEquals(locs[2].getIpAddr(), block.getLocations()[0].getIpAddr());
+    assertEquals(1, tracker.getDirectedReads(locs[2]));
+  }
+
   @Test
   public void testGetBlockLocationConsiderStorageType()
       throws IOException, URISyntaxException {
@@ -17,6 +17,10 @@
  */
 package org.apache.hadoop.hdfs.server.blockmanagement;
 
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
 import org.apache.hadoop.hdfs.HdfsConfiguration;
 import org.apache.hadoop.hdfs.MiniDFSCluster;
 import org.apache.hadoop.hdfs.TestBlockStoragePolicy;
@@ -33,6 +37,7 @@
 import java.util.concurrent.Future;
 
 import static org.apache.hadoop.fs.contract.hdfs.HDFSContract.BLOCK_SIZE;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.spy;
 
@@ -105,4 +110,38 @@ public void testChooseTargetWhenAllDataNodesStop() throws Throwable {
       }
     }
   }
+
+  /**
+   * Verify that blocks are replicated when their targets are chosen by the
+   * target selection threads and the work per iteration is adaptive.
+   */
+  @Test
+  public void testParallelTargetSelectionWithAdaptiveWork() throws Exception {
+    HdfsConfiguration conf = new HdfsConfiguration();
+    conf.setInt(
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_TARGET_SELECTION_THREADS_KEY, 4);
+    conf.setBoolean(
+        DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_ADAPTIVE_WORK_ENABLED_KEY, true);
+    try (MiniDFSCluster miniCluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(3).build()) {
+      miniCluster.waitActive();
+      BlockManager blockManager = miniCluster.getNamesystem()
+          .getBlockManager();
+      assertEquals(3 * DFSConfigKeys.DFS_NAMENODE_REPLICATION_MAX_STREAMS_DEFAULT,
+          blockManager.getReconstructionWorkCapacity());
+
+      FileSystem fs = miniCluster.getFileSystem();
+      Path[] files = new Path[10];
+      for (int i = 0; i < files.length; i++) {
+        files[i] = new Path("/file" + i);
+        DFSTestUtil.createFile(fs, files[i], 1024, (short) 1, i);
+      }
+      for (Path file : files) {
+        fs.setReplication(file, (short) 3);
+      }
+      for (Path file : files) {
+        DFSTestUtil.waitReplication(fs, file, (short) 3);
+      }
+    }
+  }
 }
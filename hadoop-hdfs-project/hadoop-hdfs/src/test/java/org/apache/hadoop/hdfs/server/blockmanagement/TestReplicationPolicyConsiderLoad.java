@@ -23,7 +23,10 @@
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
@@ -131,6 +134,36 @@ public void testChooseTargetWithDecomNodes() throws IOException {
     NameNode.LOG.info("Done working on it");
   }
 
+  /**
+   * Tests that the targets chosen in a batch count as load of their
+   * datanodes, so that the batch is spread over the cluster.
+   */
+  @Test
+  public void testChooseTargetsInBatch() throws IOException {
+    final int numBlocks = 4 * dataNodes.length;
+    List<BlockPlacementPolicy.TargetRequest> requests = new ArrayList<>();
+    for (int i = 0; i < numBlocks; i++) {
+      requests.add(new BlockPlacementPolicy.TargetRequest("testFile.txt", 1,
+          null, new ArrayList<DatanodeStorageInfo>(), false, null, 1024,
+          TestBlockStoragePolicy.DEFAULT_STORAGE_POLICY, null));
+    }
+    List<DatanodeStorageInfo[]> targets = namenode.getNamesystem()
+        .getBlockManager().getBlockPlacementPolicy().chooseTargets(requests);
+
+    assertEquals(numBlocks, targets.size());
+    Map<DatanodeDescriptor, Integer> counts = new HashMap<>();
+    for (DatanodeStorageInfo[] blockTargets : targets) {
+      assertEquals(1, blockTargets.length);
+      counts.merge(blockTargets[0].getDatanodeDescriptor(), 1, Integer::sum);
+    }
+    // A datanode is too busy once it has more than 1.2 times the average
+    // number of targets chosen so far.
+    for (Map.Entry<DatanodeDescriptor, Integer> count : counts.entrySet()) {
+      assertTrue(count.getKey() + " was chosen " + count.getValue()
+          + " times", count.getValue() <= 5);
+    }
+  }
+
   @Test
   public void testConsiderLoadFactor() throws IOException {
     namenode.getNamesystem().writeLock(RwLockMode.BM);
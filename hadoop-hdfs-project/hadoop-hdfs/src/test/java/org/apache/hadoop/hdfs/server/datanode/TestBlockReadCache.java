@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.apache.hadoop.test.MetricsAsserts.getLongCounter;
+import static org.apache.hadoop.test.MetricsAsserts.getMetrics;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.DistributedFileSystem;
+import org.apache.hadoop.hdfs.ExtendedBlockId;
+import org.apache.hadoop.hdfs.HdfsConfiguration;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
+import org.apache.hadoop.hdfs.protocol.ExtendedBlock;
+import org.apache.hadoop.hdfs.server.common.HdfsServerConstants.ReplicaState;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
+import org.apache.hadoop.hdfs.server.datanode.metrics.DataNodeMetrics;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link BlockReadCache} and {@link BlockFrequencySketch}.
+ */
+public class TestBlockReadCache {
+  private static final String BPID = "BP-TEST";
+  private static final int BLOCK_SIZE = 1024;
+
+  private FsDatasetSpi<?> dataset;
+  private DataNodeMetrics metrics;
+
+  @Before
+  public void setup() throws IOException {
+    dataset = mock(FsDatasetSpi.class);
+    metrics = mock(DataNodeMetrics.class);
+    when(dataset.getBlockInputStream(any(ExtendedBlock.class), anyLong()))
+        .thenAnswer(invocation -> {
+          ExtendedBlock b = invocation.getArgument(0);
+          return new ByteArrayInputStream(dataOf(b.getBlockId()));
+        });
+  }
+
+  private static byte[] dataOf(long blockId) {
+    byte[] data = new byte[BLOCK_SIZE];
+    Arrays.fill(data, (byte) blockId);
+    return data;
+  }
+
+  private static Replica replica(long blockId, long genStamp) {
+    Replica replica = mock(Replica.class);
+    when(replica.getBlockId()).thenReturn(blockId);
+    when(replica.getGenerationStamp()).thenReturn(genStamp);
+    when(replica.getNumBytes()).thenReturn((long) BLOCK_SIZE);
+    when(replica.getState()).thenReturn(ReplicaState.FINALIZED);
+    return replica;
+  }
+
+  private static byte[] readAll(InputStream in, int len) throws IOException {
+    byte[] buf = new byte[len];
+    IOUtils.readFully(in, buf, 0, len);
+    return buf;
+  }
+
+  @Test(timeout = 60000)
+  public void testCachedBlockIsServedFromMemory() throws IOException {
+    BlockReadCache cache = new BlockReadCache(4 * BLOCK_SIZE, BLOCK_SIZE,
+        metrics);
+    ExtendedBlock block = new ExtendedBlock(BPID, 1, BLOCK_SIZE, 1000);
+    Replica replica = replica(1, 1000);
+
+    InputStream in = cache.getBlockInputStream(block, replica, 0, dataset);
+    assertNotNull(in);
+    assertArrayEquals(dataOf(1), readAll(in, BLOCK_SIZE));
+    assertEquals(BLOCK_SIZE, cache.getCacheUsed());
+
+    in = cache.getBlockInputStream(block, replica, 512, dataset);
+    assertNotNull(in);
+    assertArrayEquals(Arrays.copyOf(dataOf(1), 512), readAll(in, 512));
+    assertEquals(-1, in.read());
+    verify(dataset, times(1)).getBlockInputStream(any(ExtendedBlock.class),
+        anyLong());
+    verify(metrics, times(1)).incrBlockReadCacheHits();
+  }
+
+  @Test(timeout = 60000)
+  public void testChangedReplicaIsNotServedFromCache() throws IOException {
+    BlockReadCache cache = new BlockReadCache(4 * BLOCK_SIZE, BLOCK_SIZE,
+        metrics);
+    ExtendedBlock block = new ExtendedBlock(BPID, 1, BLOCK_SIZE, 1000);
+    assertNotNull(cache.getBlockInputStream(block, replica(1, 1000), 0,
+        dataset));
+
+    // An append bumps the generation stamp.
+    block.setGenerationStamp(1001);
+    cache.getBlockInputStream(block, replica(1, 1001), 0, dataset);
+    verify(metrics, times(0)).incrBlockReadCacheHits();
+    verify(metrics, times(1)).incrBlockReadCacheEvictions();
+    verify(dataset, times(2)).getBlockInputStream(any(ExtendedBlock.class),
+        anyLong());
+  }
+
+  @Test(timeout = 60000)
+  public void testInvalidatedBlockIsDropped() throws IOException {
+    BlockReadCache cache = new BlockReadCache(4 * BLOCK_SIZE, BLOCK_SIZE,
+        metrics);
+    ExtendedBlock block = new ExtendedBlock(BPID, 1, BLOCK_SIZE, 1000);
+    assertNotNull(cache.getBlockInputStream(block, replica(1, 1000), 0,
+        dataset));
+    assertEquals(1, cache.getNumBlocksCached());
+
+    cache.invalidate(ExtendedBlockId.fromExtendedBlock(block));
+    assertEquals(0, cache.getNumBlocksCached());
+    assertEquals(0, cache.getCacheUsed());
+    verify(metrics, times(1)).incrBlockReadCacheEvictions();
+    // Invalidating a block that is not cached is a no-op.
+    cache.invalidate(ExtendedBlockId.fromExtendedBlock(block));
+    verify(metrics, times(1)).incrBlockReadCacheEvictions();
+  }
+
+  @Test(timeout = 60000)
+  public void testLargeAndUnfinalizedBlocksAreNotCached() throws IOException {
+    BlockReadCache cache = new BlockReadCache(4 * BLOCK_SIZE, BLOCK_SIZE / 2,
+        metrics);
+    ExtendedBlock block = new ExtendedBlock(BPID, 1, BLOCK_SIZE, 1000);
+    assertNull(cache.getBlockInputStream(block, replica(1, 1000), 0, dataset));
+
+    cache = new BlockReadCache(4 * BLOCK_SIZE, BLOCK_SIZE, metrics);
+    Replica rbw = replica(1, 1000);
+    when(rbw.getState()).thenReturn(ReplicaState.RBW);
+    assertNull(cache.getBlockInputStream(block, rbw, 0, dataset));
+    assertEquals(0, cache.getCacheUsed());
+  }
+
+  @Test(timeout = 60000)
+  public void testColdBlocksDoNotEvictHotBlocks() throws IOException {
+    BlockReadCache cache = new BlockReadCache(2 * BLOCK_SIZE, BLOCK_SIZE,
+        metrics);
+    for (long id = 1; id <= 2; id++) {
+      ExtendedBlock block = new ExtendedBlock(BPID, id, BLOCK_SIZE, 1000);
+      for (int i = 0; i < 5; i++) {
+        cache.getBlockInputStream(block, replica(id, 1000), 0, dataset);
+      }
+    }
+    assertEquals(2, cache.getNumBlocksCached());
+
+    // A block read once should not displace blocks read many times.
+    ExtendedBlock cold = new ExtendedBlock(BPID, 3, BLOCK_SIZE, 1000);
+    assertNull(cache.getBlockInputStream(cold, replica(3, 1000), 0, dataset));
+    assertEquals(2, cache.getNumBlocksCached());
+    verify(metrics, times(1)).incrBlockReadCacheRejections();
+
+    // Once it becomes hotter than the others, it is admitted.
+    for (int i = 0; i < 10; i++) {
+      cache.getBlockInputStream(cold, replica(3, 1000), 0, dataset);
+    }
+    InputStream in = cache.getBlockInputStream(cold, replica(3, 1000), 0,
+        dataset);
+    assertArrayEquals(dataOf(3), readAll(in, BLOCK_SIZE));
+    assertEquals(2, cache.getNumBlocksCached());
+    assertTrue(cache.getCacheUsed() <= cache.getCapacity());
+  }
+
+  @Test(timeout = 120000)
+  public void testBlockSenderServesReadsFromCache() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setLong(DFSConfigKeys.DFS_DATANODE_BLOCK_READ_CACHE_CAPACITY_KEY,
+        1024 * 1024);
+    MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(1).build();
+    try {
+      cluster.waitActive();
+      DistributedFileSystem fs = cluster.getFileSystem();
+      DataNode dn = cluster.getDataNodes().get(0);
+      BlockReadCache cache = dn.getBlockReadCache();
+      assertNotNull(cache);
+
+      Path file = new Path("/testBlockSenderServesReadsFromCache");
+      DFSTestUtil.createFile(fs, file, 10000, (short) 1, 0xBEEFL);
+      // The first read loads the block, the second is served from memory.
+      byte[] data = DFSTestUtil.readFileAsBytes(fs, file);
+      assertEquals(1, cache.getNumBlocksCached());
+      assertEquals(data.length, cache.getCacheUsed());
+      assertArrayEquals(data, DFSTestUtil.readFileAsBytes(fs, file));
+      MetricsRecordBuilder rb = getMetrics(dn.getMetrics().name());
+      assertEquals(1, getLongCounter("BlockReadCacheAdmissions", rb));
+      assertTrue(getLongCounter("BlockReadCacheHits", rb) >= 1);
+
+      // Deleting the file drops its block from the cache.
+      fs.delete(file, false);
+      GenericTestUtils.waitFor(() -> cache.getNumBlocksCached() == 0,
+          100, 30000);
+      assertEquals(0, cache.getCacheUsed());
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test(timeout = 60000)
+  public void testSketchAgesOutOldAccesses() {
+    BlockFrequencySketch sketch = new BlockFrequencySketch(16);
+    for (int i = 0; i < 100; i++) {
+      sketch.increment(42);
+    }
+    assertEquals(BlockFrequencySketch.MAX_COUNT, sketch.frequency(42));
+
+    // Enough other accesses trigger a reset, which halves the counters.
+    for (long key = 1000; key < 1000 + 16 * 10 * 2; key++) {
+      sketch.increment(key);
+      if (sketch.frequency(42) < BlockFrequencySketch.MAX_COUNT) {
+        break;
+      }
+    }
+    assertTrue(sketch.frequency(42) < BlockFrequencySketch.MAX_COUNT);
+  }
+}
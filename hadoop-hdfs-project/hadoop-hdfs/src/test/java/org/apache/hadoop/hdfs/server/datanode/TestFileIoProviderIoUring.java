@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.datanode;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.ReplicaOutputStreams;
+import org.apache.hadoop.io.nativeio.IoUringEngine;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.apache.hadoop.util.DataChecksum;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests that the streams of {@link FileIoProvider} issue their IO through
+ * the io_uring engine. The engine is replaced by a mock doing positional
+ * IO with the JDK, so that the test runs on hosts without io_uring.
+ */
+public class TestFileIoProviderIoUring {
+  private File testDir;
+  private IoUringEngine engine;
+  private FileIoProvider fileIoProvider;
+
+  @Before
+  public void setup() throws IOException {
+    testDir = GenericTestUtils.getRandomizedTestDir();
+    Files.createDirectories(testDir.toPath());
+    engine = Mockito.mock(IoUringEngine.class);
+    Mockito.doAnswer(invocation -> {
+      FileDescriptor fd = invocation.getArgument(0);
+      long position = invocation.getArgument(1);
+      ByteBuffer buf = wrap(invocation.getArgument(2),
+          invocation.getArgument(3), invocation.getArgument(4));
+      // The channel shares the descriptor of the stream, do not close it.
+      FileChannel channel = new FileOutputStream(fd).getChannel();
+      while (buf.hasRemaining()) {
+        position += channel.write(buf, position);
+      }
+      return CompletableFuture.completedFuture(null);
+    }).when(engine).pwriteAsync(any(), anyLong(), any(), anyInt(), anyInt());
+    Mockito.doAnswer(invocation -> {
+      FileDescriptor fd = invocation.getArgument(0);
+      long position = invocation.getArgument(1);
+      ByteBuffer buf = wrap(invocation.getArgument(2),
+          invocation.getArgument(3), invocation.getArgument(4));
+      int n = new FileInputStream(fd).getChannel().read(buf, position);
+      return Math.max(n, 0);
+    }).when(engine).pread(any(), anyLong(), any(), anyInt(), anyInt());
+    fileIoProvider = new FileIoProvider(new Configuration(), null, engine);
+  }
+
+  private static ByteBuffer wrap(byte[] b, int off, int len) {
+    return ByteBuffer.wrap(b, off, len);
+  }
+
+  @After
+  public void teardown() {
+    FileUtil.fullyDelete(testDir);
+  }
+
+  @Test(timeout = 30000)
+  public void testReplicaStreamsWriteThroughEngine() throws IOException {
+    FsVolumeSpi volume = Mockito.mock(FsVolumeSpi.class);
+    Mockito.when(volume.getFileIoProvider()).thenReturn(fileIoProvider);
+    LocalReplicaInPipeline replica =
+        new LocalReplicaInPipeline(1234L, 1000L, volume, testDir, 0L);
+
+    byte[] data = new byte[1024];
+    Arrays.fill(data, (byte) 1);
+    byte[] crcs = new byte[16];
+    Arrays.fill(crcs, (byte) 2);
+    byte[] lastCrc = {3, 3, 3, 3};
+    try (ReplicaOutputStreams streams = replica.createStreams(true,
+        DataChecksum.newDataChecksum(DataChecksum.Type.CRC32C, 512))) {
+      streams.getDataOut().write(data);
+      OutputStream checksumOut = streams.getChecksumOut();
+      checksumOut.write(crcs);
+      // Overwrite the last checksum, as BlockReceiver does for a partial
+      // chunk.
+      FileChannel channel = ((FileOutputStream) checksumOut).getChannel();
+      assertEquals(crcs.length, channel.position());
+      channel.position(channel.position() - lastCrc.length);
+      checksumOut.write(lastCrc);
+    }
+
+    Mockito.verify(engine).pwriteAsync(any(), eq(0L), any(), eq(0),
+        eq(data.length));
+    Mockito.verify(engine).pwriteAsync(any(), eq(0L), any(), eq(0),
+        eq(crcs.length));
+    Mockito.verify(engine).pwriteAsync(any(), eq(12L), any(), eq(0),
+        eq(lastCrc.length));
+    assertArrayEquals(data,
+        Files.readAllBytes(replica.getBlockFile().toPath()));
+    System.arraycopy(lastCrc, 0, crcs, 12, lastCrc.length);
+    assertArrayEquals(crcs,
+        Files.readAllBytes(replica.getMetaFile().toPath()));
+  }
+
+  @Test(timeout = 30000)
+  public void testAppendStreamDoesNotUseEngine() throws IOException {
+    File f = new File(testDir, "append");
+    try (FileOutputStream out =
+             fileIoProvider.getFileOutputStream(null, f, true)) {
+      out.write(new byte[10]);
+    }
+    Mockito.verify(engine, Mockito.never())
+        .pwriteAsync(any(), anyLong(), any(), anyInt(), anyInt());
+    assertEquals(10, f.length());
+  }
+
+  @Test(timeout = 30000)
+  public void testFailedWriteIsThrownOnFlush() throws IOException {
+    CompletableFuture<Void> write = new CompletableFuture<>();
+    Mockito.doReturn(write).when(engine)
+        .pwriteAsync(any(), anyLong(), any(), anyInt(), anyInt());
+    File f = new File(testDir, "failed");
+    try (FileOutputStream out =
+             fileIoProvider.getFileOutputStream(null, f, false)) {
+      // The write returns before the engine is done with it.
+      out.write(new byte[10]);
+      write.completeExceptionally(new IOException("injected"));
+      try {
+        out.flush();
+        fail("the failed write should be thrown on flush");
+      } catch (IOException e) {
+        GenericTestUtils.assertExceptionContains("injected", e);
+      }
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testReadsKeepPosition() throws IOException {
+    File f = new File(testDir, "read");
+    byte[] data = new byte[300];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+    Files.write(f.toPath(), data);
+
+    try (FileInputStream in = fileIoProvider.openAndSeek(null, f, 100)) {
+      byte[] buf = new byte[50];
+      assertEquals(50, in.read(buf));
+      assertArrayEquals(Arrays.copyOfRange(data, 100, 150), buf);
+      assertEquals(50, in.read(buf, 0, 50));
+      assertArrayEquals(Arrays.copyOfRange(data, 150, 200), buf);
+      Mockito.verify(engine).pread(any(), eq(100L), any(), eq(0), eq(50));
+      Mockito.verify(engine).pread(any(), eq(150L), any(), eq(0), eq(50));
+
+      // The channel and the single byte reads see the position of the
+      // stream.
+      assertEquals(200, in.getChannel().position());
+      assertEquals(200, in.read());
+      assertEquals(50, in.skip(50));
+      assertEquals(49, in.read(buf));
+      assertArrayEquals(Arrays.copyOfRange(data, 251, 300),
+          Arrays.copyOf(buf, 49));
+      assertEquals(-1, in.read(buf));
+    }
+  }
+}
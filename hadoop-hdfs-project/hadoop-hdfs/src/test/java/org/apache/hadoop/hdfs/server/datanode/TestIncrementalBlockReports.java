@@ -85,7 +85,12 @@ public class TestIncrementalBlockReports {
   @Before
   public void startCluster() throws IOException {
     conf = new HdfsConfiguration();
-    cluster = new MiniDFSCluster.Builder(conf).numDataNodes(DN_COUNT).build();
+    startCluster(conf);
+  }
+
+  private void startCluster(Configuration clusterConf) throws IOException {
+    cluster = new MiniDFSCluster.Builder(clusterConf).numDataNodes(DN_COUNT)
+        .build();
     singletonNn = cluster.getNameNode();
     singletonDn = cluster.getDataNodes().get(0);
     bpos = singletonDn.getAllBpOs().get(0);
@@ -156,6 +161,70 @@ public void testReportBlockReceived() throws InterruptedException, IOException {
     }
   }
 
+  /**
+   * Ensure that an IBR is generated immediately for a block received by
+   * the DN when IBRs are sent from a dedicated thread.
+   */
+  @Test (timeout=60000)
+  public void testReportBlockReceivedWithAsyncSender()
+      throws InterruptedException, IOException {
+    cluster.shutdown();
+    conf.setBoolean(
+        DFSConfigKeys.DFS_BLOCKREPORT_INCREMENTAL_ASYNC_ENABLED_KEY, true);
+    startCluster(conf);
+    try {
+      DatanodeProtocolClientSideTranslatorPB nnSpy = spyOnDnCallsToNn();
+      injectBlockReceived();
+
+      // Sleep for a very short time, this is necessary since the IBR is
+      // generated asynchronously.
+      Thread.sleep(2000);
+
+      Mockito.verify(nnSpy, times(1)).blockReceivedAndDeleted(
+          any(DatanodeRegistration.class),
+          anyString(),
+          any(StorageReceivedDeletedBlocks[].class));
+    } finally {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
+  /**
+   * Ensure that the IBR batch delay grows while IBR RPCs are slow and
+   * shrinks again once they are fast.
+   */
+  @Test (timeout=60000)
+  public void testAdaptiveBatchDelay() {
+    try {
+      IncrementalBlockReportManager ibrManager =
+          new IncrementalBlockReportManager(0, singletonDn.getMetrics(),
+              100, 1000);
+      assertEquals(0, ibrManager.getBatchDelay());
+      ibrManager.updateBatchDelay(50);
+      assertEquals(0, ibrManager.getBatchDelay());
+
+      ibrManager.updateBatchDelay(500);
+      assertEquals(100, ibrManager.getBatchDelay());
+      ibrManager.updateBatchDelay(500);
+      assertEquals(200, ibrManager.getBatchDelay());
+      for (int i = 0; i < 10; i++) {
+        ibrManager.updateBatchDelay(500);
+      }
+      assertEquals(1000, ibrManager.getBatchDelay());
+
+      ibrManager.updateBatchDelay(10);
+      assertEquals(500, ibrManager.getBatchDelay());
+      for (int i = 0; i < 20; i++) {
+        ibrManager.updateBatchDelay(10);
+      }
+      assertEquals(0, ibrManager.getBatchDelay());
+    } finally {
+      cluster.shutdown();
+      cluster = null;
+    }
+  }
+
   /**
    * Ensure that a delayed IBR is generated for a block deleted on the DN.
    *
@@ -38,6 +38,7 @@
 import org.apache.hadoop.hdfs.server.datanode.DiskBalancerWorkItem;
 import org.apache.hadoop.hdfs.server.datanode.DiskBalancerWorkStatus;
 import org.apache.hadoop.hdfs.server.datanode.DiskBalancerWorkStatus.Result;
+import org.apache.hadoop.hdfs.server.datanode.fsdataset.DataNodeVolumeMetrics;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsDatasetSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.FsVolumeSpi;
 import org.apache.hadoop.hdfs.server.datanode.fsdataset.impl.FsVolumeImpl;
@@ -61,6 +62,7 @@
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -285,6 +287,46 @@ public Object answer(InvocationOnMock invocation) {
     }
   }
 
+  @Test
+  public void testDiskBalancerAdaptsToForegroundLatency() throws Exception {
+    Configuration conf = new HdfsConfiguration();
+    conf.setTimeDuration(DFSConfigKeys.DFS_DISK_BALANCER_LATENCY_THRESHOLD,
+        20, TimeUnit.MILLISECONDS);
+    conf.setInt(DFSConfigKeys.DFS_DISK_BALANCER_MIN_THROUGHPUT_PERCENT, 20);
+    DiskBalancerMover mover = new DiskBalancerMover(
+        Mockito.mock(FsDatasetSpi.class), conf);
+
+    DataNodeVolumeMetrics sourceMetrics =
+        Mockito.mock(DataNodeVolumeMetrics.class);
+    FsVolumeSpi source = Mockito.mock(FsVolumeSpi.class);
+    Mockito.doReturn(sourceMetrics).when(source).getMetrics();
+
+    // Slow foreground reads on the source halve the throughput, down to the
+    // configured minimum.
+    Mockito.doReturn(50.0).when(sourceMetrics).getReadIoMean();
+    int percent = mover.adjustThroughputPercent(100, source);
+    assertEquals(50, percent);
+    percent = mover.adjustThroughputPercent(percent, source);
+    percent = mover.adjustThroughputPercent(percent, source);
+    assertEquals(20, percent);
+
+    // Once latency recovers, the throughput grows back.
+    Mockito.doReturn(5.0).when(sourceMetrics).getReadIoMean();
+    percent = mover.adjustThroughputPercent(percent, source);
+    assertEquals(30, percent);
+    for (int i = 0; i < 10; i++) {
+      percent = mover.adjustThroughputPercent(percent, source);
+    }
+    assertEquals(100, percent);
+
+    // At half the bandwidth, 20MB at 10MB/sec should take 4 seconds.
+    DiskBalancerWorkItem item = Mockito.spy(new DiskBalancerWorkItem());
+    Mockito.doReturn((long) 10).when(item).getBandwidth();
+    assertEquals(800, mover.computeDelay(20 * 1024 * 1024, 1200, item));
+    assertEquals(2800,
+        mover.computeDelay(20 * 1024 * 1024, 1200, item, 50));
+  }
+
   @Test
   public void testDiskBalancerWithFedClusterWithOneNameServiceEmpty() throws
       Exception {
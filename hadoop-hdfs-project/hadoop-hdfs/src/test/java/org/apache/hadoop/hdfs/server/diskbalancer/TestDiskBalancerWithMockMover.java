@@ -37,6 +37,7 @@
 import org.apache.hadoop.hdfs.server.diskbalancer.connectors.ConnectorFactory;
 import org.apache.hadoop.hdfs.server.diskbalancer.datamodel.DiskBalancerCluster;
 import org.apache.hadoop.hdfs.server.diskbalancer.datamodel.DiskBalancerDataNode;
+import org.apache.hadoop.hdfs.server.diskbalancer.datamodel.DiskBalancerVolume;
 import org.apache.hadoop.hdfs.server.diskbalancer.planner.GreedyPlanner;
 import org.apache.hadoop.hdfs.server.diskbalancer.planner.MoveStep;
 import org.apache.hadoop.hdfs.server.diskbalancer.planner.NodePlan;
@@ -51,11 +52,16 @@
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.apache.hadoop.hdfs.server.datanode.DiskBalancerWorkStatus.Result.NO_PLAN;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -318,6 +324,68 @@ public void testCustomBandwidth() throws Exception {
   }
 
 
+  /**
+   * Test that steps on independent volume pairs run concurrently, that
+   * steps sharing a volume do not, and that a failed step does not stop the
+   * others.
+   */
+  @Test
+  public void testParallelMovesOnIndependentVolumes() throws Exception {
+    cluster.shutdown();
+    cluster = new MiniDFSCluster.Builder(new HdfsConfiguration())
+        .numDataNodes(1)
+        .storagesPerDatanode(4)
+        .build();
+    cluster.waitActive();
+    dataNode = cluster.getDataNodes().get(0);
+
+    Configuration conf = new HdfsConfiguration();
+    conf.setBoolean(DFSConfigKeys.DFS_DISK_BALANCER_ENABLED, true);
+    conf.setInt(DFSConfigKeys.DFS_DISK_BALANCER_MAX_PARALLEL_MOVES, 4);
+    TestMover blockMover = new TestMover(dataNode.getFSDataset());
+    blockMover.setDelay(500);
+    final DiskBalancer balancer = new DiskBalancerBuilder(conf)
+        .setMover(blockMover)
+        .setNodeID(dataNode.getDatanodeUuid())
+        .build();
+
+    List<DiskBalancerVolume> volumes = new ArrayList<>();
+    try (FsDatasetSpi.FsVolumeReferences references =
+             dataNode.getFSDataset().getFsVolumeReferences()) {
+      for (int i = 0; i < references.size(); i++) {
+        DiskBalancerVolume volume = new DiskBalancerVolume();
+        volume.setPath(references.get(i).getBaseURI().getPath());
+        volume.setUuid(references.get(i).getStorageID());
+        volumes.add(volume);
+      }
+    }
+    NodePlan plan = new NodePlan(dataNode.getDisplayName(),
+        dataNode.getIpcPort());
+    plan.setNodeUUID(dataNode.getDatanodeUuid());
+    plan.setTimeStamp(Time.now());
+    List<Step> steps = new ArrayList<>();
+    steps.add(new MoveStep(volumes.get(0), 0, volumes.get(1), 1024, "DISK"));
+    steps.add(new MoveStep(volumes.get(2), 0, volumes.get(3), 1024, "DISK"));
+    steps.add(new MoveStep(volumes.get(0), 0, volumes.get(2), 1024, "DISK"));
+    plan.setVolumeSetPlans(steps);
+    blockMover.setFailingSource(volumes.get(2).getUuid());
+
+    executeSubmitPlan(plan, balancer);
+    GenericTestUtils.waitFor(() -> {
+      try {
+        return balancer.queryWorkStatus().getResult() ==
+            DiskBalancerWorkStatus.Result.PLAN_DONE;
+      } catch (IOException ex) {
+        return false;
+      }
+    }, 100, 100000);
+
+    // The step after the failed one still ran.
+    assertEquals(2, blockMover.getRunCount());
+    assertEquals(2, blockMover.getMaxConcurrentCopies());
+    assertFalse(blockMover.hasSharedVolumeCopies());
+  }
+
   @Before
   public void setUp() throws Exception {
     Configuration conf = new HdfsConfiguration();
@@ -362,6 +430,11 @@ public static class TestMover implements DiskBalancer.BlockMover {
     private int runCount;
     private volatile boolean sleepInCopyBlocks;
     private long delay;
+    private final Set<String> activeVolumes = new HashSet<>();
+    private int activeCopies;
+    private int maxConcurrentCopies;
+    private boolean sharedVolumeCopies;
+    private volatile String failingSource;
 
     public TestMover(FsDatasetSpi dataset) {
       this.dataset = dataset;
@@ -380,6 +453,10 @@ public void setDelay(long milliseconds) {
       this.delay = milliseconds;
     }
 
+    public void setFailingSource(String volumeUuid) {
+      this.failingSource = volumeUuid;
+    }
+
     /**
      * Copies blocks from a set of volumes.
      *
@@ -389,7 +466,11 @@ public void setDelay(long milliseconds) {
     @Override
     public void copyBlocks(DiskBalancer.VolumePair pair,
                            DiskBalancerWorkItem item) {
-
+      synchronized (this) {
+        sharedVolumeCopies |= !activeVolumes.add(pair.getSourceVolUuid());
+        sharedVolumeCopies |= !activeVolumes.add(pair.getDestVolUuid());
+        maxConcurrentCopies = Math.max(maxConcurrentCopies, ++activeCopies);
+      }
       try {
         // get stuck if we are asked to sleep.
         while (sleepInCopyBlocks) {
@@ -401,6 +482,9 @@ public void copyBlocks(DiskBalancer.VolumePair pair,
         if (delay > 0) {
           Thread.sleep(delay);
         }
+        if (pair.getSourceVolUuid().equals(failingSource)) {
+          throw new RuntimeException("Injected failure");
+        }
         synchronized (this) {
           if (shouldRun()) {
             runCount++;
@@ -409,6 +493,12 @@ public void copyBlocks(DiskBalancer.VolumePair pair,
       } catch (InterruptedException ex) {
         // A failure here can be safely ignored with no impact for tests.
         LOG.error(ex.toString());
+      } finally {
+        synchronized (this) {
+          activeCopies--;
+          activeVolumes.remove(pair.getSourceVolUuid());
+          activeVolumes.remove(pair.getDestVolUuid());
+        }
       }
     }
 
@@ -460,6 +550,14 @@ public long getElapsedSeconds() {
       return 0;
     }
 
+    public synchronized int getMaxConcurrentCopies() {
+      return maxConcurrentCopies;
+    }
+
+    public synchronized boolean hasSharedVolumeCopies() {
+      return sharedVolumeCopies;
+    }
+
     public int getRunCount() {
       synchronized (this) {
         LOG.info("Run count : " + runCount);
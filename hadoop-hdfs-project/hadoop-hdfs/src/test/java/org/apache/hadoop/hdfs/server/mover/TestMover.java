@@ -810,6 +810,69 @@ public void testMoverFailedRetry() throws Exception {
     }
   }
 
+  @Test(timeout = 300000)
+  public void testParallelWalkerWithCheckpoint() throws Exception {
+    final Configuration conf = new HdfsConfiguration();
+    initConf(conf);
+    conf.setInt(DFSConfigKeys.DFS_MOVER_NAMESPACE_WALKER_THREADS_KEY, 4);
+    // a small queue makes the walker threads list some directories inline
+    conf.setInt(DFSConfigKeys.DFS_MOVER_NAMESPACE_WALKER_QUEUE_SIZE_KEY, 1);
+    final Path checkpoint = new Path("/system/mover.checkpoint");
+    conf.set(DFSConfigKeys.DFS_MOVER_CHECKPOINT_PATH_KEY,
+        checkpoint.toString());
+    final MiniDFSCluster cluster = new MiniDFSCluster.Builder(conf)
+        .numDataNodes(3)
+        .storageTypes(
+            new StorageType[][] {{StorageType.DISK, StorageType.ARCHIVE},
+                {StorageType.DISK, StorageType.ARCHIVE},
+                {StorageType.DISK, StorageType.ARCHIVE}}).build();
+    try {
+      cluster.waitActive();
+      final DistributedFileSystem dfs = cluster.getFileSystem();
+      final String dir = "/testParallelWalkerWithCheckpoint";
+      for (int i = 0; i < 4; i++) {
+        for (int j = 0; j < 2; j++) {
+          DFSTestUtil.createFile(dfs, new Path(dir + "/d" + i + "/e/f" + j),
+              DEFAULT_BLOCK_SIZE, (short) 2, 0L);
+        }
+      }
+      dfs.setStoragePolicy(new Path(dir), "COLD");
+
+      // a previous run completed d0
+      try (FSDataOutputStream out = dfs.create(checkpoint)) {
+        out.writeBytes(dir + "/d0/\n");
+      }
+      int rc = ToolRunner.run(conf, new Mover.Cli(),
+          new String[] {"-p", dir});
+      Assert.assertEquals("Movement to ARCHIVE should be successful", 0, rc);
+
+      for (int i = 1; i < 4; i++) {
+        for (int j = 0; j < 2; j++) {
+          waitForLocatedBlockWithArchiveStorageType(dfs,
+              dir + "/d" + i + "/e/f" + j, 2);
+        }
+      }
+      LocatedBlock lb = dfs.getClient().getLocatedBlocks(
+          dir + "/d0/e/f0", 0).get(0);
+      for (StorageType type : lb.getStorageTypes()) {
+        Assert.assertEquals(StorageType.DISK, type);
+      }
+      Assert.assertFalse("The checkpoint should be deleted on success",
+          dfs.exists(checkpoint));
+    } finally {
+      cluster.shutdown();
+    }
+  }
+
+  @Test
+  public void testCheckpointParent() {
+    Assert.assertEquals("/foo/", MoverCheckpoint.getParent("/foo/bar/"));
+    Assert.assertEquals("/foo/", MoverCheckpoint.getParent("/foo/bar"));
+    Assert.assertEquals("/foo/", MoverCheckpoint.getParent("/foo/.snapshot/"));
+    Assert.assertEquals("/", MoverCheckpoint.getParent("/foo/"));
+    Assert.assertEquals("", MoverCheckpoint.getParent("/"));
+  }
+
   @Test(timeout=100000)
   public void testBalancerMaxIterationTimeNotAffectMover() throws Exception {
     long blockSize = 10*1024*1024;
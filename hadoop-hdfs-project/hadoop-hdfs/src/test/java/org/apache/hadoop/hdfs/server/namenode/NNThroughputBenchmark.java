@@ -1584,6 +1584,9 @@ void printResults() {
       LOG.info("datanodes = " + numDatanodes + " " + blockDistribution);
       LOG.info("decommissioned datanodes = " + nodesToDecommission);
       LOG.info("datanode replication limit = " + nodeReplicationLimit);
+      LOG.info("batch placement = " + config.getBoolean(
+          DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_BATCH_PLACEMENT_ENABLED_KEY,
+          DFSConfigKeys.DFS_NAMENODE_REDUNDANCY_BATCH_PLACEMENT_ENABLED_DEFAULT));
       LOG.info("total blocks = " + totalBlocks);
       printStats();
       LOG.info("decommissioned blocks = " + numDecommissionedBlocks);
@@ -0,0 +1,91 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.sps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.hdfs.server.sps.ExternalSPSContext;
+import org.apache.hadoop.test.GenericTestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Tests the persistence of the paths inflight in the SPS.
+ */
+public class TestBlockStorageMovementNeeded {
+  private File testDir;
+  private File inflightPathsFile;
+
+  @Before
+  public void setup() {
+    testDir = GenericTestUtils.getRandomizedTestDir();
+    assertTrue(testDir.mkdirs());
+    inflightPathsFile = new File(testDir, "inflight");
+  }
+
+  @After
+  public void teardown() {
+    FileUtil.fullyDelete(testDir);
+  }
+
+  private static Context newContext() {
+    Context ctxt = Mockito.mock(ExternalSPSContext.class);
+    Mockito.when(ctxt.isRunning()).thenReturn(true);
+    Mockito.when(ctxt.isFileExist(Mockito.anyLong())).thenReturn(true);
+    return ctxt;
+  }
+
+  @Test(timeout = 30000)
+  public void testInflightPathsResumedAfterRestart() throws Exception {
+    Context ctxt = newContext();
+    // 1001 is handed out again, e.g. by a namenode after a failover
+    Mockito.when(ctxt.getNextSPSPath()).thenReturn(1000L, 1001L, 1001L, null);
+    BlockStorageMovementNeeded needed =
+        new BlockStorageMovementNeeded(ctxt, inflightPathsFile);
+    assertEquals(Long.valueOf(1000L), needed.getNextPath());
+    assertEquals(Long.valueOf(1001L), needed.getNextPath());
+    assertNull(needed.getNextPath());
+    assertEquals(2, needed.getInflightPaths().size());
+
+    // 1000 is a file, satisfied
+    needed.removeItemTrackInfo(new ItemInfo(1000L, 1000L), true);
+    assertEquals(1, needed.getInflightPaths().size());
+
+    // restart: 1001 is resumed without asking the namenode
+    Context restarted = newContext();
+    BlockStorageMovementNeeded resumed =
+        new BlockStorageMovementNeeded(restarted, inflightPathsFile);
+    resumed.loadInflightPaths();
+    assertEquals(Long.valueOf(1001L), resumed.getNextPath());
+    Mockito.verify(restarted, Mockito.never()).getNextSPSPath();
+    assertTrue(resumed.getInflightPaths().contains(1001L));
+
+    resumed.clearAll();
+    BlockStorageMovementNeeded empty =
+        new BlockStorageMovementNeeded(newContext(), inflightPathsFile);
+    empty.loadInflightPaths();
+    assertTrue(empty.getInflightPaths().isEmpty());
+  }
+}
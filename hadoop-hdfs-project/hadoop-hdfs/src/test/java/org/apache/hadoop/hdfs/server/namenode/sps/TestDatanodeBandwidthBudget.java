@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.hdfs.server.namenode.sps;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.hadoop.fs.StorageType;
+import org.apache.hadoop.hdfs.DFSTestUtil;
+import org.apache.hadoop.hdfs.protocol.Block;
+import org.apache.hadoop.hdfs.protocol.DatanodeInfo;
+import org.apache.hadoop.hdfs.server.protocol.BlockStorageMovementCommand.BlockMovingInfo;
+import org.junit.Test;
+
+/**
+ * Tests the bandwidth budget of the block moves of the SPS.
+ */
+public class TestDatanodeBandwidthBudget {
+  private static final long BANDWIDTH = 1000;
+
+  private final DatanodeInfo dn1 = DFSTestUtil.getLocalDatanodeInfo(1001);
+  private final DatanodeInfo dn2 = DFSTestUtil.getLocalDatanodeInfo(1002);
+  private final DatanodeInfo dn3 = DFSTestUtil.getLocalDatanodeInfo(1003);
+  private final DatanodeInfo dn4 = DFSTestUtil.getLocalDatanodeInfo(1004);
+
+  private static BlockMovingInfo move(long numBytes, DatanodeInfo source,
+      DatanodeInfo target) {
+    return new BlockMovingInfo(new Block(1L, numBytes, 1L), source, target,
+        StorageType.DISK, StorageType.ARCHIVE);
+  }
+
+  @Test
+  public void testSourceAndTargetReservedTogether() {
+    DatanodeBandwidthBudget budget = new DatanodeBandwidthBudget(BANDWIDTH);
+    // dn1 is busy for 2s, dn2 for 3s.
+    assertEquals(0, budget.reserve(
+        Collections.singletonList(move(2000, dn1, dn3)), 0));
+    assertEquals(0, budget.reserve(
+        Collections.singletonList(move(3000, dn2, dn4)), 0));
+    // A move from dn1 to dn2 waits for the busier of the two, not the sum.
+    assertEquals(3000, budget.reserve(
+        Collections.singletonList(move(1000, dn1, dn2)), 0));
+    // Both are then busy until the end of that move.
+    assertEquals(4000, budget.reserve(
+        Collections.singletonList(move(1000, dn1, dn3)), 0));
+  }
+
+  @Test
+  public void testMovesOfFileReservedAtOnce() {
+    DatanodeBandwidthBudget budget = new DatanodeBandwidthBudget(BANDWIDTH);
+    // The second move waits for the first one on dn1, the file is submitted
+    // once both fit.
+    assertEquals(1000, budget.reserve(
+        Arrays.asList(move(1000, dn1, dn2), move(1000, dn1, dn3)), 0));
+    // Budget not used for a while is not accumulated.
+    assertEquals(10000, budget.reserve(
+        Collections.singletonList(move(1000, dn1, dn4)), 10000));
+  }
+}
@@ -28,6 +28,7 @@
 import org.apache.hadoop.hdfs.protocol.LocatedBlock;
 import org.apache.hadoop.hdfs.protocol.LocatedStripedBlock;
 import org.apache.hadoop.hdfs.server.blockmanagement.BlockIdManager;
+import org.apache.hadoop.io.erasurecode.ErasureCodeConstants;
 import static org.apache.hadoop.hdfs.util.StripedBlockUtil.*;
 
 import org.apache.hadoop.hdfs.protocol.ErasureCodingPolicy;
@@ -39,8 +40,10 @@
 import java.nio.ByteBuffer;
 import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -328,4 +331,31 @@ public void testDivideOneStripeLargeBlockSize() {
     assertEquals(offset, stripes[0].range.offsetInBlock);
     assertEquals(1, stripes.length);
   }
+
+  @Test
+  public void testLocalRepairIndices() {
+    ErasureCodingPolicy lrcPolicy = new ErasureCodingPolicy(
+        ErasureCodeConstants.LRC_6_2_2_SCHEMA, cellSize);
+    long fullGroup = 6L * cellSize;
+    assertNull(getLocalRepairIndices(ecPolicy, fullGroup, new int[] {0}));
+    assertArrayEquals(new int[] {3, 5, 7},
+        getLocalRepairIndices(lrcPolicy, fullGroup, new int[] {4}));
+    assertArrayEquals(new int[] {0, 1, 2},
+        getLocalRepairIndices(lrcPolicy, fullGroup, new int[] {6}));
+    // Two blocks of a group, or a global parity block, are not repaired
+    // locally.
+    assertNull(getLocalRepairIndices(lrcPolicy, fullGroup,
+        new int[] {0, 2}));
+    assertNull(getLocalRepairIndices(lrcPolicy, fullGroup, new int[] {8}));
+    // Nor blocks of a group smaller than a full stripe.
+    assertNull(getLocalRepairIndices(lrcPolicy, 5L * cellSize,
+        new int[] {4}));
+
+    byte[] indices = {0, 9, 6, 1, 8, 2, 0};
+    Integer[] sources = {10, 19, 16, 11, 18, 12, 20};
+    sortSources(indices, sources,
+        getLocalRepairRanks(lrcPolicy, new int[] {1, 2, 6}));
+    assertArrayEquals(new byte[] {6, 1, 2, 0, 9, 8, 0}, indices);
+    assertArrayEquals(new Integer[] {16, 11, 12, 10, 19, 18, 20}, sources);
+  }
 }
@@ -20,6 +20,7 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -634,6 +635,44 @@ public void testCountNumOfAvailableNodes() {
     assertEquals(12, numNodes);
   }
 
+  @Test
+  public void testSnapshotSwappedOnAddAndRemove() {
+    NetworkTopology topology =
+        NetworkTopology.getInstance(new Configuration());
+    DatanodeDescriptor n1 =
+        DFSTestUtil.getDatanodeDescriptor("1.1.1.1", "/d1/r1");
+    DatanodeDescriptor n2 =
+        DFSTestUtil.getDatanodeDescriptor("2.2.2.2", "/d1/r2");
+    topology.add(n1);
+    long version = topology.getSnapshotVersion();
+    assertEquals(n1, topology.chooseRandom("/d1"));
+
+    // Reads do not change the snapshot.
+    assertEquals(version, topology.getSnapshotVersion());
+
+    // Adding a node swaps the snapshot, the new node can be chosen.
+    topology.add(n2);
+    assertTrue(topology.getSnapshotVersion() > version);
+    version = topology.getSnapshotVersion();
+    assertEquals(n2, topology.chooseRandom("/d1/r2"));
+    assertEquals(n2, topology.chooseRandom("~/d1/r1"));
+    assertEquals(4, topology.getDistance(n1, n2));
+    assertEquals(1, topology.countNumOfAvailableNodes("/d1/r1", null));
+
+    // Adding the same node again does not.
+    topology.add(n2);
+    assertEquals(version, topology.getSnapshotVersion());
+
+    // Removing a node swaps the snapshot, the node is no longer chosen.
+    topology.remove(n1);
+    assertTrue(topology.getSnapshotVersion() > version);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(n2, topology.chooseRandom(NodeBase.ROOT));
+    }
+    assertNull(topology.chooseRandom("/d1/r1"));
+    assertEquals(0, topology.countNumOfAvailableNodes("/d1/r1", null));
+  }
+
   @Test
   public void testAddAndRemoveNodeWithEmptyRack() {
     DatanodeDescriptor n1 = DFSTestUtil.getDatanodeDescriptor("6.6.6.6", "/d2/r3");
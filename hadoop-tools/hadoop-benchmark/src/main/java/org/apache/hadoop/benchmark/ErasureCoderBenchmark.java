@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.erasurecode.CodecRegistry;
+import org.apache.hadoop.io.erasurecode.ErasureCodeConstants;
+import org.apache.hadoop.io.erasurecode.ErasureCodeNative;
+import org.apache.hadoop.io.erasurecode.ErasureCoderOptions;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSBlockedRawErasureCoderFactory;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSLegacyRawErasureCoderFactory;
+import org.apache.hadoop.io.erasurecode.rawcoder.RSRawErasureCoderFactory;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureCoderFactory;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureDecoder;
+import org.apache.hadoop.io.erasurecode.rawcoder.RawErasureEncoder;
+
+/**
+ * Compares the throughput of the raw coders of the RS codecs encoding and
+ * decoding a stripe of RS-6-3 across cell sizes. {@link #main(String[])}
+ * benchmarks all the registered coders of the codecs, skipping the native
+ * ones if the native library is not loaded. The pure Java coders are the
+ * default, so that running the benchmark through JMH directly does not fail
+ * without the native library.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ErasureCoderBenchmark {
+
+  static final int NUM_DATA_UNITS = 6;
+  static final int NUM_PARITY_UNITS = 3;
+  /** One data and one parity unit are erased for decoding. */
+  static final int[] ERASED_INDEXES = {0, NUM_DATA_UNITS};
+  static final String[] CODECS = {ErasureCodeConstants.RS_CODEC_NAME,
+      ErasureCodeConstants.RS_LEGACY_CODEC_NAME};
+
+  @State(Scope.Thread)
+  public static class Stripe {
+    @Param({RSRawErasureCoderFactory.CODER_NAME,
+        RSBlockedRawErasureCoderFactory.CODER_NAME,
+        RSLegacyRawErasureCoderFactory.CODER_NAME})
+    private String coderName;
+
+    @Param({"65536", "1048576", "4194304"})
+    private int cellSize;
+
+    @Param({"array", "direct"})
+    private String bufferKind;
+
+    private RawErasureEncoder encoder;
+    private RawErasureDecoder decoder;
+    private ByteBuffer[] units;
+    private ByteBuffer[] parity;
+    private ByteBuffer[] decodeInputs;
+    private ByteBuffer[] decodeOutputs;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      RawErasureCoderFactory factory = null;
+      for (String codec : CODECS) {
+        factory = CodecRegistry.getInstance().getCoderByName(codec, coderName);
+        if (factory != null) {
+          break;
+        }
+      }
+      if (factory == null) {
+        throw new IllegalArgumentException("Unknown coder " + coderName);
+      }
+      ErasureCoderOptions options =
+          new ErasureCoderOptions(NUM_DATA_UNITS, NUM_PARITY_UNITS);
+      encoder = factory.createEncoder(options);
+      decoder = factory.createDecoder(options);
+
+      Random random = new Random(0);
+      units = new ByteBuffer[NUM_DATA_UNITS + NUM_PARITY_UNITS];
+      for (int i = 0; i < units.length; i++) {
+        units[i] = allocate();
+        if (i < NUM_DATA_UNITS) {
+          byte[] data = new byte[cellSize];
+          random.nextBytes(data);
+          units[i].put(data);
+          units[i].flip();
+        }
+      }
+      parity = new ByteBuffer[NUM_PARITY_UNITS];
+      System.arraycopy(units, NUM_DATA_UNITS, parity, 0, NUM_PARITY_UNITS);
+      encode();
+
+      decodeInputs = units.clone();
+      decodeOutputs = new ByteBuffer[ERASED_INDEXES.length];
+      for (int i = 0; i < ERASED_INDEXES.length; i++) {
+        decodeInputs[ERASED_INDEXES[i]] = null;
+        decodeOutputs[i] = allocate();
+      }
+    }
+
+    private ByteBuffer allocate() {
+      return "array".equals(bufferKind) ? ByteBuffer.allocate(cellSize)
+          : ByteBuffer.allocateDirect(cellSize);
+    }
+
+    /** The coders move the positions of the buffers they are given. */
+    private static void rewind(ByteBuffer[] buffers) {
+      for (ByteBuffer buffer : buffers) {
+        if (buffer != null) {
+          buffer.clear();
+        }
+      }
+    }
+
+    ByteBuffer[] encode() throws IOException {
+      rewind(units);
+      ByteBuffer[] inputs = new ByteBuffer[NUM_DATA_UNITS];
+      System.arraycopy(units, 0, inputs, 0, NUM_DATA_UNITS);
+      encoder.encode(inputs, parity);
+      return parity;
+    }
+
+    ByteBuffer[] decode() throws IOException {
+      rewind(decodeInputs);
+      rewind(decodeOutputs);
+      decoder.decode(decodeInputs, ERASED_INDEXES, decodeOutputs);
+      return decodeOutputs;
+    }
+  }
+
+  @Benchmark
+  public ByteBuffer[] encode(Stripe stripe) throws IOException {
+    return stripe.encode();
+  }
+
+  @Benchmark
+  public ByteBuffer[] decode(Stripe stripe) throws IOException {
+    return stripe.decode();
+  }
+
+  public static void main(String[] args) throws Exception {
+    OptionsBuilder opts = new OptionsBuilder();
+    opts.include("ErasureCoderBenchmark");
+    opts.jvmArgs("-server", "-Xms256m", "-Xmx2g");
+    List<String> coderNames = new ArrayList<>();
+    for (String codec : CODECS) {
+      for (String coderName :
+          CodecRegistry.getInstance().getCoderNames(codec)) {
+        if (!coderName.contains("native")
+            || ErasureCodeNative.isNativeCodeLoaded()) {
+          coderNames.add(coderName);
+        }
+      }
+    }
+    opts.param("coderName", coderNames.toArray(new String[0]));
+    opts.forks(1);
+    new Runner(opts.build()).run();
+  }
+}
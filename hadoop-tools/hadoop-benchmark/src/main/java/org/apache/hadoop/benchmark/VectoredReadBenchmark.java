@@ -27,6 +27,7 @@
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
 import org.openjdk.jmh.infra.Blackhole;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
@@ -49,7 +50,10 @@
 import org.apache.hadoop.fs.FileRange;
 import org.apache.hadoop.fs.impl.FileRangeImpl;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hdfs.DFSConfigKeys;
+import org.apache.hadoop.hdfs.MiniDFSCluster;
 
 @BenchmarkMode(Mode.AverageTime)
 @OutputTimeUnit(TimeUnit.MICROSECONDS)
@@ -59,6 +63,8 @@ public class VectoredReadBenchmark {
   static final String DATA_PATH_PROPERTY = "bench.data";
   static final int READ_SIZE = 64 * 1024;
   static final long SEEK_SIZE = 1024L * 1024;
+  static final long HDFS_BLOCK_SIZE = 8L * 1024 * 1024;
+  static final int HDFS_DATANODES = 3;
 
 
   static Path getTestDataPath() {
@@ -69,22 +75,44 @@ static Path getTestDataPath() {
   @State(Scope.Thread)
   public static class FileSystemChoice {
 
-    @Param({"local", "raw"})
+    /**
+     * "hdfs" copies the data file into a MiniDFSCluster with small blocks,
+     * so that the ranges of one vectored read span many blocks.
+     */
+    @Param({"local", "raw", "hdfs"})
     private String fileSystemKind;
 
     private Configuration conf;
     private FileSystem fs;
+    private MiniDFSCluster cluster;
 
     @Setup(Level.Trial)
     public void setup() {
       conf = new Configuration();
       try {
         LocalFileSystem local = FileSystem.getLocal(conf);
-        fs = "raw".equals(fileSystemKind) ? local.getRaw() : local;
+        if ("hdfs".equals(fileSystemKind)) {
+          conf.setLong(DFSConfigKeys.DFS_BLOCK_SIZE_KEY, HDFS_BLOCK_SIZE);
+          cluster = new MiniDFSCluster.Builder(conf)
+              .numDataNodes(HDFS_DATANODES).build();
+          cluster.waitActive();
+          fs = cluster.getFileSystem();
+          FileUtil.copy(local, DATA_PATH, fs, DATA_PATH, false, true, conf);
+        } else {
+          fs = "raw".equals(fileSystemKind) ? local.getRaw() : local;
+        }
       } catch (IOException e) {
         throw new IllegalArgumentException("Can't get filesystem", e);
       }
     }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      if (cluster != null) {
+        cluster.shutdown();
+        cluster = null;
+      }
+    }
   }
 
   @State(Scope.Thread)
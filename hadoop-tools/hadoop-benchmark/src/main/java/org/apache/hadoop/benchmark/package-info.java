@@ -17,6 +17,6 @@
  */
 
 /**
- * Benchmark for Vectored Read IO operations.
+ * Benchmarks for Vectored Read IO operations and raw erasure coders.
  */
 package org.apache.hadoop.benchmark;